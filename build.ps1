@@ -105,7 +105,13 @@ ANDROID_NDK = "$NDK"
 # Build Rust
 Write-Host "--- Building Rust ---"
 $env:ANDROID_NDK_ROOT = $NDK
-cargo build --target aarch64-linux-android --release
+# Local LLM (llama.cpp) is opt-in until its Android cross-build is verified;
+# set VOICEAI_LOCAL_LLM=1 to build with it
+$cargoArgs = @("build", "--target", "aarch64-linux-android", "--release")
+if ($env:VOICEAI_LOCAL_LLM -eq "1") {
+    $cargoArgs += @("--features", "local-llm")
+}
+cargo @cargoArgs
 if ($LASTEXITCODE -ne 0) { Write-Error "Rust build failed"; exit 1 }
 
 # Compile Resources
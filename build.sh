@@ -143,7 +143,13 @@ fi
 echo "--- Building Rust ---"
 # export ANDROID_NDK_ROOT is deprecated but some tools might still use it, standard is ANDROID_NDK_HOME
 export ANDROID_NDK_ROOT="$NDK"
-cargo build --target aarch64-linux-android --release
+# Local LLM (llama.cpp) is opt-in until its Android cross-build is verified;
+# set VOICEAI_LOCAL_LLM=1 to build with it
+CARGO_FEATURES=""
+if [ "${VOICEAI_LOCAL_LLM:-0}" = "1" ]; then
+    CARGO_FEATURES="--features local-llm"
+fi
+cargo build --target aarch64-linux-android --release $CARGO_FEATURES
 
 # 2. Compile Resources
 echo "--- Compiling Resources ---"
@@ -208,10 +214,12 @@ jar uf unaligned.apk classes.dex
 cp -r ../lib .
 jar uf unaligned.apk lib
 
-# Add Assets
+# Add Assets (ONNX models stored uncompressed so the app can mmap them
+# straight from the APK instead of extracting them)
 if [ -d "../../assets" ]; then
     cp -r ../../assets .
-    jar uf unaligned.apk assets
+    find assets -type f ! -name '*.onnx' -print0 | xargs -0 -r jar uf unaligned.apk
+    find assets -type f -name '*.onnx' -print0 | xargs -0 -r jar u0f unaligned.apk
 fi
 
 cd ../..
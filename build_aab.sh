@@ -67,7 +67,13 @@ fi
 # --- 1. Build Native (Rust) ---
 echo "--- Building Rust (Release) ---"
 export ANDROID_NDK_HOME="$NDK"
-cargo build --target aarch64-linux-android --release
+# Local LLM (llama.cpp) is opt-in until its Android cross-build is verified;
+# set VOICEAI_LOCAL_LLM=1 to build with it
+CARGO_FEATURES=""
+if [ "${VOICEAI_LOCAL_LLM:-0}" = "1" ]; then
+    CARGO_FEATURES="--features local-llm"
+fi
+cargo build --target aarch64-linux-android --release $CARGO_FEATURES
 
 # --- 2. Compile Java ---
 echo "--- Compiling Java ---"
@@ -0,0 +1,408 @@
+//! # local-llm
+//!
+//! On-device text polishing with a Qwen3-style chat model in GGUF format,
+//! built on llama.cpp.
+//!
+//! ## Features
+//!
+//! - **Memory-mapped weights**: the model file is mapped, not copied to the heap
+//! - **Prefix KV cache reuse**: the fixed system prompt is evaluated once and its
+//!   KV cache is kept, so each utterance only pays for the user text and output
+//! - **Persistent prefix cache**: optionally saved to a session file so the
+//!   prefix is not re-evaluated after the process is restarted
+//! - **Greedy decoding** with a hard output token budget
+//!
+//! ## Quick Start
+//!
+//! ```rust,no_run
+//! use local_llm::{LlmParams, LocalLlm};
+//! use std::path::Path;
+//!
+//! let mut llm = LocalLlm::load(Path::new("models/Qwen3-0.6B-UD-Q4_K_XL.gguf"), LlmParams::default())?;
+//! let out = llm.generate("You are a dictation formatter.", "um hello world", 64)?;
+//! println!("{} ({} prefix tokens reused)", out.text, out.reused_prefix_tokens);
+//! # Ok::<(), anyhow::Error>(())
+//! ```
+
+use anyhow::{anyhow, Result};
+use llama_cpp_2::context::params::LlamaContextParams;
+use llama_cpp_2::context::LlamaContext;
+use llama_cpp_2::llama_backend::LlamaBackend;
+use llama_cpp_2::llama_batch::LlamaBatch;
+use llama_cpp_2::model::params::LlamaModelParams;
+use llama_cpp_2::model::{AddBos, LlamaModel, Special};
+use llama_cpp_2::token::LlamaToken;
+use std::collections::hash_map::DefaultHasher;
+use std::hash::{Hash, Hasher};
+use std::num::NonZeroU32;
+use std::path::{Path, PathBuf};
+use std::sync::OnceLock;
+use std::time::Instant;
+
+// llama.cpp's backend may only be initialised once per process
+static BACKEND: OnceLock<std::result::Result<LlamaBackend, String>> = OnceLock::new();
+
+fn backend() -> Result<&'static LlamaBackend> {
+    BACKEND
+        .get_or_init(|| LlamaBackend::init().map_err(|e| e.to_string()))
+        .as_ref()
+        .map_err(|e| anyhow!("Failed to initialise llama backend: {}", e))
+}
+
+const IM_END: &[u8] = b"<|im_end|>";
+
+/// Parameters for loading a model and creating its inference context.
+#[derive(Debug, Clone)]
+pub struct LlmParams {
+    /// Context window in tokens (system prompt + user text + output)
+    pub n_ctx: u32,
+    /// Maximum tokens evaluated per decode call during prefill
+    pub n_batch: u32,
+    /// CPU threads used for decoding
+    pub n_threads: i32,
+    /// Directory for persisted prefix KV caches (None disables persistence)
+    pub prefix_cache_dir: Option<PathBuf>,
+}
+
+impl Default for LlmParams {
+    fn default() -> Self {
+        let threads = std::thread::available_parallelism()
+            .map(|n| n.get())
+            .unwrap_or(4)
+            .min(4) as i32;
+        Self {
+            n_ctx: 2048,
+            n_batch: 512,
+            n_threads: threads,
+            prefix_cache_dir: None,
+        }
+    }
+}
+
+/// Result of a single completion.
+#[derive(Debug, Clone)]
+pub struct Generation {
+    /// Generated text with chat markup and empty think blocks removed
+    pub text: String,
+    /// System prompt tokens served from the KV cache instead of evaluated
+    pub reused_prefix_tokens: usize,
+    /// User tokens evaluated for this request
+    pub prompt_tokens: usize,
+    /// Tokens produced by greedy decoding
+    pub generated_tokens: usize,
+    /// Time spent evaluating the prompt (including any prefix rebuild)
+    pub prefill_ms: u64,
+    /// Time spent generating output tokens
+    pub decode_ms: u64,
+}
+
+struct PrefixCache {
+    system_prompt: String,
+    tokens: Vec<LlamaToken>,
+}
+
+/// A loaded GGUF model with a single inference context.
+///
+/// Not thread-safe for concurrent use: callers serialise access (the JNI layer
+/// keeps it behind a Mutex).
+pub struct LocalLlm {
+    // Declared before `model` so it is dropped first: the context borrows the model.
+    ctx: LlamaContext<'static>,
+    model: Box<LlamaModel>,
+    model_path: PathBuf,
+    params: LlmParams,
+    prefix: Option<PrefixCache>,
+}
+
+// SAFETY: llama.cpp contexts may be used from any thread as long as calls are
+// not concurrent; LocalLlm is only reachable through &mut or a Mutex.
+unsafe impl Send for LocalLlm {}
+
+impl LocalLlm {
+    /// Load a GGUF model. Weights are memory-mapped (llama.cpp default).
+    pub fn load(model_path: &Path, params: LlmParams) -> Result<Self> {
+        let backend = backend()?;
+
+        let model_params = LlamaModelParams::default();
+        let model = Box::new(
+            LlamaModel::load_from_file(backend, model_path, &model_params)
+                .map_err(|e| anyhow!("Failed to load {:?}: {}", model_path, e))?,
+        );
+
+        // SAFETY: the model is boxed (stable address), never moved out of the
+        // box, and outlives `ctx`, which is dropped first (field order).
+        let model_ref: &'static LlamaModel = unsafe { &*(model.as_ref() as *const LlamaModel) };
+
+        let ctx_params = LlamaContextParams::default()
+            .with_n_ctx(NonZeroU32::new(params.n_ctx))
+            .with_n_batch(params.n_batch)
+            .with_n_threads(params.n_threads)
+            .with_n_threads_batch(params.n_threads);
+        let ctx = model_ref
+            .new_context(backend, ctx_params)
+            .map_err(|e| anyhow!("Failed to create context: {}", e))?;
+
+        log::info!(
+            "LocalLlm: loaded {:?} (n_ctx={}, threads={})",
+            model_path,
+            params.n_ctx,
+            params.n_threads
+        );
+
+        Ok(Self {
+            ctx,
+            model,
+            model_path: model_path.to_path_buf(),
+            params,
+            prefix: None,
+        })
+    }
+
+    pub fn model_path(&self) -> &Path {
+        &self.model_path
+    }
+
+    /// Whether the KV cache currently holds this system prompt
+    pub fn is_prefix_cached(&self, system_prompt: &str) -> bool {
+        matches!(&self.prefix, Some(p) if p.system_prompt == system_prompt)
+    }
+
+    /// Evaluate the system prompt ahead of the first request.
+    pub fn warm_up(&mut self, system_prompt: &str) -> Result<()> {
+        self.ensure_prefix(system_prompt).map(|_| ())
+    }
+
+    /// Run one chat completion with greedy decoding.
+    ///
+    /// The system prompt's KV cache is reused when it matches the previous
+    /// call; only the user text is evaluated.
+    pub fn generate(&mut self, system_prompt: &str, user_text: &str, max_tokens: usize) -> Result<Generation> {
+        let prefill_start = Instant::now();
+
+        let was_cached = self.is_prefix_cached(system_prompt);
+        let prefix_len = self.ensure_prefix(system_prompt)?;
+
+        // Drop the previous request's user text and output, keep the prefix
+        let _ = self.ctx.clear_kv_cache_seq(Some(0), Some(prefix_len as u32), None);
+
+        let suffix = self
+            .model
+            .str_to_token(&suffix_text(user_text), AddBos::Never)
+            .map_err(|e| anyhow!("Tokenization failed: {}", e))?;
+
+        let n_ctx = self.params.n_ctx as usize;
+        if prefix_len + suffix.len() >= n_ctx {
+            return Err(anyhow!(
+                "Prompt too long: {} tokens for a {} token context",
+                prefix_len + suffix.len(),
+                n_ctx
+            ));
+        }
+        let budget = max_tokens.min(n_ctx - prefix_len - suffix.len());
+
+        let mut logits_index = self.decode_tokens(&suffix, prefix_len, true)?;
+        let prefill_ms = prefill_start.elapsed().as_millis() as u64;
+
+        let decode_start = Instant::now();
+        let mut output: Vec<u8> = Vec::new();
+        let mut batch = LlamaBatch::new(1, 1);
+        let mut pos = prefix_len + suffix.len();
+        let mut generated = 0;
+
+        while generated < budget {
+            let token = self.greedy(logits_index);
+            if self.model.is_eog_token(token) {
+                break;
+            }
+
+            let piece = self
+                .model
+                .token_to_bytes(token, Special::Plaintext)
+                .map_err(|e| anyhow!("Detokenization failed: {}", e))?;
+            output.extend_from_slice(&piece);
+            generated += 1;
+
+            if output.ends_with(IM_END) {
+                output.truncate(output.len() - IM_END.len());
+                break;
+            }
+
+            batch.clear();
+            batch
+                .add(token, pos as i32, &[0], true)
+                .map_err(|e| anyhow!("Batch error: {}", e))?;
+            self.ctx
+                .decode(&mut batch)
+                .map_err(|e| anyhow!("Decode failed: {}", e))?;
+            logits_index = 0;
+            pos += 1;
+        }
+
+        Ok(Generation {
+            text: clean_output(&String::from_utf8_lossy(&output)),
+            reused_prefix_tokens: if was_cached { prefix_len } else { 0 },
+            prompt_tokens: suffix.len(),
+            generated_tokens: generated,
+            prefill_ms,
+            decode_ms: decode_start.elapsed().as_millis() as u64,
+        })
+    }
+
+    /// Make sure the KV cache starts with this system prompt.
+    /// Returns the prefix length in tokens.
+    fn ensure_prefix(&mut self, system_prompt: &str) -> Result<usize> {
+        if let Some(p) = &self.prefix {
+            if p.system_prompt == system_prompt {
+                return Ok(p.tokens.len());
+            }
+        }
+
+        self.prefix = None;
+        self.ctx.clear_kv_cache();
+
+        let tokens = self
+            .model
+            .str_to_token(&prefix_text(system_prompt), AddBos::Always)
+            .map_err(|e| anyhow!("Tokenization failed: {}", e))?;
+
+        let session_path = self.session_path(system_prompt);
+
+        let mut restored = false;
+        if let Some(path) = session_path.as_ref().filter(|p| p.exists()) {
+            match self.ctx.load_session_file(path, self.params.n_ctx as usize) {
+                Ok(saved) if saved == tokens => {
+                    log::info!("LocalLlm: restored {} prefix tokens from {:?}", tokens.len(), path);
+                    restored = true;
+                }
+                Ok(_) => {
+                    log::warn!("LocalLlm: stale prefix cache {:?}, rebuilding", path);
+                    self.ctx.clear_kv_cache();
+                }
+                Err(e) => {
+                    log::warn!("LocalLlm: could not load prefix cache {:?}: {}", path, e);
+                    self.ctx.clear_kv_cache();
+                }
+            }
+        }
+
+        if !restored {
+            let start = Instant::now();
+            self.decode_tokens(&tokens, 0, false)?;
+            log::info!(
+                "LocalLlm: evaluated {} prefix tokens in {}ms",
+                tokens.len(),
+                start.elapsed().as_millis()
+            );
+
+            if let Some(path) = session_path.as_ref() {
+                if let Err(e) = self.ctx.save_session_file(path, &tokens) {
+                    log::warn!("LocalLlm: could not save prefix cache {:?}: {}", path, e);
+                }
+            }
+        }
+
+        let len = tokens.len();
+        self.prefix = Some(PrefixCache {
+            system_prompt: system_prompt.to_string(),
+            tokens,
+        });
+        Ok(len)
+    }
+
+    /// Evaluate tokens starting at `start_pos` in chunks of n_batch.
+    /// Returns the batch index holding the last token's logits.
+    fn decode_tokens(&mut self, tokens: &[LlamaToken], start_pos: usize, logits_last: bool) -> Result<i32> {
+        let n_batch = self.params.n_batch as usize;
+        let mut batch = LlamaBatch::new(n_batch, 1);
+        let total = tokens.len();
+
+        for (chunk_index, chunk) in tokens.chunks(n_batch).enumerate() {
+            batch.clear();
+            for (i, &token) in chunk.iter().enumerate() {
+                let index = chunk_index * n_batch + i;
+                let is_last = index + 1 == total;
+                batch
+                    .add(token, (start_pos + index) as i32, &[0], logits_last && is_last)
+                    .map_err(|e| anyhow!("Batch error: {}", e))?;
+            }
+            self.ctx
+                .decode(&mut batch)
+                .map_err(|e| anyhow!("Decode failed: {}", e))?;
+        }
+
+        Ok(batch.n_tokens() - 1)
+    }
+
+    fn greedy(&self, logits_index: i32) -> LlamaToken {
+        let logits = self.ctx.get_logits_ith(logits_index);
+        let mut best = 0usize;
+        let mut best_value = f32::NEG_INFINITY;
+        for (i, &value) in logits.iter().enumerate() {
+            if value > best_value {
+                best_value = value;
+                best = i;
+            }
+        }
+        LlamaToken::new(best as i32)
+    }
+
+    fn session_path(&self, system_prompt: &str) -> Option<PathBuf> {
+        let dir = self.params.prefix_cache_dir.as_ref()?;
+        let mut hasher = DefaultHasher::new();
+        system_prompt.hash(&mut hasher);
+        self.params.n_ctx.hash(&mut hasher);
+        if let Ok(meta) = std::fs::metadata(&self.model_path) {
+            meta.len().hash(&mut hasher);
+        }
+        let stem = self
+            .model_path
+            .file_stem()
+            .map(|s| s.to_string_lossy().into_owned())
+            .unwrap_or_else(|| "model".to_string());
+        Some(dir.join(format!("{}-prefix-{:016x}.session", stem, hasher.finish())))
+    }
+}
+
+/// Chat prompt up to the start of the user turn (Qwen3 / ChatML format)
+fn prefix_text(system_prompt: &str) -> String {
+    format!("<|im_start|>system\n{}<|im_end|>\n<|im_start|>user\n", system_prompt)
+}
+
+/// User turn plus an empty think block so Qwen3 answers directly
+fn suffix_text(user_text: &str) -> String {
+    format!(
+        "{}<|im_end|>\n<|im_start|>assistant\n<think>\n\n</think>\n\n",
+        user_text
+    )
+}
+
+fn clean_output(raw: &str) -> String {
+    let mut text = raw;
+    if let Some(end) = text.find("</think>") {
+        if text.trim_start().starts_with("<think>") {
+            text = &text[end + "</think>".len()..];
+        }
+    }
+    text.trim().to_string()
+}
+
+#[cfg(test)]
+mod tests {
+    use super::*;
+
+    #[test]
+    fn prompt_parts_join_into_chatml() {
+        let full = format!("{}{}", prefix_text("sys"), suffix_text("hi"));
+        assert_eq!(
+            full,
+            "<|im_start|>system\nsys<|im_end|>\n<|im_start|>user\nhi<|im_end|>\n<|im_start|>assistant\n<think>\n\n</think>\n\n"
+        );
+    }
+
+    #[test]
+    fn clean_output_strips_think_block() {
+        assert_eq!(clean_output("<think>\n\n</think>\n\nHello."), "Hello.");
+        assert_eq!(clean_output("  Hello.  "), "Hello.");
+        assert_eq!(clean_output("Hello </think> there"), "Hello </think> there");
+    }
+}
@@ -0,0 +1,104 @@
+//! Host-side inference tests.
+//!
+//! These need a real GGUF file. Point LOCAL_LLM_TEST_MODEL at a small model
+//! (any llama.cpp-compatible GGUF works, e.g. a tiny stories model). They are
+//! ignored by default, so a plain `cargo test` reports them as ignored rather
+//! than passing without running; run them with `--ignored`:
+//!
+//! ```sh
+//! LOCAL_LLM_TEST_MODEL=models/stories260K.gguf cargo test -p local-llm -- --ignored
+//! ```
+
+use local_llm::{LlmParams, LocalLlm};
+use std::path::PathBuf;
+
+const SYSTEM: &str = "You are a text formatting assistant for voice dictation.";
+
+const NEEDS_MODEL: &str = "needs LOCAL_LLM_TEST_MODEL=<path to a .gguf>";
+
+fn test_model() -> PathBuf {
+    let path = PathBuf::from(std::env::var("LOCAL_LLM_TEST_MODEL").expect(NEEDS_MODEL));
+    assert!(path.exists(), "LOCAL_LLM_TEST_MODEL={:?} does not exist", path);
+    path
+}
+
+fn small_params() -> LlmParams {
+    LlmParams {
+        n_ctx: 512,
+        n_batch: 128,
+        n_threads: 2,
+        prefix_cache_dir: None,
+    }
+}
+
+#[test]
+#[ignore = "needs LOCAL_LLM_TEST_MODEL=<path to a .gguf>"]
+fn respects_token_budget() {
+    let path = test_model();
+    let mut llm = LocalLlm::load(&path, small_params()).unwrap();
+
+    let out = llm.generate(SYSTEM, "um so i think we should go", 8).unwrap();
+    assert!(out.generated_tokens <= 8);
+    assert!(out.prompt_tokens > 0);
+}
+
+#[test]
+#[ignore = "needs LOCAL_LLM_TEST_MODEL=<path to a .gguf>"]
+fn reuses_prefix_across_calls() {
+    let path = test_model();
+    let mut llm = LocalLlm::load(&path, small_params()).unwrap();
+
+    let first = llm.generate(SYSTEM, "hello world", 4).unwrap();
+    assert_eq!(first.reused_prefix_tokens, 0);
+    assert!(llm.is_prefix_cached(SYSTEM));
+
+    let second = llm.generate(SYSTEM, "another utterance entirely", 4).unwrap();
+    assert!(second.reused_prefix_tokens > 0);
+
+    // A different system prompt rebuilds the cache
+    let third = llm.generate("Reply in French.", "hello", 4).unwrap();
+    assert_eq!(third.reused_prefix_tokens, 0);
+    assert!(!llm.is_prefix_cached(SYSTEM));
+}
+
+#[test]
+#[ignore = "needs LOCAL_LLM_TEST_MODEL=<path to a .gguf>"]
+fn cached_prefix_gives_same_output_as_fresh_context() {
+    let path = test_model();
+
+    let mut warm = LocalLlm::load(&path, small_params()).unwrap();
+    warm.generate(SYSTEM, "something unrelated first", 6).unwrap();
+    let reused = warm.generate(SYSTEM, "um hello there", 6).unwrap();
+
+    let mut cold = LocalLlm::load(&path, small_params()).unwrap();
+    let fresh = cold.generate(SYSTEM, "um hello there", 6).unwrap();
+
+    // Greedy decoding over the same KV state must be deterministic
+    assert_eq!(reused.text, fresh.text);
+}
+
+#[test]
+#[ignore = "needs LOCAL_LLM_TEST_MODEL=<path to a .gguf>"]
+fn persists_prefix_cache_to_disk() {
+    let path = test_model();
+    let dir = std::env::temp_dir().join(format!("local-llm-test-{}", std::process::id()));
+    std::fs::create_dir_all(&dir).unwrap();
+
+    let params = LlmParams {
+        prefix_cache_dir: Some(dir.clone()),
+        ..small_params()
+    };
+
+    {
+        let mut llm = LocalLlm::load(&path, params.clone()).unwrap();
+        llm.warm_up(SYSTEM).unwrap();
+    }
+    let saved = std::fs::read_dir(&dir).unwrap().count();
+    assert_eq!(saved, 1);
+
+    let mut llm = LocalLlm::load(&path, params).unwrap();
+    let out = llm.generate(SYSTEM, "hello", 4).unwrap();
+    assert!(out.generated_tokens <= 4);
+
+    let _ = std::fs::remove_dir_all(&dir);
+}
@@ -0,0 +1,138 @@
+package com.voiceai.app;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * AsrScheduler - Java side of the native ASR engine pool (lib.rs)
+ *
+ * The loaded Parakeet model is a pool of engines. Every transcription
+ * leases one by priority, so a final dictation transcript is served before
+ * queued live-caption windows, and partial drafts only use an engine
+ * nobody is waiting for. Each extra engine holds its own copy of the
+ * weights, so the pool grows only on devices with memory to spare.
+ *
+ * Usage:
+ * AsrScheduler.setPoolSize(AsrScheduler.poolSizeFor(totalMem, cores)); // before load
+ * Log.d(TAG, "ASR queue: " + AsrScheduler.getStats());
+ */
+public final class AsrScheduler {
+
+    private static final String TAG = "VoiceAI.AsrScheduler";
+
+    /** Lanes, highest first; must match AsrPriority in lib.rs */
+    public enum Priority {
+        /** Final transcripts the user is waiting for */
+        INTERACTIVE,
+        /** Drafts while recording; skipped rather than queued */
+        PARTIAL,
+        /** Live caption windows */
+        BACKGROUND
+    }
+
+    // Per lane: count, total wait ns, max wait ns, waiting now; then pool size, busy
+    static final int LANE_FIELDS = 4;
+    static final int STATS_LENGTH = Priority.values().length * LANE_FIELDS + 2;
+
+    // A second engine only with this much RAM and at least this many cores
+    private static final long POOL_OF_TWO_TOTAL_BYTES = 8L * 1024 * 1024 * 1024;
+    private static final int POOL_OF_TWO_CORES = 6;
+
+    private AsrScheduler() {
+    }
+
+    /**
+     * Engines to build, from total RAM and CPU cores. Each engine is a full
+     * model copy and decodes with several threads, so more than two never
+     * pays off on a phone.
+     */
+    static int poolSizeFor(long totalMemBytes, int cores) {
+        return totalMemBytes >= POOL_OF_TWO_TOTAL_BYTES && cores >= POOL_OF_TWO_CORES ? 2 : 1;
+    }
+
+    /**
+     * Pool size for the next ASR load (a loaded pool keeps its size)
+     */
+    public static void setPoolSize(int size) {
+        try {
+            setPoolSizeNative(Math.max(1, size));
+        } catch (UnsatisfiedLinkError e) {
+            Log.w(TAG, "Native scheduler unavailable", e);
+        }
+    }
+
+    /**
+     * Queue wait per lane since process start, and current pool use
+     */
+    public static Stats getStats() {
+        long[] values = new long[STATS_LENGTH];
+        try {
+            readStatsNative(values);
+        } catch (UnsatisfiedLinkError e) {
+            Log.w(TAG, "Native scheduler unavailable", e);
+        }
+        return new Stats(values);
+    }
+
+    public static final class Stats {
+
+        private final long[] values;
+
+        Stats(long[] values) {
+            if (values.length != STATS_LENGTH) {
+                throw new IllegalArgumentException("Expected " + STATS_LENGTH + " values, got " + values.length);
+            }
+            this.values = values.clone();
+        }
+
+        private long lane(Priority priority, int field) {
+            return values[priority.ordinal() * LANE_FIELDS + field];
+        }
+
+        /** Leases granted in this lane */
+        public long getCount(Priority priority) {
+            return lane(priority, 0);
+        }
+
+        public double getAverageWaitMillis(Priority priority) {
+            long count = getCount(priority);
+            return count == 0 ? 0 : lane(priority, 1) / (count * 1e6);
+        }
+
+        public double getMaxWaitMillis(Priority priority) {
+            return lane(priority, 2) / 1e6;
+        }
+
+        /** Callers queued in this lane right now */
+        public long getWaiting(Priority priority) {
+            return lane(priority, 3);
+        }
+
+        /** Engines in the loaded pool, 0 if not loaded */
+        public int getPoolSize() {
+            return (int) values[STATS_LENGTH - 2];
+        }
+
+        public int getBusy() {
+            return (int) values[STATS_LENGTH - 1];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("AsrScheduler{pool=").append(getBusy()).append('/')
+                    .append(getPoolSize());
+            for (Priority priority : Priority.values()) {
+                sb.append(", ").append(priority.name().toLowerCase()).append('=').append(getCount(priority))
+                        .append(String.format(Locale.US, " (avg %.1fms, max %.1fms, waiting %d)",
+                                getAverageWaitMillis(priority), getMaxWaitMillis(priority),
+                                getWaiting(priority)));
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    private static native void setPoolSizeNative(int size);
+
+    private static native void readStatsNative(long[] out);
+}
@@ -0,0 +1,67 @@
+package com.voiceai.app;
+
+/**
+ * AudioLevelChannel - Lock-free hand-off of audio levels to the UI
+ *
+ * The audio thread publishes each level into a small ring and bumps a
+ * volatile sequence number; readers (the waveform on each Choreographer
+ * frame) pick up whatever arrived since their last look. No allocation,
+ * no locks and no message-queue posts per audio buffer.
+ *
+ * Single writer only. Readers that fall more than RING_SIZE / 2 levels
+ * behind only see the newest half of the ring.
+ */
+public final class AudioLevelChannel {
+
+    // Power of two; ~1.3s of levels at one per 20ms frame
+    static final int RING_SIZE = 64;
+    private static final int MASK = RING_SIZE - 1;
+
+    private final float[] ring = new float[RING_SIZE];
+
+    // Levels published so far; the volatile write publishes the ring entry
+    private volatile long sequence;
+
+    /**
+     * Publish a level (0.0 - 1.0). Call from the audio thread only.
+     */
+    public void publish(float level) {
+        long seq = sequence;
+        ring[(int) (seq & MASK)] = level;
+        sequence = seq + 1;
+    }
+
+    /**
+     * Number of levels published so far
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Most recent level, or 0 if none published yet
+     */
+    public float getLevel() {
+        long seq = sequence;
+        return seq == 0 ? 0f : ring[(int) ((seq - 1) & MASK)];
+    }
+
+    /**
+     * Loudest level published in [from, to) so short peaks between two
+     * reads are not lost; the latest level if nothing new arrived
+     *
+     * @param from Sequence from the previous read
+     * @param to   Current sequence (from {@link #getSequence()})
+     */
+    public float peak(long from, long to) {
+        long start = Math.max(from, to - RING_SIZE / 2);
+        if (start >= to) {
+            return getLevel();
+        }
+        float max = 0f;
+        for (long s = start; s < to; s++) {
+            max = Math.max(max, ring[(int) (s & MASK)]);
+        }
+        return max;
+    }
+}
@@ -11,10 +11,11 @@ import android.widget.Toast;
  * DictationController - FUTO-style dictation management
  * 
  * Features:
- * - 30-second dictation limit (toggle)
- * - Silence detection auto-stop (toggle)
+ * - 30-second dictation limit (toggle), off in long-form mode
+ * - Silence detection auto-stop (toggle), driven by VoiceActivityDetector
+ *   events from the audio thread instead of polling, with the speech
+ *   threshold set relative to the ambient noise floor per session
  * - Settings persistence via SharedPreferences
- * - Real-time audio level monitoring
  */
 public class DictationController {
 
@@ -30,28 +31,43 @@ public class DictationController {
     public static final float DEFAULT_SILENCE_THRESHOLD = 1.5f;
     public static final float SILENCE_RMS_THRESHOLD = 0.02f; // Audio level below this = silence
 
+    // Audio level = raw RMS * this (see lib.rs)
+    static final float AUDIO_LEVEL_SCALE = 5f;
+
+    // Time allowed to start speaking before auto-stop
+    static final long LEADING_SILENCE_MS = 3000;
+
     // State
     private Context context;
     private SharedPreferences prefs;
     private Handler handler;
-    private DictationListener listener;
+    // Read on the audio thread (onSpeechStarted)
+    private volatile DictationListener listener;
 
     // Timer state
     private Runnable timeLimitRunnable;
     private long dictationStartTime;
     private boolean isRunning;
 
-    // Silence detection state
-    private float lastAudioLevel;
-    private long silenceStartTime;
-    private Runnable silenceCheckRunnable;
+    // Silence detection state (frames arrive on the audio thread)
+    private final VoiceActivityDetector vad;
+    private final NoiseFloorEstimator noiseFloor = new NoiseFloorEstimator();
+    private volatile boolean vadActive;
+    private final Runnable silenceStopRunnable = this::onSilenceTimeout;
 
-    // Settings
+    // Latest audio levels for the waveform (written on the audio thread)
+    private final AudioLevelChannel audioLevels = new AudioLevelChannel();
+
+    // Settings (settingsVersion: snapshot they were read from)
+    private int settingsVersion = -1;
     private boolean timeLimitEnabled;
     private int timeLimitSeconds;
     private boolean silenceDetectionEnabled;
     private float silenceThresholdSeconds;
 
+    // Current session is transcribed in chunks as it goes, so it has no cap
+    private boolean longForm;
+
     public interface DictationListener {
         void onDictationStarted();
 
@@ -60,6 +76,12 @@ public class DictationController {
         void onTimeRemaining(int secondsRemaining);
 
         void onSilenceDetected();
+
+        /**
+         * The VAD detected the start of a speech segment (adaptive to the
+         * noise floor). Called on the audio thread, once per segment.
+         */
+        void onSpeechStarted();
     }
 
     public enum StopReason {
@@ -74,6 +96,28 @@ public class DictationController {
         this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         this.handler = new Handler(Looper.getMainLooper());
         this.isRunning = false;
+        this.vad = new VoiceActivityDetector(new VoiceActivityDetector.Listener() {
+            @Override
+            public void onSpeechStart(long timeMs) {
+                Log.d(TAG, "Speech started at " + timeMs + "ms");
+                DictationListener l = listener;
+                if (l != null) {
+                    l.onSpeechStarted();
+                }
+            }
+
+            @Override
+            public void onSpeechEnd(long timeMs) {
+                handler.post(silenceStopRunnable);
+            }
+
+            @Override
+            public void onNoSpeech(long timeMs) {
+                handler.post(silenceStopRunnable);
+            }
+        }, 0, LEADING_SILENCE_MS);
+        this.vad.setSpeechRms(SILENCE_RMS_THRESHOLD / AUDIO_LEVEL_SCALE);
+        this.vad.setNoiseFloorEstimator(noiseFloor);
 
         loadSettings();
     }
@@ -82,10 +126,18 @@ public class DictationController {
     // SETTINGS MANAGEMENT
     // ========================================================================
 
+    /**
+     * Apply the current settings snapshot; cheap unless a preference changed
+     */
     public void loadSettings() {
-        timeLimitEnabled = prefs.getBoolean(PREF_TIME_LIMIT_ENABLED, true);
+        SettingsSnapshot settings = SettingsSnapshot.get(context);
+        if (settings.getVersion() == settingsVersion) {
+            return;
+        }
+        settingsVersion = settings.getVersion();
+        timeLimitEnabled = settings.isTimeLimitEnabled();
         timeLimitSeconds = DEFAULT_TIME_LIMIT; // Fixed at 30 seconds
-        silenceDetectionEnabled = prefs.getBoolean(PREF_SILENCE_DETECTION_ENABLED, true);
+        silenceDetectionEnabled = settings.isAutoStopOnSilence();
         silenceThresholdSeconds = DEFAULT_SILENCE_THRESHOLD;
 
         Log.d(TAG, "Settings loaded: timeLimit=" + timeLimitEnabled + " (" + timeLimitSeconds + "s), " +
@@ -121,8 +173,12 @@ public class DictationController {
         saveSettings();
     }
 
+    /**
+     * Whether the current session is capped: the setting, unless the caller
+     * started it as long-form
+     */
     public boolean isTimeLimitEnabled() {
-        return timeLimitEnabled;
+        return timeLimitEnabled && !longForm;
     }
 
     public int getTimeLimitSeconds() {
@@ -146,6 +202,14 @@ public class DictationController {
     }
 
     public void startDictation() {
+        startDictation(false);
+    }
+
+    /**
+     * @param longForm the caller transcribes the audio in chunks while
+     *                 recording, so the time limit does not apply
+     */
+    public void startDictation(boolean longForm) {
         if (isRunning) {
             Log.w(TAG, "Dictation already running");
             return;
@@ -154,21 +218,19 @@ public class DictationController {
         loadSettings(); // Reload in case settings changed
 
         isRunning = true;
+        this.longForm = longForm;
         dictationStartTime = System.currentTimeMillis();
-        silenceStartTime = 0;
-        lastAudioLevel = 1.0f;
 
-        Log.d(TAG, "Dictation started");
+        Log.d(TAG, "Dictation started" + (longForm ? " (long-form)" : ""));
 
         // Start time limit timer if enabled
-        if (timeLimitEnabled) {
+        if (isTimeLimitEnabled()) {
             startTimeLimitTimer();
         }
 
-        // Start silence detection if enabled
-        if (silenceDetectionEnabled) {
-            startSilenceDetection();
-        }
+        // The VAD always runs for onSpeechStarted; it only stops the
+        // dictation when silence detection is enabled
+        startSilenceDetection();
 
         if (listener != null) {
             listener.onDictationStarted();
@@ -188,12 +250,10 @@ public class DictationController {
             timeLimitRunnable = null;
         }
 
-        if (silenceCheckRunnable != null) {
-            handler.removeCallbacks(silenceCheckRunnable);
-            silenceCheckRunnable = null;
-        }
+        vadActive = false;
+        handler.removeCallbacks(silenceStopRunnable);
 
-        Log.d(TAG, "Dictation stopped: " + reason);
+        Log.d(TAG, "Dictation stopped: " + reason + " (" + noiseFloor + ")");
 
         // Show toast notification
         String message;
@@ -262,51 +322,53 @@ public class DictationController {
     // ========================================================================
 
     private void startSilenceDetection() {
-        Log.d(TAG, "Starting silence detection (threshold: " + silenceThresholdSeconds + "s)");
-
-        silenceStartTime = 0;
-
-        silenceCheckRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (!isRunning)
-                    return;
+        long hangoverMs = (long) (silenceThresholdSeconds * 1000);
+        Log.d(TAG, "Starting silence detection (threshold: " + silenceThresholdSeconds + "s"
+                + (silenceDetectionEnabled ? ")" : ", auto-stop off)"));
+
+        // Ambient rarely changes between dictations; start from the last estimate
+        noiseFloor.reset(noiseFloor.isWarmedUp() ? noiseFloor.getFloorRms() : NoiseFloorEstimator.DEFAULT_FLOOR_RMS);
+        vad.reset(hangoverMs, Math.max(hangoverMs, LEADING_SILENCE_MS));
+        vadActive = true;
+    }
 
-                // Check if currently silent
-                if (lastAudioLevel < SILENCE_RMS_THRESHOLD) {
-                    if (silenceStartTime == 0) {
-                        silenceStartTime = System.currentTimeMillis();
-                    }
-
-                    float silenceDuration = (System.currentTimeMillis() - silenceStartTime) / 1000f;
-
-                    if (silenceDuration >= silenceThresholdSeconds) {
-                        if (listener != null) {
-                            listener.onSilenceDetected();
-                        }
-                        stopDictation(StopReason.SILENCE_DETECTED);
-                        return;
-                    }
-                } else {
-                    // Reset silence timer
-                    silenceStartTime = 0;
-                }
+    private void onSilenceTimeout() {
+        if (!isRunning || !vadActive || !silenceDetectionEnabled) {
+            return;
+        }
+        if (listener != null) {
+            listener.onSilenceDetected();
+        }
+        stopDictation(StopReason.SILENCE_DETECTED);
+    }
 
-                // Check every 100ms
-                handler.postDelayed(this, 100);
-            }
-        };
+    /**
+     * Call this from audio capture for every VoiceActivityDetector.FRAME_MS
+     * frame. Runs on the audio thread; only a detected end of speech touches
+     * the main thread.
+     *
+     * @param rms Raw RMS of the frame
+     * @param zcr Zero crossings per sample
+     */
+    public void onAudioFrame(float rms, float zcr) {
+        audioLevels.publish(Math.min(rms * AUDIO_LEVEL_SCALE, 1f));
+        if (vadActive) {
+            vad.processFrame(rms, zcr);
+        }
+    }
 
-        handler.postDelayed(silenceCheckRunnable, 100);
+    /**
+     * Level slot fed from onAudioFrame, for the waveform view
+     */
+    public AudioLevelChannel getAudioLevels() {
+        return audioLevels;
     }
 
     /**
-     * Call this from audio capture to update audio level
-     * 
-     * @param level RMS audio level (0.0 - 1.0)
+     * Most recent audio level (0.0 - 1.0)
      */
-    public void updateAudioLevel(float level) {
-        this.lastAudioLevel = level;
+    public float getAudioLevel() {
+        return audioLevels.getLevel();
     }
 
     // ========================================================================
@@ -321,7 +383,7 @@ public class DictationController {
     }
 
     public int getRemainingSeconds() {
-        if (!timeLimitEnabled) {
+        if (!isTimeLimitEnabled()) {
             return -1; // Unlimited
         }
         return Math.max(0, timeLimitSeconds - getElapsedSeconds());
@@ -340,9 +402,8 @@ public class DictationController {
             handler.removeCallbacks(timeLimitRunnable);
         }
 
-        if (silenceCheckRunnable != null) {
-            handler.removeCallbacks(silenceCheckRunnable);
-        }
+        vadActive = false;
+        handler.removeCallbacks(silenceStopRunnable);
 
         listener = null;
     }
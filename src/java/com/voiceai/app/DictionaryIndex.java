@@ -0,0 +1,294 @@
+package com.voiceai.app;
+
+import com.voiceai.app.processing.Vocabulary;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DictionaryIndex - Compacted, sorted personal dictionary, memory-mapped
+ *
+ * Layout (big-endian):
+ *   header      magic "VDIX", version, entryCount, termCount, maxPhraseWords
+ *   int[terms]  offsets of term records, sorted by the term's UTF-8 bytes
+ *   int[entries] offsets of entry records, sorted by key
+ *   entry       float weight, short length, word (UTF-8),
+ *               byte aliasCount, per alias: short length, alias (UTF-8)
+ *   term        short length, term (UTF-8), int entry offset
+ *
+ * Terms are the entry keys plus their aliases. A lookup binary-searches the
+ * mapped term table and decodes only the entry it hits, so opening a
+ * 100k-entry dictionary costs an mmap rather than a parse.
+ *
+ * Immutable; readers only use absolute gets or duplicates of the buffer.
+ */
+final class DictionaryIndex {
+
+    static final int MAGIC = 0x56444958; // "VDIX"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+
+    static final DictionaryIndex EMPTY = new DictionaryIndex(null, 0, 0, 0);
+
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int termCount;
+    private final int maxPhraseWords;
+
+    private DictionaryIndex(ByteBuffer buffer, int entryCount, int termCount, int maxPhraseWords) {
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+        this.termCount = termCount;
+        this.maxPhraseWords = maxPhraseWords;
+    }
+
+    /**
+     * Map an index file; EMPTY if it does not exist
+     *
+     * @throws IOException if the file is not a valid index
+     */
+    static DictionaryIndex open(File file) throws IOException {
+        if (!file.exists()) {
+            return EMPTY;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long size = raf.length();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Bad dictionary index size: " + size);
+            }
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a dictionary index: " + file);
+            }
+            int entries = buffer.getInt(8);
+            int terms = buffer.getInt(12);
+            int maxWords = buffer.getInt(16);
+            if (entries < 0 || terms < entries
+                    || HEADER_BYTES + 4L * (terms + (long) entries) > size) {
+                throw new IOException("Corrupt dictionary index header: " + file);
+            }
+            return new DictionaryIndex(buffer, entries, terms, maxWords);
+        }
+    }
+
+    int size() {
+        return entryCount;
+    }
+
+    int getMaxPhraseWords() {
+        return maxPhraseWords;
+    }
+
+    /**
+     * Entry a normalized term (key or alias) resolves to, or null
+     */
+    DictionaryStore.Entry lookup(String term) {
+        int offset = findTerm(term.getBytes(StandardCharsets.UTF_8));
+        return offset < 0 ? null : readEntry(offset);
+    }
+
+    /** i-th entry in key order */
+    DictionaryStore.Entry entryAt(int i) {
+        return readEntry(buffer.getInt(HEADER_BYTES + 4 * (termCount + i)));
+    }
+
+    boolean containsKey(String key) {
+        DictionaryStore.Entry entry = lookup(key);
+        return entry != null && entry.key.equals(key);
+    }
+
+    // Offset of the entry the term points to, or -1
+    private int findTerm(byte[] key) {
+        int lo = 0;
+        int hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int termOffset = buffer.getInt(HEADER_BYTES + 4 * mid);
+            int cmp = compare(termOffset, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                int length = buffer.getShort(termOffset) & 0xFFFF;
+                return buffer.getInt(termOffset + 2 + length);
+            }
+        }
+        return -1;
+    }
+
+    // Unsigned byte comparison of the mapped term at offset against key
+    private int compare(int termOffset, byte[] key) {
+        int length = buffer.getShort(termOffset) & 0xFFFF;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int a = buffer.get(termOffset + 2 + i) & 0xFF;
+            int b = key[i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - key.length;
+    }
+
+    private DictionaryStore.Entry readEntry(int offset) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset);
+        float weight = in.getFloat();
+        String word = readString(in);
+        int aliasCount = in.get() & 0xFF;
+        List<String> aliases;
+        if (aliasCount == 0) {
+            aliases = Collections.emptyList();
+        } else {
+            aliases = new ArrayList<>(aliasCount);
+            for (int i = 0; i < aliasCount; i++) {
+                aliases.add(readString(in));
+            }
+        }
+        return new DictionaryStore.Entry(word, weight, aliases);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ========================================================================
+    // WRITING
+    // ========================================================================
+
+    /** One key or alias, before duplicates are resolved */
+    private static final class Term {
+        final byte[] bytes;
+        final int entry;
+        final boolean isKey;
+        final float weight;
+
+        Term(byte[] bytes, int entry, boolean isKey, float weight) {
+            this.bytes = bytes;
+            this.entry = entry;
+            this.isKey = isKey;
+            this.weight = weight;
+        }
+
+        // Keys win over aliases, then the heavier entry
+        boolean beats(Term other) {
+            if (isKey != other.isKey) {
+                return isKey;
+            }
+            return weight > other.weight;
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Write entries (unique keys) as a new index file and fsync it
+     */
+    static void write(File file, Collection<DictionaryStore.Entry> entries) throws IOException {
+        DictionaryStore.Entry[] all = entries.toArray(new DictionaryStore.Entry[0]);
+        byte[][] keys = new byte[all.length][];
+        for (int i = 0; i < all.length; i++) {
+            keys[i] = all[i].key.getBytes(StandardCharsets.UTF_8);
+        }
+        Integer[] order = new Integer[all.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareBytes(keys[a], keys[b]));
+
+        // Terms: keys and aliases, one winner per distinct term
+        List<Term> terms = new ArrayList<>(all.length);
+        for (int i = 0; i < order.length; i++) {
+            DictionaryStore.Entry entry = all[order[i]];
+            terms.add(new Term(keys[order[i]], i, true, entry.weight));
+            for (String alias : entry.aliases) {
+                terms.add(new Term(alias.getBytes(StandardCharsets.UTF_8), i, false, entry.weight));
+            }
+        }
+        terms.sort((a, b) -> compareBytes(a.bytes, b.bytes));
+        List<Term> unique = new ArrayList<>(terms.size());
+        int maxWords = 0;
+        for (Term term : terms) {
+            int last = unique.size() - 1;
+            if (last >= 0 && compareBytes(unique.get(last).bytes, term.bytes) == 0) {
+                if (term.beats(unique.get(last))) {
+                    unique.set(last, term);
+                }
+                continue;
+            }
+            unique.add(term);
+            maxWords = Math.max(maxWords,
+                    Vocabulary.countWords(new String(term.bytes, StandardCharsets.UTF_8)));
+        }
+
+        int base = HEADER_BYTES + 4 * (unique.size() + all.length);
+        ByteArrayOutputStream records = new ByteArrayOutputStream(all.length * 32);
+        DataOutputStream out = new DataOutputStream(records);
+        int[] entryOffsets = new int[all.length];
+        for (int i = 0; i < order.length; i++) {
+            DictionaryStore.Entry entry = all[order[i]];
+            entryOffsets[i] = base + out.size();
+            out.writeFloat(entry.weight);
+            writeString(out, entry.word.getBytes(StandardCharsets.UTF_8));
+            out.writeByte(entry.aliases.size());
+            for (String alias : entry.aliases) {
+                writeString(out, alias.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int[] termOffsets = new int[unique.size()];
+        for (int t = 0; t < termOffsets.length; t++) {
+            Term term = unique.get(t);
+            termOffsets[t] = base + out.size();
+            writeString(out, term.bytes);
+            out.writeInt(entryOffsets[term.entry]);
+        }
+        out.flush();
+
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            DataOutputStream fileOut = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(VERSION);
+            fileOut.writeInt(all.length);
+            fileOut.writeInt(termOffsets.length);
+            fileOut.writeInt(maxWords);
+            for (int offset : termOffsets) {
+                fileOut.writeInt(offset);
+            }
+            for (int offset : entryOffsets) {
+                fileOut.writeInt(offset);
+            }
+            records.writeTo(fileOut);
+            fileOut.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
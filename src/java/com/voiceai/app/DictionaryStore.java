@@ -0,0 +1,847 @@
+package com.voiceai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.voiceai.app.processing.Vocabulary;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * DictionaryStore - Personal dictionary on disk, built for large vocabularies
+ *
+ * Replaces the comma-joined "personal_dictionary" preference, which was
+ * rewritten whole on every keystroke and did not scale past a few hundred
+ * words. Files in filesDir/dictionary:
+ * - words.idx: compacted sorted index (DictionaryIndex), memory-mapped
+ * - words.log: append-only change log (put/remove records with a CRC32),
+ *   replayed over the index on open; a torn tail is truncated
+ *
+ * Changes apply in memory at once. Log appends run on a background thread;
+ * once the log holds COMPACT_LOG_RECORDS records it is merged into a new
+ * index (temp file + rename) and rewritten with whatever changed meanwhile.
+ * Bulk imports go straight to a compaction instead of the log.
+ *
+ * Entries carry aliases (other spoken forms: "chat gpt" → "ChatGPT") and a
+ * weight that decides which entry an alias shared by several resolves to.
+ *
+ * Readers get an immutable Snapshot, which is also the Vocabulary and
+ * dictionary map the processing pipeline uses; it costs a volatile read
+ * unless the dictionary changed since the last call.
+ *
+ * Usage:
+ * DictionaryStore store = DictionaryStore.getInstance(context);
+ * store.put(new DictionaryStore.Entry("ChatGPT", 1f, Arrays.asList("chat gpt")));
+ * String word = store.snapshot().lookup("chat gpt"); // "ChatGPT"
+ */
+public final class DictionaryStore {
+
+    private static final String TAG = "VoiceAI.Dictionary";
+
+    static final String INDEX_FILE = "words.idx";
+    static final String LOG_FILE = "words.log";
+
+    // Log records before they are merged into the index
+    static final int COMPACT_LOG_RECORDS = 512;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static DictionaryStore instance;
+
+    /**
+     * One dictionary word with its spoken aliases. Immutable.
+     */
+    public static final class Entry {
+        public static final float DEFAULT_WEIGHT = 1f;
+        static final int MAX_BYTES = 1024;
+        static final int MAX_ALIASES = 32;
+
+        /** Exact spelling inserted into the text */
+        public final String word;
+        public final float weight;
+        /** Normalized spoken forms besides the word itself */
+        public final List<String> aliases;
+        /** Normalized word, the lookup key */
+        final String key;
+
+        public Entry(String word, float weight, List<String> aliases) {
+            this.word = word == null ? "" : word.trim();
+            this.key = Vocabulary.normalize(this.word);
+            if (key.isEmpty() || this.word.length() * 3 > MAX_BYTES) {
+                throw new IllegalArgumentException("Bad dictionary word: \"" + word + "\"");
+            }
+            if (Float.isNaN(weight) || Float.isInfinite(weight)) {
+                throw new IllegalArgumentException("Bad weight " + weight + " for " + word);
+            }
+            this.weight = weight;
+
+            Set<String> normalized = new LinkedHashSet<>();
+            if (aliases != null) {
+                for (String alias : aliases) {
+                    String spoken = alias == null ? "" : Vocabulary.normalize(alias);
+                    if (!spoken.isEmpty() && !spoken.equals(key) && spoken.length() * 3 <= MAX_BYTES) {
+                        normalized.add(spoken);
+                    }
+                }
+            }
+            if (normalized.size() > MAX_ALIASES) {
+                throw new IllegalArgumentException("More than " + MAX_ALIASES + " aliases for " + word);
+            }
+            this.aliases = normalized.isEmpty()
+                    ? Collections.<String>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(normalized));
+        }
+
+        /**
+         * Entry with the default weight; "@Name" is also reachable as "at name"
+         */
+        public static Entry of(String word) {
+            String trimmed = word.trim();
+            List<String> aliases = Collections.emptyList();
+            if (trimmed.startsWith("@") && trimmed.length() > 1) {
+                aliases = Collections.singletonList("at " + trimmed.substring(1));
+            }
+            return new Entry(trimmed, DEFAULT_WEIGHT, aliases);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return word.equals(other.word) && weight == other.weight && aliases.equals(other.aliases);
+        }
+
+        @Override
+        public int hashCode() {
+            return word.hashCode() * 31 + aliases.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return aliases.isEmpty() ? word : word + " " + aliases;
+        }
+    }
+
+    private final File dir;
+    private final File indexFile;
+    private final File logFile;
+    private final Executor executor;
+
+    // Guarded by this
+    private DictionaryIndex index;
+    // Changes not yet in the index; a null value removes the key
+    private final Map<String, Entry> overlay = new HashMap<>();
+    private List<byte[]> pendingLog = new ArrayList<>();
+    private boolean writeScheduled;
+    private int logRecords;
+
+    // Bumped (under the monitor) on every change
+    private volatile int version;
+    private volatile Snapshot snapshot;
+
+    public static synchronized DictionaryStore getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            Executor executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "VoiceAI-Dictionary");
+                t.setDaemon(true);
+                return t;
+            });
+            instance = new DictionaryStore(new File(app.getFilesDir(), "dictionary"), executor);
+            instance.migrateLegacy(app.getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    /**
+     * Open (or create) a store; reads the index header and replays the log
+     *
+     * @param executor Runs log writes and compactions, one at a time
+     */
+    DictionaryStore(File dir, Executor executor) {
+        this.dir = dir;
+        this.indexFile = new File(dir, INDEX_FILE);
+        this.logFile = new File(dir, LOG_FILE);
+        this.executor = executor;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Cannot create " + dir);
+        }
+
+        DictionaryIndex opened;
+        try {
+            opened = DictionaryIndex.open(indexFile);
+        } catch (IOException e) {
+            // Keep the bad file for inspection; the log still has recent changes
+            Log.e(TAG, "Dictionary index unreadable, starting from the log", e);
+            indexFile.renameTo(new File(dir, INDEX_FILE + ".bad"));
+            opened = DictionaryIndex.EMPTY;
+        }
+        synchronized (this) {
+            index = opened;
+            replayLog();
+        }
+        Log.d(TAG, "Opened dictionary: " + index.size() + " indexed, "
+                + logRecords + " log records");
+        if (logRecords >= COMPACT_LOG_RECORDS) {
+            executor.execute(this::compact);
+        }
+    }
+
+    /**
+     * Move the old comma-separated preference into the store. The key is
+     * removed only once the words are on disk, so a crash retries it.
+     */
+    void migrateLegacy(SharedPreferences prefs) {
+        String legacy = prefs.getString(SettingsActivity.PREF_PERSONAL_DICT, null);
+        if (legacy == null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (String word : legacy.split(",")) {
+            if (!word.trim().isEmpty()) {
+                entries.add(Entry.of(word));
+            }
+        }
+        Log.i(TAG, "Migrating " + entries.size() + " words from preferences");
+        importEntries(entries, () -> prefs.edit().remove(SettingsActivity.PREF_PERSONAL_DICT).apply());
+    }
+
+    // ========================================================================
+    // READING
+    // ========================================================================
+
+    /**
+     * Immutable view of the dictionary; rebuilt only after a change
+     */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.version != version) {
+                current = new Snapshot(version, index, overlay);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    /** Bumped on every change; cheap way to tell whether a snapshot is stale */
+    public int getVersion() {
+        return version;
+    }
+
+    // ========================================================================
+    // WRITING
+    // ========================================================================
+
+    public void put(Entry entry) {
+        boolean schedule;
+        synchronized (this) {
+            overlay.put(entry.key, entry);
+            schedule = appendLocked(encode(OP_PUT, entry));
+        }
+        scheduleWrite(schedule);
+    }
+
+    /**
+     * Remove a word (any spelling) and its aliases
+     */
+    public void remove(String word) {
+        String key = Vocabulary.normalize(word);
+        if (key.isEmpty()) {
+            return;
+        }
+        boolean schedule;
+        synchronized (this) {
+            overlay.put(key, null);
+            schedule = appendLocked(encode(OP_REMOVE, new Entry(word, Entry.DEFAULT_WEIGHT, null)));
+        }
+        scheduleWrite(schedule);
+    }
+
+    /**
+     * Make the dictionary hold exactly these words, for the settings text
+     * field. Only the difference is written; entries that stay keep their
+     * weight and aliases.
+     */
+    public void replaceWords(Collection<String> words) {
+        Snapshot current = snapshot();
+        Map<String, String> wanted = new HashMap<>();
+        for (String word : words) {
+            String trimmed = word.trim();
+            if (!trimmed.isEmpty()) {
+                wanted.put(Vocabulary.normalize(trimmed), trimmed);
+            }
+        }
+        for (Iterator<Entry> it = current.entries(); it.hasNext();) {
+            Entry entry = it.next();
+            if (!wanted.containsKey(entry.key)) {
+                remove(entry.word);
+            }
+        }
+        for (String word : wanted.values()) {
+            Entry existing = current.getEntry(word);
+            if (existing == null) {
+                put(Entry.of(word));
+            } else if (!existing.word.equals(word)) {
+                put(new Entry(word, existing.weight, existing.aliases));
+            }
+        }
+    }
+
+    /**
+     * Add many entries at once (vocabulary import). They are visible at once
+     * and persisted by a compaction rather than one log record each.
+     *
+     * @param onPersisted Run on the background thread once on disk; may be null
+     */
+    public void importEntries(Collection<Entry> entries, Runnable onPersisted) {
+        List<Entry> copy = new ArrayList<>(entries);
+        synchronized (this) {
+            for (Entry entry : copy) {
+                overlay.put(entry.key, entry);
+            }
+            version++;
+        }
+        executor.execute(() -> {
+            if (!compact()) {
+                // Fall back to the log so the import survives a restart
+                synchronized (this) {
+                    for (Entry entry : copy) {
+                        pendingLog.add(encode(OP_PUT, entry));
+                    }
+                }
+                if (!writePending()) {
+                    return;
+                }
+            }
+            if (onPersisted != null) {
+                onPersisted.run();
+            }
+        });
+    }
+
+    /**
+     * Import a vocabulary file. One entry per line:
+     * word[TAB weight[TAB alias|alias...]], or comma-separated plain words.
+     * Blank lines and lines starting with '#' are skipped.
+     *
+     * @return Number of entries imported
+     */
+    public int importText(Reader reader, Runnable onPersisted) throws IOException {
+        List<Entry> entries = parseText(reader);
+        importEntries(entries, onPersisted);
+        return entries.size();
+    }
+
+    static List<Entry> parseText(Reader reader) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int skipped = 0;
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                if (line.indexOf('\t') < 0) {
+                    for (String word : line.split(",")) {
+                        if (!word.trim().isEmpty()) {
+                            entries.add(Entry.of(word));
+                        }
+                    }
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                float weight = fields.length > 1 && !fields[1].trim().isEmpty()
+                        ? Float.parseFloat(fields[1].trim())
+                        : Entry.DEFAULT_WEIGHT;
+                List<String> aliases = new ArrayList<>();
+                if (fields.length > 2) {
+                    Collections.addAll(aliases, fields[2].split("\\|"));
+                }
+                Entry plain = Entry.of(fields[0]);
+                aliases.addAll(plain.aliases);
+                entries.add(new Entry(fields[0], weight, aliases));
+            } catch (IllegalArgumentException e) {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            Log.w(TAG, "Skipped " + skipped + " invalid dictionary lines");
+        }
+        return entries;
+    }
+
+    /**
+     * Wait until every change so far is on disk
+     */
+    void flush() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(done::countDown);
+        done.await();
+    }
+
+    // Returns true if a write task must be scheduled
+    private boolean appendLocked(byte[] record) {
+        pendingLog.add(record);
+        version++;
+        if (writeScheduled) {
+            return false;
+        }
+        writeScheduled = true;
+        return true;
+    }
+
+    private void scheduleWrite(boolean schedule) {
+        if (schedule) {
+            executor.execute(() -> {
+                if (writePending() && shouldCompact()) {
+                    compact();
+                }
+            });
+        }
+    }
+
+    private synchronized boolean shouldCompact() {
+        return logRecords >= COMPACT_LOG_RECORDS;
+    }
+
+    // Background thread: append everything queued since the last write
+    private boolean writePending() {
+        List<byte[]> batch;
+        synchronized (this) {
+            batch = pendingLog;
+            pendingLog = new ArrayList<>();
+            writeScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (byte[] record : batch) {
+                bytes.write(record);
+            }
+            bytes.writeTo(out);
+            out.getFD().sync();
+        } catch (IOException e) {
+            // Still applied in memory; retried with the next change
+            Log.e(TAG, "Dictionary log write failed", e);
+            synchronized (this) {
+                batch.addAll(pendingLog);
+                pendingLog = batch;
+            }
+            return false;
+        }
+        synchronized (this) {
+            logRecords += batch.size();
+        }
+        return true;
+    }
+
+    /**
+     * Background thread: merge index and overlay into a new index, then
+     * rewrite the log with the changes made while merging
+     */
+    boolean compact() {
+        Snapshot merged = snapshot();
+        File tmp = new File(dir, INDEX_FILE + ".tmp");
+        DictionaryIndex fresh;
+        long start = System.nanoTime();
+        try {
+            List<Entry> entries = new ArrayList<>(merged.size());
+            for (Iterator<Entry> it = merged.entries(); it.hasNext();) {
+                entries.add(it.next());
+            }
+            DictionaryIndex.write(tmp, entries);
+            if (!tmp.renameTo(indexFile)) {
+                throw new IOException("Cannot replace " + indexFile);
+            }
+            fresh = DictionaryIndex.open(indexFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Dictionary compaction failed", e);
+            tmp.delete();
+            return false;
+        }
+
+        synchronized (this) {
+            index = fresh;
+            // Drop the changes now in the index, keep ones made meanwhile
+            for (Map.Entry<String, Entry> change : merged.changes.entrySet()) {
+                String key = change.getKey();
+                if (overlay.containsKey(key) && overlay.get(key) == change.getValue()) {
+                    overlay.remove(key);
+                }
+            }
+            // The overlay covers everything still pending
+            pendingLog.clear();
+            try {
+                rewriteLogLocked();
+            } catch (IOException e) {
+                // Old log replayed over the new index gives the same result
+                Log.e(TAG, "Dictionary log rewrite failed", e);
+            }
+            version++;
+        }
+        Log.d(TAG, "Compacted dictionary: " + fresh.size() + " entries in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms");
+        return true;
+    }
+
+    private void rewriteLogLocked() throws IOException {
+        File tmp = new File(dir, LOG_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (Map.Entry<String, Entry> change : overlay.entrySet()) {
+                Entry entry = change.getValue();
+                bytes.write(entry != null
+                        ? encode(OP_PUT, entry)
+                        : encode(OP_REMOVE, new Entry(change.getKey(), Entry.DEFAULT_WEIGHT, null)));
+            }
+            bytes.writeTo(out);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(logFile)) {
+            throw new IOException("Cannot replace " + logFile);
+        }
+        logRecords = overlay.size();
+    }
+
+    // ========================================================================
+    // LOG FORMAT: int length, int crc32, payload
+    // payload: byte op, UTF word[, float weight, byte aliasCount, UTF aliases]
+    // ========================================================================
+
+    private static byte[] encode(byte op, Entry entry) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(op);
+            out.writeUTF(entry.word);
+            if (op == OP_PUT) {
+                out.writeFloat(entry.weight);
+                out.writeByte(entry.aliases.size());
+                for (String alias : entry.aliases) {
+                    out.writeUTF(alias);
+                }
+            }
+            byte[] body = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(body.length + 8);
+            DataOutputStream framed = new DataOutputStream(record);
+            framed.writeInt(body.length);
+            framed.writeInt((int) crc.getValue());
+            framed.write(body);
+            return record.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams
+        }
+    }
+
+    // Caller holds the monitor
+    private void replayLog() {
+        if (!logFile.exists()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+            byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+
+            int pos = 0;
+            int records = 0;
+            CRC32 crc = new CRC32();
+            while (pos + 8 <= data.length) {
+                int length = readInt(data, pos);
+                int checksum = readInt(data, pos + 4);
+                if (length <= 0 || length > data.length - pos - 8) {
+                    break;
+                }
+                crc.reset();
+                crc.update(data, pos + 8, length);
+                if ((int) crc.getValue() != checksum || !applyRecord(data, pos + 8, length)) {
+                    break;
+                }
+                pos += 8 + length;
+                records++;
+            }
+            if (pos < data.length) {
+                Log.w(TAG, "Truncating dictionary log at " + pos + " of " + data.length + " bytes");
+                raf.setLength(pos);
+            }
+            logRecords = records;
+        } catch (IOException e) {
+            Log.e(TAG, "Dictionary log unreadable", e);
+        }
+    }
+
+    private boolean applyRecord(byte[] data, int offset, int length) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+            byte op = in.readByte();
+            String word = in.readUTF();
+            if (op == OP_REMOVE) {
+                overlay.put(Vocabulary.normalize(word), null);
+                return true;
+            }
+            if (op != OP_PUT) {
+                return false;
+            }
+            float weight = in.readFloat();
+            int aliasCount = in.readByte() & 0xFF;
+            List<String> aliases = new ArrayList<>(aliasCount);
+            for (int i = 0; i < aliasCount; i++) {
+                aliases.add(in.readUTF());
+            }
+            Entry entry = new Entry(word, weight, aliases);
+            overlay.put(entry.key, entry);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) << 24 | (b[i + 1] & 0xFF) << 16 | (b[i + 2] & 0xFF) << 8 | (b[i + 3] & 0xFF);
+    }
+
+    // ========================================================================
+    // SNAPSHOT
+    // ========================================================================
+
+    /**
+     * Immutable dictionary view: mapped index plus a copy of the pending
+     * changes. As a Map it takes a word in any case and returns its spelling.
+     */
+    public static final class Snapshot extends AbstractMap<String, String> implements Vocabulary {
+
+        /** No words; stands in while the store is still being opened */
+        public static final Snapshot EMPTY = new Snapshot(-1, DictionaryIndex.EMPTY,
+                Collections.<String, DictionaryStore.Entry>emptyMap());
+
+        final int version;
+        private final DictionaryIndex index;
+        private final Map<String, DictionaryStore.Entry> changes;
+        private final Map<String, String> changedTerms;
+        private final int size;
+        private final int maxPhraseWords;
+        private Set<Map.Entry<String, String>> entrySet;
+
+        Snapshot(int version, DictionaryIndex index, Map<String, DictionaryStore.Entry> overlay) {
+            this.version = version;
+            this.index = index;
+            this.changes = overlay.isEmpty()
+                    ? Collections.<String, DictionaryStore.Entry>emptyMap()
+                    : new HashMap<>(overlay);
+
+            Map<String, String> terms = new HashMap<>();
+            int count = index.size();
+            int maxWords = index.getMaxPhraseWords();
+            for (Map.Entry<String, DictionaryStore.Entry> change : changes.entrySet()) {
+                DictionaryStore.Entry entry = change.getValue();
+                boolean indexed = index.containsKey(change.getKey());
+                if (entry == null) {
+                    count -= indexed ? 1 : 0;
+                    continue;
+                }
+                count += indexed ? 0 : 1;
+                terms.put(entry.key, entry.word);
+                maxWords = Math.max(maxWords, Vocabulary.countWords(entry.key));
+            }
+            // Aliases second so they never shadow a word; a shared alias goes
+            // to the heavier entry, as in DictionaryIndex
+            Map<String, DictionaryStore.Entry> aliasOwners = new HashMap<>();
+            for (DictionaryStore.Entry entry : changes.values()) {
+                if (entry == null) {
+                    continue;
+                }
+                for (String alias : entry.aliases) {
+                    maxWords = Math.max(maxWords, Vocabulary.countWords(alias));
+                    if (terms.containsKey(alias)) {
+                        continue;
+                    }
+                    DictionaryStore.Entry owner = aliasOwners.get(alias);
+                    if (owner == null || heavier(entry, owner)) {
+                        aliasOwners.put(alias, entry);
+                    }
+                }
+            }
+            for (Map.Entry<String, DictionaryStore.Entry> alias : aliasOwners.entrySet()) {
+                DictionaryStore.Entry owner = alias.getValue();
+                // An unchanged indexed word, or a heavier indexed alias, keeps the term
+                DictionaryStore.Entry indexed = index.lookup(alias.getKey());
+                if (indexed != null && !changes.containsKey(indexed.key)
+                        && (indexed.key.equals(alias.getKey()) || !heavier(owner, indexed))) {
+                    continue;
+                }
+                terms.put(alias.getKey(), owner.word);
+            }
+            this.changedTerms = terms;
+            this.size = count;
+            this.maxPhraseWords = maxWords;
+        }
+
+        // Heavier first; equal weights go to the smaller key, so the result
+        // does not depend on map order
+        private static boolean heavier(DictionaryStore.Entry a, DictionaryStore.Entry b) {
+            if (a.weight != b.weight) {
+                return a.weight > b.weight;
+            }
+            return a.key.compareTo(b.key) < 0;
+        }
+
+        @Override
+        public String lookup(String phrase) {
+            String word = changedTerms.get(phrase);
+            if (word != null) {
+                return word;
+            }
+            DictionaryStore.Entry entry = index.lookup(phrase);
+            if (entry == null || changes.containsKey(entry.key)) {
+                return null;
+            }
+            return entry.word;
+        }
+
+        @Override
+        public int getMaxPhraseWords() {
+            return maxPhraseWords;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Full entry for a word in any spelling, or null
+         */
+        public DictionaryStore.Entry getEntry(String word) {
+            String key = Vocabulary.normalize(word);
+            if (changes.containsKey(key)) {
+                return changes.get(key);
+            }
+            DictionaryStore.Entry entry = index.lookup(key);
+            return entry != null && entry.key.equals(key) ? entry : null;
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String ? lookup(Vocabulary.normalize((String) key)) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        /**
+         * All entries: indexed ones in key order, then pending changes
+         */
+        public Iterator<DictionaryStore.Entry> entries() {
+            return new Iterator<DictionaryStore.Entry>() {
+                private int next;
+                private final Iterator<DictionaryStore.Entry> changed = changes.values().iterator();
+                private DictionaryStore.Entry pending = advance();
+
+                private DictionaryStore.Entry advance() {
+                    while (next < index.size()) {
+                        DictionaryStore.Entry entry = index.entryAt(next++);
+                        if (!changes.containsKey(entry.key)) {
+                            return entry;
+                        }
+                    }
+                    while (changed.hasNext()) {
+                        DictionaryStore.Entry entry = changed.next();
+                        if (entry != null) {
+                            return entry;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return pending != null;
+                }
+
+                @Override
+                public DictionaryStore.Entry next() {
+                    if (pending == null) {
+                        throw new NoSuchElementException();
+                    }
+                    DictionaryStore.Entry result = pending;
+                    pending = advance();
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new AbstractSet<Map.Entry<String, String>>() {
+                    @Override
+                    public Iterator<Map.Entry<String, String>> iterator() {
+                        Iterator<DictionaryStore.Entry> it = entries();
+                        return new Iterator<Map.Entry<String, String>>() {
+                            @Override
+                            public boolean hasNext() {
+                                return it.hasNext();
+                            }
+
+                            @Override
+                            public Map.Entry<String, String> next() {
+                                DictionaryStore.Entry entry = it.next();
+                                return new SimpleImmutableEntry<>(entry.key, entry.word);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+            return entrySet;
+        }
+    }
+}
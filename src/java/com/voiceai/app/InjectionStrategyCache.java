@@ -0,0 +1,341 @@
+package com.voiceai.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * InjectionStrategyCache - Learns which text injection works in which app
+ *
+ * Records the outcome and latency of every injection attempt per target
+ * package and orders the strategies for the next injection:
+ *
+ * 1. Known-good strategies (succeeded, not failing lately), fastest first
+ * 2. Untried or uncertain strategies, in Strategy (cost) order
+ * 3. Known-bad strategies (failed repeatedly without a success since),
+ *    still tried late so an app update can't lock one out for good
+ * 4. PASTE, whatever its history: it borrows the user's clipboard, so it
+ *    is only a fallback for when everything else has failed
+ *
+ * Full-field strategies move down one tier for long fields, where
+ * rewriting the whole text is slow and risks the user's document.
+ *
+ * Persisted to a small text file, written on a background executor after
+ * changes; the least recently used packages are dropped beyond MAX_PACKAGES.
+ */
+public final class InjectionStrategyCache {
+
+    private static final String TAG = "VoiceAI.Injection";
+
+    static final String FILE_NAME = "injection_strategies.txt";
+    static final int MAX_PACKAGES = 200;
+
+    // Consecutive failures that make a strategy known-bad for an app
+    static final int BAD_AFTER_FAILURES = 2;
+    // Weight of the newest latency in the moving average
+    private static final double LATENCY_ALPHA = 0.3;
+    // Below every rank a known-bad rewrite of a long field can reach
+    private static final int LAST_RESORT_RANK = 4;
+
+    private static InjectionStrategyCache instance;
+
+    /**
+     * Ways to get text into another app, cheapest and least invasive first
+     */
+    public enum Strategy {
+        /** InputConnection.commitText through our keyboard */
+        IME,
+        /** ACTION_SET_TEXT with the whole field rewritten around the insertion */
+        SET_TEXT,
+        /** ACTION_SET_TEXT with only the new text; offered for empty fields only */
+        REPLACE_TEXT,
+        /** Clipboard + ACTION_PASTE at the cursor; previous clip restored or cleared */
+        PASTE;
+
+        /** Cost grows with the field length */
+        boolean rewritesField() {
+            return this == SET_TEXT || this == REPLACE_TEXT;
+        }
+
+        /** Replaces the user's clipboard while it runs: last resort only */
+        boolean usesClipboard() {
+            return this == PASTE;
+        }
+    }
+
+    /**
+     * Outcome history of one strategy in one app
+     */
+    public static final class Stats {
+        int successes;
+        int failures;
+        int consecutiveFailures;
+        double avgMillis;
+
+        public int getSuccesses() {
+            return successes;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /** Moving average latency of successful attempts */
+        public double getAvgMillis() {
+            return avgMillis;
+        }
+
+        boolean isGood() {
+            return successes > 0 && consecutiveFailures == 0;
+        }
+
+        boolean isBad() {
+            return consecutiveFailures >= BAD_AFTER_FAILURES;
+        }
+
+        void record(boolean success, double millis) {
+            if (success) {
+                avgMillis = successes == 0 ? millis : avgMillis + LATENCY_ALPHA * (millis - avgMillis);
+                successes++;
+                consecutiveFailures = 0;
+            } else {
+                failures++;
+                consecutiveFailures++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d/%d ok, %.1fms", successes, successes + failures, avgMillis);
+        }
+    }
+
+    private final File file;
+    private final Executor executor;
+
+    // Guarded by this; access-ordered for LRU eviction
+    private final LinkedHashMap<String, Map<Strategy, Stats>> packages = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean writeScheduled;
+
+    public static synchronized InjectionStrategyCache getInstance(Context context) {
+        if (instance == null) {
+            Executor executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "VoiceAI-Injection");
+                t.setDaemon(true);
+                return t;
+            });
+            instance = new InjectionStrategyCache(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME), executor);
+        }
+        return instance;
+    }
+
+    /**
+     * @param executor Runs the file writes
+     */
+    InjectionStrategyCache(File file, Executor executor) {
+        this.file = file;
+        this.executor = executor;
+        load();
+    }
+
+    /**
+     * Strategies to try for an app, best first
+     *
+     * @param packageName Target app, null if unknown (cost order)
+     * @param available Strategies possible right now
+     * @param longField Target field is long, avoid rewriting it
+     */
+    public synchronized List<Strategy> order(String packageName, EnumSet<Strategy> available, boolean longField) {
+        Map<Strategy, Stats> history = packageName != null ? packages.get(packageName) : null;
+        List<Strategy> ordered = new ArrayList<>(available);
+        if (history == null && !longField) {
+            return ordered; // EnumSet iterates in cost order
+        }
+        Map<Strategy, Stats> known = history != null ? history : Collections.<Strategy, Stats>emptyMap();
+        Collections.sort(ordered, (a, b) -> {
+            int cmp = Integer.compare(rank(known.get(a), a, longField), rank(known.get(b), b, longField));
+            if (cmp != 0) {
+                return cmp;
+            }
+            Stats sa = known.get(a);
+            Stats sb = known.get(b);
+            if (sa != null && sb != null && sa.isGood() && sb.isGood()) {
+                cmp = Double.compare(sa.avgMillis, sb.avgMillis);
+            }
+            return cmp != 0 ? cmp : a.compareTo(b);
+        });
+        return ordered;
+    }
+
+    // 0 known-good, 1 unknown, 2 known-bad; long fields push rewrites down one tier;
+    // the clipboard strategy comes after all of them
+    private static int rank(Stats stats, Strategy strategy, boolean longField) {
+        if (strategy.usesClipboard()) {
+            return LAST_RESORT_RANK;
+        }
+        int rank = stats == null ? 1 : stats.isGood() ? 0 : stats.isBad() ? 2 : 1;
+        if (longField && strategy.rewritesField()) {
+            rank++;
+        }
+        return rank;
+    }
+
+    /**
+     * Record the outcome of one attempt
+     */
+    public void record(String packageName, Strategy strategy, boolean success, long nanos) {
+        if (packageName == null || packageName.isEmpty()) {
+            return;
+        }
+        boolean schedule;
+        synchronized (this) {
+            Map<Strategy, Stats> history = packages.get(packageName);
+            if (history == null) {
+                history = new EnumMap<>(Strategy.class);
+                packages.put(packageName, history);
+                evictLocked();
+            }
+            Stats stats = history.get(strategy);
+            if (stats == null) {
+                stats = new Stats();
+                history.put(strategy, stats);
+            }
+            stats.record(success, nanos / 1e6);
+            schedule = !writeScheduled;
+            writeScheduled = true;
+        }
+        if (schedule) {
+            executor.execute(this::save);
+        }
+    }
+
+    /**
+     * History of one strategy in one app, or null (a copy)
+     */
+    public synchronized Stats getStats(String packageName, Strategy strategy) {
+        Map<Strategy, Stats> history = packages.get(packageName);
+        Stats stats = history != null ? history.get(strategy) : null;
+        if (stats == null) {
+            return null;
+        }
+        Stats copy = new Stats();
+        copy.successes = stats.successes;
+        copy.failures = stats.failures;
+        copy.consecutiveFailures = stats.consecutiveFailures;
+        copy.avgMillis = stats.avgMillis;
+        return copy;
+    }
+
+    /**
+     * Wait for queued writes (tests)
+     */
+    void flush() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(done::countDown);
+        done.await();
+    }
+
+    private void evictLocked() {
+        Iterator<String> it = packages.keySet().iterator();
+        while (packages.size() > MAX_PACKAGES && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // ========================================================================
+    // PERSISTENCE
+    // ========================================================================
+
+    // One line per package and strategy:
+    // package TAB strategy TAB successes TAB failures TAB consecutiveFailures TAB avgMillis
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 6) {
+                    continue;
+                }
+                try {
+                    Strategy strategy = Strategy.valueOf(fields[1]);
+                    Stats stats = new Stats();
+                    stats.successes = Integer.parseInt(fields[2]);
+                    stats.failures = Integer.parseInt(fields[3]);
+                    stats.consecutiveFailures = Integer.parseInt(fields[4]);
+                    stats.avgMillis = Double.parseDouble(fields[5]);
+                    Map<Strategy, Stats> history = packages.get(fields[0]);
+                    if (history == null) {
+                        history = new EnumMap<>(Strategy.class);
+                        packages.put(fields[0], history);
+                    }
+                    history.put(strategy, stats);
+                } catch (IllegalArgumentException e) {
+                    // Unknown strategy or bad number: skip the line
+                }
+            }
+            evictLocked();
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Background thread: write a consistent copy, then swap it in
+    private void save() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            writeScheduled = false;
+            for (Map.Entry<String, Map<Strategy, Stats>> app : packages.entrySet()) {
+                for (Map.Entry<Strategy, Stats> entry : app.getValue().entrySet()) {
+                    Stats stats = entry.getValue();
+                    sb.append(app.getKey()).append('\t')
+                            .append(entry.getKey().name()).append('\t')
+                            .append(stats.successes).append('\t')
+                            .append(stats.failures).append('\t')
+                            .append(stats.consecutiveFailures).append('\t')
+                            .append(String.format(Locale.ROOT, "%.3f", stats.avgMillis)).append('\n');
+                }
+            }
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            Writer out = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+            out.write(sb.toString());
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + tmp + ": " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.w(TAG, "Cannot replace " + file);
+        }
+    }
+}
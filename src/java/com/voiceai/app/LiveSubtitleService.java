@@ -0,0 +1,305 @@
+package com.voiceai.app;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.voiceai.app.processing.CaptionAssembler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * LiveSubtitleService - Continuous captions from the microphone
+ *
+ * A foreground service whose capture thread has AudioRecord write 16kHz
+ * mono floats straight into a direct ByteBuffer ring shared with lib.rs,
+ * then publishes the running sample count with commitAudio(). The native
+ * worker copies each decode window out of the ring once; nothing is
+ * allocated per chunk on either side.
+ *
+ * Native calls back onSubtitleText with only the words that are new since
+ * the last window; CaptionAssembler post-processes each fragment once and
+ * appends it, and the caption goes to listeners and the notification.
+ */
+public class LiveSubtitleService extends Service {
+
+    private static final String TAG = "VoiceAI.Captions";
+
+    static {
+        try {
+            System.loadLibrary("android_transcribe_app");
+        } catch (UnsatisfiedLinkError e) {
+            Log.e(TAG, "Failed to load native library", e);
+        }
+    }
+
+    private static final String ACTION_STOP = "com.voiceai.app.action.STOP_CAPTIONS";
+    private static final String CHANNEL_ID = "live_captions";
+    private static final int NOTIFICATION_ID = 4;
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int RING_SAMPLES = SAMPLE_RATE * 30; // 30s, well past a decode window
+    private static final int CHUNK_SAMPLES = SAMPLE_RATE / 10; // 100ms per read
+    private static final long NOTIFY_INTERVAL_MS = 500;
+
+    /**
+     * Caption updates, on the main thread
+     */
+    public interface Listener {
+        void onCaption(String caption);
+    }
+
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile boolean running = false;
+
+    private static native void initNative(LiveSubtitleService service, ByteBuffer ring);
+
+    private static native void cleanupNative();
+
+    // Seconds of new audio between decodes (native default from its config)
+    static native void setUpdateInterval(float seconds);
+
+    private static native void commitAudio(long written);
+
+    private Handler mainHandler;
+    private ModelManager modelManager;
+    private NotificationManager notificationManager;
+    private ByteBuffer ring;
+    private Thread captureThread;
+    private volatile boolean capturing = false;
+
+    // Native worker thread only
+    private final CaptionAssembler assembler = new CaptionAssembler();
+
+    // Main thread only
+    private String caption = "";
+    private long lastNotifyMs = 0;
+    private final Runnable notifyRunnable = this::updateNotification;
+
+    // ========================================================================
+    // CONTROL
+    // ========================================================================
+
+    /**
+     * Start captioning; must be called while the app is in the foreground
+     *
+     * @return false if the microphone permission is missing
+     */
+    public static boolean start(Context context) {
+        if (context.checkSelfPermission(Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "Live captions need the microphone permission");
+            return false;
+        }
+        context.startForegroundService(new Intent(context, LiveSubtitleService.class));
+        return true;
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, LiveSubtitleService.class));
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // ========================================================================
+    // LIFECYCLE
+    // ========================================================================
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mainHandler = new Handler(Looper.getMainLooper());
+        notificationManager = getSystemService(NotificationManager.class);
+        notificationManager.createNotificationChannel(new NotificationChannel(
+                CHANNEL_ID, "Live Captions", NotificationManager.IMPORTANCE_LOW));
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, buildNotification("Listening..."),
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE);
+        } else {
+            startForeground(NOTIFICATION_ID, buildNotification("Listening..."));
+        }
+
+        modelManager = ModelManager.getInstance(this);
+        modelManager.beginUse(ModelManager.Model.ASR); // Windows are skipped until it is loaded
+
+        ring = ByteBuffer.allocateDirect(RING_SAMPLES * 4).order(ByteOrder.nativeOrder());
+        initNative(this, ring);
+
+        running = true;
+        capturing = true;
+        captureThread = new Thread(this::captureLoop, "VoiceAI-Captions");
+        captureThread.start();
+        Log.d(TAG, "Live captions started");
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopSelf();
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        running = false;
+        capturing = false;
+        if (captureThread != null) {
+            try {
+                captureThread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            captureThread = null;
+        }
+        cleanupNative();
+        mainHandler.removeCallbacks(notifyRunnable);
+        modelManager.endUse(ModelManager.Model.ASR);
+        stopForeground(true);
+        Log.d(TAG, "Live captions stopped");
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    // ========================================================================
+    // CAPTURE
+    // ========================================================================
+
+    private void captureLoop() {
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_FLOAT);
+        AudioRecord record;
+        try {
+            record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_FLOAT,
+                    Math.max(minBuffer, CHUNK_SAMPLES * 4 * 2));
+        } catch (SecurityException | IllegalArgumentException e) {
+            Log.e(TAG, "Cannot open microphone", e);
+            mainHandler.post(this::stopSelf);
+            return;
+        }
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "AudioRecord failed to initialize");
+            record.release();
+            mainHandler.post(this::stopSelf);
+            return;
+        }
+
+        // AudioRecord ignores a buffer's position and always writes at its
+        // start, so each read goes into a slice at the current ring offset
+        ByteBuffer writer = ring.duplicate();
+        long written = 0;
+        record.startRecording();
+        try {
+            while (capturing) {
+                int offset = (int) (written % RING_SAMPLES);
+                int want = Math.min(CHUNK_SAMPLES, RING_SAMPLES - offset);
+                writer.clear();
+                writer.limit((offset + want) * 4);
+                writer.position(offset * 4);
+                int bytes = record.read(writer.slice(), want * 4);
+                if (bytes < 0) {
+                    Log.e(TAG, "AudioRecord read error " + bytes);
+                    break;
+                }
+                if (bytes > 0) {
+                    written += bytes / 4;
+                    commitAudio(written);
+                }
+            }
+        } finally {
+            record.stop();
+            record.release();
+        }
+        if (capturing) {
+            mainHandler.post(this::stopSelf);
+        }
+    }
+
+    // ========================================================================
+    // CAPTIONS
+    // ========================================================================
+
+    // Called from native worker thread with the words new since the last call
+    public void onSubtitleText(String fragment) {
+        if (!running) {
+            return;
+        }
+        if (!assembler.append(fragment, SettingsSnapshot.get(this).getProcessingContext())) {
+            return;
+        }
+        String text = assembler.getCaption();
+        mainHandler.post(() -> {
+            caption = text;
+            for (Listener listener : listeners) {
+                listener.onCaption(text);
+            }
+            scheduleNotification();
+        });
+    }
+
+    private void scheduleNotification() {
+        long wait = lastNotifyMs + NOTIFY_INTERVAL_MS - SystemClock.uptimeMillis();
+        mainHandler.removeCallbacks(notifyRunnable);
+        if (wait <= 0) {
+            updateNotification();
+        } else {
+            mainHandler.postDelayed(notifyRunnable, wait);
+        }
+    }
+
+    private void updateNotification() {
+        if (!running) {
+            return;
+        }
+        lastNotifyMs = SystemClock.uptimeMillis();
+        notificationManager.notify(NOTIFICATION_ID, buildNotification(caption));
+    }
+
+    private Notification buildNotification(String text) {
+        PendingIntent stopIntent = PendingIntent.getService(this, 0,
+                new Intent(this, LiveSubtitleService.class).setAction(ACTION_STOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        return new Notification.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.icon)
+                .setContentTitle("Live Captions")
+                .setContentText(text)
+                .setStyle(new Notification.BigTextStyle().bigText(text))
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .addAction(new Notification.Action.Builder(null, "Stop", stopIntent).build())
+                .build();
+    }
+}
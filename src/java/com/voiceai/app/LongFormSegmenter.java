@@ -0,0 +1,117 @@
+package com.voiceai.app;
+
+/**
+ * LongFormSegmenter - Picks where to cut a long dictation into chunks
+ *
+ * Fed the same 20ms frames as DictationController (from the audio thread).
+ * Its own VoiceActivityDetector, with a short hangover and an adaptive
+ * threshold, reports pauses; once a chunk is at least MIN_CHUNK_MS long,
+ * the next pause cuts it in the middle of the silence. A chunk that
+ * reaches MAX_CHUNK_MS without a pause is cut at its quietest frame in
+ * the last second, so a word is rarely split (the chunk overlap covers
+ * the rest).
+ *
+ * Cut positions are sample counts from the start of the recording
+ * (frames * VAD frame samples), the same positions the native buffer uses.
+ */
+public final class LongFormSegmenter {
+
+    public static final int FRAME_SAMPLES = 16000 * VoiceActivityDetector.FRAME_MS / 1000;
+
+    // Silence that counts as a pause between phrases
+    static final long PAUSE_MS = 400;
+    static final long MIN_CHUNK_MS = 6000;
+    static final long MAX_CHUNK_MS = 20000;
+    // Forced cuts look this far back for the quietest frame
+    static final long QUIET_SEARCH_MS = 1000;
+
+    /**
+     * Called on the feeding (audio) thread
+     */
+    public interface Listener {
+        void onCut(long sample);
+    }
+
+    private static final long MIN_CHUNK_FRAMES = MIN_CHUNK_MS / VoiceActivityDetector.FRAME_MS;
+    private static final long MAX_CHUNK_FRAMES = MAX_CHUNK_MS / VoiceActivityDetector.FRAME_MS;
+    private static final int QUIET_SEARCH_FRAMES = (int) (QUIET_SEARCH_MS / VoiceActivityDetector.FRAME_MS);
+
+    private final Listener listener;
+    private final VoiceActivityDetector vad;
+    private final NoiseFloorEstimator noiseFloor = new NoiseFloorEstimator();
+
+    // Recent frame levels, for forced cuts
+    private final float[] recentRms = new float[QUIET_SEARCH_FRAMES];
+
+    private long frames;
+    private long lastCutFrame;
+
+    public LongFormSegmenter(Listener listener) {
+        this.listener = listener;
+        this.vad = new VoiceActivityDetector(new VoiceActivityDetector.Listener() {
+            @Override
+            public void onSpeechStart(long timeMs) {
+            }
+
+            @Override
+            public void onSpeechEnd(long timeMs) {
+                // Fires PAUSE_MS into the silence; cut halfway through it
+                long frame = (timeMs - PAUSE_MS / 2) / VoiceActivityDetector.FRAME_MS;
+                if (frame - lastCutFrame >= MIN_CHUNK_FRAMES) {
+                    cut(frame);
+                }
+            }
+
+            @Override
+            public void onNoSpeech(long timeMs) {
+            }
+        }, PAUSE_MS, Long.MAX_VALUE);
+        this.vad.setNoiseFloorEstimator(noiseFloor);
+    }
+
+    /**
+     * Start a new recording
+     */
+    public synchronized void reset() {
+        noiseFloor.reset(noiseFloor.isWarmedUp() ? noiseFloor.getFloorRms() : NoiseFloorEstimator.DEFAULT_FLOOR_RMS);
+        vad.reset(PAUSE_MS, Long.MAX_VALUE);
+        frames = 0;
+        lastCutFrame = 0;
+    }
+
+    /**
+     * Feed one VoiceActivityDetector.FRAME_MS frame
+     */
+    public synchronized void onAudioFrame(float rms, float zcr) {
+        recentRms[(int) (frames % QUIET_SEARCH_FRAMES)] = rms;
+        frames++;
+        vad.processFrame(rms, zcr);
+        if (frames - lastCutFrame >= MAX_CHUNK_FRAMES) {
+            cut(quietestRecentFrame());
+        }
+    }
+
+    // Frame boundary after the quietest of the last QUIET_SEARCH_FRAMES frames
+    private long quietestRecentFrame() {
+        long best = frames;
+        float bestRms = Float.MAX_VALUE;
+        for (long f = frames - 1; f >= Math.max(lastCutFrame, frames - QUIET_SEARCH_FRAMES); f--) {
+            float rms = recentRms[(int) (f % QUIET_SEARCH_FRAMES)];
+            if (rms < bestRms) {
+                bestRms = rms;
+                best = f + 1;
+            }
+        }
+        return best;
+    }
+
+    private void cut(long frame) {
+        lastCutFrame = frame;
+        listener.onCut(frame * FRAME_SAMPLES);
+    }
+
+    /** Samples fed so far */
+    public synchronized long getSamples() {
+        return frames * FRAME_SAMPLES;
+    }
+}
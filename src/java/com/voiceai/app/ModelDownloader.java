@@ -0,0 +1,693 @@
+package com.voiceai.app;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ModelDownloader - Resumable, segmented download of large model files
+ *
+ * A probe request (Range: bytes=0-0, redirects followed by hand) finds the
+ * final URL, the length and whether the server serves ranges. The file is
+ * then fetched as up to N parallel range requests written in place into
+ * destination.part; each segment retries from its own offset. Segment
+ * progress is checkpointed to destination.part.state (after an fsync of
+ * the data) every few seconds and on failure, so the next download() of
+ * the same file and version continues where the last one stopped.
+ *
+ * On completion the part file is checked against the expected SHA-256 and
+ * renamed over the destination; a mismatch deletes it. Without a pinned
+ * hash, the one Hugging Face publishes for LFS files (X-Linked-Etag) is
+ * used. Servers without range support get a single stream with no resume.
+ *
+ * Progress goes to the listener from the calling thread at most once per
+ * progress interval, never per chunk.
+ *
+ * Usage (on a background thread):
+ * ModelDownloader downloader = ModelDownloader.builder(url, file).build();
+ * downloader.download((done, total) -> ...); // downloader.cancel() from elsewhere
+ */
+public final class ModelDownloader {
+
+    private static final String TAG = "VoiceAI.Download";
+
+    static final String PART_SUFFIX = ".part";
+    static final String STATE_SUFFIX = ".part.state";
+
+    private static final int DEFAULT_SEGMENTS = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS = 4;
+    private static final long DEFAULT_PROGRESS_INTERVAL_MS = 250;
+    private static final String DEFAULT_USER_AGENT = "VoiceAI/1.2.1";
+
+    // Smaller files use fewer segments
+    private static final long DEFAULT_MIN_SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long CHECKPOINT_INTERVAL_MS = 3000;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final int MAX_REDIRECTS = 5;
+
+    /**
+     * Progress, on the thread that called download()
+     */
+    public interface Listener {
+        /** @param total bytes, -1 if the server did not say */
+        void onProgress(long downloaded, long total);
+    }
+
+    private final URL url;
+    private final File destination;
+    private final String sha256;
+    private final int segments;
+    private final long minSegmentBytes;
+    private final int maxAttempts;
+    private final long progressIntervalMs;
+    private final String userAgent;
+
+    private volatile boolean cancelled = false;
+
+    private ModelDownloader(Builder builder) {
+        this.url = builder.url;
+        this.destination = builder.destination;
+        this.sha256 = builder.sha256;
+        this.segments = builder.segments;
+        this.minSegmentBytes = builder.minSegmentBytes;
+        this.maxAttempts = builder.maxAttempts;
+        this.progressIntervalMs = builder.progressIntervalMs;
+        this.userAgent = builder.userAgent;
+    }
+
+    public static Builder builder(URL url, File destination) {
+        return new Builder(url, destination);
+    }
+
+    /**
+     * True if an interrupted download of this file can be resumed
+     */
+    public static boolean hasPartial(File destination) {
+        return new File(destination.getPath() + STATE_SUFFIX).exists();
+    }
+
+    /**
+     * Stop a running download; it throws InterruptedIOException and keeps
+     * its progress for the next attempt. Also applies to a download() that
+     * has not started yet: a cancelled downloader stays cancelled, build a
+     * new one to resume.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // ========================================================================
+    // DOWNLOAD
+    // ========================================================================
+
+    /**
+     * Download (or finish downloading) the file. Blocks.
+     *
+     * @return the destination, verified and complete
+     * @throws InterruptedIOException if cancelled
+     * @throws IOException on network or disk errors and checksum mismatch
+     */
+    public File download(Listener listener) throws IOException {
+        checkCancelled();
+        File part = new File(destination.getPath() + PART_SUFFIX);
+        File stateFile = new File(destination.getPath() + STATE_SUFFIX);
+        Probe probe = probe();
+        String expected = sha256 != null ? sha256 : probe.linkedSha256;
+        checkCancelled();
+
+        if (probe.ranges) {
+            State state = State.read(stateFile);
+            if (state == null || !state.matches(url, probe) || !part.exists()) {
+                state = State.create(url, probe, segmentCount(probe.length));
+                part.delete();
+            } else {
+                Log.d(TAG, "Resuming " + destination.getName() + " at " + state.downloaded() + "/"
+                        + probe.length);
+            }
+            fetchSegments(probe.url, state, part, stateFile, listener);
+        } else {
+            Log.d(TAG, "No range support, downloading " + destination.getName() + " in one stream");
+            stateFile.delete();
+            fetchStream(probe.url, probe.length, part, listener);
+        }
+
+        if (expected != null) {
+            String actual = hash(part);
+            if (!actual.equalsIgnoreCase(expected)) {
+                part.delete();
+                stateFile.delete();
+                throw new IOException("Checksum mismatch for " + destination.getName() + ": expected "
+                        + expected + ", got " + actual);
+            }
+        } else {
+            Log.w(TAG, "No checksum known for " + destination.getName() + ", not verified");
+        }
+        if (!part.renameTo(destination)) {
+            throw new IOException("Cannot move " + part + " to " + destination);
+        }
+        stateFile.delete();
+        listener.onProgress(destination.length(), destination.length());
+        Log.d(TAG, "Downloaded " + destination.getName() + " (" + destination.length() + " bytes)");
+        return destination;
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Download cancelled");
+        }
+    }
+
+    private int segmentCount(long length) {
+        return (int) Math.max(1, Math.min(segments, length / minSegmentBytes));
+    }
+
+    private void fetchSegments(URL source, State state, File part, File stateFile, Listener listener)
+            throws IOException {
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicInteger threadIndex = new AtomicInteger();
+        List<Segment> pending = new ArrayList<>();
+        for (Segment segment : state.segments) {
+            if (!segment.isComplete()) {
+                pending.add(segment);
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(state.length);
+            if (pending.isEmpty()) {
+                return;
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(pending.size(),
+                    r -> new Thread(r, "VoiceAI-Download-" + threadIndex.incrementAndGet()));
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Segment segment : pending) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        fetchSegment(source, segment, part, stop);
+                    } catch (IOException | RuntimeException e) {
+                        stop.set(true); // No point finishing the others
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            pool.shutdown();
+
+            long lastCheckpoint = System.currentTimeMillis();
+            try {
+                while (!pool.awaitTermination(progressIntervalMs, TimeUnit.MILLISECONDS)) {
+                    if (cancelled) {
+                        stop.set(true);
+                    }
+                    listener.onProgress(state.downloaded(), state.length);
+                    long now = System.currentTimeMillis();
+                    if (now - lastCheckpoint >= CHECKPOINT_INTERVAL_MS) {
+                        checkpoint(file, state, stateFile);
+                        lastCheckpoint = now;
+                    }
+                }
+                // The segment that failed first, not the ones it stopped
+                IOException failure = null;
+                for (Future<Void> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        IOException error = cause instanceof IOException ? (IOException) cause
+                                : new IOException(cause);
+                        if (failure == null || (failure instanceof InterruptedIOException && !cancelled)) {
+                            failure = error;
+                        }
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted");
+            } finally {
+                stop.set(true);
+                pool.shutdownNow();
+                try {
+                    pool.awaitTermination(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                checkpoint(file, state, stateFile);
+            }
+        }
+    }
+
+    private void fetchSegment(URL source, Segment segment, File part, AtomicBoolean stop) throws IOException {
+        byte[] buffer = new byte[BUFFER_BYTES];
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            for (int attempt = 1;; attempt++) {
+                try {
+                    fetchRange(source, segment, file, buffer, stop);
+                    return;
+                } catch (IOException e) {
+                    if (stop.get() || attempt >= maxAttempts) {
+                        throw e;
+                    }
+                    Log.w(TAG, "Segment " + segment.start + "-" + segment.end + " failed at "
+                            + segment.position() + ", retrying", e);
+                    try {
+                        Thread.sleep(RETRY_DELAY_MS * attempt);
+                    } catch (InterruptedException ie) {
+                        throw new InterruptedIOException("Download interrupted");
+                    }
+                }
+            }
+        }
+    }
+
+    private void fetchRange(URL source, Segment segment, RandomAccessFile file, byte[] buffer,
+            AtomicBoolean stop) throws IOException {
+        long position = segment.position();
+        if (position >= segment.end) {
+            return;
+        }
+        HttpURLConnection conn = open(source);
+        conn.setRequestProperty("Range", "bytes=" + position + "-" + (segment.end - 1));
+        try {
+            int code = conn.getResponseCode();
+            String range = conn.getHeaderField("Content-Range");
+            if (code != HttpURLConnection.HTTP_PARTIAL || range == null
+                    || !range.startsWith("bytes " + position + "-")) {
+                throw new IOException("Range " + position + "- not served: HTTP " + code + ", " + range);
+            }
+            file.seek(position);
+            try (InputStream in = conn.getInputStream()) {
+                while (position < segment.end) {
+                    if (stop.get()) {
+                        throw new InterruptedIOException("Download cancelled");
+                    }
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, segment.end - position));
+                    if (n < 0) {
+                        throw new EOFException("Connection closed at " + position + " of " + segment.end);
+                    }
+                    file.write(buffer, 0, n);
+                    position += n;
+                    segment.done.addAndGet(n);
+                }
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private void fetchStream(URL source, long length, File part, Listener listener) throws IOException {
+        HttpURLConnection conn = open(source);
+        try {
+            int code = conn.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + code + " for " + source);
+            }
+            byte[] buffer = new byte[BUFFER_BYTES];
+            long downloaded = 0;
+            long lastProgress = System.currentTimeMillis();
+            try (InputStream in = conn.getInputStream(); FileOutputStream out = new FileOutputStream(part)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    if (cancelled) {
+                        throw new InterruptedIOException("Download cancelled");
+                    }
+                    out.write(buffer, 0, n);
+                    downloaded += n;
+                    long now = System.currentTimeMillis();
+                    if (now - lastProgress >= progressIntervalMs) {
+                        listener.onProgress(downloaded, length);
+                        lastProgress = now;
+                    }
+                }
+                out.getFD().sync();
+            }
+            if (length >= 0 && downloaded != length) {
+                throw new EOFException("Got " + downloaded + " of " + length + " bytes");
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    // Data first, then the offsets that claim it. Offsets are read before
+    // the sync: bytes counted in them were written before they were counted,
+    // so the sync covers them; bytes counted later may not be synced yet.
+    private static void checkpoint(RandomAccessFile file, State state, File stateFile) {
+        try {
+            long[] done = state.snapshotDone();
+            file.getFD().sync();
+            state.write(stateFile, done);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot save download progress", e);
+        }
+    }
+
+    // ========================================================================
+    // PROBE
+    // ========================================================================
+
+    private static final class Probe {
+        final URL url;
+        final long length;
+        final boolean ranges;
+        final String validator;
+        final String linkedSha256;
+
+        Probe(URL url, long length, boolean ranges, String validator, String linkedSha256) {
+            this.url = url;
+            this.length = length;
+            this.ranges = ranges;
+            this.validator = validator;
+            this.linkedSha256 = linkedSha256;
+        }
+    }
+
+    private Probe probe() throws IOException {
+        URL current = url;
+        String linkedSha256 = null;
+        for (int redirect = 0; redirect <= MAX_REDIRECTS; redirect++) {
+            HttpURLConnection conn = open(current);
+            conn.setInstanceFollowRedirects(false);
+            conn.setRequestProperty("Range", "bytes=0-0");
+            try {
+                int code = conn.getResponseCode();
+                if (linkedSha256 == null) {
+                    linkedSha256 = parseSha256(conn.getHeaderField("X-Linked-Etag"));
+                }
+                if (code >= 300 && code < 400) {
+                    String location = conn.getHeaderField("Location");
+                    if (location == null) {
+                        throw new IOException("HTTP " + code + " without Location from " + current);
+                    }
+                    current = new URL(current, location);
+                    continue;
+                }
+                String validator = linkedSha256 != null ? linkedSha256 : conn.getHeaderField("ETag");
+                if (validator == null) {
+                    validator = conn.getHeaderField("Last-Modified");
+                }
+                if (code == HttpURLConnection.HTTP_PARTIAL) {
+                    long length = parseContentRangeLength(conn.getHeaderField("Content-Range"));
+                    if (length > 0) {
+                        return new Probe(current, length, true, validator, linkedSha256);
+                    }
+                }
+                if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_PARTIAL) {
+                    return new Probe(current, code == HttpURLConnection.HTTP_OK ? conn.getContentLengthLong() : -1,
+                            false, validator, linkedSha256);
+                }
+                throw new IOException("HTTP " + code + " for " + current);
+            } finally {
+                conn.disconnect();
+            }
+        }
+        throw new IOException("Too many redirects for " + url);
+    }
+
+    private HttpURLConnection open(URL source) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) source.openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setRequestProperty("User-Agent", userAgent);
+        // Byte offsets must refer to the stored file, not a compressed stream
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        return conn;
+    }
+
+    /** "bytes 0-0/1234" → 1234, -1 if absent or unknown */
+    static long parseContentRangeLength(String header) {
+        if (header == null) {
+            return -1;
+        }
+        int slash = header.lastIndexOf('/');
+        if (slash < 0 || !header.startsWith("bytes ")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** A hex SHA-256 from an ETag-style header (quotes and W/ allowed), else null */
+    static String parseSha256(String header) {
+        if (header == null) {
+            return null;
+        }
+        String value = header.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.matches("[0-9a-fA-F]{64}") ? value.toLowerCase(Locale.US) : null;
+    }
+
+    static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[1024 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format(Locale.US, "%02x", b));
+        }
+        return hex.toString();
+    }
+
+    // ========================================================================
+    // RESUME STATE
+    // ========================================================================
+
+    private static final class Segment {
+        final long start;
+        final long end; // Exclusive
+        final AtomicLong done;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = new AtomicLong(done);
+        }
+
+        long position() {
+            return start + done.get();
+        }
+
+        boolean isComplete() {
+            return position() >= end;
+        }
+    }
+
+    /**
+     * Text file: "url", "validator" and "length" lines, then one
+     * "segment start end done" line per segment
+     */
+    private static final class State {
+        final String url;
+        final String validator;
+        final long length;
+        final List<Segment> segments;
+
+        State(String url, String validator, long length, List<Segment> segments) {
+            this.url = url;
+            this.validator = validator;
+            this.length = length;
+            this.segments = segments;
+        }
+
+        static State create(URL url, Probe probe, int count) {
+            List<Segment> segments = new ArrayList<>(count);
+            long size = probe.length / count;
+            for (int i = 0; i < count; i++) {
+                long start = i * size;
+                segments.add(new Segment(start, i == count - 1 ? probe.length : start + size, 0));
+            }
+            return new State(url.toString(), probe.validator != null ? probe.validator : "-", probe.length,
+                    segments);
+        }
+
+        boolean matches(URL url, Probe probe) {
+            return this.url.equals(url.toString()) && length == probe.length
+                    && validator.equals(probe.validator != null ? probe.validator : "-");
+        }
+
+        long[] snapshotDone() {
+            long[] done = new long[segments.size()];
+            for (int i = 0; i < done.length; i++) {
+                done[i] = segments.get(i).done.get();
+            }
+            return done;
+        }
+
+        long downloaded() {
+            long total = 0;
+            for (Segment segment : segments) {
+                total += Math.min(segment.done.get(), segment.end - segment.start);
+            }
+            return total;
+        }
+
+        static State read(File file) {
+            if (!file.exists()) {
+                return null;
+            }
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String url = null;
+                String validator = null;
+                long length = -1;
+                List<Segment> segments = new ArrayList<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    if (space < 0) {
+                        continue;
+                    }
+                    String key = line.substring(0, space);
+                    String value = line.substring(space + 1);
+                    if (key.equals("url")) {
+                        url = value;
+                    } else if (key.equals("validator")) {
+                        validator = value;
+                    } else if (key.equals("length")) {
+                        length = Long.parseLong(value);
+                    } else if (key.equals("segment")) {
+                        String[] parts = value.split(" ");
+                        segments.add(new Segment(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                                Long.parseLong(parts[2])));
+                    }
+                }
+                if (url == null || validator == null || length <= 0 || segments.isEmpty()) {
+                    return null;
+                }
+                return new State(url, validator, length, segments);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Ignoring unreadable download state " + file, e);
+                return null;
+            }
+        }
+
+        /**
+         * @param done per-segment progress, from {@link #snapshotDone()}
+         */
+        void write(File file, long[] done) throws IOException {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                writer.write("url " + url + "\n");
+                writer.write("validator " + validator + "\n");
+                writer.write("length " + length + "\n");
+                for (int i = 0; i < segments.size(); i++) {
+                    Segment segment = segments.get(i);
+                    writer.write("segment " + segment.start + " " + segment.end + " " + done[i] + "\n");
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+        }
+    }
+
+    // ========================================================================
+    // BUILDER
+    // ========================================================================
+
+    public static final class Builder {
+        private final URL url;
+        private final File destination;
+        private String sha256;
+        private int segments = DEFAULT_SEGMENTS;
+        private long minSegmentBytes = DEFAULT_MIN_SEGMENT_BYTES;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private long progressIntervalMs = DEFAULT_PROGRESS_INTERVAL_MS;
+        private String userAgent = DEFAULT_USER_AGENT;
+
+        private Builder(URL url, File destination) {
+            this.url = url;
+            this.destination = destination;
+        }
+
+        /** Expected hex SHA-256; overrides the one the server publishes */
+        public Builder sha256(String sha256) {
+            this.sha256 = sha256 != null ? sha256.toLowerCase(Locale.US) : null;
+            return this;
+        }
+
+        /** Parallel range requests, at most */
+        public Builder segments(int segments) {
+            this.segments = Math.max(1, segments);
+            return this;
+        }
+
+        // Lets tests split small files
+        Builder minSegmentBytes(long bytes) {
+            this.minSegmentBytes = Math.max(1, bytes);
+            return this;
+        }
+
+        /** Tries per segment before the download fails */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = Math.max(1, maxAttempts);
+            return this;
+        }
+
+        public Builder progressInterval(long millis) {
+            this.progressIntervalMs = Math.max(1, millis);
+            return this;
+        }
+
+        public Builder userAgent(String userAgent) {
+            this.userAgent = userAgent;
+            return this;
+        }
+
+        public ModelDownloader build() {
+            return new ModelDownloader(this);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.voiceai.app;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import com.voiceai.app.processing.processors.LocalLLMProcessor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+/**
+ * ModelManager - Lazy lifecycle for the on-device models
+ *
+ * Owns the Parakeet ASR engine pool (GLOBAL_ENGINE in lib.rs, sized through
+ * AsrScheduler) and the local Qwen3 LLM (LocalLLMProcessor). Keeping both
+ * resident gets the process killed on 4GB devices, which turns the next
+ * dictation into a full cold start, so:
+ * - Models load on first use or predicted use (IME window shown, dictation
+ *   overlay opened) on a single background loader thread
+ * - LLM weights are memory-mapped by llama.cpp, so clean pages stay reclaimable
+ * - onTrimMemory and idle timeouts unload models that are not in use,
+ *   the LLM first since it has a rule-based fallback
+ * - Load state, load time and load/unload counts are exposed for the UI and logs
+ *
+ * Usage:
+ * ModelManager models = ModelManager.getInstance(context);
+ * models.beginUse(ModelManager.Model.ASR); // loads if needed
+ * ...
+ * models.endUse(ModelManager.Model.ASR); // idle timer starts
+ */
+public final class ModelManager implements ComponentCallbacks2 {
+
+    private static final String TAG = "VoiceAI.ModelManager";
+
+    public enum Model {
+        ASR,
+        LLM
+    }
+
+    public enum State {
+        UNLOADED,
+        LOADING,
+        LOADED,
+        FAILED
+    }
+
+    public interface Listener {
+        /** Called on the main thread */
+        void onModelStateChanged(Model model, State state);
+    }
+
+    /** Blocking load/unload of one model, run on the loader thread */
+    interface Loader {
+        /** Called on the requesting thread when a load is queued */
+        default void queued() {
+        }
+
+        boolean load();
+
+        void unload();
+    }
+
+    // Unused models are released after this long
+    static final long ASR_IDLE_TIMEOUT_MS = 10 * 60 * 1000L;
+    static final long LLM_IDLE_TIMEOUT_MS = 3 * 60 * 1000L;
+    static final long LLM_IDLE_TIMEOUT_LOW_RAM_MS = 45 * 1000L;
+    private static final long IDLE_CHECK_INTERVAL_MS = 30 * 1000L;
+
+    // Devices at or below this are treated as low-RAM
+    private static final long LOW_RAM_TOTAL_BYTES = 4L * 1024 * 1024 * 1024;
+
+    private static ModelManager instance;
+
+    private final Slot asr;
+    private final Slot llm;
+    private final LocalLLMProcessor localLLM;
+    private final Executor loaderExecutor;
+    private final Handler handler;
+    private final LongSupplier clock;
+    private final boolean lowRamDevice;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Runnable idleCheck = this::runIdleCheck;
+    private boolean idleCheckScheduled;
+
+    /** Per-model state, guarded by the ModelManager monitor */
+    private static final class Slot {
+        final Model model;
+        final Loader loader;
+        final long idleTimeoutMs;
+
+        State state = State.UNLOADED;
+        // Bumped on every load/unload request so stale load results are dropped
+        int generation;
+        int activeUses;
+        long lastUsedMs;
+        long lastLoadTimeMs = -1;
+        int loadCount;
+        int unloadCount;
+
+        Slot(Model model, Loader loader, long idleTimeoutMs) {
+            this.model = model;
+            this.loader = loader;
+            this.idleTimeoutMs = idleTimeoutMs;
+        }
+    }
+
+    public static synchronized ModelManager getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            LocalLLMProcessor localLLM = new LocalLLMProcessor();
+            boolean lowRam = isLowRamDevice(app);
+            int asrPoolSize = lowRam ? 1
+                    : AsrScheduler.poolSizeFor(totalMemBytes(app), Runtime.getRuntime().availableProcessors());
+
+            Loader asrLoader = new Loader() {
+                @Override
+                public void queued() {
+                    // Native recognition waits on this instead of failing
+                    // while the load is still queued
+                    markAsrLoadingNative();
+                }
+
+                @Override
+                public boolean load() {
+                    AsrScheduler.setPoolSize(asrPoolSize);
+                    return loadAsrNative(app);
+                }
+
+                @Override
+                public void unload() {
+                    unloadAsrNative();
+                }
+            };
+            Loader llmLoader = new Loader() {
+                @Override
+                public boolean load() {
+                    localLLM.initModel(app);
+                    return localLLM.isModelLoaded();
+                }
+
+                @Override
+                public void unload() {
+                    localLLM.cleanup();
+                }
+            };
+
+            Executor executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "VoiceAI-ModelLoader");
+                t.setDaemon(true);
+                return t;
+            });
+
+            instance = new ModelManager(asrLoader, llmLoader, localLLM, executor,
+                    new Handler(Looper.getMainLooper()), SystemClock::uptimeMillis, lowRam);
+            app.registerComponentCallbacks(instance);
+            Log.d(TAG, "Created (lowRam=" + lowRam + ", asrPool=" + asrPoolSize + ")");
+        }
+        return instance;
+    }
+
+    ModelManager(Loader asrLoader, Loader llmLoader, LocalLLMProcessor localLLM,
+            Executor loaderExecutor, Handler handler, LongSupplier clock, boolean lowRamDevice) {
+        this.asr = new Slot(Model.ASR, asrLoader, ASR_IDLE_TIMEOUT_MS);
+        this.llm = new Slot(Model.LLM, llmLoader,
+                lowRamDevice ? LLM_IDLE_TIMEOUT_LOW_RAM_MS : LLM_IDLE_TIMEOUT_MS);
+        this.localLLM = localLLM;
+        this.loaderExecutor = loaderExecutor;
+        this.handler = handler;
+        this.clock = clock;
+        this.lowRamDevice = lowRamDevice;
+    }
+
+    // ========================================================================
+    // LOADING
+    // ========================================================================
+
+    /**
+     * Start loading a model in the background if it is not loaded or loading.
+     * Use for predicted use (e.g. IME window shown).
+     */
+    public void ensureLoaded(Model model) {
+        Slot slot = slot(model);
+        final int generation;
+        synchronized (this) {
+            if (slot.state == State.LOADED || slot.state == State.LOADING) {
+                return;
+            }
+            generation = ++slot.generation;
+            slot.state = State.LOADING;
+        }
+        slot.loader.queued();
+        notifyListeners(model, State.LOADING);
+
+        loaderExecutor.execute(() -> {
+            long start = clock.getAsLong();
+            boolean ok;
+            try {
+                ok = slot.loader.load();
+            } catch (Throwable t) {
+                Log.e(TAG, "Failed to load " + model, t);
+                ok = false;
+            }
+            long elapsed = clock.getAsLong() - start;
+
+            State result;
+            synchronized (this) {
+                if (slot.generation != generation) {
+                    // Unloaded while loading; the queued unload task releases it
+                    return;
+                }
+                result = ok ? State.LOADED : State.FAILED;
+                slot.state = result;
+                if (ok) {
+                    slot.lastLoadTimeMs = elapsed;
+                    slot.loadCount++;
+                    slot.lastUsedMs = clock.getAsLong();
+                    scheduleIdleCheck();
+                }
+            }
+            Log.d(TAG, model + " " + result + " in " + elapsed + "ms");
+            notifyListeners(model, result);
+        });
+    }
+
+    /**
+     * Mark a model as in use (loading it if needed). In-use models are never
+     * unloaded. Every call must be paired with {@link #endUse}.
+     */
+    public void beginUse(Model model) {
+        Slot slot = slot(model);
+        synchronized (this) {
+            slot.activeUses++;
+            slot.lastUsedMs = clock.getAsLong();
+        }
+        ensureLoaded(model);
+    }
+
+    public void endUse(Model model) {
+        Slot slot = slot(model);
+        synchronized (this) {
+            if (slot.activeUses > 0) {
+                slot.activeUses--;
+            }
+            slot.lastUsedMs = clock.getAsLong();
+        }
+    }
+
+    // ========================================================================
+    // UNLOADING
+    // ========================================================================
+
+    /**
+     * Release a model unless it is in use
+     *
+     * @return true if an unload was started
+     */
+    public boolean unload(Model model) {
+        Slot slot = slot(model);
+        synchronized (this) {
+            if (slot.activeUses > 0) {
+                Log.d(TAG, "Not unloading " + model + " (in use)");
+                return false;
+            }
+            if (slot.state != State.LOADED && slot.state != State.LOADING) {
+                return false;
+            }
+            slot.generation++;
+            slot.state = State.UNLOADED;
+            slot.unloadCount++;
+        }
+        Log.d(TAG, "Unloading " + model);
+        loaderExecutor.execute(() -> {
+            try {
+                slot.loader.unload();
+            } catch (Throwable t) {
+                Log.e(TAG, "Failed to unload " + model, t);
+            }
+        });
+        notifyListeners(model, State.UNLOADED);
+        return true;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        Log.d(TAG, "onTrimMemory(" + level + ")");
+
+        boolean pressure = level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= TRIM_MEMORY_BACKGROUND;
+
+        // The LLM is optional (rule-based fallback), so it goes first;
+        // on low-RAM devices any trim signal is enough
+        if (pressure || lowRamDevice) {
+            unload(Model.LLM);
+        }
+
+        // ASR reloads take seconds; only drop it when the process is at risk
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            unload(Model.ASR);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Unload models that have not been used within their idle timeout
+     */
+    void checkIdle(long nowMs) {
+        for (Slot slot : new Slot[] { asr, llm }) {
+            boolean idle;
+            synchronized (this) {
+                idle = slot.state == State.LOADED && slot.activeUses == 0
+                        && nowMs - slot.lastUsedMs >= slot.idleTimeoutMs;
+            }
+            if (idle) {
+                Log.d(TAG, slot.model + " idle for " + (nowMs - slot.lastUsedMs) + "ms");
+                unload(slot.model);
+            }
+        }
+    }
+
+    private void runIdleCheck() {
+        synchronized (this) {
+            idleCheckScheduled = false;
+        }
+        checkIdle(clock.getAsLong());
+        synchronized (this) {
+            if (asr.state == State.LOADED || llm.state == State.LOADED) {
+                scheduleIdleCheck();
+            }
+        }
+    }
+
+    // Caller holds the monitor
+    private void scheduleIdleCheck() {
+        if (!idleCheckScheduled && handler != null) {
+            idleCheckScheduled = true;
+            handler.postDelayed(idleCheck, IDLE_CHECK_INTERVAL_MS);
+        }
+    }
+
+    // ========================================================================
+    // STATE & METRICS
+    // ========================================================================
+
+    public synchronized State getState(Model model) {
+        return slot(model).state;
+    }
+
+    public boolean isLoaded(Model model) {
+        return getState(model) == State.LOADED;
+    }
+
+    /** Duration of the most recent successful load, or -1 if never loaded */
+    public synchronized long getLastLoadTimeMs(Model model) {
+        return slot(model).lastLoadTimeMs;
+    }
+
+    public synchronized int getLoadCount(Model model) {
+        return slot(model).loadCount;
+    }
+
+    public synchronized int getUnloadCount(Model model) {
+        return slot(model).unloadCount;
+    }
+
+    /** Shared processor whose native model this manager loads and unloads */
+    public LocalLLMProcessor getLocalLLM() {
+        return localLLM;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(Model model, State state) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Runnable dispatch = () -> {
+            for (Listener l : listeners) {
+                l.onModelStateChanged(model, state);
+            }
+        };
+        if (handler != null) {
+            handler.post(dispatch);
+        } else {
+            dispatch.run();
+        }
+    }
+
+    private Slot slot(Model model) {
+        return model == Model.ASR ? asr : llm;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return describe(asr) + ", " + describe(llm);
+    }
+
+    private static String describe(Slot slot) {
+        return slot.model + "=" + slot.state + " (load " + slot.lastLoadTimeMs + "ms, loads="
+                + slot.loadCount + ", unloads=" + slot.unloadCount + ")";
+    }
+
+    private static boolean isLowRamDevice(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) {
+            return false;
+        }
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        am.getMemoryInfo(info);
+        return am.isLowRamDevice() || info.totalMem <= LOW_RAM_TOTAL_BYTES;
+    }
+
+    private static long totalMemBytes(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) {
+            return 0;
+        }
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        am.getMemoryInfo(info);
+        return info.totalMem;
+    }
+
+    // Native ASR engine control (lib.rs)
+    private static native boolean loadAsrNative(Context context);
+
+    private static native void markAsrLoadingNative();
+
+    private static native void unloadAsrNative();
+}
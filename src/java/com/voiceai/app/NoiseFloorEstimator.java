@@ -0,0 +1,127 @@
+package com.voiceai.app;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * NoiseFloorEstimator - Streaming ambient level from frame RMS
+ *
+ * Tracks a low percentile of recent frame levels: speech is intermittent,
+ * so the quietest tenth of frames is the room, not the speaker. Levels
+ * are kept in a 1 dB histogram whose weights decay exponentially, so
+ * memory and per-frame cost are constant and old ambient levels fade out
+ * over roughly DECAY_FRAMES frames.
+ *
+ * Each session starts from a prior (the previous session's floor, or a
+ * quiet-room default) so the estimate is usable before it has seen
+ * enough audio, even if the user starts talking immediately.
+ */
+public class NoiseFloorEstimator {
+
+    static final int MIN_DB = -90;
+    static final int MAX_DB = 0;
+    private static final int BINS = MAX_DB - MIN_DB;
+
+    // Percentile of frame levels taken as the floor
+    static final float PERCENTILE = 0.1f;
+
+    // ~5s of 20ms frames
+    static final int DECAY_FRAMES = 250;
+    private static final float DECAY = 1f - 1f / DECAY_FRAMES;
+
+    // Weight of the prior, in frames; outweighed by ~0.5s of real audio
+    static final float PRIOR_FRAMES = 3f;
+
+    // Frames after which the estimate reflects this session's audio
+    static final int WARMUP_FRAMES = 15;
+
+    public static final float DEFAULT_FLOOR_RMS = 0.0005f;
+
+    private final float[] weights = new float[BINS];
+    private float totalWeight;
+    private long frames;
+    private float floorRms;
+
+    public NoiseFloorEstimator() {
+        reset(DEFAULT_FLOOR_RMS);
+    }
+
+    /**
+     * Start a new session seeded with a prior floor
+     */
+    public synchronized void reset(float priorRms) {
+        Arrays.fill(weights, 0f);
+        weights[bin(priorRms)] = PRIOR_FRAMES;
+        totalWeight = PRIOR_FRAMES;
+        frames = 0;
+        floorRms = fromDb(binUpperDb(bin(priorRms)));
+    }
+
+    /**
+     * Add one frame and return the updated floor (raw RMS)
+     */
+    public synchronized float update(float rms) {
+        for (int i = 0; i < BINS; i++) {
+            weights[i] *= DECAY;
+        }
+        totalWeight = totalWeight * DECAY + 1f;
+        weights[bin(rms)] += 1f;
+        frames++;
+
+        float target = totalWeight * PERCENTILE;
+        float cumulative = 0f;
+        int i = 0;
+        for (; i < BINS - 1; i++) {
+            cumulative += weights[i];
+            if (cumulative >= target) {
+                break;
+            }
+        }
+        floorRms = fromDb(binUpperDb(i));
+        return floorRms;
+    }
+
+    /**
+     * Current floor estimate (raw RMS, upper edge of the percentile's 1 dB bin)
+     */
+    public synchronized float getFloorRms() {
+        return floorRms;
+    }
+
+    public synchronized float getFloorDb() {
+        return toDb(floorRms);
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * True once this session's audio outweighs the prior
+     */
+    public synchronized boolean isWarmedUp() {
+        return frames >= WARMUP_FRAMES;
+    }
+
+    private static int bin(float rms) {
+        int db = (int) Math.floor(toDb(rms));
+        return Math.max(0, Math.min(BINS - 1, db - MIN_DB));
+    }
+
+    private static float binUpperDb(int bin) {
+        return MIN_DB + bin + 1;
+    }
+
+    static float toDb(float rms) {
+        return (float) (20 * Math.log10(Math.max(rms, 1e-9f)));
+    }
+
+    static float fromDb(float db) {
+        return (float) Math.pow(10, db / 20);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "NoiseFloor[%.1f dB, %d frames]", toDb(floorRms), frames);
+    }
+}
@@ -759,7 +759,17 @@ public class PostProcessor {
     // EXAMPLE DEMONSTRATION
     // ========================================================================
 
-    public static void main(String[] args) {
+    /**
+     * With arguments, runs the batch CLI over a transcript file
+     * (see {@link com.voiceai.app.processing.BatchProcessor}); without, prints
+     * a demonstration
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            com.voiceai.app.processing.BatchProcessor.main(args);
+            return;
+        }
+
         String rawInput = "uh so i was thinking um you know about like twenty five " +
                 "hundred dollars that we we need to pay by twenty twenty four " +
                 "and um the meeting is at four twenty pm on monday " +
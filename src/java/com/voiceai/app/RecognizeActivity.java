@@ -3,13 +3,7 @@ package com.voiceai.app;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.Shader;
 import android.graphics.drawable.GradientDrawable;
 import android.os.Bundle;
 import android.os.Handler;
@@ -17,7 +11,6 @@ import android.os.Looper;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.speech.RecognizerIntent;
-import android.util.AttributeSet;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
@@ -26,6 +19,16 @@ import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import com.voiceai.app.processing.DictationTrace;
+import com.voiceai.app.processing.LongFormAssembler;
+import com.voiceai.app.processing.ProcessingContext;
+import com.voiceai.app.processing.ProcessingPipeline;
+import com.voiceai.app.processing.Transcript;
+import com.voiceai.app.processing.TranscriptJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -34,11 +37,12 @@ import java.util.Map;
  * RecognizeActivity - Transparent overlay voice dictation UI
  * Handles android.speech.action.RECOGNIZE_SPEECH from any keyboard
  * Uses DictationController for 30s timer and silence detection (FUTO-style)
+ * Long-form mode transcribes chunks cut at pauses while recording
+ * (LongFormSegmenter, LongFormAssembler)
  */
 public class RecognizeActivity extends Activity implements DictationController.DictationListener {
 
     private static final String TAG = "VoiceAI";
-    private static final String PREFS_NAME = "VoiceAIPrefs";
 
     static {
         try {
@@ -63,6 +67,35 @@ public class RecognizeActivity extends Activity implements DictationController.D
     // Haptic feedback
     private Vibrator vibrator;
 
+    // Lazy ASR/LLM lifecycle (loads on use, unloads on memory pressure)
+    private ModelManager modelManager;
+    private boolean holdingAsr = false;
+
+    // Opt-in transcript journal (filesDir/journal), opened on first use
+    private static final String JOURNAL_DIR = "journal";
+    private static TranscriptJournal transcriptJournal;
+
+    // Structured result of the last transcription (transcription worker thread)
+    private final Transcript transcript = new Transcript();
+
+    // DictationTrace id of this dictation, from startRecording to injection
+    private volatile long traceId;
+
+    // Long-form dictation: chunks cut at pauses are transcribed while the
+    // user keeps talking, each starting CHUNK_OVERLAP_SECONDS before the cut
+    private static final int SAMPLE_RATE = 16000;
+    private static final double CHUNK_OVERLAP_SECONDS = 1.0;
+    private static final long CHUNK_OVERLAP_SAMPLES = (long) (CHUNK_OVERLAP_SECONDS * SAMPLE_RATE);
+    private LongFormSegmenter segmenter;
+    private boolean longFormStopped; // guarded by segmenter
+    private long lastCutSample; // guarded by segmenter
+    // Chunk worker thread only
+    private LongFormAssembler assembler;
+    private ProcessingContext longFormContext;
+    private String longFormVariant;
+    private final Transcript chunkTranscript = new Transcript();
+    private boolean holdingLlm = false; // guarded by this
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -86,11 +119,25 @@ public class RecognizeActivity extends Activity implements DictationController.D
         fromService = getIntent().getBooleanExtra("from_service", false);
 
         createOverlayUI();
+        waveformView.setLevelSource(dictationController.getAudioLevels());
+
+        // ASR loads while the user speaks; stopRecording waits for it if needed
+        modelManager = ModelManager.getInstance(this);
+        modelManager.beginUse(ModelManager.Model.ASR);
+        holdingAsr = true;
+        preloadOfflineModel();
 
         // Start recording immediately
         try {
             initNative(this);
-            startRecording();
+            traceId = DictationTrace.begin("startRecording");
+            boolean longForm = SettingsSnapshot.get(this).isLongFormEnabled();
+            if (longForm) {
+                startLongForm();
+            }
+            long opening = DictationTrace.now();
+            startRecording(longForm, traceId);
+            DictationTrace.span(traceId, DictationTrace.CAT_CAPTURE, "open microphone", opening);
             isRecording = true;
             statusText.setText("Listening...");
             waveformView.startAnimation();
@@ -100,8 +147,9 @@ public class RecognizeActivity extends Activity implements DictationController.D
                 vibrator.vibrate(VibrationEffect.createOneShot(30, VibrationEffect.DEFAULT_AMPLITUDE));
             }
 
-            // Start DictationController (handles timer and silence detection)
-            dictationController.startDictation();
+            // Start DictationController (handles timer and silence detection;
+            // no time limit for long-form, which is transcribed as it goes)
+            dictationController.startDictation(longForm);
             updateTimerDisplay();
         } catch (Exception e) {
             Log.e(TAG, "Failed to start recording", e);
@@ -109,6 +157,55 @@ public class RecognizeActivity extends Activity implements DictationController.D
         }
     }
 
+    // Load the offline model (mmap + prefix cache) so it is warm by the time
+    // transcription finishes; no-op if already loaded or disabled
+    private void preloadOfflineModel() {
+        if (SettingsSnapshot.get(this).isOfflineModelReady()) {
+            modelManager.ensureLoaded(ModelManager.Model.LLM);
+        }
+    }
+
+    private void releaseAsr() {
+        if (holdingAsr && modelManager != null) {
+            holdingAsr = false;
+            modelManager.endUse(ModelManager.Model.ASR);
+        }
+    }
+
+    // Long-form sessions keep the offline LLM for every span they process
+    private synchronized void releaseLlm() {
+        if (holdingLlm) {
+            holdingLlm = false;
+            modelManager.endUse(ModelManager.Model.LLM);
+        }
+    }
+
+    /**
+     * Set up long-form dictation: the pipeline the settings select, the
+     * assembler it feeds and the segmenter that queues a chunk at each cut
+     */
+    private void startLongForm() {
+        SettingsSnapshot settings = SettingsSnapshot.get(this);
+        longFormVariant = pipelineVariant(settings);
+        if ("offline".equals(longFormVariant)) {
+            synchronized (this) {
+                modelManager.beginUse(ModelManager.Model.LLM);
+                holdingLlm = true;
+            }
+        }
+        longFormContext = settings.getProcessingContext().toBuilder().traceId(traceId).build();
+        assembler = new LongFormAssembler(createPipeline(longFormVariant, settings, modelManager),
+                CHUNK_OVERLAP_SECONDS);
+        // Cuts arrive on the audio thread, inside the segmenter's lock
+        segmenter = new LongFormSegmenter(sample -> {
+            if (!longFormStopped) {
+                queueChunk(Math.max(0, lastCutSample - CHUNK_OVERLAP_SAMPLES), sample);
+                lastCutSample = sample;
+            }
+        });
+        Log.d(TAG, "Long-form dictation (" + longFormVariant + " pipeline)");
+    }
+
     // DictationController.DictationListener callbacks
     @Override
     public void onDictationStarted() {
@@ -137,6 +234,10 @@ public class RecognizeActivity extends Activity implements DictationController.D
         Log.d(TAG, "Silence detected");
     }
 
+    @Override
+    public void onSpeechStarted() {
+    }
+
     private void updateTimerDisplay() {
         if (timerText != null) {
             if (dictationController.isTimeLimitEnabled()) {
@@ -252,12 +353,23 @@ public class RecognizeActivity extends Activity implements DictationController.D
     }
 
     private void stopAndReturn() {
+        DictationTrace.instant(traceId, DictationTrace.CAT_CAPTURE, "stopRecording");
         isRecording = false;
         statusText.setText("Processing...");
         waveformView.stopAnimation();
 
         try {
-            stopRecording();
+            if (segmenter != null) {
+                // Only the audio since the last cut is left to transcribe
+                long from;
+                synchronized (segmenter) {
+                    longFormStopped = true;
+                    from = Math.max(0, lastCutSample - CHUNK_OVERLAP_SAMPLES);
+                }
+                stopLongForm(from);
+            } else {
+                stopRecording();
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error stopping recording", e);
             returnResult("");
@@ -269,6 +381,8 @@ public class RecognizeActivity extends Activity implements DictationController.D
         super.onDestroy();
         if (waveformView != null)
             waveformView.stopAnimation();
+        releaseAsr();
+        releaseLlm();
         try {
             cleanupNative();
         } catch (Exception e) {
@@ -276,15 +390,36 @@ public class RecognizeActivity extends Activity implements DictationController.D
         }
     }
 
+    /**
+     * Process-wide journal; its writer thread outlives the activity.
+     * Null if the directory cannot be opened.
+     */
+    private static synchronized TranscriptJournal getJournal(Context context) {
+        if (transcriptJournal == null) {
+            try {
+                transcriptJournal = TranscriptJournal.open(new File(context.getFilesDir(), JOURNAL_DIR));
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot open transcript journal", e);
+            }
+        }
+        return transcriptJournal;
+    }
+
     // Native methods
     private native void initNative(RecognizeActivity activity);
 
     private native void cleanupNative();
 
-    private native void startRecording();
+    private native void startRecording(boolean longForm, long traceId);
 
     private native void stopRecording();
 
+    // Long-form: transcribe samples [from, to) in the background
+    private native void queueChunk(long fromSample, long toSample);
+
+    // Long-form: stop capture and transcribe from fromSample to the end
+    private native void stopLongForm(long fromSample);
+
     // Called from Rust with status updates
     public void onStatusUpdate(String status) {
         mainHandler.post(() -> {
@@ -293,80 +428,89 @@ public class RecognizeActivity extends Activity implements DictationController.D
         });
     }
 
-    // Called from Rust when transcription complete
-    public void onTextTranscribed(String text) {
-        mainHandler.post(() -> {
-            Log.d(TAG, "Raw transcribed: " + text);
-
-            // Get personal dictionary for post-processing
-            SharedPreferences dictPrefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String dictStr = dictPrefs.getString("personal_dictionary", "");
-            java.util.Map<String, String> personalDict = new java.util.HashMap<>();
-
-            if (!dictStr.isEmpty()) {
-                String[] words = dictStr.split(",");
-                for (String word : words) {
-                    word = word.trim();
-                    if (!word.isEmpty()) {
-                        // Map lowercase to exact case
-                        personalDict.put(word.toLowerCase(), word);
-                    }
-                }
-            }
+    // Called from Rust (any thread) with a native step of a traced dictation
+    public void onTraceSpan(long trace, String category, String name, long startNanos, long endNanos,
+            String detail) {
+        DictationTrace.span(trace, category, name, startNanos, endNanos, detail);
+    }
 
-            // Use new modular VoiceAI processing pipeline
-            com.voiceai.app.processing.ProcessingContext context = com.voiceai.app.processing.ProcessingContext
-                    .builder()
-                    .personalDictionary(personalDict)
-                    .courseCorrection(true)
-                    .fillerRemoval(true)
-                    .numberNormalization(true)
-                    .punctuationRestoration(true)
-                    .casingEnabled(true)
-                    .debugMode(true) // ENABLED for debugging
-                    .build();
-
-            Log.d(TAG, "=== POST-PROCESSING START ===");
-            Log.d(TAG, "Raw input: \"" + text + "\"");
-
-            // Check for Groq API key for LLM post-processing
-            String groqApiKey = dictPrefs.getString("groq_api_key", "");
-
-            // Check for offline LLM processing
-            boolean offlineLLMEnabled = dictPrefs.getBoolean("offline_llm_enabled", false);
-            java.io.File modelFile = new java.io.File(getFilesDir(), "Qwen3-0.6B-UD-Q4_K_XL.gguf");
-            boolean offlineModelReady = offlineLLMEnabled && modelFile.exists();
-
-            String processed;
-            if (groqApiKey != null && !groqApiKey.isEmpty()) {
-                Log.d(TAG, "Using LLM pipeline (Wispr Flow-style with Groq API)");
-                processed = com.voiceai.app.processing.VoiceAIPipeline.createWithLLM(groqApiKey)
-                        .process(text, context);
-            } else if (offlineModelReady) {
-                Log.d(TAG, "Using OFFLINE LLM pipeline (local Qwen3 model)");
-                // Use the standard pipeline which includes LocalLLMProcessor with enhanced
-                // rule-based processing
-                processed = com.voiceai.app.processing.VoiceAIPipeline.create()
-                        .process(text, context);
-                Log.d(TAG, "Offline LLM post-processing applied!");
-            } else {
-                Log.d(TAG, "Using standard pipeline (no API key, no offline model)");
-                processed = com.voiceai.app.processing.VoiceAIPipeline.create()
-                        .process(text, context);
-            }
+    // Called from Rust (transcription worker thread) just before onTextTranscribed,
+    // with word timings, confidences and token ids. The buffer is only valid
+    // during this call, so it is decoded (copied) into the reused transcript.
+    public void onTranscriptData(String text, ByteBuffer data) {
+        try {
+            transcript.decode(text, data);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Bad transcript payload: " + e.getMessage());
+        }
+    }
 
-            Log.d(TAG, "Pipeline output: \"" + processed + "\"");
-            Log.d(TAG, "=== POST-PROCESSING END ===");
+    // Called from Rust (transcription worker thread) when transcription complete.
+    // Post-processing stays on this thread since the offline LLM may take a while.
+    public void onTextTranscribed(String text) {
+        Log.d(TAG, "Raw transcribed: " + text);
+        showResult(processTranscript(this, modelManager, transcript, text, traceId));
+    }
 
-            // If pipeline returns empty, use original text with basic casing
-            if (processed == null || processed.isEmpty()) {
-                processed = text;
-                if (processed != null && !processed.isEmpty()) {
-                    processed = processed.substring(0, 1).toUpperCase() + processed.substring(1);
-                }
+    // Called from Rust (chunk worker thread) for each long-form chunk, in
+    // order: its sample range, whether it is the last one, and its
+    // transcript (data is null if nothing was decoded; only valid during
+    // this call). Stable words are post-processed here as they arrive, so
+    // the last chunk is all that is left after stop.
+    public void onChunkTranscribed(long fromSample, long toSample, boolean last, String text, ByteBuffer data) {
+        LongFormAssembler assembler = this.assembler;
+        if (assembler == null) {
+            return;
+        }
+        chunkTranscript.clear();
+        if (data != null) {
+            try {
+                chunkTranscript.decode(text, data);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Bad chunk payload: " + e.getMessage());
             }
+        }
+        long stitching = DictationTrace.now();
+        boolean grew = assembler.addChunk((double) fromSample / SAMPLE_RATE, (double) toSample / SAMPLE_RATE,
+                chunkTranscript, longFormContext);
+        DictationTrace.span(traceId, DictationTrace.CAT_PIPELINE, "stitch chunk", stitching);
+        Log.d(TAG, "Chunk " + fromSample + ".." + toSample + (last ? " (last): " : ": ") + assembler);
+        if (!last) {
+            if (grew) {
+                String draft = assembler.getText();
+                mainHandler.post(() -> resultText.setText(draft));
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        String result = assembler.finish(longFormContext);
+        releaseLlm();
+        String raw = assembler.getRawText();
+        if (SettingsSnapshot.get(this).isTranscriptJournalEnabled()) {
+            int words = assembler.getStitcher().getWordCount();
+            appendJournal(this, TranscriptJournal.Record.builder()
+                    .timestamp(System.currentTimeMillis())
+                    .rawText(raw)
+                    .wordTimings(assembler.getStitcher().getWords(0, words),
+                            assembler.getStitcher().getStartTimes(0, words),
+                            assembler.getStitcher().getEndTimes(0, words))
+                    .variant(longFormVariant)
+                    .processedText(result)
+                    .totalNanos(System.nanoTime() - start)
+                    .build());
+        }
+        Log.d(TAG, "Long-form output: \"" + result + "\" (finished in "
+                + (System.nanoTime() - start) / 1000000 + "ms after the last chunk)");
+        showResult(result.isEmpty() ? capitalize(raw) : result);
+    }
 
-            transcribedText = processed;
+    private void showResult(String result) {
+        long posted = DictationTrace.now();
+        mainHandler.post(() -> {
+            DictationTrace.span(traceId, DictationTrace.CAT_INJECT, "main thread hand-off", posted);
+            releaseAsr();
+            transcribedText = result;
             Log.d(TAG, "Processed: " + transcribedText);
             resultText.setText(transcribedText);
             statusText.setText("Done!");
@@ -385,54 +529,144 @@ public class RecognizeActivity extends Activity implements DictationController.D
         });
     }
 
-    // Apply personal dictionary replacements
-    private String applyPersonalDictionary(String text) {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String dictStr = prefs.getString("personal_dictionary", "");
+    /**
+     * Post-process a final transcript with the pipeline the settings select
+     * (Groq, offline LLM or rule-based), journaling it if enabled. Shared
+     * with VoiceRecognitionService's headless mode. Runs on the calling
+     * (worker) thread; the transcript is attached if it matches the text,
+     * then cleared. Pipeline stages are traced under traceId (0: untraced).
+     */
+    static String processTranscript(Context appContext, ModelManager modelManager, Transcript transcript,
+            String text, long traceId) {
+        // Pre-parsed settings; rebuilt only when a preference changes
+        SettingsSnapshot settings = SettingsSnapshot.get(appContext);
+        ProcessingContext context = settings.getProcessingContext();
+        boolean timed = !transcript.isEmpty() && transcript.getText().equals(text);
+        if (timed || traceId != 0) {
+            // Shared settings plus this utterance's timings, confidences and trace
+            ProcessingContext.Builder builder = context.toBuilder().traceId(traceId);
+            if (timed) {
+                builder.transcript(transcript);
+                Log.d(TAG, "Word timings: " + transcript);
+            }
+            context = builder.build();
+        }
+        transcript.clear();
+
+        Log.d(TAG, "=== POST-PROCESSING START ===");
+        Log.d(TAG, "Raw input: \"" + text + "\"");
+
+        TranscriptJournal.Record.Builder journalRecord = settings.isTranscriptJournalEnabled()
+                ? TranscriptJournal.Record.builder()
+                        .timestamp(System.currentTimeMillis())
+                        .rawText(text)
+                        .wordTimings(context.getTimedWords(), context.getWordStartTimes(),
+                                context.getWordEndTimes())
+                : null;
+        if (journalRecord != null) {
+            // Per-utterance timer: the pipeline itself is shared
+            context = context.toBuilder().stageTimer(journalRecord).build();
+        }
 
-        if (dictStr.isEmpty())
-            return text;
+        String variant = pipelineVariant(settings);
+        boolean usingLocalLlm = "offline".equals(variant);
+        if (usingLocalLlm) {
+            modelManager.beginUse(ModelManager.Model.LLM);
+        }
+        ProcessingPipeline pipeline = createPipeline(variant, settings, modelManager);
 
-        String result = text;
-        String[] words = dictStr.split(",");
-        for (String word : words) {
-            word = word.trim();
-            if (word.isEmpty())
-                continue;
-
-            if (word.startsWith("@") && word.length() > 1) {
-                // @mention: "at groq" → "@Groq"
-                String withoutAt = word.substring(1);
-                result = result.replaceAll("(?i)\\bat\\s+" +
-                        java.util.regex.Pattern.quote(withoutAt) + "\\b", word);
-            } else {
-                // Normal word replacement
-                result = result.replaceAll("(?i)\\b" +
-                        java.util.regex.Pattern.quote(word) + "\\b", word);
+        String processed;
+        long start = System.nanoTime();
+        try {
+            processed = pipeline.process(text, context);
+            if (usingLocalLlm) {
+                Log.d(TAG, "Offline LLM post-processing applied!");
             }
+        } finally {
+            if (usingLocalLlm) {
+                modelManager.endUse(ModelManager.Model.LLM);
+            }
+        }
+
+        if (journalRecord != null) {
+            journalRecord.variant(variant)
+                    .processedText(processed)
+                    .totalNanos(System.nanoTime() - start);
+            appendJournal(appContext, journalRecord.build());
+        }
+
+        Log.d(TAG, "Pipeline output: \"" + processed + "\"");
+        Log.d(TAG, "LLM gate: " + com.voiceai.app.processing.processors.LLMGate.getStats());
+        Log.d(TAG, "Models: " + modelManager);
+        Log.d(TAG, "ASR queue: " + AsrScheduler.getStats());
+        Log.d(TAG, "=== POST-PROCESSING END ===");
+
+        // If pipeline returns empty, use original text with basic casing
+        if (processed == null || processed.isEmpty()) {
+            processed = capitalize(text);
         }
-        return result;
+        return processed;
     }
 
-    // Called from Rust with audio level (0.0 - 1.0) - RESPONSIVE WAVEFORM
-    private int audioLevelCallCount = 0;
+    private static String capitalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        return text.substring(0, 1).toUpperCase() + text.substring(1);
+    }
 
-    public void onAudioLevel(float level) {
-        mainHandler.post(() -> {
-            audioLevelCallCount++;
-            if (audioLevelCallCount % 50 == 0) {
-                Log.d(TAG, "onAudioLevel: " + level + " (call #" + audioLevelCallCount + ")");
-            }
+    /** "groq", "offline" or "default": the post-processing the settings select */
+    private static String pipelineVariant(SettingsSnapshot settings) {
+        if (settings.hasGroqApiKey()) {
+            return "groq";
+        } else if (settings.isOfflineModelReady()) {
+            return "offline";
+        }
+        return "default";
+    }
 
-            if (waveformView != null) {
-                waveformView.setAudioLevel(level);
-            }
+    /**
+     * Pipeline for a variant. "offline" runs the local LLM; callers hold it
+     * with ModelManager.beginUse while the pipeline is in use.
+     */
+    private static ProcessingPipeline createPipeline(String variant, SettingsSnapshot settings,
+            ModelManager modelManager) {
+        float shadowRate = settings.isLlmShadowEnabled()
+                ? com.voiceai.app.processing.processors.LLMGate.DIAGNOSTIC_SHADOW_SAMPLE_RATE
+                : 0f;
+        switch (variant) {
+            case "groq":
+                Log.d(TAG, "Using LLM pipeline (Wispr Flow-style with Groq API)");
+                return com.voiceai.app.processing.VoiceAIPipeline.createWithLLM(settings.getGroqApiKey(), shadowRate);
+            case "offline":
+                Log.d(TAG, "Using OFFLINE LLM pipeline (local Qwen3 model, "
+                        + modelManager.getState(ModelManager.Model.LLM) + ")");
+                return com.voiceai.app.processing.VoiceAIPipeline.createOffline(modelManager.getLocalLLM(),
+                        shadowRate);
+            default:
+                Log.d(TAG, "Using standard pipeline (no API key, no offline model)");
+                return com.voiceai.app.processing.VoiceAIPipeline.create();
+        }
+    }
 
-            // Feed audio level to DictationController for silence detection
-            if (dictationController != null) {
-                dictationController.updateAudioLevel(level);
-            }
-        });
+    private static void appendJournal(Context appContext, TranscriptJournal.Record record) {
+        TranscriptJournal journal = getJournal(appContext);
+        if (journal != null && !journal.append(record)) {
+            Log.w(TAG, "Transcript journal behind, record dropped (" + journal + ")");
+        }
+    }
+
+    // Called from Rust on the audio thread for every 20ms frame: feeds silence
+    // detection and the level slot the waveform reads each vsync (no posts)
+    public void onAudioFrame(float rms, float zcr) {
+        DictationController controller = dictationController;
+        if (controller != null) {
+            controller.onAudioFrame(rms, zcr);
+        }
+        LongFormSegmenter segmenter = this.segmenter;
+        if (segmenter != null) {
+            segmenter.onAudioFrame(rms, zcr);
+        }
     }
 
     private void returnResult(String text) {
@@ -440,7 +674,7 @@ public class RecognizeActivity extends Activity implements DictationController.D
 
         if (text != null && !text.isEmpty()) {
             // Try accessibility injection FIRST (works reliably with SwiftKey)
-            boolean injected = VoiceTextInjectionService.injectText(this, text);
+            boolean injected = VoiceTextInjectionService.injectText(this, text, traceId);
             Log.d(TAG, "Accessibility injection result: " + injected);
 
             // For HeliBoard: also send via VoiceRecognitionService callback
@@ -473,313 +707,4 @@ public class RecognizeActivity extends Activity implements DictationController.D
         }
         finish();
     }
-
-    // Post-processing with personal dictionary, @mentions, currency, percentages
-    private String postProcess(String text) {
-        String result = text;
-
-        // === @Mentions: "at Groq" → "@Groq" ===
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String dictStr = prefs.getString("personal_dictionary", "");
-        if (!dictStr.isEmpty()) {
-            String[] words = dictStr.split(",");
-            for (String word : words) {
-                word = word.trim();
-                if (word.startsWith("@") && word.length() > 1) {
-                    String withoutAt = word.substring(1);
-                    result = result.replaceAll("(?i)\\bat\\s+" + escapeRegex(withoutAt) + "\\b", word);
-                }
-            }
-        }
-
-        // === Compound numbers: "twenty five" → "25", "one hundred" → "100" ===
-        // Handle teens first
-        result = result.replaceAll("(?i)\\bthirteen\\b", "13");
-        result = result.replaceAll("(?i)\\bfourteen\\b", "14");
-        result = result.replaceAll("(?i)\\bfifteen\\b", "15");
-        result = result.replaceAll("(?i)\\bsixteen\\b", "16");
-        result = result.replaceAll("(?i)\\bseventeen\\b", "17");
-        result = result.replaceAll("(?i)\\beighteen\\b", "18");
-        result = result.replaceAll("(?i)\\bnineteen\\b", "19");
-
-        // Handle compound tens (twenty one → 21)
-        result = result.replaceAll("(?i)\\btwenty\\s*one\\b", "21");
-        result = result.replaceAll("(?i)\\btwenty\\s*two\\b", "22");
-        result = result.replaceAll("(?i)\\btwenty\\s*three\\b", "23");
-        result = result.replaceAll("(?i)\\btwenty\\s*four\\b", "24");
-        result = result.replaceAll("(?i)\\btwenty\\s*five\\b", "25");
-        result = result.replaceAll("(?i)\\btwenty\\s*six\\b", "26");
-        result = result.replaceAll("(?i)\\btwenty\\s*seven\\b", "27");
-        result = result.replaceAll("(?i)\\btwenty\\s*eight\\b", "28");
-        result = result.replaceAll("(?i)\\btwenty\\s*nine\\b", "29");
-        result = result.replaceAll("(?i)\\bthirty\\s*one\\b", "31");
-        result = result.replaceAll("(?i)\\bthirty\\s*two\\b", "32");
-        result = result.replaceAll("(?i)\\bthirty\\s*three\\b", "33");
-        result = result.replaceAll("(?i)\\bthirty\\s*four\\b", "34");
-        result = result.replaceAll("(?i)\\bthirty\\s*five\\b", "35");
-        result = result.replaceAll("(?i)\\bthirty\\s*six\\b", "36");
-        result = result.replaceAll("(?i)\\bthirty\\s*seven\\b", "37");
-        result = result.replaceAll("(?i)\\bthirty\\s*eight\\b", "38");
-        result = result.replaceAll("(?i)\\bthirty\\s*nine\\b", "39");
-        result = result.replaceAll("(?i)\\bforty\\s*one\\b", "41");
-        result = result.replaceAll("(?i)\\bforty\\s*two\\b", "42");
-        result = result.replaceAll("(?i)\\bforty\\s*three\\b", "43");
-        result = result.replaceAll("(?i)\\bforty\\s*four\\b", "44");
-        result = result.replaceAll("(?i)\\bforty\\s*five\\b", "45");
-        result = result.replaceAll("(?i)\\bforty\\s*six\\b", "46");
-        result = result.replaceAll("(?i)\\bforty\\s*seven\\b", "47");
-        result = result.replaceAll("(?i)\\bforty\\s*eight\\b", "48");
-        result = result.replaceAll("(?i)\\bforty\\s*nine\\b", "49");
-        result = result.replaceAll("(?i)\\bfifty\\s*one\\b", "51");
-        result = result.replaceAll("(?i)\\bfifty\\s*two\\b", "52");
-        result = result.replaceAll("(?i)\\bfifty\\s*three\\b", "53");
-        result = result.replaceAll("(?i)\\bfifty\\s*four\\b", "54");
-        result = result.replaceAll("(?i)\\bfifty\\s*five\\b", "55");
-        result = result.replaceAll("(?i)\\bfifty\\s*six\\b", "56");
-        result = result.replaceAll("(?i)\\bfifty\\s*seven\\b", "57");
-        result = result.replaceAll("(?i)\\bfifty\\s*eight\\b", "58");
-        result = result.replaceAll("(?i)\\bfifty\\s*nine\\b", "59");
-        result = result.replaceAll("(?i)\\bsixty\\s*one\\b", "61");
-        result = result.replaceAll("(?i)\\bsixty\\s*two\\b", "62");
-        result = result.replaceAll("(?i)\\bsixty\\s*three\\b", "63");
-        result = result.replaceAll("(?i)\\bsixty\\s*four\\b", "64");
-        result = result.replaceAll("(?i)\\bsixty\\s*five\\b", "65");
-        result = result.replaceAll("(?i)\\bsixty\\s*six\\b", "66");
-        result = result.replaceAll("(?i)\\bsixty\\s*seven\\b", "67");
-        result = result.replaceAll("(?i)\\bsixty\\s*eight\\b", "68");
-        result = result.replaceAll("(?i)\\bsixty\\s*nine\\b", "69");
-        result = result.replaceAll("(?i)\\bseventy\\s*one\\b", "71");
-        result = result.replaceAll("(?i)\\bseventy\\s*two\\b", "72");
-        result = result.replaceAll("(?i)\\bseventy\\s*three\\b", "73");
-        result = result.replaceAll("(?i)\\bseventy\\s*four\\b", "74");
-        result = result.replaceAll("(?i)\\bseventy\\s*five\\b", "75");
-        result = result.replaceAll("(?i)\\bseventy\\s*six\\b", "76");
-        result = result.replaceAll("(?i)\\bseventy\\s*seven\\b", "77");
-        result = result.replaceAll("(?i)\\bseventy\\s*eight\\b", "78");
-        result = result.replaceAll("(?i)\\bseventy\\s*nine\\b", "79");
-        result = result.replaceAll("(?i)\\beighty\\s*one\\b", "81");
-        result = result.replaceAll("(?i)\\beighty\\s*two\\b", "82");
-        result = result.replaceAll("(?i)\\beighty\\s*three\\b", "83");
-        result = result.replaceAll("(?i)\\beighty\\s*four\\b", "84");
-        result = result.replaceAll("(?i)\\beighty\\s*five\\b", "85");
-        result = result.replaceAll("(?i)\\beighty\\s*six\\b", "86");
-        result = result.replaceAll("(?i)\\beighty\\s*seven\\b", "87");
-        result = result.replaceAll("(?i)\\beighty\\s*eight\\b", "88");
-        result = result.replaceAll("(?i)\\beighty\\s*nine\\b", "89");
-        result = result.replaceAll("(?i)\\bninety\\s*one\\b", "91");
-        result = result.replaceAll("(?i)\\bninety\\s*two\\b", "92");
-        result = result.replaceAll("(?i)\\bninety\\s*three\\b", "93");
-        result = result.replaceAll("(?i)\\bninety\\s*four\\b", "94");
-        result = result.replaceAll("(?i)\\bninety\\s*five\\b", "95");
-        result = result.replaceAll("(?i)\\bninety\\s*six\\b", "96");
-        result = result.replaceAll("(?i)\\bninety\\s*seven\\b", "97");
-        result = result.replaceAll("(?i)\\bninety\\s*eight\\b", "98");
-        result = result.replaceAll("(?i)\\bninety\\s*nine\\b", "99");
-
-        // Simple numbers (after compound processing)
-        result = result.replaceAll("(?i)\\bzero\\b", "0");
-        result = result.replaceAll("(?i)\\bone\\b", "1");
-        result = result.replaceAll("(?i)\\btwo\\b", "2");
-        result = result.replaceAll("(?i)\\bthree\\b", "3");
-        result = result.replaceAll("(?i)\\bfour\\b", "4");
-        result = result.replaceAll("(?i)\\bfive\\b", "5");
-        result = result.replaceAll("(?i)\\bsix\\b", "6");
-        result = result.replaceAll("(?i)\\bseven\\b", "7");
-        result = result.replaceAll("(?i)\\beight\\b", "8");
-        result = result.replaceAll("(?i)\\bnine\\b", "9");
-        result = result.replaceAll("(?i)\\bten\\b", "10");
-        result = result.replaceAll("(?i)\\beleven\\b", "11");
-        result = result.replaceAll("(?i)\\btwelve\\b", "12");
-        result = result.replaceAll("(?i)\\btwenty\\b", "20");
-        result = result.replaceAll("(?i)\\bthirty\\b", "30");
-        result = result.replaceAll("(?i)\\bforty\\b", "40");
-        result = result.replaceAll("(?i)\\bfifty\\b", "50");
-        result = result.replaceAll("(?i)\\bsixty\\b", "60");
-        result = result.replaceAll("(?i)\\bseventy\\b", "70");
-        result = result.replaceAll("(?i)\\beighty\\b", "80");
-        result = result.replaceAll("(?i)\\bninety\\b", "90");
-        result = result.replaceAll("(?i)\\bhundred\\b", "100");
-
-        // === Percentages: "25 percent" → "25%" ===
-        result = result.replaceAll("(?i)(\\d+)\\s*percent", "$1%");
-        result = result.replaceAll("(?i)(\\d+)\\s+%", "$1%");
-
-        // === Currency (order matters - most specific first) ===
-        // "100 million US dollars" → "$100,000,000 USD"
-        result = result.replaceAll("(?i)(\\d+)\\s*million\\s+US\\s*dollars?", "\\$$1,000,000 USD");
-        result = result.replaceAll("(?i)(\\d+)\\s*million\\s*dollars?", "\\$$1,000,000");
-        // "100 thousand US dollars" → "$100,000 USD"
-        result = result.replaceAll("(?i)(\\d+)\\s*thousand\\s+US\\s*dollars?", "\\$$1,000 USD");
-        result = result.replaceAll("(?i)(\\d+)\\s*thousand\\s*dollars?", "\\$$1,000");
-        // "100 US dollars" → "$100 USD"
-        result = result.replaceAll("(?i)(\\d+)\\s+US\\s*dollars?", "\\$$1 USD");
-        result = result.replaceAll("(?i)(\\d+)\\s+USD", "\\$$1 USD");
-        // "100 dollars" → "$100"
-        result = result.replaceAll("(?i)(\\d+)\\s*dollars?", "\\$$1");
-        // "50 cents" → "50¢"
-        result = result.replaceAll("(?i)(\\d+)\\s*cents?", "$1¢");
-
-        // === Common AI/Tech names ===
-        result = result.replaceAll("(?i)\\bgrok\\b", "Groq");
-        result = result.replaceAll("(?i)\\bgemini\\b", "Gemini");
-        result = result.replaceAll("(?i)\\bchat\\s*gpt\\b", "ChatGPT");
-        result = result.replaceAll("(?i)\\bopen\\s*ai\\b", "OpenAI");
-        result = result.replaceAll("(?i)\\bclaude\\b", "Claude");
-        result = result.replaceAll("(?i)\\banthropic\\b", "Anthropic");
-        result = result.replaceAll("(?i)\\bllama\\b", "Llama");
-        result = result.replaceAll("(?i)\\bmistral\\b", "Mistral");
-
-        // === Personal dictionary (non-@ words) ===
-        if (!dictStr.isEmpty()) {
-            String[] words = dictStr.split(",");
-            for (String word : words) {
-                word = word.trim();
-                if (!word.isEmpty() && !word.startsWith("@")) {
-                    // Use Pattern.quote for safe regex escaping
-                    String escaped = java.util.regex.Pattern.quote(word.toLowerCase());
-                    result = result.replaceAll("(?i)\\b" + escaped + "\\b", word);
-                }
-            }
-        }
-
-        return result;
-    }
-
-    // Escape special regex characters (using Pattern.quote is safer)
-    private String escapeRegex(String str) {
-        return java.util.regex.Pattern.quote(str);
-    }
-
-    // Sound Wave View - Responsive to actual audio levels
-    private static class SoundWaveView extends View {
-        private Paint wavePaint;
-        private Path wavePath;
-        private float[] waveAmplitudes = new float[32];
-        private float audioLevel = 0.1f;
-        private Handler handler = new Handler(Looper.getMainLooper());
-        private boolean isAnimating = false;
-        private Runnable animationRunnable;
-        private int animOffset = 0;
-
-        public SoundWaveView(Context context) {
-            super(context);
-            init();
-        }
-
-        public SoundWaveView(Context context, AttributeSet attrs) {
-            super(context, attrs);
-            init();
-        }
-
-        private void init() {
-            wavePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            wavePaint.setStyle(Paint.Style.STROKE);
-            wavePaint.setStrokeWidth(3f);
-            wavePaint.setStrokeCap(Paint.Cap.ROUND);
-            wavePaint.setColor(0xFFFFFFFF); // White wave
-
-            wavePath = new Path();
-
-            for (int i = 0; i < waveAmplitudes.length; i++) {
-                waveAmplitudes[i] = 0.1f;
-            }
-
-            animationRunnable = () -> {
-                if (isAnimating) {
-                    updateWave();
-                    invalidate();
-                    handler.postDelayed(animationRunnable, 40); // 25fps
-                }
-            };
-        }
-
-        public void setAudioLevel(float level) {
-            this.audioLevel = Math.max(0.05f, Math.min(1.0f, level));
-        }
-
-        public void startAnimation() {
-            isAnimating = true;
-            handler.post(animationRunnable);
-        }
-
-        public void stopAnimation() {
-            isAnimating = false;
-            handler.removeCallbacks(animationRunnable);
-        }
-
-        private void updateWave() {
-            animOffset++;
-            // Shift amplitudes and add new value based on audio level
-            for (int i = waveAmplitudes.length - 1; i > 0; i--) {
-                waveAmplitudes[i] = waveAmplitudes[i - 1];
-            }
-            // New amplitude based on audio level with some variation
-            float variation = (float) (Math.sin(animOffset * 0.3) * 0.1);
-            waveAmplitudes[0] = audioLevel + variation;
-        }
-
-        @Override
-        protected void onDraw(Canvas canvas) {
-            super.onDraw(canvas);
-
-            int width = getWidth();
-            int height = getHeight();
-            int centerY = height / 2;
-
-            // Create gradient for the wave
-            LinearGradient gradient = new LinearGradient(
-                    0, 0, width, 0,
-                    new int[] { 0xFFFFFFFF, 0xFFCCCCCC, 0xFFFFFFFF },
-                    null, Shader.TileMode.CLAMP);
-            wavePaint.setShader(gradient);
-
-            wavePath.reset();
-
-            float segmentWidth = (float) width / (waveAmplitudes.length - 1);
-            float maxAmplitude = height * 0.4f;
-
-            wavePath.moveTo(0, centerY);
-
-            for (int i = 0; i < waveAmplitudes.length; i++) {
-                float x = i * segmentWidth;
-                float amp = waveAmplitudes[i] * maxAmplitude;
-
-                // Create smooth sine-like wave
-                float phase = (float) Math.sin((i + animOffset * 0.5) * 0.5);
-                float y = centerY + phase * amp;
-
-                if (i == 0) {
-                    wavePath.moveTo(x, y);
-                } else {
-                    // Smooth curve
-                    float prevX = (i - 1) * segmentWidth;
-                    float ctrlX = (prevX + x) / 2;
-                    wavePath.quadTo(ctrlX, y, x, y);
-                }
-            }
-
-            canvas.drawPath(wavePath, wavePaint);
-
-            // Draw mirrored wave for symmetry
-            wavePath.reset();
-            for (int i = 0; i < waveAmplitudes.length; i++) {
-                float x = i * segmentWidth;
-                float amp = waveAmplitudes[i] * maxAmplitude;
-                float phase = (float) Math.sin((i + animOffset * 0.5) * 0.5);
-                float y = centerY - phase * amp;
-
-                if (i == 0) {
-                    wavePath.moveTo(x, y);
-                } else {
-                    float prevX = (i - 1) * segmentWidth;
-                    float ctrlX = (prevX + x) / 2;
-                    wavePath.quadTo(ctrlX, y, x, y);
-                }
-            }
-
-            wavePaint.setAlpha(150);
-            canvas.drawPath(wavePath, wavePaint);
-            wavePaint.setAlpha(255);
-        }
-    }
 }
@@ -12,20 +12,19 @@ import android.widget.ProgressBar;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
-import android.util.AttributeSet;
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.Shader;
-import android.graphics.LinearGradient;
 import android.graphics.drawable.GradientDrawable;
 import android.view.Gravity;
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
-import android.view.animation.LinearInterpolator;
 
+/**
+ * Voice keyboard: records while shown, commits the transcript and switches
+ * back to the previous keyboard.
+ *
+ * With "Show text while speaking" on, the native side sends partial
+ * transcripts during recording; they are shown as composing text (one
+ * batch edit per update) and replaced by the final transcript's
+ * commitText, so long dictations appear as they are spoken.
+ */
 public class RustInputMethodService extends InputMethodService {
 
     private static final String TAG = "VoiceAI";
@@ -43,17 +42,55 @@ public class RustInputMethodService extends InputMethodService {
     private ProgressBar progressBar;
     private SoundWaveView waveformView; // Changed to responsive waveform
     private Handler mainHandler;
-    private boolean isRecording = false;
+    private volatile boolean isRecording = false;
     private boolean autoStarted = false;
     private boolean modelReady = false;
+    private boolean windowShown = false;
     private String lastStatus = "Initializing...";
 
+    // Streaming partials (main thread): on while recording, off once a stop
+    // is requested so late partials can't overwrite the final text
+    private boolean streaming = false;
+    private String composingText;
+
+    // Lazy ASR lifecycle; the engine loads when the window is shown
+    private ModelManager modelManager;
+    private boolean holdingAsr = false;
+    private final ModelManager.Listener modelListener = (model, state) -> {
+        if (model != ModelManager.Model.ASR) {
+            return;
+        }
+        switch (state) {
+            case LOADING:
+                onStatusUpdate("Loading model...");
+                break;
+            case LOADED:
+                if (windowShown) {
+                    onStatusUpdate("Ready");
+                } else {
+                    modelReady = true;
+                }
+                break;
+            case FAILED:
+                onStatusUpdate("Error: model failed to load");
+                break;
+            case UNLOADED:
+                modelReady = false;
+                lastStatus = "Initializing...";
+                break;
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
         mainHandler = new Handler(Looper.getMainLooper());
         instance = this;
         Log.d(TAG, "VoiceAI Service onCreate");
+        // Open the dictionary in the background before the first dictation
+        SettingsSnapshot.preload(this);
+        modelManager = ModelManager.getInstance(this);
+        modelManager.addListener(modelListener);
         try {
             initNative(this);
         } catch (Exception e) {
@@ -66,6 +103,8 @@ public class RustInputMethodService extends InputMethodService {
         super.onDestroy();
         instance = null;
         stopWaveformAnimation();
+        releaseAsr();
+        modelManager.removeListener(modelListener);
         cleanupNative();
     }
 
@@ -100,6 +139,16 @@ public class RustInputMethodService extends InputMethodService {
         return instance.getCurrentInputConnection() != null;
     }
 
+    /**
+     * Package of the app the IME is currently typing into, or null.
+     */
+    public static String getTargetPackage() {
+        if (instance == null)
+            return null;
+        android.view.inputmethod.EditorInfo info = instance.getCurrentInputEditorInfo();
+        return info != null ? info.packageName : null;
+    }
+
     @Override
     public View onCreateInputView() {
         Log.d(TAG, "onCreateInputView");
@@ -123,7 +172,7 @@ public class RustInputMethodService extends InputMethodService {
             layout.setClickable(true);
             layout.setOnClickListener(v -> {
                 if (isRecording) {
-                    stopRecording();
+                    finishRecording();
                     stopWaveformAnimation();
                     isRecording = false;
                     if (statusView != null)
@@ -147,6 +196,7 @@ public class RustInputMethodService extends InputMethodService {
             waveParams.gravity = Gravity.CENTER;
             waveParams.setMargins(0, 8, 0, 16);
             waveformView.setLayoutParams(waveParams);
+            waveformView.setLevelSource(audioLevels);
             layout.addView(waveformView);
 
             // Progress Bar (during model loading only)
@@ -182,6 +232,13 @@ public class RustInputMethodService extends InputMethodService {
     public void onWindowShown() {
         super.onWindowShown();
         Log.d(TAG, "onWindowShown - auto-starting recording if ready");
+        windowShown = true;
+
+        // Predicted use: load the engine now (no-op if already loaded)
+        modelReady = modelManager.isLoaded(ModelManager.Model.ASR);
+        if (!modelReady) {
+            modelManager.ensureLoaded(ModelManager.Model.ASR);
+        }
 
         // Auto-start recording when IME window shows (FUTO-like behavior)
         if (modelReady && !autoStarted && !isRecording) {
@@ -190,7 +247,7 @@ public class RustInputMethodService extends InputMethodService {
                     Log.d(TAG, "Auto-starting recording");
                     autoStarted = true;
                     isRecording = true;
-                    startRecording();
+                    beginRecording();
                     startWaveformAnimation();
                     if (statusView != null)
                         statusView.setText("Listening...");
@@ -199,12 +256,40 @@ public class RustInputMethodService extends InputMethodService {
         }
     }
 
+    @Override
+    public void onFinishInput() {
+        super.onFinishInput();
+        composingText = null; // The editor finishes its own composing region
+    }
+
     @Override
     public void onWindowHidden() {
         super.onWindowHidden();
+        windowShown = false;
         autoStarted = false;
     }
 
+    // Native start, with partial transcripts if enabled
+    private void beginRecording() {
+        streaming = SettingsSnapshot.get(this).isStreamingTextEnabled();
+        composingText = null;
+        setStreamingPartials(streaming);
+        startRecording();
+    }
+
+    // Every stop goes through here: the final transcript owns the text now
+    private void finishRecording() {
+        streaming = false;
+        stopRecording();
+    }
+
+    private void releaseAsr() {
+        if (holdingAsr) {
+            holdingAsr = false;
+            modelManager.endUse(ModelManager.Model.ASR);
+        }
+    }
+
     private void startWaveformAnimation() {
         if (waveformView != null) {
             waveformView.startAnimation();
@@ -231,6 +316,8 @@ public class RustInputMethodService extends InputMethodService {
 
     private native void stopRecording();
 
+    private native void setStreamingPartials(boolean enabled);
+
     // Called from Rust
     public void onStatusUpdate(String status) {
         mainHandler.post(() -> {
@@ -238,36 +325,51 @@ public class RustInputMethodService extends InputMethodService {
             lastStatus = status;
             updateUiState();
 
-            // Handle 30s Limit
+            // Hold the engine from recording until the text is committed so it
+            // is not unloaded mid-dictation
+            if (status.contains("Listening") && !holdingAsr) {
+                holdingAsr = true;
+                modelManager.beginUse(ModelManager.Model.ASR);
+            } else if (status.startsWith("Error")) {
+                releaseAsr();
+                streaming = false;
+                // No final transcript is coming; keep the draft as typed
+                finishComposing();
+            }
+
             if (status.contains("Listening") && isRecording) {
-                SharedPreferences prefs = getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE);
-                if (prefs.getBoolean(SettingsActivity.PREF_TIME_LIMIT, true)) {
+                SettingsSnapshot settings = SettingsSnapshot.get(this);
+
+                // Reset the clock before the audio thread may act on it
+                lastAudioTime = System.currentTimeMillis();
+                silenceStopPosted = false;
+                autoSilenceEnabled = settings.isAutoStopOnSilence();
+
+                // Handle 30s Limit
+                if (settings.isTimeLimitEnabled()) {
                     mainHandler.removeCallbacks(stopRunnable);
                     mainHandler.postDelayed(stopRunnable, 30000);
                     Log.d(TAG, "30s Limit Enabled: Stopping in 30s");
                 }
-                lastAudioTime = System.currentTimeMillis();
             }
         });
     }
 
-    // Called from Rust - audio level for responsive waveform
+    // Called from Rust on the audio thread - the waveform reads the level slot
+    // each vsync, so nothing is posted unless silence stops the recording
     public void onAudioLevel(float level) {
-        mainHandler.post(() -> {
-            if (waveformView != null) {
-                waveformView.setAudioLevel(level);
+        audioLevels.publish(level);
+
+        // Handle Auto-Silence
+        if (isRecording && autoSilenceEnabled) {
+            long now = System.currentTimeMillis();
+            if (level > 0.1f) { // Arbitrary threshold, adjust as needed
+                lastAudioTime = now;
+            } else if (now - lastAudioTime > SILENCE_THRESHOLD_MS && !silenceStopPosted) {
+                silenceStopPosted = true;
+                mainHandler.post(silenceStopRunnable);
             }
-
-            // Handle Auto-Silence
-            if (isRecording && SettingsActivity.isAutoSilenceEnabled(this)) {
-                if (level > 0.1f) { // Arbitrary threshold, adjust as needed
-                    lastAudioTime = System.currentTimeMillis();
-                } else if (System.currentTimeMillis() - lastAudioTime > SILENCE_THRESHOLD_MS) {
-                    Log.d(TAG, "Silence detected for 2s. Stopping.");
-                    stopRecording();
-                }
-            }
-        });
+        }
     }
 
     private void updateUiState() {
@@ -285,7 +387,7 @@ public class RustInputMethodService extends InputMethodService {
                         Log.d(TAG, "Model ready - auto-starting recording");
                         autoStarted = true;
                         isRecording = true;
-                        startRecording();
+                        beginRecording();
                         startWaveformAnimation();
                         if (statusView != null)
                             statusView.setText("Listening...");
@@ -299,27 +401,74 @@ public class RustInputMethodService extends InputMethodService {
         }
     }
 
-    private Runnable stopRunnable = this::stopRecording;
-    private long lastAudioTime = 0;
+    private Runnable stopRunnable = this::finishRecording;
+    private volatile long lastAudioTime = 0;
+
+    // Audio-thread state for auto-silence (preference read when recording starts)
+    private final AudioLevelChannel audioLevels = new AudioLevelChannel();
+    private volatile boolean autoSilenceEnabled;
+    private volatile boolean silenceStopPosted;
+    private final Runnable silenceStopRunnable = () -> {
+        if (isRecording) {
+            Log.d(TAG, "Silence detected for 2s. Stopping.");
+            finishRecording();
+        }
+    };
     private static final long SILENCE_THRESHOLD_MS = 2000;
 
+    // Called from Rust on the partial worker while recording - the draft so
+    // far, replacing the previous one
+    public void onPartialTranscript(String text) {
+        mainHandler.post(() -> {
+            if (!streaming || text.equals(composingText)) {
+                return;
+            }
+            android.view.inputmethod.InputConnection ic = getCurrentInputConnection();
+            if (ic == null) {
+                return;
+            }
+            ic.beginBatchEdit();
+            ic.setComposingText(text, 1);
+            ic.endBatchEdit();
+            composingText = text;
+        });
+    }
+
+    private void finishComposing() {
+        if (composingText == null) {
+            return;
+        }
+        android.view.inputmethod.InputConnection ic = getCurrentInputConnection();
+        if (ic != null) {
+            ic.finishComposingText();
+        }
+        composingText = null;
+    }
+
     // Called from Rust - this is where we'd add post-processing
     // Called from Rust - text is already post-processed by Qwen/Rust
     public void onTextTranscribed(String text) {
         mainHandler.post(() -> {
             Log.d(TAG, "onTextTranscribed: Committing text: '" + text + "'");
             // Text effectively comes from Qwen (or regex fallback) in Rust now.
-            // No need for Java-side postProcess() here.
+            // No Java-side post-processing here.
+            streaming = false;
 
             android.view.inputmethod.InputConnection ic = getCurrentInputConnection();
             if (ic != null) {
+                // Replaces the live draft (composing region), if any, in one edit
+                ic.beginBatchEdit();
                 boolean committed = ic.commitText(text + " ", 1);
-                Log.d(TAG, "commitText result: " + committed);
+                ic.endBatchEdit();
+                Log.d(TAG, "commitText result: " + committed
+                        + (composingText != null ? " (replaced draft)" : ""));
             } else {
                 Log.e(TAG, "InputConnection is NULL! Cannot commit text.");
             }
+            composingText = null;
             stopWaveformAnimation();
             isRecording = false;
+            releaseAsr();
             if (statusView != null)
                 statusView.setText("Done!");
 
@@ -346,183 +495,4 @@ public class RustInputMethodService extends InputMethodService {
             Log.e(TAG, "Error switching to previous keyboard", e);
         }
     }
-
-    // Post-processing for custom words, dictionary, and numbers
-    private String postProcess(String text) {
-        String result = text;
-
-        // Apply personal dictionary corrections first
-        // Dictionary words like "@grok" will replace "at grok"
-        String[] dictWords = SettingsActivity.getDictionaryWords(this);
-        for (String word : dictWords) {
-            if (word.isEmpty())
-                continue;
-
-            // Handle @-prefixed words (e.g., "@grok" matches "at grok")
-            if (word.startsWith("@")) {
-                String base = word.substring(1).toLowerCase();
-                result = result.replaceAll("(?i)\\bat\\s+" + base + "\\b", word);
-            }
-
-            // Case-insensitive word replacement for exact matches
-            result = result.replaceAll("(?i)\\b" + java.util.regex.Pattern.quote(word.toLowerCase()) + "\\b", word);
-        }
-
-        // Convert number words to digits
-        result = result.replaceAll("(?i)\\bzero\\b", "0");
-        result = result.replaceAll("(?i)\\bone\\b", "1");
-        result = result.replaceAll("(?i)\\btwo\\b", "2");
-        result = result.replaceAll("(?i)\\bthree\\b", "3");
-        result = result.replaceAll("(?i)\\bfour\\b", "4");
-        result = result.replaceAll("(?i)\\bfive\\b", "5");
-        result = result.replaceAll("(?i)\\bsix\\b", "6");
-        result = result.replaceAll("(?i)\\bseven\\b", "7");
-        result = result.replaceAll("(?i)\\beight\\b", "8");
-        result = result.replaceAll("(?i)\\bnine\\b", "9");
-        result = result.replaceAll("(?i)\\bten\\b", "10");
-
-        // Percentage formatting: "10 percent" -> "10%"
-        result = result.replaceAll("(?i)(\\d+)\\s*percent", "$1%");
-
-        // Currency formatting: "30 dollars" -> "$30"
-        result = result.replaceAll("(?i)(\\d+)\\s*dollars?", "\\$$1");
-        result = result.replaceAll("(?i)(\\d+)\\s*usd", "\\$$1 USD");
-
-        // Common transcription corrections
-        result = result.replaceAll("(?i)\\bgrok\\b", "Groq");
-        result = result.replaceAll("(?i)\\bgemni\\b", "Gemini");
-        result = result.replaceAll("(?i)claude ai", "Claude AI");
-        result = result.replaceAll("(?i)chat gpt", "ChatGPT");
-        result = result.replaceAll("(?i)open ai", "OpenAI");
-
-        return result;
-    }
-
-    // Sound Wave View - Responsive to actual audio levels (same as
-    // RecognizeActivity)
-    private static class SoundWaveView extends View {
-        private Paint wavePaint;
-        private Path wavePath;
-        private float[] waveAmplitudes = new float[32];
-        private float audioLevel = 0.1f;
-        private Handler handler = new Handler(Looper.getMainLooper());
-        private boolean isAnimating = false;
-        private Runnable animationRunnable;
-        private int animOffset = 0;
-
-        public SoundWaveView(Context context) {
-            super(context);
-            init();
-        }
-
-        public SoundWaveView(Context context, AttributeSet attrs) {
-            super(context, attrs);
-            init();
-        }
-
-        private void init() {
-            wavePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            wavePaint.setStyle(Paint.Style.STROKE);
-            wavePaint.setStrokeWidth(3f);
-            wavePaint.setStrokeCap(Paint.Cap.ROUND);
-            wavePaint.setColor(0xFFFFFFFF);
-
-            wavePath = new Path();
-
-            for (int i = 0; i < waveAmplitudes.length; i++) {
-                waveAmplitudes[i] = 0.1f;
-            }
-
-            animationRunnable = () -> {
-                if (isAnimating) {
-                    updateWave();
-                    invalidate();
-                    handler.postDelayed(animationRunnable, 40); // 25fps
-                }
-            };
-        }
-
-        public void setAudioLevel(float level) {
-            this.audioLevel = Math.max(0.05f, Math.min(1.0f, level));
-        }
-
-        public void startAnimation() {
-            isAnimating = true;
-            handler.post(animationRunnable);
-        }
-
-        public void stopAnimation() {
-            isAnimating = false;
-            handler.removeCallbacks(animationRunnable);
-        }
-
-        private void updateWave() {
-            animOffset++;
-            for (int i = waveAmplitudes.length - 1; i > 0; i--) {
-                waveAmplitudes[i] = waveAmplitudes[i - 1];
-            }
-            float variation = (float) (Math.sin(animOffset * 0.3) * 0.1);
-            waveAmplitudes[0] = audioLevel + variation;
-        }
-
-        @Override
-        protected void onDraw(Canvas canvas) {
-            super.onDraw(canvas);
-
-            int width = getWidth();
-            int height = getHeight();
-            int centerY = height / 2;
-
-            LinearGradient gradient = new LinearGradient(
-                    0, 0, width, 0,
-                    new int[] { 0xFFFFFFFF, 0xFFCCCCCC, 0xFFFFFFFF },
-                    null, Shader.TileMode.CLAMP);
-            wavePaint.setShader(gradient);
-
-            wavePath.reset();
-
-            float segmentWidth = (float) width / (waveAmplitudes.length - 1);
-            float maxAmplitude = height * 0.4f;
-
-            wavePath.moveTo(0, centerY);
-
-            for (int i = 0; i < waveAmplitudes.length; i++) {
-                float x = i * segmentWidth;
-                float amp = waveAmplitudes[i] * maxAmplitude;
-                float phase = (float) Math.sin((i + animOffset * 0.5) * 0.5);
-                float y = centerY + phase * amp;
-
-                if (i == 0) {
-                    wavePath.moveTo(x, y);
-                } else {
-                    float prevX = (i - 1) * segmentWidth;
-                    float ctrlX = (prevX + x) / 2;
-                    wavePath.quadTo(ctrlX, y, x, y);
-                }
-            }
-
-            canvas.drawPath(wavePath, wavePaint);
-
-            // Mirrored wave for symmetry
-            wavePath.reset();
-            for (int i = 0; i < waveAmplitudes.length; i++) {
-                float x = i * segmentWidth;
-                float amp = waveAmplitudes[i] * maxAmplitude;
-                float phase = (float) Math.sin((i + animOffset * 0.5) * 0.5);
-                float y = centerY - phase * amp;
-
-                if (i == 0) {
-                    wavePath.moveTo(x, y);
-                } else {
-                    float prevX = (i - 1) * segmentWidth;
-                    float ctrlX = (prevX + x) / 2;
-                    wavePath.quadTo(ctrlX, y, x, y);
-                }
-            }
-
-            wavePaint.setAlpha(150);
-            canvas.drawPath(wavePath, wavePaint);
-            wavePaint.setAlpha(255);
-        }
-    }
 }
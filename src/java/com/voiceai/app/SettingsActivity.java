@@ -29,10 +29,30 @@ public class SettingsActivity extends Activity {
         public static final String PREFS_NAME = "VoiceAIPrefs";
         public static final String PREF_TIME_LIMIT = "transcription_time_limit";
         public static final String PREF_AUTO_SILENCE = "auto_stop_on_silence";
+        public static final String PREF_STREAMING_TEXT = "streaming_text_enabled";
+        public static final String PREF_HEADLESS_RECOGNITION = "headless_recognition_enabled";
+        public static final String PREF_LONG_FORM = "long_form_dictation_enabled";
+        // Legacy comma-separated dictionary, migrated into DictionaryStore
         public static final String PREF_PERSONAL_DICT = "personal_dictionary";
+        public static final String PREF_GROQ_API_KEY = "groq_api_key";
+        public static final String PREF_OFFLINE_LLM = "offline_llm_enabled";
+        public static final String PREF_TRANSCRIPT_JOURNAL = "transcript_journal_enabled";
+        public static final String PREF_LLM_SHADOW = "llm_gate_shadow_enabled";
+        private static final String TRACE_DIR = "traces";
+        public static final String OFFLINE_MODEL_FILE = "Qwen3-0.6B-UD-Q4_K_XL.gguf";
+        static final String OFFLINE_MODEL_URL = "https://huggingface.co/unsloth/Qwen3-0.6B-GGUF/resolve/main/"
+                        + OFFLINE_MODEL_FILE;
+
+        // Larger (imported) dictionaries are not shown in the text field
+        private static final int MAX_EDITABLE_DICT_WORDS = 500;
+        private static final long DICT_SAVE_DELAY_MS = 600;
 
         private SharedPreferences prefs;
         private EditText dictInput;
+        private boolean dictDirty;
+        // Set once the store has been opened off the main thread
+        private boolean dictLoaded;
+        private final Runnable saveDictionaryRunnable = this::saveDictionary;
 
         @Override
         protected void onCreate(Bundle savedInstanceState) {
@@ -41,6 +61,24 @@ public class SettingsActivity extends Activity {
                 createUI();
         }
 
+        @Override
+        protected void onPause() {
+                super.onPause();
+                if (dictInput != null) {
+                        dictInput.removeCallbacks(saveDictionaryRunnable);
+                }
+                saveDictionary();
+        }
+
+        private void saveDictionary() {
+                if (!dictDirty) {
+                        return;
+                }
+                dictDirty = false;
+                DictionaryStore.getInstance(this)
+                                .replaceWords(java.util.Arrays.asList(dictInput.getText().toString().split(",")));
+        }
+
         private void createUI() {
                 ScrollView scroll = new ScrollView(this);
                 // Clean white background like shadcn/GitHub
@@ -109,6 +147,41 @@ public class SettingsActivity extends Activity {
                                 "Stop when silence detected (~2s)",
                                 PREF_AUTO_SILENCE,
                                 true));
+                recordingCard.addView(createDivider());
+                recordingCard.addView(createToggleTile(
+                                "Long-Form Dictation",
+                                "No time limit; transcribes at each pause while you talk",
+                                PREF_LONG_FORM,
+                                false));
+                recordingCard.addView(createDivider());
+                recordingCard.addView(createToggleTile(
+                                "Show Text While Speaking",
+                                "Keyboard types a live draft, corrected when you stop",
+                                PREF_STREAMING_TEXT,
+                                true));
+                recordingCard.addView(createDivider());
+                recordingCard.addView(createToggleTile(
+                                "Keyboard Mic Without Overlay",
+                                "Keyboards get text straight from the background service",
+                                PREF_HEADLESS_RECOGNITION,
+                                true));
+                recordingCard.addView(createDivider());
+                recordingCard.addView(createActionTile(
+                                "Live Captions",
+                                "Caption speech around you in a notification",
+                                () -> {
+                                        String message;
+                                        if (LiveSubtitleService.isRunning()) {
+                                                LiveSubtitleService.stop(this);
+                                                message = "Live captions stopped";
+                                        } else if (LiveSubtitleService.start(this)) {
+                                                message = "Live captions started";
+                                        } else {
+                                                message = "Allow microphone access first";
+                                        }
+                                        android.widget.Toast.makeText(SettingsActivity.this, message,
+                                                        android.widget.Toast.LENGTH_SHORT).show();
+                                }));
                 root.addView(recordingCard);
 
                 // AI Settings Section
@@ -145,7 +218,7 @@ public class SettingsActivity extends Activity {
                 apiKeyInput.setSingleLine(true);
                 apiKeyInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
                 apiKeyInput.setBackground(null);
-                apiKeyInput.setText(prefs.getString("groq_api_key", ""));
+                apiKeyInput.setText(prefs.getString(PREF_GROQ_API_KEY, ""));
 
                 apiKeyInput.addTextChangedListener(new android.text.TextWatcher() {
                         public void beforeTextChanged(CharSequence s, int start, int count, int after) {
@@ -155,7 +228,7 @@ public class SettingsActivity extends Activity {
                         }
 
                         public void afterTextChanged(android.text.Editable s) {
-                                prefs.edit().putString("groq_api_key", s.toString()).apply();
+                                prefs.edit().putString(PREF_GROQ_API_KEY, s.toString()).apply();
                         }
                 });
                 aiCard.addView(apiKeyInput);
@@ -170,13 +243,14 @@ public class SettingsActivity extends Activity {
                 offlineCard.addView(createToggleTile(
                                 "Use Offline LLM",
                                 "Qwen3 0.6B model for offline post-processing",
-                                "offline_llm_enabled",
+                                PREF_OFFLINE_LLM,
                                 false));
                 offlineCard.addView(createDivider());
 
                 // Model info and download
                 TextView modelInfo = new TextView(this);
-                boolean modelExists = new java.io.File(getFilesDir(), "Qwen3-0.6B-UD-Q4_K_XL.gguf").exists();
+                java.io.File modelFile = new java.io.File(getFilesDir(), OFFLINE_MODEL_FILE);
+                boolean modelExists = modelFile.exists();
                 modelInfo.setText(modelExists ? "✓ Offline model downloaded and ready to use."
                                 : "Download ~400MB model for offline AI formatting. Works without internet.");
                 modelInfo.setTextSize(13);
@@ -186,7 +260,9 @@ public class SettingsActivity extends Activity {
 
                 // Download button
                 TextView downloadBtn = new TextView(this);
-                downloadBtn.setText(modelExists ? "✓ Model Downloaded" : "↓ Download Offline Model (~400MB)");
+                downloadBtn.setText(modelExists ? "✓ Model Downloaded"
+                                : ModelDownloader.hasPartial(modelFile) ? "↓ Resume Download"
+                                                : "↓ Download Offline Model (~400MB)");
                 downloadBtn.setTextSize(14);
                 downloadBtn.setTextColor(modelExists ? 0xFF22C55E : 0xFF2563EB);
                 downloadBtn.setPadding(16, 12, 16, 16);
@@ -195,36 +271,22 @@ public class SettingsActivity extends Activity {
                         downloadBtn.setOnClickListener(v -> {
                                 downloadBtn.setText("⏳ Downloading...");
                                 downloadBtn.setTextColor(0xFF656D76);
+                                downloadBtn.setClickable(false);
 
-                                // Download in background thread
+                                // Resumes an interrupted download; progress arrives a few times a second
                                 new Thread(() -> {
                                         try {
-                                                java.net.URL url = new java.net.URL(
-                                                                "https://huggingface.co/unsloth/Qwen3-0.6B-GGUF/resolve/main/Qwen3-0.6B-UD-Q4_K_XL.gguf");
-                                                java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url
-                                                                .openConnection();
-                                                conn.setRequestProperty("User-Agent", "VoiceAI/1.2.1");
-
-                                                java.io.File outputFile = new java.io.File(getFilesDir(),
-                                                                "Qwen3-0.6B-UD-Q4_K_XL.gguf");
-                                                java.io.InputStream in = conn.getInputStream();
-                                                java.io.FileOutputStream out = new java.io.FileOutputStream(outputFile);
-
-                                                byte[] buffer = new byte[8192];
-                                                int bytesRead;
-                                                long totalBytes = 0;
-                                                long fileSize = conn.getContentLength();
-
-                                                while ((bytesRead = in.read(buffer)) != -1) {
-                                                        out.write(buffer, 0, bytesRead);
-                                                        totalBytes += bytesRead;
-                                                        final int progress = (int) ((totalBytes * 100) / fileSize);
-                                                        runOnUiThread(() -> downloadBtn
-                                                                        .setText("⏳ Downloading... " + progress + "%"));
-                                                }
-
-                                                out.close();
-                                                in.close();
+                                                ModelDownloader.builder(new java.net.URL(OFFLINE_MODEL_URL), modelFile)
+                                                                .build()
+                                                                .download((done, total) -> {
+                                                                        if (total <= 0) {
+                                                                                return;
+                                                                        }
+                                                                        int progress = (int) (done * 100 / total);
+                                                                        runOnUiThread(() -> downloadBtn.setText(
+                                                                                        "⏳ Downloading... " + progress + "%"));
+                                                                });
+                                                SettingsSnapshot.invalidate(SettingsActivity.this);
 
                                                 runOnUiThread(() -> {
                                                         downloadBtn.setText("✓ Model Downloaded");
@@ -238,14 +300,17 @@ public class SettingsActivity extends Activity {
                                                 });
                                         } catch (Exception e) {
                                                 runOnUiThread(() -> {
-                                                        downloadBtn.setText("↓ Retry Download");
+                                                        downloadBtn.setText(ModelDownloader.hasPartial(modelFile)
+                                                                        ? "↓ Resume Download"
+                                                                        : "↓ Retry Download");
                                                         downloadBtn.setTextColor(0xFFEA580C);
+                                                        downloadBtn.setClickable(true);
                                                         android.widget.Toast.makeText(SettingsActivity.this,
                                                                         "Download failed: " + e.getMessage(),
                                                                         android.widget.Toast.LENGTH_LONG).show();
                                                 });
                                         }
-                                }).start();
+                                }, "VoiceAI-ModelDownload").start();
                         });
                 }
                 offlineCard.addView(downloadBtn);
@@ -258,8 +323,7 @@ public class SettingsActivity extends Activity {
                 LinearLayout dictCard = createCard();
 
                 TextView dictHint = new TextView(this);
-                dictHint.setText(
-                                "Add words separated by commas. These will be preserved exactly as typed during transcription.");
+                dictHint.setText("Loading dictionary...");
                 dictHint.setTextSize(13);
                 dictHint.setTextColor(0xFF656D76); // Muted gray
                 dictHint.setPadding(16, 16, 16, 8);
@@ -275,10 +339,31 @@ public class SettingsActivity extends Activity {
                 dictInput.setMaxLines(6);
                 dictInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_MULTI_LINE);
                 dictInput.setBackground(null);
-                dictInput.setText(prefs.getString(PREF_PERSONAL_DICT,
-                                "Groq, Gemini, ChatGPT, OpenAI, Claude, Anthropic, Llama, Mistral, Qwen"));
+                dictInput.setEnabled(false);
+
+                // Opening the store maps and replays files: keep it off the main thread
+                final EditText input = dictInput;
+                new Thread(() -> {
+                        DictionaryStore.Snapshot dictionary = DictionaryStore.getInstance(this).snapshot();
+                        runOnUiThread(() -> {
+                                if (isFinishing() || isDestroyed()) {
+                                        return;
+                                }
+                                boolean editable = dictionary.size() <= MAX_EDITABLE_DICT_WORDS;
+                                dictHint.setText(editable
+                                                ? "Add words separated by commas. These will be preserved exactly as typed during transcription."
+                                                : dictionary.size() + " words imported. The list is too large to edit here.");
+                                if (editable) {
+                                        input.setText(dictionary.isEmpty()
+                                                        ? "Groq, Gemini, ChatGPT, OpenAI, Claude, Anthropic, Llama, Mistral, Qwen"
+                                                        : String.join(", ", dictionary.values()));
+                                        input.setEnabled(true);
+                                }
+                                dictLoaded = true;
+                        });
+                }, "VoiceAI-DictionaryLoad").start();
 
-                // Auto-save on text change
+                // Save once typing pauses; only the changed words are written
                 dictInput.addTextChangedListener(new android.text.TextWatcher() {
                         public void beforeTextChanged(CharSequence s, int start, int count, int after) {
                         }
@@ -287,12 +372,38 @@ public class SettingsActivity extends Activity {
                         }
 
                         public void afterTextChanged(android.text.Editable s) {
-                                prefs.edit().putString(PREF_PERSONAL_DICT, s.toString()).apply();
+                                if (dictLoaded && dictInput.isEnabled()) {
+                                        dictDirty = true;
+                                        dictInput.removeCallbacks(saveDictionaryRunnable);
+                                        dictInput.postDelayed(saveDictionaryRunnable, DICT_SAVE_DELAY_MS);
+                                }
                         }
                 });
                 dictCard.addView(dictInput);
                 root.addView(dictCard);
 
+                // Diagnostics Section
+                root.addView(createSectionTitle("DIAGNOSTICS"));
+
+                LinearLayout diagnosticsCard = createCard();
+                diagnosticsCard.addView(createToggleTile(
+                                "Transcript Journal",
+                                "Keep raw and processed transcripts on this device for replay",
+                                PREF_TRANSCRIPT_JOURNAL,
+                                false));
+                diagnosticsCard.addView(createDivider());
+                diagnosticsCard.addView(createToggleTile(
+                                "LLM Gate Sampling",
+                                "Also polish 1 in 10 skipped utterances in the background to measure what the gate misses",
+                                PREF_LLM_SHADOW,
+                                false));
+                diagnosticsCard.addView(createDivider());
+                diagnosticsCard.addView(createActionTile(
+                                "Export Latency Trace",
+                                "Recent dictations as Chrome trace JSON (chrome://tracing, Perfetto)",
+                                this::exportTrace));
+                root.addView(diagnosticsCard);
+
                 // About Section
                 root.addView(createSectionTitle("About"));
 
@@ -363,6 +474,31 @@ public class SettingsActivity extends Activity {
                 setContentView(scroll);
         }
 
+        // Writes the DictationTrace ring to files/traces/ in app-specific
+        // external storage, reachable with adb pull
+        private void exportTrace() {
+                java.io.File dir = new java.io.File(getExternalFilesDir(null), TRACE_DIR);
+                new Thread(() -> {
+                        String message;
+                        java.io.File file = new java.io.File(dir, "dictation-" + System.currentTimeMillis() + ".json");
+                        if (!dir.isDirectory() && !dir.mkdirs()) {
+                                message = "Cannot create " + dir;
+                        } else {
+                                try (java.io.Writer out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(
+                                                new java.io.FileOutputStream(file),
+                                                java.nio.charset.StandardCharsets.UTF_8))) {
+                                        com.voiceai.app.processing.DictationTrace.writeChromeJson(out);
+                                        message = "Trace saved to " + file;
+                                } catch (java.io.IOException e) {
+                                        message = "Trace export failed: " + e.getMessage();
+                                }
+                        }
+                        String result = message;
+                        runOnUiThread(() -> android.widget.Toast.makeText(SettingsActivity.this, result,
+                                        android.widget.Toast.LENGTH_LONG).show());
+                }, "VoiceAI-TraceExport").start();
+        }
+
         private TextView createSectionTitle(String text) {
                 TextView tv = new TextView(this);
                 tv.setText(text.toUpperCase());
@@ -605,29 +741,10 @@ public class SettingsActivity extends Activity {
                 return divider;
         }
 
-        /**
-         * Get personal dictionary words from SharedPreferences.
-         * Can be called from any context (services, activities).
-         */
-        public static String[] getDictionaryWords(Context context) {
-                SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-                String dict = prefs.getString(PREF_PERSONAL_DICT, "");
-                if (dict == null || dict.trim().isEmpty()) {
-                        return new String[0];
-                }
-                String[] words = dict.split(",");
-                String[] trimmed = new String[words.length];
-                for (int i = 0; i < words.length; i++) {
-                        trimmed[i] = words[i].trim();
-                }
-                return trimmed;
-        }
-
         /**
          * Check if auto-stop on silence is enabled.
          */
         public static boolean isAutoSilenceEnabled(Context context) {
-                SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-                return prefs.getBoolean(PREF_AUTO_SILENCE, true);
+                return SettingsSnapshot.get(context).isAutoStopOnSilence();
         }
 }
@@ -0,0 +1,274 @@
+package com.voiceai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.voiceai.app.processing.ProcessingContext;
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SettingsSnapshot - Immutable, pre-parsed view of the dictation settings
+ *
+ * Parses SharedPreferences once: toggles, Groq key, whether the offline
+ * model file is present, and the ProcessingContext built from those plus the
+ * current DictionaryStore snapshot. A new snapshot is built only after an
+ * OnSharedPreferenceChangeListener fires or the dictionary changes (lazily,
+ * on the next get()) and is handed out through a volatile field, so the
+ * dictation path does no parsing, map building or file checks.
+ *
+ * The model file is not a preference: call {@link #invalidate(Context)}
+ * after downloading or deleting it.
+ *
+ * The DictionaryStore is opened and parsed on a background thread (see
+ * {@link #preload(Context)}); until it is ready, snapshots carry an empty
+ * dictionary, so the first get() on the main thread never reads it.
+ *
+ * Usage:
+ * SettingsSnapshot settings = SettingsSnapshot.get(context);
+ * pipeline.process(text, settings.getProcessingContext());
+ */
+public final class SettingsSnapshot {
+
+    private static final String TAG = "VoiceAI.Settings";
+
+    private final int version;
+    private final int prefsVersion;
+    private final boolean timeLimitEnabled;
+    private final boolean autoStopOnSilence;
+    private final boolean streamingTextEnabled;
+    private final boolean headlessRecognitionEnabled;
+    private final boolean longFormEnabled;
+    private final String groqApiKey;
+    private final boolean offlineLlmEnabled;
+    private final boolean offlineModelPresent;
+    private final boolean transcriptJournalEnabled;
+    private final boolean llmShadowEnabled;
+    private final DictionaryStore.Snapshot dictionary;
+    private final ProcessingContext processingContext;
+
+    SettingsSnapshot(SharedPreferences prefs, DictionaryStore.Snapshot dictionary,
+            boolean offlineModelPresent, int prefsVersion, int version) {
+        this.version = version;
+        this.prefsVersion = prefsVersion;
+        this.timeLimitEnabled = prefs.getBoolean(SettingsActivity.PREF_TIME_LIMIT, true);
+        this.autoStopOnSilence = prefs.getBoolean(SettingsActivity.PREF_AUTO_SILENCE, true);
+        this.streamingTextEnabled = prefs.getBoolean(SettingsActivity.PREF_STREAMING_TEXT, true);
+        this.headlessRecognitionEnabled = prefs.getBoolean(SettingsActivity.PREF_HEADLESS_RECOGNITION, true);
+        this.longFormEnabled = prefs.getBoolean(SettingsActivity.PREF_LONG_FORM, false);
+        String key = prefs.getString(SettingsActivity.PREF_GROQ_API_KEY, "");
+        this.groqApiKey = key != null ? key.trim() : "";
+        this.offlineLlmEnabled = prefs.getBoolean(SettingsActivity.PREF_OFFLINE_LLM, false);
+        this.offlineModelPresent = offlineModelPresent;
+        this.transcriptJournalEnabled = prefs.getBoolean(SettingsActivity.PREF_TRANSCRIPT_JOURNAL, false);
+        this.llmShadowEnabled = prefs.getBoolean(SettingsActivity.PREF_LLM_SHADOW, false);
+
+        this.dictionary = dictionary;
+
+        this.processingContext = ProcessingContext.builder()
+                .personalDictionary(dictionary) // mapped store snapshot, not copied
+                .courseCorrection(true)
+                .fillerRemoval(true)
+                .numberNormalization(true)
+                .punctuationRestoration(true)
+                .casingEnabled(true)
+                .debugMode(true) // ENABLED for debugging
+                .llmEditMode(true) // LLM returns edit lists instead of full text
+                .build();
+    }
+
+    /**
+     * Current snapshot; a volatile read unless settings changed since the last call
+     */
+    public static SettingsSnapshot get(Context context) {
+        return Source.getInstance(context).get();
+    }
+
+    /**
+     * Start opening the settings and the dictionary off the calling thread,
+     * e.g. when a service starts, so the first dictation finds them ready
+     */
+    public static void preload(Context context) {
+        Source.getInstance(context);
+    }
+
+    /**
+     * Force a rebuild on the next get(), e.g. after the offline model was downloaded
+     */
+    public static void invalidate(Context context) {
+        Source.getInstance(context).invalidate();
+    }
+
+    /**
+     * Bumped on every rebuild, for a preference or a dictionary change;
+     * snapshots with equal versions are the same snapshot
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isTimeLimitEnabled() {
+        return timeLimitEnabled;
+    }
+
+    public boolean isAutoStopOnSilence() {
+        return autoStopOnSilence;
+    }
+
+    /** IME shows partial transcripts as composing text while recording */
+    public boolean isStreamingTextEnabled() {
+        return streamingTextEnabled;
+    }
+
+    /** VoiceRecognitionService records and transcribes itself instead of opening RecognizeActivity */
+    public boolean isHeadlessRecognitionEnabled() {
+        return headlessRecognitionEnabled;
+    }
+
+    /** RecognizeActivity transcribes in chunks while recording, with no time limit */
+    public boolean isLongFormEnabled() {
+        return longFormEnabled;
+    }
+
+    public String getGroqApiKey() {
+        return groqApiKey;
+    }
+
+    public boolean hasGroqApiKey() {
+        return !groqApiKey.isEmpty();
+    }
+
+    public boolean isOfflineLlmEnabled() {
+        return offlineLlmEnabled;
+    }
+
+    /** Offline LLM enabled and its model file downloaded */
+    public boolean isOfflineModelReady() {
+        return offlineLlmEnabled && offlineModelPresent;
+    }
+
+    /** Opt-in: keep raw and processed transcripts in the on-device journal */
+    public boolean isTranscriptJournalEnabled() {
+        return transcriptJournalEnabled;
+    }
+
+    /** Opt-in: LLMGate re-runs a sample of skipped utterances through the LLM */
+    public boolean isLlmShadowEnabled() {
+        return llmShadowEnabled;
+    }
+
+    /** Personal dictionary spellings, in key order (iterates the whole store) */
+    public Collection<String> getDictionaryWords() {
+        return dictionary.values();
+    }
+
+    /** Personal dictionary: any-case word or alias to the user's spelling */
+    public DictionaryStore.Snapshot getPersonalDictionary() {
+        return dictionary;
+    }
+
+    /** Shared by every utterance until the settings change */
+    public ProcessingContext getProcessingContext() {
+        return processingContext;
+    }
+
+    @Override
+    public String toString() {
+        return "SettingsSnapshot{v" + version
+                + ", timeLimit=" + timeLimitEnabled
+                + ", autoSilence=" + autoStopOnSilence
+                + ", streaming=" + streamingTextEnabled
+                + ", headless=" + headlessRecognitionEnabled
+                + ", longForm=" + longFormEnabled
+                + ", groq=" + hasGroqApiKey()
+                + ", offline=" + offlineLlmEnabled + (offlineModelPresent ? "/ready" : "/missing")
+                + ", journal=" + transcriptJournalEnabled
+                + ", dictionary=" + dictionary.size() + "}";
+    }
+
+    /**
+     * Owns the preference listener and the current snapshot. The listener
+     * only bumps a version number; get() rebuilds when it or the dictionary
+     * is behind.
+     */
+    static final class Source implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+        private static Source instance;
+
+        private final SharedPreferences prefs;
+        private final File modelFile;
+        // Null until opened on the load thread
+        private volatile DictionaryStore dictionary;
+
+        private final AtomicInteger version = new AtomicInteger();
+        // Guarded by this
+        private int builds;
+        private volatile SettingsSnapshot current;
+
+        static synchronized Source getInstance(Context context) {
+            if (instance == null) {
+                Context app = context.getApplicationContext();
+                Source source = new Source(
+                        app.getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE),
+                        new File(app.getFilesDir(), SettingsActivity.OFFLINE_MODEL_FILE),
+                        null);
+                new Thread(() -> source.setDictionary(DictionaryStore.getInstance(app)),
+                        "VoiceAI-DictionaryLoad").start();
+                instance = source;
+            }
+            return instance;
+        }
+
+        /**
+         * @param dictionary Opened store, or null to pass it to setDictionary() later
+         */
+        Source(SharedPreferences prefs, File modelFile, DictionaryStore dictionary) {
+            this.prefs = prefs;
+            this.modelFile = modelFile;
+            this.dictionary = dictionary;
+            // SharedPreferences holds listeners weakly; this Source keeps itself reachable
+            prefs.registerOnSharedPreferenceChangeListener(this);
+        }
+
+        void setDictionary(DictionaryStore dictionary) {
+            this.dictionary = dictionary;
+            invalidate();
+        }
+
+        SettingsSnapshot get() {
+            SettingsSnapshot snapshot = current;
+            DictionaryStore store = dictionary;
+            if (snapshot != null && snapshot.prefsVersion == version.get()
+                    && (store == null || snapshot.dictionary.getVersion() == store.getVersion())) {
+                return snapshot;
+            }
+            return rebuild();
+        }
+
+        void invalidate() {
+            version.incrementAndGet();
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            invalidate();
+        }
+
+        private synchronized SettingsSnapshot rebuild() {
+            SettingsSnapshot snapshot = current;
+            // Version first: a change while parsing leaves this snapshot behind
+            // and the next get() rebuilds again
+            int v = version.get();
+            DictionaryStore store = dictionary;
+            DictionaryStore.Snapshot words = store != null ? store.snapshot() : DictionaryStore.Snapshot.EMPTY;
+            if (snapshot != null && snapshot.prefsVersion == v && snapshot.dictionary == words) {
+                return snapshot;
+            }
+            snapshot = new SettingsSnapshot(prefs, words, modelFile.exists(), v, ++builds);
+            current = snapshot;
+            Log.d(TAG, "Settings rebuilt: " + snapshot);
+            return snapshot;
+        }
+    }
+}
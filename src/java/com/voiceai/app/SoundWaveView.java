@@ -0,0 +1,99 @@
+package com.voiceai.app;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * SoundWaveView - Responsive waveform shared by RecognizeActivity and the IME
+ *
+ * Pulls levels from an AudioLevelChannel once per vsync, advances the wave
+ * every 40ms (25fps) and invalidates only when WaveformRenderer says the
+ * frame changed enough to be worth drawing.
+ */
+public class SoundWaveView extends View {
+
+    private static final long STEP_NANOS = 40_000_000L;
+
+    private final WaveformRenderer renderer = new WaveformRenderer();
+    private boolean isAnimating = false;
+
+    private AudioLevelChannel levelSource;
+    private long lastSequence;
+    private long lastStepNanos;
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!isAnimating) {
+                return;
+            }
+            if (frameTimeNanos - lastStepNanos >= STEP_NANOS) {
+                lastStepNanos = frameTimeNanos;
+                pullLevel();
+                if (renderer.step()) {
+                    invalidate();
+                }
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    public SoundWaveView(Context context) {
+        super(context);
+    }
+
+    public SoundWaveView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public void setAudioLevel(float level) {
+        renderer.setLevel(level);
+    }
+
+    /**
+     * Read levels from this channel on every frame instead of being pushed
+     */
+    public void setLevelSource(AudioLevelChannel source) {
+        this.levelSource = source;
+        this.lastSequence = source != null ? source.getSequence() : 0;
+    }
+
+    private void pullLevel() {
+        if (levelSource == null) {
+            return;
+        }
+        long sequence = levelSource.getSequence();
+        if (sequence != lastSequence) {
+            renderer.setLevel(levelSource.peak(lastSequence, sequence));
+            lastSequence = sequence;
+        }
+    }
+
+    public void startAnimation() {
+        if (isAnimating) {
+            return;
+        }
+        isAnimating = true;
+        lastStepNanos = 0;
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    public void stopAnimation() {
+        isAnimating = false;
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        renderer.setSize(w, h);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        renderer.draw(canvas);
+    }
+}
@@ -0,0 +1,199 @@
+package com.voiceai.app;
+
+/**
+ * VoiceActivityDetector - Frame-driven start/end-of-speech detection
+ *
+ * Fed one analysis frame at a time (RMS energy and zero-crossing rate,
+ * computed natively from the capture buffer) and fires events from the
+ * feeding thread as soon as a decision is made; nothing polls.
+ *
+ * Classification per frame:
+ * - Energy with hysteresis: entering speech needs the higher threshold,
+ *   staying in speech only the lower one, so level dips inside words
+ *   don't flap the state
+ * - Zero-crossing rate: energetic frames with almost no crossings are
+ *   rumble/hum, not speech; quiet frames with a high rate are fricatives
+ *   ("s", "f") and keep an utterance alive
+ *
+ * The speech threshold is fixed, or follows the ambient level when a
+ * NoiseFloorEstimator is attached (SPEECH_MARGIN above the floor, within
+ * MIN/MAX_SPEECH_RMS), so noisy rooms still end and quiet rooms don't
+ * cut soft speech. While the threshold is still adapting, noise can pass
+ * as an onset; a segment whose peak never reaches the threshold in force
+ * when it ends is dropped as noise (no end event, not counted as speech).
+ *
+ * Timing comes from the frame count, not the wall clock:
+ * - Onset needs ATTACK_FRAMES consecutive speech frames (rejects clicks)
+ * - End of speech fires after hangoverMs of continuous non-speech
+ * - No-speech fires when nothing was said within leadingSilenceMs
+ *
+ * Not thread-safe for concurrent feeding; reset() may be called from
+ * another thread between sessions.
+ */
+public class VoiceActivityDetector {
+
+    // 20ms at 16kHz, must match VAD_FRAME_SAMPLES in lib.rs
+    public static final int FRAME_MS = 20;
+
+    // Raw RMS (not the 0-1 UI level) needed to enter speech
+    public static final float DEFAULT_SPEECH_RMS = 0.004f;
+
+    // Adaptive threshold: floor * margin (~9.5 dB), clamped
+    static final float SPEECH_MARGIN = 3f;
+    static final float MIN_SPEECH_RMS = 0.0015f;
+    static final float MAX_SPEECH_RMS = 0.1f;
+
+    // Staying in speech needs only this fraction of the entry threshold
+    static final float HYSTERESIS_RATIO = 0.6f;
+
+    // Zero crossings per sample: below = hum/rumble, above = fricative noise
+    static final float MIN_VOICED_ZCR = 0.01f;
+    static final float FRICATIVE_ZCR = 0.25f;
+
+    static final int ATTACK_FRAMES = 3;
+
+    public interface Listener {
+        void onSpeechStart(long timeMs);
+
+        void onSpeechEnd(long timeMs);
+
+        /**
+         * Nothing recognizable as speech within the leading-silence window
+         */
+        void onNoSpeech(long timeMs);
+    }
+
+    private final Listener listener;
+
+    private float speechRms = DEFAULT_SPEECH_RMS;
+    private NoiseFloorEstimator noiseFloor;
+    private long hangoverMs;
+    private long leadingSilenceMs;
+
+    // Session state
+    private boolean inSpeech;
+    private boolean heardSpeech;
+    private boolean noSpeechReported;
+    private int speechRun;
+    private float segmentPeak;
+    private boolean heardBeforeSegment;
+    private long silenceMs;
+    private long frames;
+
+    public VoiceActivityDetector(Listener listener, long hangoverMs, long leadingSilenceMs) {
+        this.listener = listener;
+        this.hangoverMs = hangoverMs;
+        this.leadingSilenceMs = leadingSilenceMs;
+    }
+
+    /**
+     * Start a new session, optionally with new timings
+     */
+    public synchronized void reset(long hangoverMs, long leadingSilenceMs) {
+        this.hangoverMs = hangoverMs;
+        this.leadingSilenceMs = leadingSilenceMs;
+        inSpeech = false;
+        heardSpeech = false;
+        noSpeechReported = false;
+        speechRun = 0;
+        segmentPeak = 0;
+        silenceMs = 0;
+        frames = 0;
+    }
+
+    /**
+     * Fixed speech threshold (used while no noise floor estimator is set)
+     */
+    public synchronized void setSpeechRms(float rms) {
+        this.speechRms = rms;
+    }
+
+    /**
+     * Derive the speech threshold from the ambient level; null restores
+     * the fixed threshold. The estimator is fed every frame but reset by
+     * its owner.
+     */
+    public synchronized void setNoiseFloorEstimator(NoiseFloorEstimator estimator) {
+        this.noiseFloor = estimator;
+    }
+
+    /**
+     * Threshold used for the most recent frame (raw RMS)
+     */
+    public synchronized float getSpeechRms() {
+        return noiseFloor != null ? adaptiveSpeechRms(noiseFloor.getFloorRms()) : speechRms;
+    }
+
+    static float adaptiveSpeechRms(float floorRms) {
+        return Math.max(MIN_SPEECH_RMS, Math.min(MAX_SPEECH_RMS, floorRms * SPEECH_MARGIN));
+    }
+
+    /**
+     * Feed one FRAME_MS frame
+     *
+     * @param rms Root-mean-square amplitude of the frame (samples in -1..1)
+     * @param zcr Zero crossings per sample (0..1)
+     */
+    public synchronized void processFrame(float rms, float zcr) {
+        frames++;
+        long now = frames * FRAME_MS;
+        float threshold = noiseFloor != null ? adaptiveSpeechRms(noiseFloor.update(rms)) : speechRms;
+
+        if (isSpeechFrame(rms, zcr, threshold)) {
+            silenceMs = 0;
+            if (!inSpeech && speechRun == 0) {
+                segmentPeak = 0;
+            }
+            segmentPeak = Math.max(segmentPeak, rms);
+            if (!inSpeech && ++speechRun >= ATTACK_FRAMES) {
+                inSpeech = true;
+                heardBeforeSegment = heardSpeech;
+                heardSpeech = true;
+                listener.onSpeechStart(now - (ATTACK_FRAMES - 1) * FRAME_MS);
+            }
+            return;
+        }
+
+        speechRun = 0;
+        silenceMs += FRAME_MS;
+
+        if (inSpeech && silenceMs >= hangoverMs) {
+            inSpeech = false;
+            if (segmentPeak >= threshold) {
+                listener.onSpeechEnd(now);
+            } else {
+                heardSpeech = heardBeforeSegment;
+            }
+        } else if (!heardSpeech && !noSpeechReported && now >= leadingSilenceMs) {
+            noSpeechReported = true;
+            listener.onNoSpeech(now);
+        }
+    }
+
+    private boolean isSpeechFrame(float rms, float zcr, float threshold) {
+        if (!inSpeech) {
+            return rms >= threshold && zcr >= MIN_VOICED_ZCR;
+        }
+        float keepRms = threshold * HYSTERESIS_RATIO;
+        if (rms >= keepRms && zcr >= MIN_VOICED_ZCR) {
+            return true;
+        }
+        // Unvoiced consonants are quiet but crossing-rich
+        return rms >= keepRms * HYSTERESIS_RATIO && zcr >= FRICATIVE_ZCR;
+    }
+
+    public synchronized boolean isInSpeech() {
+        return inSpeech;
+    }
+
+    public synchronized boolean hasHeardSpeech() {
+        return heardSpeech;
+    }
+
+    /**
+     * Continuous non-speech so far (ms)
+     */
+    public synchronized long getSilenceMs() {
+        return silenceMs;
+    }
+}
@@ -1,36 +1,102 @@
 package com.voiceai.app;
 
+import android.Manifest;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.speech.RecognitionService;
+import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
 import android.util.Log;
 
+import com.voiceai.app.processing.DictationTrace;
+import com.voiceai.app.processing.Transcript;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
 /**
- * VoiceRecognitionService - Launches RecognizeActivity overlay for voice input
- * Works with HeliBoard, Gboard, and other keyboards that use RecognitionService
- * API
+ * VoiceRecognitionService - Voice input for HeliBoard, Gboard, and other
+ * keyboards that use the RecognitionService API
+ *
+ * Headless mode (default): the service records and transcribes itself,
+ * reporting rmsChanged, beginning/end of speech, partialResults (when the
+ * caller asks for EXTRA_PARTIAL_RESULTS) and the post-processed results
+ * through the Callback, with no Activity or window. Without the microphone
+ * permission, or with the setting off, it launches the RecognizeActivity
+ * overlay instead.
  */
-public class VoiceRecognitionService extends RecognitionService {
+public class VoiceRecognitionService extends RecognitionService
+        implements DictationController.DictationListener {
 
     private static final String TAG = "VoiceAI";
 
+    static {
+        try {
+            System.loadLibrary("android_transcribe_app");
+        } catch (UnsatisfiedLinkError e) {
+            Log.e(TAG, "Failed to load native library", e);
+        }
+    }
+
+    // rmsChanged is sent every this many 20ms frames (binder call per update)
+    private static final int RMS_FRAMES = 5;
+
     private Handler mainHandler;
     private Callback currentCallback;
     private static VoiceRecognitionService instance;
 
+    // Headless session; the callback is read from the audio and worker threads
+    private ModelManager modelManager;
+    private DictationController dictationController;
+    private boolean nativeReady = false;
+    private boolean holdingAsr = false;
+    private volatile Callback headlessCallback;
+    private volatile boolean listening = false;
+    private volatile boolean speechStarted = false;
+    private int rmsFrames = 0;
+    private float rmsPeak = 0f;
+
+    // Worker thread only (filled just before onTextTranscribed)
+    private final Transcript transcript = new Transcript();
+    // DictationTrace id of the current headless session
+    private volatile long traceId;
+
+    private native void initNative(VoiceRecognitionService service);
+
+    private native void cleanupNative();
+
+    private native boolean startRecording(boolean partials, long traceId);
+
+    private native void stopRecording();
+
+    private native void cancelRecording();
+
     @Override
     public void onCreate() {
         super.onCreate();
         mainHandler = new Handler(Looper.getMainLooper());
         instance = this;
         Log.d(TAG, "VoiceRecognitionService created");
+        // Open the dictionary in the background before the first dictation
+        SettingsSnapshot.preload(this);
     }
 
     @Override
     public void onDestroy() {
+        if (headlessCallback != null) {
+            cancelRecording();
+            endHeadless();
+        }
+        if (nativeReady) {
+            cleanupNative();
+            nativeReady = false;
+        }
+        if (dictationController != null) {
+            dictationController.cleanup();
+        }
         super.onDestroy();
         instance = null;
         Log.d(TAG, "VoiceRecognitionService destroyed");
@@ -38,6 +104,10 @@ public class VoiceRecognitionService extends RecognitionService {
 
     @Override
     protected void onStartListening(Intent intent, Callback callback) {
+        if (useHeadless()) {
+            startHeadless(intent, callback);
+            return;
+        }
         Log.d(TAG, "onStartListening - launching RecognizeActivity overlay");
         currentCallback = callback;
 
@@ -72,14 +142,274 @@ public class VoiceRecognitionService extends RecognitionService {
     @Override
     protected void onStopListening(Callback callback) {
         Log.d(TAG, "onStopListening called");
+        if (headlessCallback != null) {
+            stopHeadless();
+        }
     }
 
     @Override
     protected void onCancel(Callback callback) {
         Log.d(TAG, "onCancel called");
         currentCallback = null;
+        if (headlessCallback != null) {
+            listening = false;
+            if (dictationController != null) {
+                dictationController.stopDictation(DictationController.StopReason.USER_STOPPED);
+            }
+            cancelRecording();
+            endHeadless();
+        }
     }
 
+    // ========================================================================
+    // HEADLESS RECOGNITION
+    // ========================================================================
+
+    private boolean useHeadless() {
+        return SettingsSnapshot.get(this).isHeadlessRecognitionEnabled()
+                && checkSelfPermission(Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private void startHeadless(Intent intent, Callback callback) {
+        if (headlessCallback != null) {
+            Log.w(TAG, "Recognition already in progress");
+            sendError(callback, SpeechRecognizer.ERROR_RECOGNIZER_BUSY);
+            return;
+        }
+        if (!nativeReady) {
+            initNative(this);
+            nativeReady = true;
+        }
+        if (dictationController == null) {
+            dictationController = new DictationController(this);
+            dictationController.setListener(this);
+        }
+
+        // ASR loads while the user speaks; stopRecording waits for it if needed
+        modelManager = ModelManager.getInstance(this);
+        modelManager.beginUse(ModelManager.Model.ASR);
+        holdingAsr = true;
+
+        boolean partials = intent != null
+                && intent.getBooleanExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, false);
+        speechStarted = false;
+        rmsFrames = 0;
+        rmsPeak = 0f;
+        headlessCallback = callback;
+        traceId = DictationTrace.begin("startRecording");
+        if (!startRecording(partials, traceId)) {
+            Log.e(TAG, "Headless recognition could not open the microphone");
+            endHeadless();
+            sendError(callback, SpeechRecognizer.ERROR_AUDIO);
+            return;
+        }
+        listening = true;
+        Log.d(TAG, "Headless recognition started (partials=" + partials + ")");
+
+        dictationController.startDictation();
+        try {
+            callback.readyForSpeech(new Bundle());
+        } catch (android.os.RemoteException e) {
+            Log.e(TAG, "RemoteException in readyForSpeech", e);
+        }
+    }
+
+    // Main thread: stop capturing; results follow from the worker
+    private void stopHeadless() {
+        if (!listening) {
+            return;
+        }
+        listening = false;
+        DictationTrace.instant(traceId, DictationTrace.CAT_CAPTURE, "stopRecording");
+        dictationController.stopDictation(DictationController.StopReason.USER_STOPPED);
+        stopRecording();
+        Callback callback = headlessCallback;
+        if (callback != null) {
+            try {
+                callback.endOfSpeech();
+            } catch (android.os.RemoteException e) {
+                Log.e(TAG, "RemoteException in endOfSpeech", e);
+            }
+        }
+    }
+
+    private void endHeadless() {
+        listening = false;
+        headlessCallback = null;
+        if (holdingAsr) {
+            holdingAsr = false;
+            modelManager.endUse(ModelManager.Model.ASR);
+        }
+    }
+
+    private void sendError(Callback callback, int error) {
+        try {
+            callback.error(error);
+        } catch (android.os.RemoteException e) {
+            Log.e(TAG, "RemoteException sending error", e);
+        }
+    }
+
+    // Called from Rust on the audio thread for every 20ms frame
+    public void onAudioFrame(float rms, float zcr) {
+        DictationController controller = dictationController;
+        Callback callback = headlessCallback;
+        if (controller == null || callback == null || !listening) {
+            return;
+        }
+        // May call onSpeechStarted (beginningOfSpeech) from the VAD
+        controller.onAudioFrame(rms, zcr);
+
+        float level = Math.min(rms * DictationController.AUDIO_LEVEL_SCALE, 1f);
+        rmsPeak = Math.max(rmsPeak, level);
+        if (++rmsFrames >= RMS_FRAMES) {
+            try {
+                callback.rmsChanged(-2f + 12f * rmsPeak); // Roughly the platform recognizer's dB range
+            } catch (android.os.RemoteException e) {
+                Log.e(TAG, "RemoteException in rmsChanged", e);
+            }
+            rmsFrames = 0;
+            rmsPeak = 0f;
+        }
+    }
+
+    // Called from Rust (partial worker thread) with the draft so far
+    public void onPartialTranscript(String text) {
+        Callback callback = headlessCallback;
+        if (callback == null || !listening) {
+            return;
+        }
+        try {
+            callback.partialResults(resultsBundle(text, null));
+        } catch (android.os.RemoteException e) {
+            Log.e(TAG, "RemoteException in partialResults", e);
+        }
+    }
+
+    // Called from Rust (transcription worker thread) just before onTextTranscribed
+    public void onTranscriptData(String text, ByteBuffer data) {
+        try {
+            transcript.decode(text, data);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Bad transcript payload: " + e.getMessage());
+        }
+    }
+
+    // Called from Rust (transcription worker thread); post-processing stays here
+    public void onTextTranscribed(String text) {
+        Callback callback = headlessCallback;
+        float confidence = meanConfidence(text);
+        long trace = traceId;
+        String result = RecognizeActivity.processTranscript(this, modelManager, transcript, text, trace);
+        long posted = DictationTrace.now();
+        mainHandler.post(() -> {
+            if (callback == null || callback != headlessCallback) {
+                return; // Cancelled while post-processing
+            }
+            endHeadless();
+            if (result == null || result.trim().isEmpty()) {
+                sendError(callback, SpeechRecognizer.ERROR_NO_MATCH);
+                return;
+            }
+            Log.d(TAG, "Headless recognition result: " + result);
+            DictationTrace.span(trace, DictationTrace.CAT_INJECT, "main thread hand-off", posted);
+            try {
+                long sending = DictationTrace.now();
+                callback.results(resultsBundle(result, new float[] { confidence }));
+                DictationTrace.span(trace, DictationTrace.CAT_INJECT, "results callback", sending);
+            } catch (android.os.RemoteException e) {
+                Log.e(TAG, "RemoteException sending results", e);
+            }
+        });
+    }
+
+    // Called from Rust (any thread) with a native step of a traced session
+    public void onTraceSpan(long trace, String category, String name, long startNanos, long endNanos,
+            String detail) {
+        DictationTrace.span(trace, category, name, startNanos, endNanos, detail);
+    }
+
+    // Called from Rust; only errors matter here
+    public void onStatusUpdate(String status) {
+        if (status == null || !status.startsWith("Error")) {
+            return;
+        }
+        Log.e(TAG, "Headless recognition failed: " + status);
+        mainHandler.post(() -> {
+            Callback callback = headlessCallback;
+            if (dictationController != null) {
+                dictationController.stopDictation(DictationController.StopReason.ERROR);
+            }
+            endHeadless();
+            if (callback != null) {
+                sendError(callback, SpeechRecognizer.ERROR_SERVER);
+            }
+        });
+    }
+
+    // Mean word confidence of the decoded transcript, 1 if unavailable
+    private float meanConfidence(String text) {
+        if (transcript.isEmpty() || !transcript.getText().equals(text)) {
+            return 1f;
+        }
+        float sum = 0f;
+        for (int i = 0; i < transcript.getWordCount(); i++) {
+            sum += transcript.getWordConfidence(i);
+        }
+        return sum / transcript.getWordCount();
+    }
+
+    private static Bundle resultsBundle(String text, float[] confidence) {
+        Bundle results = new Bundle();
+        ArrayList<String> matches = new ArrayList<>();
+        matches.add(text);
+        results.putStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION, matches);
+        if (confidence != null) {
+            results.putFloatArray(SpeechRecognizer.CONFIDENCE_SCORES, confidence);
+        }
+        return results;
+    }
+
+    // DictationController.DictationListener callbacks (time limit, silence, speech start)
+    @Override
+    public void onDictationStarted() {
+    }
+
+    @Override
+    public void onDictationStopped(DictationController.StopReason reason) {
+        Log.d(TAG, "Headless dictation stopped - " + reason);
+        if (listening) {
+            stopHeadless();
+        }
+    }
+
+    @Override
+    public void onTimeRemaining(int secondsRemaining) {
+    }
+
+    @Override
+    public void onSilenceDetected() {
+    }
+
+    // Audio thread; the VAD's speech start follows the noise floor, unlike a fixed level
+    @Override
+    public void onSpeechStarted() {
+        Callback callback = headlessCallback;
+        if (callback == null || !listening || speechStarted) {
+            return;
+        }
+        speechStarted = true;
+        try {
+            callback.beginningOfSpeech();
+        } catch (android.os.RemoteException e) {
+            Log.e(TAG, "RemoteException in beginningOfSpeech", e);
+        }
+    }
+
+    // ========================================================================
+    // OVERLAY RESULTS
+    // ========================================================================
+
     // Called from RecognizeActivity when transcription is complete
     public static void sendResults(String text) {
         if (instance != null && instance.currentCallback != null && text != null && !text.isEmpty()) {
@@ -12,39 +12,116 @@ import android.os.Looper;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 import android.view.accessibility.AccessibilityWindowInfo;
 import android.widget.Toast;
 
+import com.voiceai.app.processing.DictationTrace;
+
+import java.util.EnumSet;
 import java.util.List;
 
 /**
  * Accessibility Service for injecting dictated text at cursor position
  * Used when external keyboards (SwiftKey) don't handle Intent results
+ *
+ * Remembers the last focused editable node per window from focus and
+ * selection events, so an injection normally refreshes one cached node
+ * instead of walking the window trees. The tree search is only the
+ * fallback for a cache miss (e.g. focus set before the service started).
+ * All cache access happens on the main thread.
+ *
+ * When the target is not ready yet (focus still returning after our
+ * overlay closes), the injection waits for the next focus or window event
+ * and retries right then, up to INJECT_TIMEOUT_MS, instead of sleeping or
+ * polling on fixed delays. Nothing blocks the main thread.
+ *
+ * Which way of inserting works (IME, set text, paste) differs per app;
+ * InjectionStrategyCache orders the strategies from earlier outcomes so
+ * the usual one goes first. Paste, which borrows the clipboard, is last.
+ *
+ * Every attempt (target lookup, each strategy, the wait for focus, the
+ * clipboard fallback) is recorded in DictationTrace under the caller's
+ * trace id.
  */
 public class VoiceTextInjectionService extends AccessibilityService {
 
     private static final String TAG = "VoiceAI";
     private static VoiceTextInjectionService instance = null;
 
+    // Events that move input focus or replace window content
+    private static final int CACHE_EVENT_TYPES = AccessibilityEvent.TYPE_VIEW_FOCUSED
+            | AccessibilityEvent.TYPE_VIEW_TEXT_SELECTION_CHANGED
+            | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+            | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+
+    // Last focused editable per window id (owned: recycled on replace/evict)
+    private final SparseArray<AccessibilityNodeInfo> focusedEditables = new SparseArray<>();
+    // Window of the most recent editable focus outside our own UI, or -1
+    private int lastEditableWindowId = -1;
+
+    // Give up waiting for a target after this long and use the clipboard
+    static final long INJECT_TIMEOUT_MS = 1000;
+    // Bounds tree searches during an event burst; the timeout still tries once more
+    private static final int MAX_EVENT_RETRIES = 10;
+
+    // Injection waiting for a focus/window event (main thread only)
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private Context pendingContext;
+    private String pendingText;
+    private long pendingTrace;
+    private long pendingSince;
+    private int pendingAttempts;
+    private final Runnable injectTimeoutRunnable = this::onInjectTimeout;
+
+    // Fields longer than this try strategies that rewrite the whole text later
+    static final int LONG_FIELD_CHARS = 2000;
+    private InjectionStrategyCache strategies;
+
     @Override
     public void onServiceConnected() {
         super.onServiceConnected();
         instance = this;
+        strategies = InjectionStrategyCache.getInstance(this);
         Log.d(TAG, "VoiceTextInjectionService connected");
 
         AccessibilityServiceInfo info = new AccessibilityServiceInfo();
-        info.eventTypes = AccessibilityEvent.TYPES_ALL_MASK;
+        info.eventTypes = CACHE_EVENT_TYPES;
         info.feedbackType = AccessibilityServiceInfo.FEEDBACK_GENERIC;
         info.flags = AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS;
-        info.notificationTimeout = 100;
+        info.notificationTimeout = 0; // Pending injections retry on these events
         setServiceInfo(info);
     }
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        // Not needed - we just need the service connection for text injection
+        switch (event.getEventType()) {
+            case AccessibilityEvent.TYPE_VIEW_FOCUSED:
+            case AccessibilityEvent.TYPE_VIEW_TEXT_SELECTION_CHANGED:
+                AccessibilityNodeInfo source = event.getSource();
+                if (source != null) {
+                    if (source.isEditable() && !isOwnNode(source)) {
+                        cacheEditable(source);
+                    } else {
+                        source.recycle();
+                    }
+                }
+                break;
+            case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED:
+                // New activity/dialog content: the cached node is gone or stale
+                evictWindow(event.getWindowId());
+                break;
+            case AccessibilityEvent.TYPE_WINDOWS_CHANGED:
+                evictClosedWindows();
+                break;
+            default:
+                break;
+        }
+        if (pendingText != null && pendingAttempts < MAX_EVENT_RETRIES) {
+            retryPendingInjection();
+        }
     }
 
     @Override
@@ -56,9 +133,94 @@ public class VoiceTextInjectionService extends AccessibilityService {
     public void onDestroy() {
         super.onDestroy();
         instance = null;
+        if (pendingText != null) {
+            handler.removeCallbacks(injectTimeoutRunnable);
+            copyToClipboard(pendingContext, pendingText);
+            clearPendingInjection();
+        }
+        clearEditableCache();
         Log.d(TAG, "VoiceTextInjectionService destroyed");
     }
 
+    // ========================================================================
+    // FOCUSED EDITABLE CACHE
+    // ========================================================================
+
+    private boolean isOwnNode(AccessibilityNodeInfo node) {
+        CharSequence pkg = node.getPackageName();
+        return pkg != null && TextUtils.equals(pkg, getPackageName());
+    }
+
+    // Takes ownership of node
+    private void cacheEditable(AccessibilityNodeInfo node) {
+        int windowId = node.getWindowId();
+        AccessibilityNodeInfo previous = focusedEditables.get(windowId);
+        if (previous != null && previous != node) {
+            previous.recycle();
+        }
+        focusedEditables.put(windowId, node);
+        lastEditableWindowId = windowId;
+    }
+
+    private void evictWindow(int windowId) {
+        AccessibilityNodeInfo node = focusedEditables.get(windowId);
+        if (node != null) {
+            node.recycle();
+            focusedEditables.remove(windowId);
+        }
+        if (windowId == lastEditableWindowId) {
+            lastEditableWindowId = -1;
+        }
+    }
+
+    // Window list only (no node trees): drop entries of windows that closed
+    private void evictClosedWindows() {
+        if (focusedEditables.size() == 0) {
+            return;
+        }
+        List<AccessibilityWindowInfo> windows = getWindows();
+        for (int i = focusedEditables.size() - 1; i >= 0; i--) {
+            int windowId = focusedEditables.keyAt(i);
+            boolean open = false;
+            for (AccessibilityWindowInfo window : windows) {
+                if (window.getId() == windowId) {
+                    open = true;
+                    break;
+                }
+            }
+            if (!open) {
+                evictWindow(windowId);
+            }
+        }
+    }
+
+    private void clearEditableCache() {
+        for (int i = 0; i < focusedEditables.size(); i++) {
+            focusedEditables.valueAt(i).recycle();
+        }
+        focusedEditables.clear();
+        lastEditableWindowId = -1;
+    }
+
+    /**
+     * Most recently focused editable that still exists (one refresh IPC, no
+     * traversal), or null. The node stays owned by the cache.
+     */
+    private AccessibilityNodeInfo getCachedEditable() {
+        if (lastEditableWindowId == -1) {
+            return null;
+        }
+        AccessibilityNodeInfo node = focusedEditables.get(lastEditableWindowId);
+        if (node == null) {
+            return null;
+        }
+        if (!node.refresh() || !node.isEditable()) {
+            evictWindow(lastEditableWindowId);
+            return null;
+        }
+        return node;
+    }
+
     /**
      * Check if accessibility service is enabled
      */
@@ -94,10 +256,11 @@ public class VoiceTextInjectionService extends AccessibilityService {
     }
 
     /**
-     * Inject text at current cursor position
+     * Inject text at current cursor position, tracing attempts under
+     * traceId (0: untraced)
      * Returns true if injection successful, false if fell back to clipboard
      */
-    public static boolean injectText(Context context, String text) {
+    public static boolean injectText(Context context, String text, long traceId) {
         Log.d(TAG, "injectText called with text length: " + (text != null ? text.length() : 0));
 
         if (text == null || text.isEmpty()) {
@@ -105,67 +268,89 @@ public class VoiceTextInjectionService extends AccessibilityService {
             return false;
         }
 
-        // ============ PRIORITY 1: IME InputConnection (UNIVERSAL - works in ALL apps)
-        // ============
-        // This is the same method keyboards use, works even in Word, Chrome, etc.
-        if (RustInputMethodService.isAvailable()) {
-            Log.d(TAG, "IME service available, using commitText for universal injection");
-            if (RustInputMethodService.injectText(text)) {
-                Log.d(TAG, "Text injected via IME InputConnection successfully!");
-                return true;
+        VoiceTextInjectionService service = instance;
+        if (service == null || !isServiceEnabled(context)) {
+            // Only our keyboard can insert without the accessibility service
+            if (RustInputMethodService.isAvailable()) {
+                long start = System.nanoTime();
+                boolean committed = RustInputMethodService.injectText(text);
+                long end = System.nanoTime();
+                InjectionStrategyCache.getInstance(context).record(RustInputMethodService.getTargetPackage(),
+                        InjectionStrategyCache.Strategy.IME, committed, end - start);
+                DictationTrace.span(traceId, DictationTrace.CAT_INJECT, InjectionStrategyCache.Strategy.IME.name(),
+                        start, end, committed ? "ok" : "failed");
+                if (committed) {
+                    Log.d(TAG, "Text injected via IME InputConnection successfully!");
+                    return true;
+                }
             }
-        }
-
-        // ============ PRIORITY 2: Accessibility Service (fallback) ============
-        // Check if accessibility service is available
-        if (instance == null) {
-            Log.w(TAG, "VoiceTextInjectionService instance is null - service not connected");
-            copyToClipboard(context, text);
-            return false;
-        }
-
-        if (!isServiceEnabled(context)) {
-            Log.w(TAG, "Accessibility service is not enabled in settings");
+            Log.w(TAG, "Accessibility service not connected or not enabled");
+            DictationTrace.instant(traceId, DictationTrace.CAT_INJECT, "clipboard fallback");
             copyToClipboard(context, text);
             return false;
         }
 
         // Try immediate injection first
-        if (instance.injectViaAccessibility(text)) {
-            Log.d(TAG, "Text injected via accessibility immediately");
+        if (service.injectNow(text, traceId)) {
             return true;
         }
 
-        // Schedule delayed retries for system-wide injection
-        // This handles cases where focus hasn't returned to original window yet
-        Log.d(TAG, "Immediate injection failed, scheduling delayed retries");
-        scheduleDelayedInjection(context, text);
-        return true; // Return true since we've scheduled the injection
+        // Focus hasn't returned to the original window yet: retry on the
+        // next focus/window event instead of on fixed delays
+        Log.d(TAG, "Immediate injection failed, waiting for focus");
+        service.injectWhenReady(context, text, traceId);
+        return true; // Return true since the injection is pending
     }
 
-    /**
-     * Schedule delayed injection attempts with increasing delays
-     * This is critical for system-wide injection where focus restoration takes time
-     */
-    private static void scheduleDelayedInjection(Context context, String text) {
-        Handler handler = new Handler(Looper.getMainLooper());
-        final int[] delays = { 150, 300, 500 }; // Increasing delays for focus restoration
-
-        for (int i = 0; i < delays.length; i++) {
-            final int attempt = i + 1;
-            handler.postDelayed(() -> {
-                if (instance != null) {
-                    Log.d(TAG, "Delayed injection attempt " + attempt);
-                    if (instance.injectViaAccessibility(text)) {
-                        Log.d(TAG, "Text injected via accessibility on delayed attempt " + attempt);
-                    } else if (attempt == delays.length) {
-                        // Last attempt failed, copy to clipboard
-                        Log.d(TAG, "All delayed attempts failed, falling back to clipboard");
-                        copyToClipboard(context, text);
-                    }
-                }
-            }, delays[i]);
+    // ========================================================================
+    // PENDING INJECTION
+    // ========================================================================
+
+    private void injectWhenReady(Context context, String text, long traceId) {
+        if (pendingText != null) {
+            // Superseded before its target appeared; keep it recoverable
+            DictationTrace.instant(pendingTrace, DictationTrace.CAT_INJECT, "clipboard fallback");
+            copyToClipboard(pendingContext, pendingText);
+        }
+        DictationTrace.instant(traceId, DictationTrace.CAT_INJECT, "wait for focus");
+        pendingContext = context.getApplicationContext();
+        pendingText = text;
+        pendingTrace = traceId;
+        pendingSince = System.currentTimeMillis();
+        pendingAttempts = 0;
+        handler.removeCallbacks(injectTimeoutRunnable);
+        handler.postDelayed(injectTimeoutRunnable, INJECT_TIMEOUT_MS);
+    }
+
+    private void retryPendingInjection() {
+        pendingAttempts++;
+        if (injectNow(pendingText, pendingTrace)) {
+            Log.d(TAG, "Pending text injected after " + (System.currentTimeMillis() - pendingSince)
+                    + "ms (" + pendingAttempts + " event retries)");
+            handler.removeCallbacks(injectTimeoutRunnable);
+            clearPendingInjection();
+        }
+    }
+
+    private void onInjectTimeout() {
+        if (pendingText == null) {
+            return;
+        }
+        // Last chance, e.g. the target appeared without an event we listen to
+        if (!injectNow(pendingText, pendingTrace)) {
+            Log.d(TAG, "No injection target after " + INJECT_TIMEOUT_MS + "ms ("
+                    + pendingAttempts + " event retries), falling back to clipboard");
+            DictationTrace.instant(pendingTrace, DictationTrace.CAT_INJECT, "clipboard fallback");
+            copyToClipboard(pendingContext, pendingText);
         }
+        clearPendingInjection();
+    }
+
+    private void clearPendingInjection() {
+        pendingContext = null;
+        pendingText = null;
+        pendingTrace = 0;
+        pendingAttempts = 0;
     }
 
     private static void copyToClipboard(Context context, String text) {
@@ -185,86 +370,148 @@ public class VoiceTextInjectionService extends AccessibilityService {
         }
     }
 
-    private boolean injectViaAccessibility(String text) {
+    // ========================================================================
+    // STRATEGIES
+    // ========================================================================
+
+    /**
+     * Try the strategies that are possible right now in the order learned
+     * for the target app, recording each outcome
+     */
+    private boolean injectNow(String text, long traceId) {
         try {
-            // Try active window first
-            if (tryInjectInWindow(getRootInActiveWindow(), text)) {
-                return true;
+            long finding = System.nanoTime();
+            AccessibilityNodeInfo node = findTargetNode();
+            String pkg = node != null && node.getPackageName() != null
+                    ? node.getPackageName().toString()
+                    : RustInputMethodService.getTargetPackage();
+            DictationTrace.span(traceId, DictationTrace.CAT_INJECT, "find target", finding, System.nanoTime(),
+                    node != null ? pkg : "none");
+
+            EnumSet<InjectionStrategyCache.Strategy> available = EnumSet.noneOf(InjectionStrategyCache.Strategy.class);
+            if (RustInputMethodService.isAvailable()) {
+                available.add(InjectionStrategyCache.Strategy.IME);
+            }
+            int fieldLength = 0;
+            if (node != null) {
+                CharSequence current = node.getText();
+                fieldLength = current != null ? current.length() : 0;
+                available.add(InjectionStrategyCache.Strategy.PASTE);
+                available.add(InjectionStrategyCache.Strategy.SET_TEXT);
+                if (fieldLength == 0) {
+                    // Never offered where it would wipe existing text
+                    available.add(InjectionStrategyCache.Strategy.REPLACE_TEXT);
+                }
             }
 
-            // Fallback: try ALL windows for system-wide injection
-            // This is critical for multi-window scenarios and app switching
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                List<AccessibilityWindowInfo> windows = getWindows();
-                Log.d(TAG, "Traversing " + windows.size() + " windows for editable node");
-
-                for (AccessibilityWindowInfo window : windows) {
-                    AccessibilityNodeInfo root = window.getRoot();
-                    if (root != null) {
-                        if (tryInjectInWindow(root, text)) {
-                            return true;
-                        }
-                    }
+            List<InjectionStrategyCache.Strategy> order = strategies.order(pkg, available,
+                    fieldLength > LONG_FIELD_CHARS);
+            Log.d(TAG, "Injection order for " + pkg + ": " + order);
+            boolean focusRequested = false;
+            for (InjectionStrategyCache.Strategy strategy : order) {
+                if (strategy != InjectionStrategyCache.Strategy.IME && !focusRequested) {
+                    requestFocus(node);
+                    focusRequested = true;
+                }
+                // A refusal before focus arrives says nothing about the app;
+                // refresh so isFocused() sees the state after requestFocus()
+                boolean meaningful = strategy == InjectionStrategyCache.Strategy.IME
+                        || (node.refresh() && node.isFocused());
+                long start = System.nanoTime();
+                boolean success = perform(strategy, node, text);
+                long end = System.nanoTime();
+                long elapsed = end - start;
+                DictationTrace.span(traceId, DictationTrace.CAT_INJECT, strategy.name(), start, end,
+                        success ? "ok" : "failed");
+                if (success || meaningful) {
+                    strategies.record(pkg, strategy, success, elapsed);
+                }
+                if (success) {
+                    Log.d(TAG, "Text injected via " + strategy + " in " + elapsed / 1000000 + "ms ("
+                            + strategies.getStats(pkg, strategy) + ")");
+                    return true;
                 }
             }
         } catch (Exception e) {
-            Log.e(TAG, "Error injecting via accessibility", e);
+            Log.e(TAG, "Error injecting text", e);
         }
         return false;
     }
 
-    private boolean tryInjectInWindow(AccessibilityNodeInfo root, String text) {
-        if (root == null) {
-            return false;
+    private boolean perform(InjectionStrategyCache.Strategy strategy, AccessibilityNodeInfo node, String text) {
+        switch (strategy) {
+            case IME:
+                return RustInputMethodService.injectText(text);
+            case PASTE:
+                return pasteAtCursor(node, text);
+            case SET_TEXT:
+                return setTextAtCursor(node, text);
+            case REPLACE_TEXT:
+                return replaceText(node, text);
+            default:
+                return false;
         }
+    }
 
-        try {
-            AccessibilityNodeInfo focused = findFocusedEditableNode(root);
-            if (focused != null) {
-                boolean result = insertTextAtCursor(focused, text);
-                if (!result) {
-                    // Fallback: try paste action
-                    result = tryPasteText(focused, text);
-                }
-                focused.recycle();
-                root.recycle();
-                return result;
-            }
+    /**
+     * Target for the accessibility strategies: the cached focused editable,
+     * else a tree search (active window, then all windows). The result is
+     * owned by the cache.
+     */
+    private AccessibilityNodeInfo findTargetNode() {
+        // Usually the node focus events already told us about
+        AccessibilityNodeInfo cached = getCachedEditable();
+        if (cached != null) {
+            Log.d(TAG, "Using cached editable node (window " + cached.getWindowId() + ")");
+            return cached;
+        }
 
-            // If no focused editable found, try first editable node
-            AccessibilityNodeInfo anyEditable = findAnyEditableNode(root);
-            if (anyEditable != null) {
-                Log.d(TAG, "No focused editable, trying any editable node");
-                boolean result = insertTextAtCursor(anyEditable, text);
-                if (!result) {
-                    result = tryPasteText(anyEditable, text);
+        // Cache miss: try active window first
+        AccessibilityNodeInfo found = findInWindow(getRootInActiveWindow());
+
+        // Fallback: try ALL windows for system-wide injection
+        // This is critical for multi-window scenarios and app switching
+        if (found == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            List<AccessibilityWindowInfo> windows = getWindows();
+            Log.d(TAG, "Traversing " + windows.size() + " windows for editable node");
+            for (AccessibilityWindowInfo window : windows) {
+                found = findInWindow(window.getRoot());
+                if (found != null) {
+                    break;
                 }
-                anyEditable.recycle();
-                root.recycle();
-                return result;
             }
-
-            root.recycle();
-        } catch (Exception e) {
-            Log.e(TAG, "Error in tryInjectInWindow", e);
         }
-        return false;
+        if (found == null) {
+            return null;
+        }
+        if (isOwnNode(found)) {
+            found.recycle();
+            return null;
+        }
+        cacheEditable(found);
+        return found;
     }
 
-    private boolean tryPasteText(AccessibilityNodeInfo node, String text) {
+    // Recycles root; the returned node is the caller's
+    private AccessibilityNodeInfo findInWindow(AccessibilityNodeInfo root) {
+        if (root == null) {
+            return null;
+        }
         try {
-            // Copy to clipboard first
-            ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-            ClipData clip = ClipData.newPlainText("VoiceAI", text);
-            clipboard.setPrimaryClip(clip);
-
-            // Try paste action
-            boolean pasted = node.performAction(AccessibilityNodeInfo.ACTION_PASTE);
-            Log.d(TAG, "Paste action result: " + pasted);
-            return pasted;
+            AccessibilityNodeInfo node = findFocusedEditableNode(root);
+            if (node == null) {
+                // If no focused editable found, try first editable node
+                node = findAnyEditableNode(root);
+                if (node != null) {
+                    Log.d(TAG, "No focused editable, trying any editable node");
+                }
+            }
+            return node;
         } catch (Exception e) {
-            Log.e(TAG, "Error in paste fallback", e);
-            return false;
+            Log.e(TAG, "Error searching window", e);
+            return null;
+        } finally {
+            root.recycle();
         }
     }
 
@@ -316,55 +563,119 @@ public class VoiceTextInjectionService extends AccessibilityService {
         return null;
     }
 
-    private boolean insertTextAtCursor(AccessibilityNodeInfo node, String text) {
-        try {
-            // First ensure the node has focus via ACTION_CLICK
-            if (!node.isFocused()) {
-                Log.d(TAG, "Node not focused, attempting to focus via ACTION_CLICK");
-                node.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                // Give a tiny bit of time for focus to take effect
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException ignored) {
-                }
+    private void requestFocus(AccessibilityNodeInfo node) {
+        // First ensure the node has focus via ACTION_CLICK. No waiting:
+        // if the text doesn't take yet, the resulting focus event
+        // triggers the retry (see injectWhenReady)
+        if (!node.isFocused()) {
+            Log.d(TAG, "Node not focused, attempting to focus via ACTION_CLICK");
+            node.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+        }
+
+        // Also try ACTION_FOCUS to ensure input focus
+        node.performAction(AccessibilityNodeInfo.ACTION_FOCUS);
+    }
+
+    // Clamped [start, end] selection in the current text
+    private static int[] selection(AccessibilityNodeInfo node, int length) {
+        int selStart = node.getTextSelectionStart();
+        int selEnd = node.getTextSelectionEnd();
+
+        if (selStart < 0)
+            selStart = length;
+        if (selEnd < 0)
+            selEnd = selStart;
+        if (selStart > length)
+            selStart = length;
+        if (selEnd > length)
+            selEnd = length;
+        return new int[] { selStart, Math.max(selStart, selEnd) };
+    }
+
+    // Smart spacing after punctuation
+    private static String textToInsert(CharSequence current, int selStart, String text) {
+        if (selStart > 0 && selStart <= current.length()) {
+            char before = current.charAt(selStart - 1);
+            if (before == '.' || before == '!' || before == '?' || before == ',') {
+                return " " + text;
             }
+        }
+        return text;
+    }
 
-            // Also try ACTION_FOCUS to ensure input focus
-            node.performAction(AccessibilityNodeInfo.ACTION_FOCUS);
+    /**
+     * PASTE: last resort, tried only after the other strategies failed.
+     * The clipboard is never left changed: once the (synchronous) paste
+     * action has returned, the user's clip is put back, or the clipboard
+     * cleared if it was empty. When a clip exists that we may not read
+     * (Android 10+ background restriction), it can't be put back, so the
+     * paste is not attempted at all.
+     */
+    private boolean pasteAtCursor(AccessibilityNodeInfo node, String text) {
+        ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+        if (clipboard == null) {
+            return false;
+        }
+        ClipData previous = clipboard.getPrimaryClip();
+        if (previous == null && clipboard.hasPrimaryClip()) {
+            Log.d(TAG, "Clipboard not readable, skipping paste");
+            return false;
+        }
 
+        boolean clipSet = false;
+        try {
             CharSequence currentText = node.getText();
-            String current = currentText != null ? currentText.toString() : "";
+            CharSequence current = currentText != null ? currentText : "";
+            String textToInsert = textToInsert(current, selection(node, current.length())[0], text);
 
-            int selStart = node.getTextSelectionStart();
-            int selEnd = node.getTextSelectionEnd();
-
-            if (selStart < 0)
-                selStart = current.length();
-            if (selEnd < 0)
-                selEnd = selStart;
-            if (selStart > current.length())
-                selStart = current.length();
-            if (selEnd > current.length())
-                selEnd = current.length();
-
-            // Smart spacing after punctuation
-            String textToInsert = text;
-            if (selStart > 0 && selStart <= current.length()) {
-                char before = current.charAt(selStart - 1);
-                if (before == '.' || before == '!' || before == '?' || before == ',') {
-                    textToInsert = " " + text;
-                }
+            clipboard.setPrimaryClip(ClipData.newPlainText("VoiceAI", textToInsert));
+            clipSet = true;
+            boolean pasted = node.performAction(AccessibilityNodeInfo.ACTION_PASTE);
+            Log.d(TAG, "Paste action result: " + pasted);
+            return pasted;
+        } catch (Exception e) {
+            Log.e(TAG, "Error in paste", e);
+            return false;
+        } finally {
+            if (clipSet) {
+                restoreClipboard(clipboard, previous);
             }
+        }
+    }
+
+    private static void restoreClipboard(ClipboardManager clipboard, ClipData previous) {
+        try {
+            if (previous != null) {
+                clipboard.setPrimaryClip(previous);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                clipboard.clearPrimaryClip();
+            } else {
+                clipboard.setPrimaryClip(ClipData.newPlainText("", ""));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error restoring clipboard", e);
+        }
+    }
+
+    /**
+     * SET_TEXT: rewrites the whole field with the text spliced in at the
+     * cursor, then restores the cursor after it. O(field length).
+     */
+    private boolean setTextAtCursor(AccessibilityNodeInfo node, String text) {
+        try {
+            CharSequence currentText = node.getText();
+            String current = currentText != null ? currentText.toString() : "";
+            int[] sel = selection(node, current.length());
+            String textToInsert = textToInsert(current, sel[0], text);
 
             // Build new text
             StringBuilder newText = new StringBuilder(current);
-            if (selEnd > selStart) {
-                newText.replace(selStart, selEnd, textToInsert);
+            if (sel[1] > sel[0]) {
+                newText.replace(sel[0], sel[1], textToInsert);
             } else {
-                newText.insert(selStart, textToInsert);
+                newText.insert(sel[0], textToInsert);
             }
 
-            // Try METHOD 1: ACTION_SET_TEXT (standard approach)
             Bundle args = new Bundle();
             args.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE,
                     newText.toString());
@@ -373,25 +684,32 @@ public class VoiceTextInjectionService extends AccessibilityService {
 
             if (success) {
                 // Move cursor to end of inserted text
-                int newPos = selStart + textToInsert.length();
+                int newPos = sel[0] + textToInsert.length();
                 Bundle selArgs = new Bundle();
                 selArgs.putInt(AccessibilityNodeInfo.ACTION_ARGUMENT_SELECTION_START_INT, newPos);
                 selArgs.putInt(AccessibilityNodeInfo.ACTION_ARGUMENT_SELECTION_END_INT, newPos);
                 node.performAction(AccessibilityNodeInfo.ACTION_SET_SELECTION, selArgs);
-                return true;
             }
+            return success;
+        } catch (Exception e) {
+            Log.e(TAG, "Error inserting text", e);
+            return false;
+        }
+    }
 
-            // METHOD 2: For apps like Word that don't support ACTION_SET_TEXT,
-            // try setting just the new text (without cursor position logic)
-            Log.d(TAG, "Trying fallback: SET_TEXT with just the text to insert");
+    /**
+     * REPLACE_TEXT: for apps like Word that reject the spliced SET_TEXT,
+     * set just the new text. Only offered for empty fields.
+     */
+    private boolean replaceText(AccessibilityNodeInfo node, String text) {
+        try {
             Bundle directArgs = new Bundle();
-            directArgs.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, textToInsert);
-            success = node.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, directArgs);
+            directArgs.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, text);
+            boolean success = node.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, directArgs);
             Log.d(TAG, "Direct SET_TEXT result: " + success);
-
             return success;
         } catch (Exception e) {
-            Log.e(TAG, "Error inserting text", e);
+            Log.e(TAG, "Error replacing text", e);
             return false;
         }
     }
@@ -0,0 +1,115 @@
+package com.voiceai.app;
+
+/**
+ * WaveformGeometry - Amplitudes and point positions for WaveformRenderer
+ *
+ * Plain Java (no android.graphics), so it runs in JVM unit tests. Keeps
+ * the recent amplitudes in a primitive ring and computes each point of the
+ * wave on demand without allocating.
+ *
+ * step() advances the wave and reports whether a redraw is worthwhile:
+ * once the level has been steady for a full wave length, only every
+ * IDLE_REDRAW_DIVISOR-th step is drawn.
+ */
+final class WaveformGeometry {
+
+    // Points across the view; power of two for the ring mask
+    static final int POINTS = 32;
+    private static final int MASK = POINTS - 1;
+
+    static final float MIN_LEVEL = 0.05f;
+    static final float LEVEL_EPSILON = 0.01f;
+    static final int IDLE_REDRAW_DIVISOR = 4;
+
+    // Peak amplitude as a share of the view height
+    static final float MAX_AMPLITUDE = 0.4f;
+
+    private final float[] amplitudes = new float[POINTS];
+    private int head;
+    private int animOffset;
+
+    private float level = 0.1f;
+    private float lastStepLevel = -1f;
+    private int steadySteps;
+
+    private int width;
+    private int height;
+
+    WaveformGeometry() {
+        for (int i = 0; i < POINTS; i++) {
+            amplitudes[i] = 0.1f;
+        }
+    }
+
+    void setLevel(float level) {
+        this.level = Math.max(MIN_LEVEL, Math.min(1.0f, level));
+    }
+
+    float getLevel() {
+        return level;
+    }
+
+    /**
+     * @return true if the size changed
+     */
+    boolean setSize(int width, int height) {
+        if (width == this.width && height == this.height) {
+            return false;
+        }
+        this.width = width;
+        this.height = height;
+        return true;
+    }
+
+    /** Whether there is anything to draw */
+    boolean hasSize() {
+        return width > 0 && height > 0;
+    }
+
+    /**
+     * Advance the wave by one point
+     *
+     * @return true if the view should be invalidated
+     */
+    boolean step() {
+        animOffset++;
+        head = (head + 1) & MASK;
+        // New amplitude based on audio level with some variation
+        amplitudes[head] = level + (float) (Math.sin(animOffset * 0.3) * 0.1);
+
+        if (Math.abs(level - lastStepLevel) > LEVEL_EPSILON) {
+            lastStepLevel = level;
+            steadySteps = 0;
+        } else {
+            steadySteps++;
+        }
+        // Keep drawing until the last change has scrolled across the view
+        return steadySteps < POINTS || steadySteps % IDLE_REDRAW_DIVISOR == 0;
+    }
+
+    /**
+     * Amplitude at position i (0 = newest, leftmost)
+     */
+    float amplitudeAt(int i) {
+        return amplitudes[(head - i) & MASK];
+    }
+
+    /** Horizontal distance between points */
+    float segmentWidth() {
+        return (float) width / (POINTS - 1);
+    }
+
+    float x(int i) {
+        return i * segmentWidth();
+    }
+
+    /**
+     * Vertical position of point i; direction -1 gives the mirrored wave
+     */
+    float y(int i, float direction) {
+        float amp = amplitudeAt(i) * height * MAX_AMPLITUDE;
+        // Smooth sine-like wave
+        float phase = (float) Math.sin((i + animOffset * 0.5) * 0.5);
+        return height / 2f + direction * phase * amp;
+    }
+}
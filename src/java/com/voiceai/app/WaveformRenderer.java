@@ -0,0 +1,88 @@
+package com.voiceai.app;
+
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Shader;
+
+/**
+ * WaveformRenderer - Allocation-free drawing for SoundWaveView
+ *
+ * Amplitudes and point positions come from {@link WaveformGeometry}; this
+ * class reuses one Path for both the wave and its mirror, and only creates
+ * the gradient shader when the size changes, so steady-state frames
+ * allocate nothing.
+ */
+public final class WaveformRenderer {
+
+    private static final int[] GRADIENT_COLORS = { 0xFFFFFFFF, 0xFFCCCCCC, 0xFFFFFFFF };
+    private static final int MIRROR_ALPHA = 150;
+
+    private final WaveformGeometry geometry = new WaveformGeometry();
+    private final Paint paint;
+    private final Path path = new Path();
+
+    public WaveformRenderer() {
+        paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(3f);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setColor(0xFFFFFFFF); // White wave
+    }
+
+    public void setLevel(float level) {
+        geometry.setLevel(level);
+    }
+
+    public float getLevel() {
+        return geometry.getLevel();
+    }
+
+    /**
+     * Call from View.onSizeChanged; rebuilds the shader only on change
+     */
+    public void setSize(int width, int height) {
+        if (geometry.setSize(width, height) && width > 0) {
+            paint.setShader(new LinearGradient(0, 0, width, 0, GRADIENT_COLORS, null, Shader.TileMode.CLAMP));
+        }
+    }
+
+    /**
+     * Advance the wave by one point
+     *
+     * @return true if the view should be invalidated
+     */
+    public boolean step() {
+        return geometry.step();
+    }
+
+    public void draw(Canvas canvas) {
+        if (!geometry.hasSize()) {
+            return;
+        }
+
+        buildPath(1f);
+        canvas.drawPath(path, paint);
+
+        // Mirrored wave for symmetry
+        buildPath(-1f);
+        paint.setAlpha(MIRROR_ALPHA);
+        canvas.drawPath(path, paint);
+        paint.setAlpha(255);
+    }
+
+    private void buildPath(float direction) {
+        path.reset();
+        float halfSegment = geometry.segmentWidth() / 2;
+        for (int i = 0; i < WaveformGeometry.POINTS; i++) {
+            float x = geometry.x(i);
+            float y = geometry.y(i, direction);
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.quadTo(x - halfSegment, y, x, y);
+            }
+        }
+    }
+}
@@ -0,0 +1,869 @@
+package com.voiceai.app.processing;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BatchProcessor - Offline post-processing of transcript files
+ *
+ * Runs large transcript dumps through a VoiceAIPipeline variant on a plain
+ * JVM (no Android runtime needed; compile against android.jar, run anywhere).
+ *
+ * - Input is memory-mapped in fixed windows and split into lines, so memory
+ *   stays constant regardless of file size
+ * - Lines are batched and processed on a worker pool; a bounded queue of
+ *   pending batches applies backpressure to the reader
+ * - A single writer drains batches in input order into a buffered stream,
+ *   so output line N always corresponds to input line N
+ * - Per-stage timings (read, each processor, write) and throughput are
+ *   reported at the end
+ *
+ * Formats:
+ * - TEXT: one raw transcript per line, one processed transcript per line
+ * - NDJSON: one JSON object per line; the string field (default "text") is
+ *   processed and the result added as "processed". Malformed lines are
+ *   copied through unchanged and counted.
+ * - Journal (--journal): a {@link TranscriptJournal} directory pulled off a
+ *   device, replayed through the chosen variant to compare against what
+ *   was recorded
+ *
+ * Usage (see {@link #main}):
+ * java -cp out com.voiceai.app.PostProcessor --pipeline default in.ndjson out.ndjson
+ */
+public final class BatchProcessor {
+
+    private static final String TAG = "VoiceAI.Batch";
+
+    public enum Format {
+        TEXT, NDJSON
+    }
+
+    static final int DEFAULT_WINDOW_BYTES = 64 * 1024 * 1024;
+    static final int DEFAULT_MAX_LINE_BYTES = 16 * 1024 * 1024;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    // Pseudo-stages reported next to the processor timings
+    static final String STAGE_READ = "(read)";
+    static final String STAGE_WRITE = "(write)";
+
+    private final ProcessingPipeline pipeline;
+    private final ProcessingContext context;
+    private final Format format;
+    private final String inputField;
+    private final String outputField;
+    private final int threads;
+    private final int batchSize;
+    private final int windowBytes;
+    private final int maxLineBytes;
+
+    private BatchProcessor(Builder builder) {
+        this.pipeline = builder.pipeline;
+        this.context = builder.context;
+        this.format = builder.format;
+        this.inputField = builder.inputField;
+        this.outputField = builder.outputField;
+        this.threads = builder.threads;
+        this.batchSize = builder.batchSize;
+        this.windowBytes = builder.windowBytes;
+        this.maxLineBytes = builder.maxLineBytes;
+    }
+
+    public static Builder builder(ProcessingPipeline pipeline) {
+        return new Builder(pipeline);
+    }
+
+    /**
+     * Create one of the named VoiceAIPipeline variants usable without a
+     * device: default, minimal, debug, offline (rule-based fallback unless
+     * the native LLM library is on java.library.path)
+     */
+    public static ProcessingPipeline createPipeline(String variant) {
+        switch (variant.toLowerCase(Locale.ROOT)) {
+            case "default":
+                return VoiceAIPipeline.create();
+            case "minimal":
+                return VoiceAIPipeline.createMinimal();
+            case "debug":
+                return VoiceAIPipeline.createDebug();
+            case "offline":
+                return VoiceAIPipeline.createOffline();
+            default:
+                throw new IllegalArgumentException("Unknown pipeline: " + variant);
+        }
+    }
+
+    /**
+     * Process every line of the input file and write results to out
+     * (flushed, not closed)
+     */
+    public Stats run(Path input, OutputStream out) throws IOException, InterruptedException {
+        Stats stats = new Stats(threads);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+        BlockingQueue<Future<String[]>> pending = new ArrayBlockingQueue<>(threads * 4);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_BYTES);
+        WriterLoop writerLoop = new WriterLoop(pending, writer, stats);
+        Thread writerThread = new Thread(writerLoop, "VoiceAI-BatchWriter");
+
+        long start = System.nanoTime();
+        // Timings go to this run's stats even when the pipeline is shared
+        ProcessingContext timed = context.toBuilder().stageTimer(stats).build();
+        writerThread.start();
+        try (LineReader reader = new LineReader(input, windowBytes, maxLineBytes)) {
+            List<String> batch = new ArrayList<>(batchSize);
+            long readStart = System.nanoTime();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == batchSize) {
+                    stats.record(STAGE_READ, System.nanoTime() - readStart);
+                    if (!submit(workers, pending, batch, timed, stats, writerThread)) {
+                        break;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                    readStart = System.nanoTime();
+                }
+            }
+            stats.record(STAGE_READ, System.nanoTime() - readStart);
+            if (!batch.isEmpty()) {
+                submit(workers, pending, batch, timed, stats, writerThread);
+            }
+            stats.bytesRead = reader.getBytesRead();
+        } finally {
+            enqueue(pending, WriterLoop.END, writerThread);
+            writerThread.join();
+            workers.shutdownNow();
+        }
+
+        if (writerLoop.failure != null) {
+            throw new IOException("Batch processing failed", writerLoop.failure);
+        }
+        stats.wallNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    /**
+     * @return false if the writer has stopped and reading should end
+     */
+    private boolean submit(ExecutorService workers, BlockingQueue<Future<String[]>> pending,
+            List<String> batch, ProcessingContext context, Stats stats, Thread writerThread)
+            throws InterruptedException {
+        final String[] lines = batch.toArray(new String[0]);
+        return enqueue(pending, workers.submit(() -> processBatch(lines, context, stats)), writerThread);
+    }
+
+    /**
+     * Blocks while the writer falls behind, keeping memory bounded, but
+     * gives up once the writer has exited (output error)
+     */
+    private static boolean enqueue(BlockingQueue<Future<String[]>> pending, Future<String[]> future,
+            Thread writerThread) throws InterruptedException {
+        while (!pending.offer(future, 100, TimeUnit.MILLISECONDS)) {
+            if (!writerThread.isAlive()) {
+                return false;
+            }
+        }
+        return writerThread.isAlive();
+    }
+
+    private String[] processBatch(String[] lines, ProcessingContext context, Stats stats) {
+        String[] results = new String[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            results[i] = processLine(lines[i], context, stats);
+        }
+        stats.records.add(lines.length);
+        return results;
+    }
+
+    String processLine(String line, ProcessingContext context, Stats stats) {
+        if (format == Format.TEXT) {
+            // Keep one record per line even if a processor emits paragraphs
+            return pipeline.process(line, context).replace('\n', ' ');
+        }
+
+        if (line.trim().isEmpty()) {
+            return line;
+        }
+        String text;
+        try {
+            text = Json.getString(line, inputField);
+        } catch (IllegalArgumentException e) {
+            stats.malformed.increment();
+            return line;
+        }
+        if (text == null) {
+            stats.malformed.increment();
+            return line;
+        }
+        return Json.putString(line, outputField, pipeline.process(text, context));
+    }
+
+    /**
+     * CLI entry point (also reachable through PostProcessor.main)
+     *
+     * Options: --pipeline default|minimal|debug|offline, --format text|ndjson
+     * (default from extension), --field NAME, --output-field NAME,
+     * --threads N, --verbose. Output "-" or omitted writes to stdout.
+     * --journal treats the input as a TranscriptJournal directory and replays
+     * it single-threaded; output (optional) gets one transcript per line.
+     */
+    public static void main(String[] args) throws Exception {
+        String variant = "default";
+        Format format = null;
+        String field = "text";
+        String outputField = "processed";
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean journal = false;
+        List<String> positional = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--pipeline".equals(arg)) {
+                variant = args[++i];
+            } else if ("--format".equals(arg)) {
+                format = Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+            } else if ("--field".equals(arg)) {
+                field = args[++i];
+            } else if ("--output-field".equals(arg)) {
+                outputField = args[++i];
+            } else if ("--threads".equals(arg)) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--journal".equals(arg)) {
+                journal = true;
+            } else if ("--verbose".equals(arg)) {
+                ProcessingLog.setVerbose(true);
+            } else if (arg.startsWith("--")) {
+                usage("Unknown option: " + arg);
+                return;
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (positional.isEmpty() || positional.size() > 2) {
+            usage(null);
+            return;
+        }
+
+        Path input = Paths.get(positional.get(0));
+        String output = positional.size() > 1 ? positional.get(1) : "-";
+        if (journal) {
+            replayJournal(input, variant, positional.size() > 1 ? output : null);
+            return;
+        }
+        if (format == null) {
+            format = detectFormat(input.toString());
+        }
+
+        BatchProcessor processor = builder(createPipeline(variant))
+                .format(format)
+                .inputField(field)
+                .outputField(outputField)
+                .threads(threads)
+                .build();
+
+        OutputStream out = "-".equals(output) ? System.out : new FileOutputStream(output);
+        try {
+            Stats stats = processor.run(input, out);
+            System.err.print(stats.summary());
+        } finally {
+            if (out != System.out) {
+                out.close();
+            }
+        }
+    }
+
+    private static void replayJournal(Path dir, String variant, String output) throws IOException {
+        Writer out = null;
+        if (output != null) {
+            OutputStream stream = "-".equals(output) ? System.out : new FileOutputStream(output);
+            out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), WRITE_BUFFER_BYTES);
+        }
+        try {
+            Stats stats = TranscriptJournal.replay(dir.toFile(), createPipeline(variant),
+                    ProcessingContext.builder().build(), out);
+            System.err.print(stats.summary());
+        } finally {
+            if (out != null && !"-".equals(output)) {
+                out.close();
+            }
+        }
+    }
+
+    static Format detectFormat(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".ndjson") || lower.endsWith(".jsonl") ? Format.NDJSON : Format.TEXT;
+    }
+
+    private static void usage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println("Usage: BatchProcessor [--pipeline default|minimal|debug|offline]"
+                + " [--format text|ndjson] [--field text] [--output-field processed]"
+                + " [--threads N] [--journal] [--verbose] <input> [<output>|-]");
+    }
+
+    // ========================================================================
+    // INPUT
+    // ========================================================================
+
+    /**
+     * Reads UTF-8 lines from a file mapped one window at a time.
+     * Only the current window and the current line are resident.
+     */
+    static final class LineReader implements Closeable {
+
+        private final FileChannel channel;
+        private final long size;
+        private final int windowBytes;
+        private final int maxLineBytes;
+
+        private MappedByteBuffer window;
+        private long windowEnd;
+        private byte[] line = new byte[256];
+        private long bytesRead;
+
+        LineReader(Path path, int windowBytes, int maxLineBytes) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+            this.windowBytes = windowBytes;
+            this.maxLineBytes = maxLineBytes;
+        }
+
+        /**
+         * @return next line without terminator (\n or \r\n), or null at EOF
+         */
+        String readLine() throws IOException {
+            int length = 0;
+            while (true) {
+                if (window == null || !window.hasRemaining()) {
+                    if (windowEnd >= size) {
+                        return length > 0 ? decode(length) : null;
+                    }
+                    long count = Math.min(windowBytes, size - windowEnd);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, count);
+                    windowEnd += count;
+                }
+
+                while (window.hasRemaining()) {
+                    byte b = window.get();
+                    bytesRead++;
+                    if (b == '\n') {
+                        return decode(length);
+                    }
+                    if (length >= maxLineBytes) {
+                        throw new IOException("Line exceeds " + maxLineBytes + " bytes at offset " + bytesRead);
+                    }
+                    if (length == line.length) {
+                        byte[] grown = new byte[Math.min(length * 2, maxLineBytes)];
+                        System.arraycopy(line, 0, grown, 0, length);
+                        line = grown;
+                    }
+                    line[length++] = b;
+                }
+            }
+        }
+
+        private String decode(int length) {
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
+    // ========================================================================
+    // OUTPUT
+    // ========================================================================
+
+    private static final class WriterLoop implements Runnable {
+
+        // Sentinel marking the end of input
+        static final Future<String[]> END = new FutureTask<>(() -> null);
+
+        static {
+            ((FutureTask<String[]>) END).run();
+        }
+
+        private final BlockingQueue<Future<String[]>> pending;
+        private final Writer writer;
+        private final Stats stats;
+        volatile Throwable failure;
+
+        WriterLoop(BlockingQueue<Future<String[]>> pending, Writer writer, Stats stats) {
+            this.pending = pending;
+            this.writer = writer;
+            this.stats = stats;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Future<String[]> next = pending.take();
+                    if (next == END) {
+                        break;
+                    }
+                    // Futures are queued in input order, so waiting on the head keeps output ordered
+                    String[] results = next.get();
+                    long start = System.nanoTime();
+                    for (String result : results) {
+                        writer.write(result);
+                        writer.write('\n');
+                    }
+                    stats.record(STAGE_WRITE, System.nanoTime() - start);
+                }
+                long start = System.nanoTime();
+                writer.flush();
+                stats.record(STAGE_WRITE, System.nanoTime() - start);
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                failure = e;
+            }
+            if (failure != null) {
+                ProcessingLog.e(TAG, "Writer stopped: " + failure);
+                // Unblock the reader if it is waiting on a full queue
+                pending.clear();
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "VoiceAI-BatchWorker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    // ========================================================================
+    // STATS
+    // ========================================================================
+
+    /**
+     * Throughput and per-stage timing for one run. Stage times are summed
+     * over all threads, so processor totals can exceed wall time.
+     */
+    public static final class Stats implements ProcessingPipeline.StageTimer {
+
+        private final int threads;
+        private final Map<String, LongAdder[]> stages = new ConcurrentHashMap<>();
+        final LongAdder records = new LongAdder();
+        final LongAdder malformed = new LongAdder();
+        // Journal replay: outputs that differ from the recorded ones
+        final LongAdder changed = new LongAdder();
+        volatile boolean replay;
+        volatile long bytesRead;
+        volatile long wallNanos;
+
+        Stats(int threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public void record(String stage, long nanos) {
+            LongAdder[] totals = stages.computeIfAbsent(stage, k -> new LongAdder[] { new LongAdder(), new LongAdder() });
+            totals[0].add(nanos);
+            totals[1].increment();
+        }
+
+        public long getRecords() {
+            return records.sum();
+        }
+
+        public long getMalformed() {
+            return malformed.sum();
+        }
+
+        public long getChanged() {
+            return changed.sum();
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * Total nanoseconds spent in a stage (processor name, or read/write)
+         */
+        public long getStageNanos(String stage) {
+            LongAdder[] totals = stages.get(stage);
+            return totals != null ? totals[0].sum() : 0;
+        }
+
+        public String summary() {
+            double seconds = Math.max(wallNanos, 1) / 1e9;
+            long count = getRecords();
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "Processed %,d records (%.1f MB) in %.2fs with %d threads%n",
+                    count, bytesRead / 1e6, seconds, threads));
+            sb.append(String.format(Locale.ROOT, "  %,.0f records/s, %.1f MB/s, %,d malformed%n",
+                    count / seconds, bytesRead / 1e6 / seconds, getMalformed()));
+            if (replay) {
+                sb.append(String.format(Locale.ROOT, "  %,d of %,d outputs differ from the journal%n",
+                        getChanged(), count));
+            }
+
+            long processorNanos = 0;
+            Map<String, LongAdder[]> sorted = new TreeMap<>(stages);
+            for (Map.Entry<String, LongAdder[]> entry : sorted.entrySet()) {
+                if (!isIoStage(entry.getKey())) {
+                    processorNanos += entry.getValue()[0].sum();
+                }
+            }
+
+            sb.append(String.format(Locale.ROOT, "  %-30s %12s %10s %7s%n", "Stage", "total ms", "avg us", "share"));
+            for (Map.Entry<String, LongAdder[]> entry : sorted.entrySet()) {
+                long nanos = entry.getValue()[0].sum();
+                long calls = Math.max(entry.getValue()[1].sum(), 1);
+                String share = isIoStage(entry.getKey()) || processorNanos == 0
+                        ? "-"
+                        : String.format(Locale.ROOT, "%.1f%%", 100.0 * nanos / processorNanos);
+                sb.append(String.format(Locale.ROOT, "  %-30s %12.1f %10.2f %7s%n",
+                        entry.getKey(), nanos / 1e6, nanos / 1e3 / calls, share));
+            }
+            return sb.toString();
+        }
+
+        private static boolean isIoStage(String stage) {
+            return STAGE_READ.equals(stage) || STAGE_WRITE.equals(stage);
+        }
+    }
+
+    // ========================================================================
+    // NDJSON
+    // ========================================================================
+
+    /**
+     * Just enough JSON to read and add one top-level string field without
+     * pulling org.json (Android-only) onto the server classpath
+     */
+    static final class Json {
+
+        private Json() {
+        }
+
+        /**
+         * @return decoded value of a top-level string field, or null if the
+         *         field is missing or not a string
+         * @throws IllegalArgumentException if the line is not a JSON object
+         */
+        static String getString(String json, String field) {
+            int[] value = findValue(json, field);
+            if (value == null || json.charAt(value[0]) != '"') {
+                return null;
+            }
+            return readString(json, new int[] { value[0] });
+        }
+
+        /**
+         * Set a top-level string field: replace its value if the field exists,
+         * otherwise append it before the closing brace of the object line
+         *
+         * @throws IllegalArgumentException if the line is not a JSON object
+         */
+        static String putString(String json, String field, String value) {
+            StringBuilder sb = new StringBuilder(json.length() + field.length() + value.length() + 8);
+            int[] existing = findValue(json, field);
+            if (existing != null) {
+                sb.append(json, 0, existing[0]);
+                quote(sb, value);
+                sb.append(json, existing[1], json.length());
+                return sb.toString();
+            }
+            int close = json.lastIndexOf('}');
+            int open = json.indexOf('{');
+            boolean empty = json.substring(open + 1, close).trim().isEmpty();
+            sb.append(json, 0, close);
+            if (!empty) {
+                sb.append(',');
+            }
+            quote(sb, field);
+            sb.append(':');
+            quote(sb, value);
+            sb.append(json, close, json.length());
+            return sb.toString();
+        }
+
+        /**
+         * @return {start, end} of the first top-level value named field, or
+         *         null if the object has no such field
+         */
+        private static int[] findValue(String json, String field) {
+            int[] pos = { skipWhitespace(json, 0) };
+            expect(json, pos, '{');
+            pos[0] = skipWhitespace(json, pos[0]);
+            if (peek(json, pos[0]) == '}') {
+                return null;
+            }
+            while (true) {
+                pos[0] = skipWhitespace(json, pos[0]);
+                String key = readString(json, pos);
+                pos[0] = skipWhitespace(json, pos[0]);
+                expect(json, pos, ':');
+                pos[0] = skipWhitespace(json, pos[0]);
+                int start = pos[0];
+                skipValue(json, pos);
+                if (key.equals(field)) {
+                    return new int[] { start, pos[0] };
+                }
+                pos[0] = skipWhitespace(json, pos[0]);
+                char c = peek(json, pos[0]);
+                pos[0]++;
+                if (c == '}') {
+                    return null;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Expected ',' or '}' at " + (pos[0] - 1));
+                }
+            }
+        }
+
+        static void quote(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                        sb.append("\\\"");
+                        break;
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+
+        private static String readString(String json, int[] pos) {
+            expect(json, pos, '"');
+            StringBuilder sb = null;
+            int start = pos[0];
+            while (true) {
+                char c = peek(json, pos[0]++);
+                if (c == '"') {
+                    return sb == null ? json.substring(start, pos[0] - 1) : sb.toString();
+                }
+                if (c != '\\') {
+                    if (sb != null) {
+                        sb.append(c);
+                    }
+                    continue;
+                }
+                if (sb == null) {
+                    sb = new StringBuilder(json.substring(start, pos[0] - 1));
+                }
+                char e = peek(json, pos[0]++);
+                switch (e) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        if (pos[0] + 4 > json.length()) {
+                            throw new IllegalArgumentException("Truncated \\u escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new IllegalArgumentException("Bad \\u escape at " + pos[0]);
+                        }
+                        pos[0] += 4;
+                        break;
+                    default:
+                        // \" \\ \/
+                        sb.append(e);
+                }
+            }
+        }
+
+        private static void skipValue(String json, int[] pos) {
+            char c = peek(json, pos[0]);
+            if (c == '"') {
+                readString(json, pos);
+                return;
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                while (true) {
+                    char d = peek(json, pos[0]);
+                    if (d == '"') {
+                        readString(json, pos);
+                        continue;
+                    }
+                    pos[0]++;
+                    if (d == '{' || d == '[') {
+                        depth++;
+                    } else if ((d == '}' || d == ']') && --depth == 0) {
+                        return;
+                    }
+                }
+            }
+            // Number, true, false, null
+            int start = pos[0];
+            while (pos[0] < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos[0])) < 0) {
+                pos[0]++;
+            }
+            if (pos[0] == start) {
+                throw new IllegalArgumentException("Expected value at " + start);
+            }
+        }
+
+        private static void expect(String json, int[] pos, char c) {
+            if (peek(json, pos[0]) != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + pos[0]);
+            }
+            pos[0]++;
+        }
+
+        private static char peek(String json, int pos) {
+            if (pos >= json.length()) {
+                throw new IllegalArgumentException("Unexpected end of line");
+            }
+            return json.charAt(pos);
+        }
+
+        private static int skipWhitespace(String json, int pos) {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            return pos;
+        }
+    }
+
+    // ========================================================================
+    // BUILDER
+    // ========================================================================
+
+    public static class Builder {
+        private final ProcessingPipeline pipeline;
+        private ProcessingContext context = ProcessingContext.builder().build();
+        private Format format = Format.TEXT;
+        private String inputField = "text";
+        private String outputField = "processed";
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int windowBytes = DEFAULT_WINDOW_BYTES;
+        private int maxLineBytes = DEFAULT_MAX_LINE_BYTES;
+
+        Builder(ProcessingPipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        public Builder context(ProcessingContext context) {
+            this.context = context;
+            return this;
+        }
+
+        public Builder format(Format format) {
+            this.format = format;
+            return this;
+        }
+
+        public Builder inputField(String field) {
+            this.inputField = field;
+            return this;
+        }
+
+        public Builder outputField(String field) {
+            this.outputField = field;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = Math.max(1, threads);
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = Math.max(1, batchSize);
+            return this;
+        }
+
+        Builder windowBytes(int windowBytes) {
+            this.windowBytes = Math.max(1, windowBytes);
+            return this;
+        }
+
+        Builder maxLineBytes(int maxLineBytes) {
+            this.maxLineBytes = Math.max(1, maxLineBytes);
+            return this;
+        }
+
+        public BatchProcessor build() {
+            return new BatchProcessor(this);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.voiceai.app.processing;
+
+/**
+ * CaptionAssembler - Builds the live caption line from subtitle fragments
+ *
+ * Each fragment from the native worker holds only the words that are new
+ * since the previous one, so it is post-processed once on arrival (through
+ * {@link VoiceAIPipeline#createLive()}) and appended; earlier text is never
+ * reprocessed. The caption keeps the last few hundred characters, trimmed
+ * at a word boundary, in one reused StringBuilder.
+ *
+ * Not thread-safe: append and read on one thread, or synchronize on the
+ * instance.
+ */
+public final class CaptionAssembler {
+
+    static final int DEFAULT_MAX_CHARS = 240;
+
+    private final ProcessingPipeline pipeline;
+    private final int maxChars;
+    private final StringBuilder caption;
+
+    public CaptionAssembler() {
+        this(VoiceAIPipeline.createLive(), DEFAULT_MAX_CHARS);
+    }
+
+    CaptionAssembler(ProcessingPipeline pipeline, int maxChars) {
+        this.pipeline = pipeline;
+        this.maxChars = maxChars;
+        this.caption = new StringBuilder(maxChars * 2);
+    }
+
+    /**
+     * Process a fragment and add it to the caption
+     *
+     * @return true if the caption changed
+     */
+    public boolean append(String fragment, ProcessingContext context) {
+        if (fragment == null) {
+            return false;
+        }
+        String text = pipeline.process(fragment.trim(), context);
+        if (text == null || (text = text.trim()).isEmpty()) {
+            return false;
+        }
+
+        int start = caption.length();
+        if (start > 0 && !startsWithPunctuation(text)) {
+            caption.append(' ');
+            start++;
+        }
+        caption.append(text);
+        if (Character.isLowerCase(caption.charAt(start)) && endsSentence(start)) {
+            caption.setCharAt(start, Character.toUpperCase(caption.charAt(start)));
+        }
+        trim();
+        return true;
+    }
+
+    public String getCaption() {
+        return caption.toString();
+    }
+
+    public boolean isEmpty() {
+        return caption.length() == 0;
+    }
+
+    public void clear() {
+        caption.setLength(0);
+    }
+
+    /** Whether the text before {@code index} ends a sentence (or is empty) */
+    private boolean endsSentence(int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            char c = caption.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '.' || c == '!' || c == '?';
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithPunctuation(String text) {
+        char c = text.charAt(0);
+        return c == '.' || c == ',' || c == '!' || c == '?' || c == ';' || c == ':';
+    }
+
+    private void trim() {
+        int excess = caption.length() - maxChars;
+        if (excess <= 0) {
+            return;
+        }
+        int cut = caption.indexOf(" ", excess);
+        caption.delete(0, cut < 0 ? excess : cut + 1);
+    }
+}
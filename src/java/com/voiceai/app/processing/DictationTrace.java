@@ -0,0 +1,283 @@
+package com.voiceai.app.processing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * DictationTrace - Per-utterance latency trace, from capture to injection
+ *
+ * Each dictation gets a trace id when recording starts (see
+ * {@link #begin(String)}). Capture, the native ASR worker (through JNI
+ * callbacks), every pipeline stage and every injection attempt record
+ * spans and instants under that id, so one slow dictation can be taken
+ * apart afterwards instead of matching log lines by TAG and time.
+ *
+ * Timestamps are System.nanoTime() (CLOCK_MONOTONIC on Android, the same
+ * clock lib.rs reads for native spans). Events go into a fixed,
+ * process-wide ring: a writer claims a slot with one atomic increment and
+ * publishes an immutable event into it, so recording never takes a lock
+ * and the oldest events are overwritten. Trace id 0 means untraced and
+ * records nothing.
+ *
+ * {@link #writeChromeJson(Writer)} exports the ring in Chrome trace-event
+ * format (chrome://tracing, Perfetto): one process row per utterance, one
+ * track per thread.
+ */
+public final class DictationTrace {
+
+    // Power of two; a dictation records a few dozen events
+    static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+
+    public static final String CAT_CAPTURE = "capture";
+    public static final String CAT_ASR = "asr";
+    public static final String CAT_PIPELINE = "pipeline";
+    public static final String CAT_INJECT = "inject";
+
+    private static final AtomicLong nextTraceId = new AtomicLong(1);
+    private static final AtomicLong recorded = new AtomicLong();
+    private static final AtomicReferenceArray<Event> ring = new AtomicReferenceArray<>(CAPACITY);
+
+    private DictationTrace() {
+    }
+
+    /**
+     * One recorded span (durationNanos >= 0) or instant (durationNanos < 0)
+     */
+    public static final class Event {
+        public final long traceId;
+        public final String category;
+        public final String name;
+        public final long startNanos;
+        public final long durationNanos;
+        public final String detail;
+        public final long threadId;
+        public final String threadName;
+
+        Event(long traceId, String category, String name, long startNanos, long durationNanos, String detail) {
+            Thread thread = Thread.currentThread();
+            this.traceId = traceId;
+            this.category = category;
+            this.name = name;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.detail = detail;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+        }
+
+        public boolean isInstant() {
+            return durationNanos < 0;
+        }
+    }
+
+    /**
+     * Start a trace: returns a new id and records the named instant
+     */
+    public static long begin(String name) {
+        long traceId = nextTraceId.getAndIncrement();
+        instant(traceId, CAT_CAPTURE, name);
+        return traceId;
+    }
+
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record a span that started at startNanos and ends now
+     */
+    public static void span(long traceId, String category, String name, long startNanos) {
+        span(traceId, category, name, startNanos, System.nanoTime(), null);
+    }
+
+    /**
+     * Record a span with an optional detail (outcome, size, ...)
+     */
+    public static void span(long traceId, String category, String name, long startNanos, long endNanos,
+            String detail) {
+        if (traceId != 0) {
+            record(new Event(traceId, category, name, startNanos, Math.max(0, endNanos - startNanos), detail));
+        }
+    }
+
+    public static void instant(long traceId, String category, String name) {
+        instant(traceId, category, name, System.nanoTime(), null);
+    }
+
+    public static void instant(long traceId, String category, String name, long nanos, String detail) {
+        if (traceId != 0) {
+            record(new Event(traceId, category, name, nanos, -1, detail));
+        }
+    }
+
+    private static void record(Event event) {
+        long slot = recorded.getAndIncrement();
+        ring.set((int) (slot & MASK), event);
+    }
+
+    /**
+     * Events recorded since start (including overwritten ones)
+     */
+    public static long getRecordedCount() {
+        return recorded.get();
+    }
+
+    /**
+     * Events still in the ring, oldest first. Events being written
+     * concurrently may or may not be included.
+     */
+    public static List<Event> snapshot() {
+        long end = recorded.get();
+        long start = Math.max(0, end - CAPACITY);
+        List<Event> events = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            Event event = ring.get((int) (i & MASK));
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        // A writer that claimed a slot late may land out of order
+        events.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        return events;
+    }
+
+    /**
+     * Events of one trace, oldest first
+     */
+    public static List<Event> snapshot(long traceId) {
+        List<Event> events = snapshot();
+        events.removeIf(e -> e.traceId != traceId);
+        return events;
+    }
+
+    /**
+     * Drop all recorded events
+     */
+    public static void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring.set(i, null);
+        }
+    }
+
+    // ========================================================================
+    // CHROME TRACE-EVENT EXPORT
+    // ========================================================================
+
+    /**
+     * Write the ring as a Chrome trace-event JSON object
+     */
+    public static void writeChromeJson(Writer out) throws IOException {
+        writeChromeJson(snapshot(), out);
+    }
+
+    static void writeChromeJson(List<Event> events, Writer out) throws IOException {
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+
+        // Name the rows: "dictation <id>" per trace, thread names per track
+        Map<Long, Map<Long, String>> threads = new LinkedHashMap<>();
+        for (Event e : events) {
+            threads.computeIfAbsent(e.traceId, id -> new LinkedHashMap<>()).putIfAbsent(e.threadId, e.threadName);
+        }
+        for (Map.Entry<Long, Map<Long, String>> trace : threads.entrySet()) {
+            first = separator(out, first);
+            writeMetadata(out, "process_name", trace.getKey(), -1, "dictation " + trace.getKey());
+            for (Map.Entry<Long, String> thread : trace.getValue().entrySet()) {
+                first = separator(out, first);
+                writeMetadata(out, "thread_name", trace.getKey(), thread.getKey(), thread.getValue());
+            }
+        }
+
+        for (Event e : events) {
+            first = separator(out, first);
+            out.write("{\"name\":");
+            writeString(out, e.name);
+            out.write(",\"cat\":");
+            writeString(out, e.category);
+            if (e.isInstant()) {
+                out.write(",\"ph\":\"i\",\"s\":\"t\"");
+            } else {
+                out.write(",\"ph\":\"X\",\"dur\":");
+                writeMicros(out, e.durationNanos);
+            }
+            out.write(",\"ts\":");
+            writeMicros(out, e.startNanos);
+            out.write(",\"pid\":" + e.traceId + ",\"tid\":" + e.threadId);
+            if (e.detail != null) {
+                out.write(",\"args\":{\"detail\":");
+                writeString(out, e.detail);
+                out.write('}');
+            }
+            out.write('}');
+        }
+        out.write("]}");
+        out.flush();
+    }
+
+    private static boolean separator(Writer out, boolean first) throws IOException {
+        if (!first) {
+            out.write(',');
+        }
+        return false;
+    }
+
+    private static void writeMetadata(Writer out, String kind, long pid, long tid, String name) throws IOException {
+        out.write("{\"name\":\"" + kind + "\",\"ph\":\"M\",\"pid\":" + pid);
+        if (tid >= 0) {
+            out.write(",\"tid\":" + tid);
+        }
+        out.write(",\"args\":{\"name\":");
+        writeString(out, name);
+        out.write("}}");
+    }
+
+    // Microseconds with nanosecond precision, e.g. 1234.567
+    private static void writeMicros(Writer out, long nanos) throws IOException {
+        out.write(Long.toString(nanos / 1000));
+        long frac = Math.abs(nanos % 1000);
+        out.write('.');
+        out.write((char) ('0' + frac / 100));
+        out.write((char) ('0' + frac / 10 % 10));
+        out.write((char) ('0' + frac % 10));
+    }
+
+    private static void writeString(Writer out, String s) throws IOException {
+        out.write('"');
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.write("\\\"");
+                        break;
+                    case '\\':
+                        out.write("\\\\");
+                        break;
+                    case '\n':
+                        out.write("\\n");
+                        break;
+                    case '\r':
+                        out.write("\\r");
+                        break;
+                    case '\t':
+                        out.write("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,133 @@
+package com.voiceai.app.processing;
+
+/**
+ * LongFormAssembler - Post-processes a long dictation while it is spoken
+ *
+ * Chunk transcripts go into a {@link TranscriptStitcher}; whenever more
+ * words become stable, that span (with its word timings) runs through the
+ * pipeline once and is appended to the output. Chunks are cut at pauses,
+ * so spans mostly hold whole sentences. When recording stops only the
+ * last chunk's words are left to process, however long the dictation was.
+ *
+ * Casing across spans follows the text before them: a span that continues
+ * a sentence keeps the lowercase start the recognizer gave it.
+ *
+ * Not thread-safe: feed and read on one thread (the chunk worker).
+ */
+public final class LongFormAssembler {
+
+    private final ProcessingPipeline pipeline;
+    private final TranscriptStitcher stitcher;
+    private final StringBuilder output = new StringBuilder();
+    private int processedWords;
+
+    public LongFormAssembler(ProcessingPipeline pipeline, double overlapSeconds) {
+        this.pipeline = pipeline;
+        this.stitcher = new TranscriptStitcher(overlapSeconds);
+    }
+
+    /**
+     * Stitch in one chunk transcript (word times relative to chunkStart)
+     * and process whatever became stable
+     *
+     * @return true if the output grew
+     */
+    public boolean addChunk(double chunkStart, double chunkEnd, Transcript chunk, ProcessingContext context) {
+        int n = chunk.getWordCount();
+        String[] words = new String[n];
+        double[] starts = new double[n];
+        double[] ends = new double[n];
+        for (int i = 0; i < n; i++) {
+            words[i] = chunk.getWord(i);
+            starts[i] = chunk.getWordStartTime(i);
+            ends[i] = chunk.getWordEndTime(i);
+        }
+        if (n == 0 && !chunk.getText().trim().isEmpty()) {
+            // No word timings: keep the text as one word spanning the chunk
+            words = new String[] { chunk.getText().trim() };
+            starts = new double[] { 0 };
+            ends = new double[] { chunkEnd - chunkStart };
+        }
+        stitcher.addChunk(chunkStart, chunkEnd, words, starts, ends);
+        return processStable(context);
+    }
+
+    /**
+     * Last chunk is in: process the remaining words
+     *
+     * @return the full processed text
+     */
+    public String finish(ProcessingContext context) {
+        stitcher.finish();
+        processStable(context);
+        return getText();
+    }
+
+    private boolean processStable(ProcessingContext context) {
+        int stable = stitcher.getStableCount();
+        if (stable <= processedWords) {
+            return false;
+        }
+        String raw = stitcher.getText(processedWords, stable);
+        ProcessingContext spanContext = context.toBuilder()
+                .wordTimings(stitcher.getWords(processedWords, stable),
+                        stitcher.getStartTimes(processedWords, stable),
+                        stitcher.getEndTimes(processedWords, stable))
+                .build();
+        processedWords = stable;
+
+        String text = pipeline.process(raw, spanContext);
+        if (text == null || (text = text.trim()).isEmpty()) {
+            return false;
+        }
+        int start = output.length();
+        if (start > 0 && !startsWithPunctuation(text)) {
+            output.append(' ');
+            start++;
+        }
+        output.append(text);
+        char first = output.charAt(start);
+        if (endsSentence(start)) {
+            output.setCharAt(start, Character.toUpperCase(first));
+        } else if (Character.isUpperCase(first) && !raw.isEmpty() && Character.isLowerCase(raw.charAt(0))
+                && Character.toLowerCase(first) == raw.charAt(0)) {
+            output.setCharAt(start, Character.toLowerCase(first));
+        }
+        return true;
+    }
+
+    /** Processed text so far */
+    public String getText() {
+        return output.toString();
+    }
+
+    /** Stitched recognizer text, unprocessed */
+    public String getRawText() {
+        return stitcher.getText();
+    }
+
+    public TranscriptStitcher getStitcher() {
+        return stitcher;
+    }
+
+    /** Whether the text before {@code index} ends a sentence (or is empty) */
+    private boolean endsSentence(int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            char c = output.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '.' || c == '!' || c == '?';
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithPunctuation(String text) {
+        char c = text.charAt(0);
+        return c == '.' || c == ',' || c == '!' || c == '?' || c == ';' || c == ':';
+    }
+
+    @Override
+    public String toString() {
+        return "LongFormAssembler{" + stitcher + ", " + processedWords + " processed}";
+    }
+}
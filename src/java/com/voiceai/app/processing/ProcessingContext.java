@@ -1,5 +1,6 @@
 package com.voiceai.app.processing;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,10 +16,22 @@ public class ProcessingContext {
 
     // Personal dictionary: key (lowercase) → value (exact case)
     private final Map<String, String> personalDictionary;
+    private final Vocabulary vocabulary;
 
     // Word timestamps for paragraph segmentation (optional)
     private final List<WordTimestamp> timestamps;
 
+    // Same timings as parallel primitive arrays (null when not available)
+    private volatile String[] timedWords; // Built on first use for a Transcript
+    private final double[] wordStartTimes;
+    private final double[] wordEndTimes;
+
+    // From a Transcript: word (start, end) offsets into its text, and
+    // per-word confidences
+    private final String timedText;
+    private final int[] timedWordOffsets;
+    private final float[] wordConfidences;
+
     // Feature flags
     private final boolean courseCorrection;
     private final boolean fillerRemoval;
@@ -26,27 +39,127 @@ public class ProcessingContext {
     private final boolean punctuationRestoration;
     private final boolean casingEnabled;
     private final boolean debugMode;
+    private final boolean llmEditMode;
+
+    // DictationTrace id of the utterance (0: untraced)
+    private final long traceId;
+    // Per-utterance stage timings (null: not timed)
+    private final ProcessingPipeline.StageTimer stageTimer;
 
     private ProcessingContext(Builder builder) {
-        this.personalDictionary = new HashMap<>(builder.personalDictionary);
+        if (builder.personalDictionary instanceof Vocabulary) {
+            // Immutable store snapshot (possibly large): share, don't copy
+            this.personalDictionary = builder.personalDictionary;
+            this.vocabulary = (Vocabulary) builder.personalDictionary;
+        } else {
+            this.personalDictionary = Collections.unmodifiableMap(new HashMap<>(builder.personalDictionary));
+            this.vocabulary = Vocabulary.of(personalDictionary);
+        }
         this.timestamps = builder.timestamps;
+        this.timedText = builder.timedText;
+        this.timedWordOffsets = builder.timedWordOffsets != null ? builder.timedWordOffsets.clone() : null;
+        this.wordConfidences = builder.wordConfidences != null ? builder.wordConfidences.clone() : null;
+        if (builder.wordStartTimes != null) {
+            this.timedWords = builder.timedWords != null ? builder.timedWords.clone() : null;
+            this.wordStartTimes = builder.wordStartTimes.clone();
+            this.wordEndTimes = builder.wordEndTimes.clone();
+        } else if (builder.timestamps != null) {
+            int n = builder.timestamps.size();
+            this.timedWords = new String[n];
+            this.wordStartTimes = new double[n];
+            this.wordEndTimes = new double[n];
+            for (int i = 0; i < n; i++) {
+                WordTimestamp ts = builder.timestamps.get(i);
+                timedWords[i] = ts.word;
+                wordStartTimes[i] = ts.startTime;
+                wordEndTimes[i] = ts.endTime;
+            }
+        } else {
+            this.timedWords = null;
+            this.wordStartTimes = null;
+            this.wordEndTimes = null;
+        }
         this.courseCorrection = builder.courseCorrection;
         this.fillerRemoval = builder.fillerRemoval;
         this.numberNormalization = builder.numberNormalization;
         this.punctuationRestoration = builder.punctuationRestoration;
         this.casingEnabled = builder.casingEnabled;
         this.debugMode = builder.debugMode;
+        this.llmEditMode = builder.llmEditMode;
+        this.traceId = builder.traceId;
+        this.stageTimer = builder.stageTimer;
     }
 
     // Getters
+    // Read-only view so one context can be shared across utterances
     public Map<String, String> getPersonalDictionary() {
-        return new HashMap<>(personalDictionary);
+        return personalDictionary;
+    }
+
+    /**
+     * Phrase lookup over the personal dictionary (including aliases)
+     */
+    public Vocabulary getVocabulary() {
+        return vocabulary;
     }
 
     public List<WordTimestamp> getTimestamps() {
         return timestamps;
     }
 
+    /**
+     * Whether per-word timings are available (from either builder method)
+     */
+    public boolean hasWordTimings() {
+        return wordStartTimes != null && wordStartTimes.length > 0;
+    }
+
+    /**
+     * Raw ASR words that the timing arrays refer to. Shared, do not modify.
+     * For a {@link Transcript} the strings are only created on first call.
+     */
+    public String[] getTimedWords() {
+        String[] words = timedWords;
+        if (words == null && timedWordOffsets != null) {
+            words = new String[wordStartTimes.length];
+            for (int i = 0; i < words.length; i++) {
+                int start = timedWordOffsets[2 * i];
+                words[i] = start < 0 ? "" : timedText.substring(start, timedWordOffsets[2 * i + 1]);
+            }
+            timedWords = words; // Benign race: equal arrays
+        }
+        return words;
+    }
+
+    /**
+     * Whether per-word ASR confidences are available (from a {@link Transcript})
+     */
+    public boolean hasWordConfidences() {
+        return wordConfidences != null && wordConfidences.length > 0;
+    }
+
+    /**
+     * Word confidences 0..1, parallel to {@link #getWordStartTimes()}, or
+     * null. Shared, do not modify.
+     */
+    public float[] getWordConfidences() {
+        return wordConfidences;
+    }
+
+    /**
+     * Word start times in seconds, parallel to {@link #getTimedWords()}. Shared, do not modify.
+     */
+    public double[] getWordStartTimes() {
+        return wordStartTimes;
+    }
+
+    /**
+     * Word end times in seconds, parallel to {@link #getTimedWords()}. Shared, do not modify.
+     */
+    public double[] getWordEndTimes() {
+        return wordEndTimes;
+    }
+
     public boolean isCourseCorrection() {
         return courseCorrection;
     }
@@ -71,17 +184,51 @@ public class ProcessingContext {
         return debugMode;
     }
 
+    /**
+     * Whether LLM processors should request an edit list instead of full text
+     */
+    public boolean isLlmEditMode() {
+        return llmEditMode;
+    }
+
+    /**
+     * DictationTrace id the pipeline records its stages under, or 0
+     */
+    public long getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Receives the time the pipeline spends in each processor, or null
+     */
+    public ProcessingPipeline.StageTimer getStageTimer() {
+        return stageTimer;
+    }
+
     // Builder pattern for clean construction
     public static class Builder {
         private Map<String, String> personalDictionary = new HashMap<>();
         private List<WordTimestamp> timestamps = null;
+        private String[] timedWords = null;
+        private double[] wordStartTimes = null;
+        private double[] wordEndTimes = null;
+        private String timedText = null;
+        private int[] timedWordOffsets = null;
+        private float[] wordConfidences = null;
         private boolean courseCorrection = true;
         private boolean fillerRemoval = true;
         private boolean numberNormalization = true;
         private boolean punctuationRestoration = true;
         private boolean casingEnabled = true;
         private boolean debugMode = false;
+        private boolean llmEditMode = false;
+        private long traceId = 0;
+        private ProcessingPipeline.StageTimer stageTimer = null;
 
+        /**
+         * Maps that implement {@link Vocabulary} are used as-is and must be
+         * immutable; other maps are copied.
+         */
         public Builder personalDictionary(Map<String, String> dict) {
             if (dict != null)
                 this.personalDictionary = dict;
@@ -93,6 +240,60 @@ public class ProcessingContext {
             return this;
         }
 
+        /**
+         * Word timings as parallel arrays (seconds), avoiding a WordTimestamp
+         * object per word. Takes precedence over {@link #timestamps(List)}.
+         */
+        public Builder wordTimings(String[] words, double[] startTimes, double[] endTimes) {
+            this.timedText = null;
+            this.timedWordOffsets = null;
+            this.wordConfidences = null;
+            if (words == null || startTimes == null || endTimes == null) {
+                this.timedWords = null;
+                this.wordStartTimes = null;
+                this.wordEndTimes = null;
+                return this;
+            }
+            if (startTimes.length != words.length || endTimes.length != words.length) {
+                throw new IllegalArgumentException("Timing arrays must match word count");
+            }
+            this.timedWords = words;
+            this.wordStartTimes = startTimes;
+            this.wordEndTimes = endTimes;
+            return this;
+        }
+
+        /**
+         * Word timings and confidences from a structured transcript. Copied,
+         * so the Transcript can be reused; word strings are not created
+         * unless {@link ProcessingContext#getTimedWords()} is called.
+         * Takes precedence over {@link #timestamps(List)}.
+         */
+        public Builder transcript(Transcript transcript) {
+            if (transcript == null || transcript.isEmpty()) {
+                return wordTimings(null, null, null);
+            }
+            int n = transcript.getWordCount();
+            double[] starts = new double[n];
+            double[] ends = new double[n];
+            float[] confidences = new float[n];
+            int[] offsets = new int[2 * n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = transcript.getWordStartTime(i);
+                ends[i] = transcript.getWordEndTime(i);
+                confidences[i] = transcript.getWordConfidence(i);
+                offsets[2 * i] = transcript.getWordStart(i);
+                offsets[2 * i + 1] = transcript.getWordEnd(i);
+            }
+            this.timedWords = null;
+            this.wordStartTimes = starts;
+            this.wordEndTimes = ends;
+            this.timedText = transcript.getText();
+            this.timedWordOffsets = offsets;
+            this.wordConfidences = confidences;
+            return this;
+        }
+
         public Builder courseCorrection(boolean enabled) {
             this.courseCorrection = enabled;
             return this;
@@ -123,6 +324,21 @@ public class ProcessingContext {
             return this;
         }
 
+        public Builder llmEditMode(boolean enabled) {
+            this.llmEditMode = enabled;
+            return this;
+        }
+
+        public Builder traceId(long traceId) {
+            this.traceId = traceId;
+            return this;
+        }
+
+        public Builder stageTimer(ProcessingPipeline.StageTimer timer) {
+            this.stageTimer = timer;
+            return this;
+        }
+
         public ProcessingContext build() {
             return new ProcessingContext(this);
         }
@@ -132,6 +348,32 @@ public class ProcessingContext {
         return new Builder();
     }
 
+    /**
+     * Builder preset with this context's settings, e.g. to attach one
+     * utterance's word timings to a shared context
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder()
+                .personalDictionary(personalDictionary)
+                .courseCorrection(courseCorrection)
+                .fillerRemoval(fillerRemoval)
+                .numberNormalization(numberNormalization)
+                .punctuationRestoration(punctuationRestoration)
+                .casingEnabled(casingEnabled)
+                .debugMode(debugMode)
+                .llmEditMode(llmEditMode)
+                .traceId(traceId)
+                .stageTimer(stageTimer);
+        builder.timestamps = timestamps;
+        builder.timedWords = timedWords;
+        builder.wordStartTimes = wordStartTimes;
+        builder.wordEndTimes = wordEndTimes;
+        builder.timedText = timedText;
+        builder.timedWordOffsets = timedWordOffsets;
+        builder.wordConfidences = wordConfidences;
+        return builder;
+    }
+
     /**
      * Word timestamp for paragraph segmentation
      */
@@ -0,0 +1,59 @@
+package com.voiceai.app.processing;
+
+import android.util.Log;
+
+/**
+ * ProcessingLog - Logging that also works off-device
+ *
+ * The processing package runs on Android and on plain JVMs (unit tests, the
+ * batch CLI). Routes to android.util.Log when it is on the classpath and to
+ * stderr otherwise, where debug output is dropped unless enabled.
+ */
+public final class ProcessingLog {
+
+    private static final boolean ANDROID = isAndroidLogAvailable();
+    private static volatile boolean verbose = false;
+
+    private ProcessingLog() {
+    }
+
+    /**
+     * Print debug messages to stderr when not running on Android
+     */
+    public static void setVerbose(boolean enabled) {
+        verbose = enabled;
+    }
+
+    public static void d(String tag, String msg) {
+        if (ANDROID) {
+            Log.d(tag, msg);
+        } else if (verbose) {
+            System.err.println("D/" + tag + ": " + msg);
+        }
+    }
+
+    public static void w(String tag, String msg) {
+        if (ANDROID) {
+            Log.w(tag, msg);
+        } else {
+            System.err.println("W/" + tag + ": " + msg);
+        }
+    }
+
+    public static void e(String tag, String msg) {
+        if (ANDROID) {
+            Log.e(tag, msg);
+        } else {
+            System.err.println("E/" + tag + ": " + msg);
+        }
+    }
+
+    private static boolean isAndroidLogAvailable() {
+        try {
+            Class.forName("android.util.Log");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.voiceai.app.processing;
 
-import android.util.Log;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,6 +12,8 @@ import java.util.List;
  * - Processor skip logic
  * - Debug logging
  * - Error isolation (one processor failing doesn't kill the pipeline)
+ * - Optional per-stage timing via the context's {@link StageTimer}
+ * - Per-stage spans in {@link DictationTrace} when the context has a trace id
  */
 public class ProcessingPipeline implements TextProcessor {
 
@@ -21,6 +22,14 @@ public class ProcessingPipeline implements TextProcessor {
     private final List<TextProcessor> processors;
     private final String pipelineName;
 
+    /**
+     * Receives the time spent in each processor. Set per utterance on the
+     * {@link ProcessingContext}, so shared pipelines never mix timings.
+     */
+    public interface StageTimer {
+        void record(String stage, long nanos);
+    }
+
     public ProcessingPipeline() {
         this("Default");
     }
@@ -71,29 +80,41 @@ public class ProcessingPipeline implements TextProcessor {
         }
 
         long pipelineStart = System.currentTimeMillis();
+        long pipelineStartNanos = System.nanoTime();
+        StageTimer timer = context.getStageTimer();
+        long traceId = context.getTraceId();
 
         if (context.isDebugMode()) {
-            Log.d(TAG, "[" + pipelineName + "] Input: \"" + truncate(result, 50) + "\"");
+            ProcessingLog.d(TAG, "[" + pipelineName + "] Input: \"" + truncate(result, 50) + "\"");
         }
 
         for (TextProcessor processor : processors) {
             // Skip if processor says so
             if (processor.shouldSkip(context)) {
                 if (context.isDebugMode()) {
-                    Log.d(TAG, "  [SKIP] " + processor.getName());
+                    ProcessingLog.d(TAG, "  [SKIP] " + processor.getName());
                 }
                 continue;
             }
 
             try {
-                long start = System.currentTimeMillis();
+                long start = System.nanoTime();
                 String before = result;
                 result = processor.process(result, context);
-                long elapsed = System.currentTimeMillis() - start;
+                long elapsedNanos = System.nanoTime() - start;
+                long elapsed = elapsedNanos / 1000000L;
+
+                if (timer != null) {
+                    timer.record(processor.getName(), elapsedNanos);
+                }
+                if (traceId != 0) {
+                    DictationTrace.span(traceId, DictationTrace.CAT_PIPELINE, processor.getName(), start,
+                            start + elapsedNanos, before.equals(result) ? null : "changed");
+                }
 
                 if (context.isDebugMode()) {
                     boolean changed = !before.equals(result);
-                    Log.d(TAG, "  [" + (changed ? "✓" : "-") + "] " +
+                    ProcessingLog.d(TAG, "  [" + (changed ? "✓" : "-") + "] " +
                             processor.getName() + " (" + elapsed + "ms)" +
                             (changed ? " → \"" + truncate(result, 40) + "\"" : ""));
                 }
@@ -101,19 +122,22 @@ public class ProcessingPipeline implements TextProcessor {
                 // Safety: never let a processor return null
                 if (result == null) {
                     result = before;
-                    Log.w(TAG, "  [WARN] " + processor.getName() + " returned null, reverting");
+                    ProcessingLog.w(TAG, "  [WARN] " + processor.getName() + " returned null, reverting");
                 }
 
             } catch (Exception e) {
-                Log.e(TAG, "  [ERROR] " + processor.getName() + ": " + e.getMessage());
+                ProcessingLog.e(TAG, "  [ERROR] " + processor.getName() + ": " + e.getMessage());
                 // Continue with previous result - don't let one processor kill the pipeline
             }
         }
 
         long totalElapsed = System.currentTimeMillis() - pipelineStart;
+        if (traceId != 0) {
+            DictationTrace.span(traceId, DictationTrace.CAT_PIPELINE, getName(), pipelineStartNanos);
+        }
 
         if (context.isDebugMode()) {
-            Log.d(TAG, "[" + pipelineName + "] Output: \"" + truncate(result, 50) +
+            ProcessingLog.d(TAG, "[" + pipelineName + "] Output: \"" + truncate(result, 50) +
                     "\" (total: " + totalElapsed + "ms)");
         }
 
@@ -0,0 +1,241 @@
+package com.voiceai.app.processing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Transcript - Structured ASR output: text, word timings and confidences,
+ * vocabulary token ids
+ *
+ * Filled from the native payload (see encode_transcript in lib.rs) into
+ * primitive arrays that grow as needed and are reused for the next
+ * utterance, so decoding allocates nothing per word. Word text is kept as
+ * offsets into the transcript text; {@link #getWord(int)} is the only
+ * accessor that creates a String.
+ *
+ * Payload, native byte order, every field 4 bytes:
+ * header (version, word count, token count), then per word (char start,
+ * char end, first token, token count, start s, end s, confidence), then
+ * per token (vocab id, start s, probability).
+ *
+ * Not thread-safe: decode and read on one thread, or synchronize on the
+ * instance.
+ */
+public final class Transcript {
+
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    static final int WORD_BYTES = 28;
+    static final int TOKEN_BYTES = 12;
+
+    private String text = "";
+    private int wordCount;
+    private int tokenCount;
+
+    // Per word
+    private int[] charStarts = new int[0];
+    private int[] charEnds = new int[0];
+    private int[] firstTokens = new int[0];
+    private int[] tokenCounts = new int[0];
+    private float[] startTimes = new float[0];
+    private float[] endTimes = new float[0];
+    private float[] confidences = new float[0];
+
+    // Per token
+    private int[] tokenIds = new int[0];
+    private float[] tokenTimes = new float[0];
+    private float[] tokenProbabilities = new float[0];
+
+    /**
+     * Replace the contents with a native payload. Reads from the buffer's
+     * position without moving it, so a buffer that is only valid during a
+     * JNI call can be decoded in place.
+     *
+     * @throws IllegalArgumentException if the payload is malformed; the
+     *         transcript is then empty
+     */
+    public void decode(String text, ByteBuffer payload) {
+        clear();
+        ByteBuffer buf = payload.duplicate().order(ByteOrder.nativeOrder());
+        int base = buf.position();
+        int size = buf.remaining();
+        if (size < HEADER_BYTES) {
+            throw new IllegalArgumentException("Transcript payload too short: " + size);
+        }
+        int version = buf.getInt(base);
+        int words = buf.getInt(base + 4);
+        int tokens = buf.getInt(base + 8);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported transcript version " + version);
+        }
+        if (words < 0 || tokens < 0
+                || (long) words * WORD_BYTES + (long) tokens * TOKEN_BYTES != size - HEADER_BYTES) {
+            throw new IllegalArgumentException("Transcript payload size " + size + " does not match "
+                    + words + " words, " + tokens + " tokens");
+        }
+
+        ensureWordCapacity(words);
+        ensureTokenCapacity(tokens);
+        int textLength = text != null ? text.length() : 0;
+        int pos = base + HEADER_BYTES;
+        for (int i = 0; i < words; i++, pos += WORD_BYTES) {
+            int start = buf.getInt(pos);
+            int end = buf.getInt(pos + 4);
+            if (start < 0 || end < start || end > textLength) {
+                start = -1; // Not located in the text
+                end = -1;
+            }
+            charStarts[i] = start;
+            charEnds[i] = end;
+            firstTokens[i] = buf.getInt(pos + 8);
+            tokenCounts[i] = buf.getInt(pos + 12);
+            startTimes[i] = buf.getFloat(pos + 16);
+            endTimes[i] = buf.getFloat(pos + 20);
+            confidences[i] = buf.getFloat(pos + 24);
+        }
+        for (int i = 0; i < tokens; i++, pos += TOKEN_BYTES) {
+            tokenIds[i] = buf.getInt(pos);
+            tokenTimes[i] = buf.getFloat(pos + 4);
+            tokenProbabilities[i] = buf.getFloat(pos + 8);
+        }
+        this.text = text != null ? text : "";
+        this.wordCount = words;
+        this.tokenCount = tokens;
+    }
+
+    /**
+     * Empty the transcript, keeping the arrays for reuse
+     */
+    public void clear() {
+        text = "";
+        wordCount = 0;
+        tokenCount = 0;
+    }
+
+    private void ensureWordCapacity(int n) {
+        if (charStarts.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, charStarts.length * 2);
+        charStarts = Arrays.copyOf(charStarts, capacity);
+        charEnds = Arrays.copyOf(charEnds, capacity);
+        firstTokens = Arrays.copyOf(firstTokens, capacity);
+        tokenCounts = Arrays.copyOf(tokenCounts, capacity);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        endTimes = Arrays.copyOf(endTimes, capacity);
+        confidences = Arrays.copyOf(confidences, capacity);
+    }
+
+    private void ensureTokenCapacity(int n) {
+        if (tokenIds.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, tokenIds.length * 2);
+        tokenIds = Arrays.copyOf(tokenIds, capacity);
+        tokenTimes = Arrays.copyOf(tokenTimes, capacity);
+        tokenProbabilities = Arrays.copyOf(tokenProbabilities, capacity);
+    }
+
+    // ========================================================================
+    // WORDS
+    // ========================================================================
+
+    public String getText() {
+        return text;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public boolean isEmpty() {
+        return wordCount == 0;
+    }
+
+    /** UTF-16 offset of the word in {@link #getText()}, -1 if not located */
+    public int getWordStart(int i) {
+        checkWord(i);
+        return charStarts[i];
+    }
+
+    /** End offset (exclusive), -1 if not located */
+    public int getWordEnd(int i) {
+        checkWord(i);
+        return charEnds[i];
+    }
+
+    /** Word text (allocates), empty if not located */
+    public String getWord(int i) {
+        checkWord(i);
+        return charStarts[i] < 0 ? "" : text.substring(charStarts[i], charEnds[i]);
+    }
+
+    /** Seconds from the start of the audio */
+    public float getWordStartTime(int i) {
+        checkWord(i);
+        return startTimes[i];
+    }
+
+    public float getWordEndTime(int i) {
+        checkWord(i);
+        return endTimes[i];
+    }
+
+    /** Lowest token probability in the word, 0..1 */
+    public float getWordConfidence(int i) {
+        checkWord(i);
+        return confidences[i];
+    }
+
+    public int getWordFirstToken(int i) {
+        checkWord(i);
+        return firstTokens[i];
+    }
+
+    public int getWordTokenCount(int i) {
+        checkWord(i);
+        return tokenCounts[i];
+    }
+
+    // ========================================================================
+    // TOKENS
+    // ========================================================================
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /** Model vocabulary id */
+    public int getTokenId(int i) {
+        checkToken(i);
+        return tokenIds[i];
+    }
+
+    public float getTokenTime(int i) {
+        checkToken(i);
+        return tokenTimes[i];
+    }
+
+    public float getTokenProbability(int i) {
+        checkToken(i);
+        return tokenProbabilities[i];
+    }
+
+    private void checkWord(int i) {
+        if (i < 0 || i >= wordCount) {
+            throw new IndexOutOfBoundsException("word " + i + " of " + wordCount);
+        }
+    }
+
+    private void checkToken(int i) {
+        if (i < 0 || i >= tokenCount) {
+            throw new IndexOutOfBoundsException("token " + i + " of " + tokenCount);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Transcript{" + wordCount + " words, " + tokenCount + " tokens, " + text.length() + " chars}";
+    }
+}
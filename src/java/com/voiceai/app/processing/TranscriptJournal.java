@@ -0,0 +1,797 @@
+package com.voiceai.app.processing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * TranscriptJournal - Opt-in, append-only log of real utterances
+ *
+ * Keeps what the pipeline saw (raw ASR text, word timings) and what it did
+ * (processed text, per-stage timings, pipeline variant), so pipeline changes
+ * can be replayed and benchmarked against real traffic instead of synthetic
+ * sentences.
+ *
+ * - append() never blocks: records go into a bounded queue and are dropped
+ *   (and counted) when the writer falls behind
+ * - One writer thread drains everything queued, writes it and fsyncs once
+ *   (group commit)
+ * - Records go to numbered segment files; a new segment starts on open and
+ *   once the current one reaches SEGMENT_BYTES, and the oldest segments are
+ *   deleted beyond MAX_JOURNAL_BYTES
+ * - Each segment has a small index (timestamp, offset per record) so a
+ *   reader can start at a point in time without scanning; it is only a
+ *   hint and is not fsynced
+ *
+ * Segment layout (big-endian): magic "VTJ1", version, then records of
+ * int length, int CRC32, payload. A torn or corrupt record ends the segment.
+ *
+ * Pure Java so the batch CLI can replay a journal copied off a device
+ * (see {@link #replay}).
+ */
+public final class TranscriptJournal implements Closeable {
+
+    private static final String TAG = "VoiceAI.Journal";
+
+    static final int MAGIC = 0x56544A31; // "VTJ1"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+
+    static final long SEGMENT_BYTES = 1024 * 1024;
+    static final long MAX_JOURNAL_BYTES = 32 * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 256;
+
+    // Queue markers besides Records
+    private static final Object CLOSE = new Object();
+
+    private final File dir;
+    private final long segmentBytes;
+    private final long maxJournalBytes;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private volatile boolean closed;
+
+    // Writer thread only
+    private long segmentSeq;
+    private FileChannel segment;
+    private FileChannel index;
+    private final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream(4096);
+    private final ByteArrayOutputStream indexBuffer = new ByteArrayOutputStream(1024);
+    private final CRC32 crc = new CRC32();
+
+    private TranscriptJournal(File dir, long segmentBytes, long maxJournalBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxJournalBytes = maxJournalBytes;
+        this.writerThread = new Thread(this::writeLoop, "VoiceAI-Journal");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Open (creating if needed) a journal directory for appending
+     */
+    public static TranscriptJournal open(File dir) throws IOException {
+        return open(dir, SEGMENT_BYTES, MAX_JOURNAL_BYTES);
+    }
+
+    static TranscriptJournal open(File dir, long segmentBytes, long maxJournalBytes) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create journal directory: " + dir);
+        }
+        TranscriptJournal journal = new TranscriptJournal(dir, segmentBytes, maxJournalBytes);
+        long[] existing = listSegments(dir);
+        journal.segmentSeq = existing.length > 0 ? existing[existing.length - 1] : 0;
+        journal.writerThread.start();
+        return journal;
+    }
+
+    /**
+     * Queue a record for writing
+     *
+     * @return false if it was dropped (writer behind, or journal closed)
+     */
+    public boolean append(Record record) {
+        if (closed || !queue.offer(record)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        appended.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Wait until everything appended so far is on disk
+     */
+    public void flush() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        queue.put(done);
+        while (!done.await(100, TimeUnit.MILLISECONDS)) {
+            if (!writerThread.isAlive()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write what is queued and stop the writer thread
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(CLOSE);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getAppended() {
+        return appended.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of fsyncs so far; well below getAppended() under bursts
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "TranscriptJournal{appended=%d, dropped=%d, commits=%d}",
+                appended.get(), dropped.get(), commits.get());
+    }
+
+    // ========================================================================
+    // WRITER
+    // ========================================================================
+
+    private void writeLoop() {
+        List<Object> group = new ArrayList<>(QUEUE_CAPACITY);
+        boolean running = true;
+        try {
+            while (running) {
+                group.add(queue.take());
+                queue.drainTo(group);
+                List<CountDownLatch> waiters = null;
+                int records = 0;
+                for (Object item : group) {
+                    if (item instanceof Record) {
+                        writeRecord((Record) item);
+                        records++;
+                    } else if (item instanceof CountDownLatch) {
+                        if (waiters == null) {
+                            waiters = new ArrayList<>(2);
+                        }
+                        waiters.add((CountDownLatch) item);
+                    } else if (item == CLOSE) {
+                        running = false;
+                    }
+                }
+                if (records > 0) {
+                    commit();
+                }
+                if (waiters != null) {
+                    for (CountDownLatch waiter : waiters) {
+                        waiter.countDown();
+                    }
+                }
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+            // Never leave a flush() caller hanging
+            for (Object item : queue) {
+                if (item instanceof CountDownLatch) {
+                    ((CountDownLatch) item).countDown();
+                }
+            }
+        }
+    }
+
+    private void writeRecord(Record record) {
+        try {
+            byte[] payload = encode(record);
+            if (payload.length > MAX_RECORD_BYTES) {
+                ProcessingLog.w(TAG, "Record too large, skipped: " + payload.length + " bytes");
+                return;
+            }
+            if (segment == null || segment.size() >= segmentBytes) {
+                startSegment();
+            }
+            long offset = segment.size();
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+            frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            writeFully(segment, frame);
+
+            DataOutputStream out = new DataOutputStream(indexBuffer);
+            out.writeLong(record.timestampMs);
+            out.writeInt((int) offset);
+        } catch (IOException e) {
+            ProcessingLog.e(TAG, "Journal write failed: " + e.getMessage());
+            closeSegment();
+        }
+    }
+
+    // Group commit: one fsync for everything written since the last one
+    private void commit() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force(false);
+            if (indexBuffer.size() > 0) {
+                writeFully(index, ByteBuffer.wrap(indexBuffer.toByteArray()));
+            }
+            commits.incrementAndGet();
+        } catch (IOException e) {
+            ProcessingLog.e(TAG, "Journal commit failed: " + e.getMessage());
+            closeSegment();
+        } finally {
+            indexBuffer.reset();
+        }
+    }
+
+    private void startSegment() throws IOException {
+        if (segment != null) {
+            commit();
+        }
+        closeSegment();
+        segmentSeq++;
+        segment = new RandomAccessFile(segmentFile(dir, segmentSeq), "rw").getChannel();
+        index = new RandomAccessFile(indexFile(dir, segmentSeq), "rw").getChannel();
+        segment.truncate(0);
+        index.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(segment, header);
+        enforceRetention();
+    }
+
+    private void closeSegment() {
+        indexBuffer.reset();
+        closeQuietly(segment);
+        closeQuietly(index);
+        segment = null;
+        index = null;
+    }
+
+    // Delete the oldest segments (never the current one) beyond the size cap
+    private void enforceRetention() {
+        long[] seqs = listSegments(dir);
+        long total = 0;
+        for (long seq : seqs) {
+            total += segmentFile(dir, seq).length();
+        }
+        for (int i = 0; i < seqs.length - 1 && total > maxJournalBytes; i++) {
+            File file = segmentFile(dir, seqs[i]);
+            total -= file.length();
+            file.delete();
+            indexFile(dir, seqs[i]).delete();
+        }
+    }
+
+    private byte[] encode(Record record) throws IOException {
+        encodeBuffer.reset();
+        DataOutputStream out = new DataOutputStream(encodeBuffer);
+        out.writeLong(record.timestampMs);
+        writeString(out, record.variant);
+        writeString(out, record.rawText);
+        writeString(out, record.processedText);
+        out.writeLong(record.totalNanos);
+        int words = record.words != null ? record.words.length : 0;
+        out.writeInt(words);
+        for (int i = 0; i < words; i++) {
+            writeString(out, record.words[i]);
+            out.writeDouble(record.wordStartTimes[i]);
+            out.writeDouble(record.wordEndTimes[i]);
+        }
+        out.writeInt(record.stageNames.length);
+        for (int i = 0; i < record.stageNames.length; i++) {
+            writeString(out, record.stageNames[i]);
+            out.writeLong(record.stageNanos[i]);
+        }
+        out.flush();
+        return encodeBuffer.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = (s != null ? s : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        channel.position(channel.size());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // ========================================================================
+    // FILES
+    // ========================================================================
+
+    static File segmentFile(File dir, long seq) {
+        return new File(dir, String.format(Locale.ROOT, "%010d%s", seq, SEGMENT_SUFFIX));
+    }
+
+    static File indexFile(File dir, long seq) {
+        return new File(dir, String.format(Locale.ROOT, "%010d%s", seq, INDEX_SUFFIX));
+    }
+
+    /** Segment sequence numbers present in dir, ascending */
+    static long[] listSegments(File dir) {
+        String[] names = dir.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] seqs = new long[names.length];
+        int n = 0;
+        for (String name : names) {
+            if (name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    seqs[n++] = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        long[] result = Arrays.copyOf(seqs, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    // ========================================================================
+    // READER
+    // ========================================================================
+
+    /**
+     * Read every record in a journal directory, oldest first
+     */
+    public static Reader read(File dir) {
+        return read(dir, Long.MIN_VALUE);
+    }
+
+    /**
+     * Read records with timestamp >= sinceMs, using the segment indexes to
+     * skip older segments and seek within the first one
+     */
+    public static Reader read(File dir, long sinceMs) {
+        return new Reader(dir, sinceMs);
+    }
+
+    /**
+     * Streams records out of the segments one at a time. Each segment is
+     * memory-mapped while it is being read; safe to use while the journal is
+     * being appended to (records written after a segment was mapped are
+     * picked up on the next read).
+     */
+    public static final class Reader implements Closeable {
+
+        private final File dir;
+        private final long sinceMs;
+        private final long[] segments;
+        private int nextSegment;
+        private ByteBuffer buffer;
+        private long bytesRead;
+        private long corrupt;
+
+        Reader(File dir, long sinceMs) {
+            this.dir = dir;
+            this.sinceMs = sinceMs;
+            this.segments = listSegments(dir);
+        }
+
+        /**
+         * @return the next record, or null at the end of the journal
+         */
+        public Record next() throws IOException {
+            while (true) {
+                if (buffer == null && !openNextSegment()) {
+                    return null;
+                }
+                Record record = readRecord();
+                if (record == null) {
+                    buffer = null;
+                } else if (record.timestampMs >= sinceMs) {
+                    return record;
+                }
+            }
+        }
+
+        /** Bytes of record frames read so far */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /** Segments that ended in a torn or corrupt record */
+        public long getCorrupt() {
+            return corrupt;
+        }
+
+        @Override
+        public void close() {
+            buffer = null;
+            nextSegment = segments.length;
+        }
+
+        private boolean openNextSegment() throws IOException {
+            while (nextSegment < segments.length) {
+                long seq = segments[nextSegment++];
+                File file = segmentFile(dir, seq);
+                long start = startOffset(indexFile(dir, seq));
+                ByteBuffer mapped;
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    long size = raf.length();
+                    if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                        continue;
+                    }
+                    mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } catch (java.io.FileNotFoundException e) {
+                    continue; // Deleted by retention meanwhile
+                }
+                if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                    ProcessingLog.w(TAG, "Not a journal segment: " + file);
+                    continue;
+                }
+                mapped.position((int) Math.max(HEADER_BYTES, Math.min(start, mapped.limit())));
+                buffer = mapped;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Offset of the first record at or after sinceMs per the index, or
+         * HEADER_BYTES when there is no usable index
+         */
+        private long startOffset(File indexFile) throws IOException {
+            if (sinceMs == Long.MIN_VALUE || !indexFile.exists()) {
+                return HEADER_BYTES;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+                int entries = (int) (raf.length() / INDEX_ENTRY_BYTES);
+                if (entries == 0) {
+                    return HEADER_BYTES;
+                }
+                ByteBuffer index = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                        (long) entries * INDEX_ENTRY_BYTES);
+                int lo = 0;
+                int hi = entries - 1;
+                int found = entries;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (index.getLong(mid * INDEX_ENTRY_BYTES) >= sinceMs) {
+                        found = mid;
+                        hi = mid - 1;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                if (found < entries) {
+                    return index.getInt(found * INDEX_ENTRY_BYTES + 8) & 0xFFFFFFFFL;
+                }
+                // Records past the last indexed one may not be indexed yet;
+                // resume scanning after the last known record
+                return index.getInt((entries - 1) * INDEX_ENTRY_BYTES + 8) & 0xFFFFFFFFL;
+            }
+        }
+
+        private Record readRecord() {
+            ByteBuffer in = buffer;
+            if (in.remaining() < 8) {
+                if (in.hasRemaining()) {
+                    corrupt++;
+                }
+                return null;
+            }
+            int start = in.position();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 0 || length > MAX_RECORD_BYTES || length > in.remaining()) {
+                corrupt++;
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                corrupt++;
+                return null;
+            }
+            try {
+                Record record = decode(ByteBuffer.wrap(payload));
+                bytesRead += in.position() - start;
+                return record;
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                corrupt++;
+                return null;
+            }
+        }
+
+        private static Record decode(ByteBuffer in) {
+            Record.Builder builder = Record.builder()
+                    .timestamp(in.getLong())
+                    .variant(readString(in))
+                    .rawText(readString(in))
+                    .processedText(readString(in))
+                    .totalNanos(in.getLong());
+            int words = in.getInt();
+            if (words < 0 || words > in.remaining()) {
+                throw new IllegalArgumentException("Bad word count: " + words);
+            }
+            if (words > 0) {
+                String[] timed = new String[words];
+                double[] starts = new double[words];
+                double[] ends = new double[words];
+                for (int i = 0; i < words; i++) {
+                    timed[i] = readString(in);
+                    starts[i] = in.getDouble();
+                    ends[i] = in.getDouble();
+                }
+                builder.wordTimings(timed, starts, ends);
+            }
+            int stages = in.getInt();
+            if (stages < 0 || stages > in.remaining()) {
+                throw new IllegalArgumentException("Bad stage count: " + stages);
+            }
+            for (int i = 0; i < stages; i++) {
+                builder.record(readString(in), in.getLong());
+            }
+            return builder.build();
+        }
+
+        private static String readString(ByteBuffer in) {
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IllegalArgumentException("Bad string length: " + length);
+            }
+            String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return s;
+        }
+    }
+
+    // ========================================================================
+    // REPLAY
+    // ========================================================================
+
+    /**
+     * Run every journaled utterance through a pipeline, single-threaded and
+     * in order so per-utterance latencies stay comparable with the recorded
+     * ones. Recorded word timings are attached to the base context.
+     *
+     * @param out receives one processed transcript per line (may be null)
+     * @return timings, plus how many outputs differ from the recorded ones
+     */
+    public static BatchProcessor.Stats replay(File dir, ProcessingPipeline pipeline, ProcessingContext base,
+            Writer out) throws IOException {
+        BatchProcessor.Stats stats = new BatchProcessor.Stats(1);
+        stats.replay = true;
+        long start = System.nanoTime();
+        ProcessingContext timed = base.toBuilder().stageTimer(stats).build();
+        try (Reader reader = read(dir)) {
+            Record record;
+            long readStart = System.nanoTime();
+            while ((record = reader.next()) != null) {
+                stats.record(BatchProcessor.STAGE_READ, System.nanoTime() - readStart);
+                ProcessingContext context = record.hasWordTimings()
+                        ? timed.toBuilder()
+                                .wordTimings(record.words, record.wordStartTimes, record.wordEndTimes)
+                                .build()
+                        : timed;
+                String processed = pipeline.process(record.rawText, context);
+                stats.records.increment();
+                if (!processed.equals(record.processedText)) {
+                    stats.changed.increment();
+                }
+                if (out != null) {
+                    long writeStart = System.nanoTime();
+                    out.write(processed.replace('\n', ' '));
+                    out.write('\n');
+                    stats.record(BatchProcessor.STAGE_WRITE, System.nanoTime() - writeStart);
+                }
+                readStart = System.nanoTime();
+            }
+            stats.bytesRead = reader.getBytesRead();
+            stats.malformed.add(reader.getCorrupt());
+        }
+        if (out != null) {
+            out.flush();
+        }
+        stats.wallNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    // ========================================================================
+    // RECORD
+    // ========================================================================
+
+    /**
+     * One journaled utterance. Immutable; arrays are shared, do not modify.
+     */
+    public static final class Record {
+        public final long timestampMs;
+        public final String variant;
+        public final String rawText;
+        public final String processedText;
+        public final long totalNanos;
+
+        // Parallel arrays (seconds), null when the ASR gave no timings
+        public final String[] words;
+        public final double[] wordStartTimes;
+        public final double[] wordEndTimes;
+
+        // Parallel arrays, in pipeline order
+        public final String[] stageNames;
+        public final long[] stageNanos;
+
+        private Record(Builder builder) {
+            this.timestampMs = builder.timestampMs;
+            this.variant = builder.variant;
+            this.rawText = builder.rawText;
+            this.processedText = builder.processedText;
+            this.totalNanos = builder.totalNanos;
+            this.words = builder.words;
+            this.wordStartTimes = builder.wordStartTimes;
+            this.wordEndTimes = builder.wordEndTimes;
+            this.stageNames = builder.stageNames.toArray(new String[0]);
+            this.stageNanos = Arrays.copyOf(builder.stageNanos, builder.stageCount);
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public boolean hasWordTimings() {
+            return words != null && words.length > 0;
+        }
+
+        /** Time spent in a stage (summed if it ran more than once), 0 if absent */
+        public long getStageNanos(String stage) {
+            long total = 0;
+            for (int i = 0; i < stageNames.length; i++) {
+                if (stageNames[i].equals(stage)) {
+                    total += stageNanos[i];
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Record{t=%d, variant=%s, raw=\"%s\", processed=\"%s\", %.2fms}",
+                    timestampMs, variant, rawText, processedText, totalNanos / 1e6);
+        }
+
+        /**
+         * Also a StageTimer: set it on the utterance's context via
+         * {@link ProcessingContext.Builder#stageTimer}
+         */
+        public static final class Builder implements ProcessingPipeline.StageTimer {
+            private long timestampMs;
+            private String variant = "";
+            private String rawText = "";
+            private String processedText = "";
+            private long totalNanos;
+            private String[] words;
+            private double[] wordStartTimes;
+            private double[] wordEndTimes;
+            private final List<String> stageNames = new ArrayList<>(12);
+            private long[] stageNanos = new long[12];
+            private int stageCount;
+
+            public Builder timestamp(long timestampMs) {
+                this.timestampMs = timestampMs;
+                return this;
+            }
+
+            public Builder variant(String variant) {
+                this.variant = variant != null ? variant : "";
+                return this;
+            }
+
+            public Builder rawText(String text) {
+                this.rawText = text != null ? text : "";
+                return this;
+            }
+
+            public Builder processedText(String text) {
+                this.processedText = text != null ? text : "";
+                return this;
+            }
+
+            public Builder totalNanos(long nanos) {
+                this.totalNanos = nanos;
+                return this;
+            }
+
+            /**
+             * Word timings as parallel arrays (seconds); null clears them
+             */
+            public Builder wordTimings(String[] words, double[] startTimes, double[] endTimes) {
+                if (words == null || startTimes == null || endTimes == null) {
+                    this.words = null;
+                    this.wordStartTimes = null;
+                    this.wordEndTimes = null;
+                    return this;
+                }
+                if (startTimes.length != words.length || endTimes.length != words.length) {
+                    throw new IllegalArgumentException("Timing arrays must match word count");
+                }
+                this.words = words;
+                this.wordStartTimes = startTimes;
+                this.wordEndTimes = endTimes;
+                return this;
+            }
+
+            @Override
+            public synchronized void record(String stage, long nanos) {
+                if (stageCount == stageNanos.length) {
+                    stageNanos = Arrays.copyOf(stageNanos, stageCount * 2);
+                }
+                stageNames.add(stage);
+                stageNanos[stageCount++] = nanos;
+            }
+
+            public synchronized Record build() {
+                return new Record(this);
+            }
+        }
+    }
+}
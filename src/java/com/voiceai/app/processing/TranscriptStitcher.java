@@ -0,0 +1,218 @@
+package com.voiceai.app.processing;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * TranscriptStitcher - Joins the overlapping chunk transcripts of one long
+ * dictation into a single word sequence
+ *
+ * Each chunk starts overlapSeconds before the previous one ended, so words
+ * near a cut are heard with context on both sides. Where two chunks
+ * overlap, the stitcher looks for the longest run of words both heard at
+ * (about) the same time and switches from the old chunk to the new one at
+ * the start of that run. Without an anchor it switches at the middle of
+ * the overlap.
+ *
+ * Words that end before the next chunk can start (chunk end minus the
+ * overlap) can no longer change; {@link #getStableCount()} tells how many
+ * there are, so they can be post-processed while the user keeps talking.
+ *
+ * Times are seconds from the start of the recording. Not thread-safe.
+ */
+public final class TranscriptStitcher {
+
+    // Same word heard in both chunks if the starts are this close
+    static final double MATCH_TOLERANCE_S = 0.5;
+
+    private final double overlapSeconds;
+
+    private int count;
+    private String[] words = new String[64];
+    private double[] starts = new double[64];
+    private double[] ends = new double[64];
+    private double end;
+    private int stableCount;
+
+    public TranscriptStitcher(double overlapSeconds) {
+        this.overlapSeconds = overlapSeconds;
+    }
+
+    /**
+     * Add the next chunk
+     *
+     * @param chunkStart start of the chunk audio
+     * @param chunkEnd end of the chunk audio
+     * @param chunkWords words of the chunk transcript
+     * @param wordStarts word starts, relative to chunkStart
+     * @param wordEnds word ends, relative to chunkStart
+     */
+    public void addChunk(double chunkStart, double chunkEnd, String[] chunkWords, double[] wordStarts,
+            double[] wordEnds) {
+        int n = chunkWords.length;
+        int from = 0;
+        if (count > 0 && chunkStart < end) {
+            int keep;
+            int[] anchor = findAnchor(chunkStart, chunkWords, wordStarts);
+            if (anchor != null) {
+                keep = anchor[0];
+                from = anchor[1];
+            } else {
+                double mid = (chunkStart + end) / 2;
+                keep = count;
+                while (keep > stableCount && starts[keep - 1] >= mid) {
+                    keep--;
+                }
+                double keptEnd = keep > 0 ? ends[keep - 1] : 0;
+                while (from < n && (chunkStart + wordStarts[from] < mid
+                        || chunkStart + wordStarts[from] < keptEnd - MATCH_TOLERANCE_S)) {
+                    from++;
+                }
+            }
+            count = Math.max(keep, stableCount);
+        }
+
+        ensureCapacity(count + n - from);
+        for (int j = from; j < n; j++) {
+            if (chunkWords[j] == null || chunkWords[j].isEmpty()) {
+                continue;
+            }
+            words[count] = chunkWords[j];
+            starts[count] = chunkStart + wordStarts[j];
+            ends[count] = chunkStart + wordEnds[j];
+            count++;
+        }
+        end = Math.max(end, chunkEnd);
+
+        double settled = chunkEnd - overlapSeconds;
+        while (stableCount < count && ends[stableCount] <= settled) {
+            stableCount++;
+        }
+    }
+
+    /**
+     * {existing index, chunk index} where the longest run of words heard
+     * by both starts, or null. Only words inside the overlap are compared.
+     */
+    private int[] findAnchor(double chunkStart, String[] chunkWords, double[] wordStarts) {
+        int first = count;
+        while (first > stableCount && ends[first - 1] > chunkStart) {
+            first--;
+        }
+        int[] best = null;
+        int bestRun = 0;
+        for (int i = first; i < count; i++) {
+            String key = normalize(words[i]);
+            if (key.isEmpty()) {
+                continue;
+            }
+            for (int j = 0; j < chunkWords.length && chunkStart + wordStarts[j] < end; j++) {
+                int run = 0;
+                while (i + run < count && j + run < chunkWords.length
+                        && matches(i + run, chunkStart, chunkWords[j + run], wordStarts[j + run])) {
+                    run++;
+                }
+                if (run > bestRun) {
+                    bestRun = run;
+                    best = new int[] { i, j };
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean matches(int i, double chunkStart, String word, double start) {
+        return Math.abs(starts[i] - (chunkStart + start)) <= MATCH_TOLERANCE_S
+                && normalize(words[i]).equals(normalize(word)) && !normalize(word).isEmpty();
+    }
+
+    /** Lowercase letters and digits only, so "Hello," matches "hello" */
+    static String normalize(String word) {
+        if (word == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * No more chunks: every word is stable
+     */
+    public void finish() {
+        stableCount = count;
+    }
+
+    public void clear() {
+        count = 0;
+        stableCount = 0;
+        end = 0;
+    }
+
+    private void ensureCapacity(int n) {
+        if (words.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, words.length * 2);
+        words = Arrays.copyOf(words, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+    }
+
+    // ========================================================================
+    // WORDS
+    // ========================================================================
+
+    public int getWordCount() {
+        return count;
+    }
+
+    /** Leading words no later chunk can change */
+    public int getStableCount() {
+        return stableCount;
+    }
+
+    /** Audio covered so far (end of the last chunk) */
+    public double getEndTime() {
+        return end;
+    }
+
+    /** Words [from, to) joined with spaces */
+    public String getText(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(words[i]);
+        }
+        return sb.toString();
+    }
+
+    public String getText() {
+        return getText(0, count);
+    }
+
+    public String[] getWords(int from, int to) {
+        return Arrays.copyOfRange(words, from, to);
+    }
+
+    public double[] getStartTimes(int from, int to) {
+        return Arrays.copyOfRange(starts, from, to);
+    }
+
+    public double[] getEndTimes(int from, int to) {
+        return Arrays.copyOfRange(ends, from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "TranscriptStitcher{" + count + " words, " + stableCount + " stable, "
+                + String.format(Locale.US, "%.1fs", end) + "}";
+    }
+}
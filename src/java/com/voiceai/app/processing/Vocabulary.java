@@ -0,0 +1,112 @@
+package com.voiceai.app.processing;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Vocabulary - Phrase lookup behind the personal dictionary
+ *
+ * Maps a normalized spoken phrase ("chatgpt", "at groq") to the spelling the
+ * user wants ("ChatGPT", "@Groq"). Processors walk the words of the text and
+ * look up each run of up to getMaxPhraseWords() words, so the cost per
+ * utterance depends on the text length, not on the dictionary size.
+ *
+ * Implementations must be immutable; one instance is shared by every
+ * utterance until the dictionary changes.
+ */
+public interface Vocabulary {
+
+    Vocabulary EMPTY = of(Collections.<String, String>emptyMap());
+
+    /**
+     * @param phrase Phrase as returned by {@link #normalize(CharSequence)}
+     * @return Replacement spelling, or null if the phrase is not in the dictionary
+     */
+    String lookup(String phrase);
+
+    /** Longest phrase in words; 0 for an empty vocabulary */
+    int getMaxPhraseWords();
+
+    /** Number of dictionary entries (aliases not counted) */
+    int size();
+
+    /**
+     * Lowercase, trimmed, with whitespace runs collapsed to one space
+     */
+    static String normalize(CharSequence phrase) {
+        StringBuilder sb = new StringBuilder(phrase.length());
+        boolean space = false;
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = phrase.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /** Characters that make up the words phrases are matched on */
+    static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /** Number of words in a phrase, as counted when scanning text */
+    static int countWords(CharSequence phrase) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < phrase.length(); i++) {
+            boolean wordChar = isWordChar(phrase.charAt(i));
+            if (wordChar && !inWord) {
+                words++;
+            }
+            inWord = wordChar;
+        }
+        return words;
+    }
+
+    /**
+     * Vocabulary over a plain map (lowercase word → exact spelling).
+     * Entries spelled "@Name" are also reachable as "at name".
+     */
+    static Vocabulary of(Map<String, String> dictionary) {
+        Map<String, String> terms = new HashMap<>();
+        int maxWords = 0;
+        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
+            String value = entry.getValue();
+            String key = normalize(entry.getKey());
+            terms.put(key, value);
+            maxWords = Math.max(maxWords, countWords(key));
+            if (value.startsWith("@") && value.length() > 1) {
+                String spoken = "at " + normalize(value.substring(1));
+                terms.putIfAbsent(spoken, value);
+                maxWords = Math.max(maxWords, countWords(spoken));
+            }
+        }
+        int size = dictionary.size();
+        int max = maxWords;
+        return new Vocabulary() {
+            @Override
+            public String lookup(String phrase) {
+                return terms.get(phrase);
+            }
+
+            @Override
+            public int getMaxPhraseWords() {
+                return max;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
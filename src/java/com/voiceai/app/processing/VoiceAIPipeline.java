@@ -20,6 +20,7 @@ public final class VoiceAIPipeline {
 
     // Singleton instance for efficiency (all processors are stateless)
     private static ProcessingPipeline instance;
+    private static ProcessingPipeline liveInstance;
 
     private VoiceAIPipeline() {
     }
@@ -36,6 +37,7 @@ public final class VoiceAIPipeline {
      * 5. NumberNormalizer - Convert spoken numbers to digits
      * 6. PunctuationRestorer - Add punctuation
      * 7. CasingApplicator - Apply capitalization last (preserves structure)
+     * 8. ParagraphSegmenter - Sentence/paragraph breaks from pauses (needs word timings)
      */
     public static ProcessingPipeline create() {
         if (instance == null) {
@@ -47,18 +49,27 @@ public final class VoiceAIPipeline {
                     .add(new FillerRemover())
                     .add(new NumberNormalizer())
                     .add(new PunctuationRestorer())
-                    .add(new CasingApplicator());
+                    .add(new CasingApplicator())
+                    .add(new ParagraphSegmenter());
         }
         return instance;
     }
 
     /**
      * Create pipeline with LLM post-processing (Wispr Flow-style)
-     * LLM runs LAST to polish the output with AI
+     * LLM runs LAST to polish the output with AI, behind an LLMGate so
+     * already-clean utterances skip the API call
      * 
      * @param groqApiKey API key for Groq (or null for rule-based fallback)
      */
     public static ProcessingPipeline createWithLLM(String groqApiKey) {
+        return createWithLLM(groqApiKey, 0f);
+    }
+
+    /**
+     * @param shadowSampleRate see {@link LLMGate#setShadowSampleRate}
+     */
+    public static ProcessingPipeline createWithLLM(String groqApiKey, float shadowSampleRate) {
         ProcessingPipeline pipeline = new ProcessingPipeline("VoiceAI+LLM")
                 .add(new CommandInterpreter())
                 .add(new CourseCorrector())
@@ -67,11 +78,13 @@ public final class VoiceAIPipeline {
                 .add(new FillerRemover())
                 .add(new NumberNormalizer())
                 .add(new PunctuationRestorer())
-                .add(new CasingApplicator());
+                .add(new CasingApplicator())
+                .add(new ParagraphSegmenter());
 
         // Add LLM as final polish step
         if (groqApiKey != null && !groqApiKey.isEmpty()) {
-            pipeline.add(new LLMPostProcessor(groqApiKey));
+            pipeline.add(new LLMGate(new LLMPostProcessor(groqApiKey))
+                    .setShadowSampleRate(shadowSampleRate));
         }
 
         return pipeline;
@@ -85,6 +98,21 @@ public final class VoiceAIPipeline {
      * to work completely offline while still having ML-enhanced output.
      */
     public static ProcessingPipeline createOffline() {
+        return createOffline(new LocalLLMProcessor());
+    }
+
+    /**
+     * Create offline pipeline around an already initialized LocalLLMProcessor
+     * so the loaded model is reused across utterances
+     */
+    public static ProcessingPipeline createOffline(LocalLLMProcessor localLLM) {
+        return createOffline(localLLM, 0f);
+    }
+
+    /**
+     * @param shadowSampleRate see {@link LLMGate#setShadowSampleRate}
+     */
+    public static ProcessingPipeline createOffline(LocalLLMProcessor localLLM, float shadowSampleRate) {
         return new ProcessingPipeline("VoiceAI+OfflineLLM")
                 .add(new CommandInterpreter())
                 .add(new CourseCorrector())
@@ -94,7 +122,8 @@ public final class VoiceAIPipeline {
                 .add(new NumberNormalizer())
                 .add(new PunctuationRestorer())
                 .add(new CasingApplicator())
-                .add(new LocalLLMProcessor()); // Offline ML polish
+                .add(new ParagraphSegmenter())
+                .add(new LLMGate(localLLM).setShadowSampleRate(shadowSampleRate)); // Offline ML polish (gated)
     }
 
     /**
@@ -108,6 +137,22 @@ public final class VoiceAIPipeline {
                 .add(new CasingApplicator());
     }
 
+    /**
+     * Create the pipeline for live caption fragments
+     * Fragments are a few words cut mid-sentence, so only word-level
+     * processors run; sentence casing across fragments is done by
+     * CaptionAssembler. Stateless and shared, like create().
+     */
+    public static ProcessingPipeline createLive() {
+        if (liveInstance == null) {
+            liveInstance = new ProcessingPipeline("Live")
+                    .add(new PersonalDictionaryApplicator())
+                    .add(new FillerRemover())
+                    .add(new NumberNormalizer());
+        }
+        return liveInstance;
+    }
+
     /**
      * Create a debug pipeline that logs each step
      */
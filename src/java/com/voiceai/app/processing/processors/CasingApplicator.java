@@ -2,7 +2,6 @@ package com.voiceai.app.processing.processors;
 
 import com.voiceai.app.processing.ProcessingContext;
 import com.voiceai.app.processing.TextProcessor;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -71,7 +70,7 @@ public class CasingApplicator implements TextProcessor {
         result = capitalizeDaysMonths(result);
 
         // Apply personal dictionary casing (should be last to override)
-        result = applyPersonalDictionary(result, context.getPersonalDictionary());
+        result = PersonalDictionaryApplicator.apply(result, context.getVocabulary());
 
         return result;
     }
@@ -144,22 +143,6 @@ public class CasingApplicator implements TextProcessor {
         return result;
     }
 
-    private String applyPersonalDictionary(String text, Map<String, String> dictionary) {
-        if (dictionary == null || dictionary.isEmpty()) {
-            return text;
-        }
-
-        String result = text;
-
-        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
-            result = result.replaceAll(
-                    "(?i)\\b" + Pattern.quote(entry.getKey()) + "\\b",
-                    Matcher.quoteReplacement(entry.getValue()));
-        }
-
-        return result;
-    }
-
     @Override
     public boolean shouldSkip(ProcessingContext context) {
         return !context.isCasingEnabled();
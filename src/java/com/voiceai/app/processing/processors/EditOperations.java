@@ -0,0 +1,246 @@
+package com.voiceai.app.processing.processors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EditOperations - Compact edit-list protocol for LLM post-processing
+ *
+ * Instead of asking the model to re-emit the whole cleaned text, the input is
+ * sent as indexed tokens ("0:um 1:i 2:think") and the model answers with one
+ * operation per line:
+ * - "D 3" → delete token 3
+ * - "R 1 I" → replace token 1 with "I"
+ * - "I 5 ," → insert "," before token 5 (index == token count appends)
+ * - "=" → no changes
+ *
+ * Output size is proportional to the number of edits, not the utterance.
+ * Operations are validated strictly; any malformed line makes {@link #apply}
+ * return null so callers can fall back to full-text mode.
+ *
+ * Both modes share one system prompt and pick the output format with the
+ * first line of the user message, so a full-text retry reuses the prompt
+ * prefix the model (or the API's prompt cache) already processed.
+ */
+public final class EditOperations {
+
+    /** Shared by edit-list and full-text requests; see editRequest/textRequest */
+    public static final String SYSTEM_PROMPT = "You are a text formatting assistant for voice dictation. " +
+            "Rules:\n" +
+            "1. Remove filler words (um, uh, like, you know, basically, actually)\n" +
+            "2. Fix grammar, punctuation and capitalization\n" +
+            "3. Convert spoken numbers to digits (twenty five → 25)\n" +
+            "4. Keep the original meaning and tone\n" +
+            "The first line of each request is the output mode:\n" +
+            "EDITS: the input is a numbered list of tokens in the form index:token. " +
+            "Output ONLY edit operations, one per line:\n" +
+            "   D <index> to delete a token\n" +
+            "   R <index> <text> to replace a token\n" +
+            "   I <index> <text> to insert text before a token\n" +
+            "   If no changes are needed, output a single =\n" +
+            "TEXT: output ONLY the cleaned text, nothing else. If it is already clean, output it unchanged.";
+
+    static final String EDIT_MODE = "EDITS";
+    static final String TEXT_MODE = "TEXT";
+
+    // Edits that change more than this share of tokens are cheaper as full text
+    private static final float MAX_EDIT_RATIO = 1.5f;
+
+    private EditOperations() {
+    }
+
+    /**
+     * Split text into the tokens that edit indices refer to
+     */
+    public static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return new String[0];
+        }
+        return trimmed.split("\\s+");
+    }
+
+    /**
+     * Format tokens as the indexed user message ("0:hello 1:world")
+     */
+    public static String formatInput(String[] tokens) {
+        StringBuilder sb = new StringBuilder(tokens.length * 8);
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(i).append(':').append(tokens[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Token budget for an edit-list answer over the given number of tokens
+     */
+    /**
+     * User message for edit-list mode
+     */
+    public static String editRequest(String[] tokens) {
+        return EDIT_MODE + "\n" + formatInput(tokens);
+    }
+
+    /**
+     * User message for full-text mode
+     */
+    public static String textRequest(String text) {
+        return TEXT_MODE + "\n" + text;
+    }
+
+    public static int maxOutputTokens(int tokenCount, int fullTextLimit) {
+        return Math.min(fullTextLimit, 16 + tokenCount * 4);
+    }
+
+    /**
+     * Parse the model output and apply it to the tokens
+     *
+     * @return Edited text, or null if the output is not a valid edit list
+     */
+    public static String apply(String[] tokens, String output) {
+        if (tokens == null || output == null) {
+            return null;
+        }
+
+        String trimmed = stripCodeFence(output.trim());
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+
+        int n = tokens.length;
+        String[] replacement = new String[n];
+        boolean[] deleted = new boolean[n];
+        List<List<String>> inserts = new ArrayList<>(n + 1);
+        for (int i = 0; i <= n; i++) {
+            inserts.add(null);
+        }
+
+        int opCount = 0;
+        boolean noChange = false;
+
+        for (String rawLine : trimmed.split("\n")) {
+            String line = rawLine.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals("=")) {
+                noChange = true;
+                continue;
+            }
+            if (line.length() < 3 || line.charAt(1) != ' ') {
+                return null;
+            }
+
+            char op = line.charAt(0);
+            String rest = line.substring(2).trim();
+            int space = rest.indexOf(' ');
+            String indexPart = space < 0 ? rest : rest.substring(0, space);
+            String arg = space < 0 ? "" : rest.substring(space + 1).trim();
+
+            int index;
+            try {
+                index = Integer.parseInt(indexPart);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            switch (op) {
+                case 'D':
+                    if (index < 0 || index >= n || !arg.isEmpty()
+                            || deleted[index] || replacement[index] != null) {
+                        return null;
+                    }
+                    deleted[index] = true;
+                    break;
+                case 'R':
+                    if (index < 0 || index >= n || arg.isEmpty()
+                            || deleted[index] || replacement[index] != null) {
+                        return null;
+                    }
+                    replacement[index] = arg;
+                    break;
+                case 'I':
+                    if (index < 0 || index > n || arg.isEmpty()) {
+                        return null;
+                    }
+                    if (inserts.get(index) == null) {
+                        inserts.set(index, new ArrayList<>(1));
+                    }
+                    inserts.get(index).add(arg);
+                    break;
+                default:
+                    return null;
+            }
+            opCount++;
+        }
+
+        // "=" mixed with real edits is contradictory
+        if (noChange && opCount > 0) {
+            return null;
+        }
+        if (!noChange && opCount == 0) {
+            return null;
+        }
+        if (opCount > Math.max(4, n * MAX_EDIT_RATIO)) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i <= n; i++) {
+            List<String> before = inserts.get(i);
+            if (before != null) {
+                for (String s : before) {
+                    appendToken(sb, s);
+                }
+            }
+            if (i == n) {
+                break;
+            }
+            if (deleted[i]) {
+                continue;
+            }
+            appendToken(sb, replacement[i] != null ? replacement[i] : tokens[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append a token, attaching bare punctuation to the previous word
+     */
+    private static void appendToken(StringBuilder sb, String token) {
+        if (sb.length() > 0 && !isAttachedPunctuation(token)) {
+            sb.append(' ');
+        }
+        sb.append(token);
+    }
+
+    private static boolean isAttachedPunctuation(String token) {
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (".,!?;:".indexOf(token.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripCodeFence(String s) {
+        if (!s.startsWith("```")) {
+            return s;
+        }
+        int firstNewline = s.indexOf('\n');
+        int closing = s.lastIndexOf("```");
+        if (firstNewline < 0 || closing <= firstNewline) {
+            return "";
+        }
+        return s.substring(firstNewline + 1, closing).trim();
+    }
+}
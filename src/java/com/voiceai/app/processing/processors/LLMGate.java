@@ -0,0 +1,267 @@
+package com.voiceai.app.processing.processors;
+
+import com.voiceai.app.processing.ProcessingContext;
+import com.voiceai.app.processing.ProcessingLog;
+import com.voiceai.app.processing.TextProcessor;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LLMGate - Only calls the LLM when the rule-based output needs it
+ *
+ * Wraps an LLM processor (LLMPostProcessor, LocalLLMProcessor) and scores
+ * the rule-processed text first. Short, clean utterances like "ok thanks"
+ * pass through unchanged without a model call.
+ *
+ * Signals:
+ * - Residual disfluencies ("um", "you know", "i mean", stutters)
+ * - Grammar heuristics (lowercase "i", missing apostrophes, run-on text)
+ * - Length (longer dictations benefit more from polishing)
+ * - ASR word confidence, when the context carries it (misheard words the
+ *   LLM can repair from the surrounding sentence)
+ *
+ * Shadow mode samples a fraction of skipped utterances and runs the LLM on
+ * them in the background, counting how often it would have changed the text
+ * (opt-in from Settings → Diagnostics).
+ * Counters are global so they survive per-utterance pipeline creation.
+ */
+public class LLMGate implements TextProcessor {
+
+    private static final String TAG = "VoiceAI.LLMGate";
+
+    // Score at or above which the LLM is invoked
+    public static final float DEFAULT_THRESHOLD = 1.0f;
+
+    // Shadow rate used when the diagnostics setting is on
+    public static final float DIAGNOSTIC_SHADOW_SAMPLE_RATE = 0.1f;
+
+    // Words the recognizer is less sure of than this count against the text
+    static final float LOW_WORD_CONFIDENCE = 0.5f;
+
+    private static final Pattern DISFLUENCY = Pattern.compile(
+            "(?i)\\b(um+|uh+|er+|ah+|hmm+|you know|i mean|sort of|kind of|basically)\\b|\\blike,");
+    private static final Pattern STUTTER = Pattern.compile("(?i)\\b(\\w+)\\s+\\1\\b");
+    private static final Pattern LOWERCASE_I = Pattern.compile("(^|\\s)i(\\s|'|$)");
+    private static final Pattern MISSING_APOSTROPHE = Pattern.compile(
+            "(?i)\\b(im|dont|cant|wont|didnt|doesnt|isnt|arent|wasnt|couldnt|wouldnt|shouldnt|thats|whats|youre|theyre|ive)\\b");
+    private static final Pattern INTERNAL_PUNCTUATION = Pattern.compile("[,;:.!?]\\s");
+
+    private static final Stats STATS = new Stats();
+    private static final ExecutorService SHADOW_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VoiceAI-LLMGateShadow");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final TextProcessor llm;
+    private final float threshold;
+    private final Random random = new Random();
+    private volatile float shadowSampleRate = 0f;
+
+    public LLMGate(TextProcessor llm) {
+        this(llm, DEFAULT_THRESHOLD);
+    }
+
+    public LLMGate(TextProcessor llm, float threshold) {
+        this.llm = llm;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Fraction (0.0 - 1.0) of skipped utterances to re-run through the LLM
+     * in the background to measure missed improvements. 0 disables shadow mode.
+     */
+    public LLMGate setShadowSampleRate(float rate) {
+        this.shadowSampleRate = Math.max(0f, Math.min(1f, rate));
+        return this;
+    }
+
+    @Override
+    public String process(String text, ProcessingContext context) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+
+        float score = score(text) + confidenceScore(context);
+        STATS.evaluated.incrementAndGet();
+
+        if (score >= threshold) {
+            STATS.invoked.incrementAndGet();
+            return llm.process(text, context);
+        }
+
+        STATS.skipped.incrementAndGet();
+        if (context != null && context.isDebugMode()) {
+            ProcessingLog.d(TAG, "Skipping " + llm.getName() + " (score " + score + " < " + threshold + ")");
+        }
+
+        if (shadowSampleRate > 0f && random.nextFloat() < shadowSampleRate) {
+            runShadow(text, context);
+        }
+
+        return text;
+    }
+
+    private void runShadow(String text, ProcessingContext context) {
+        STATS.shadowSampled.incrementAndGet();
+        SHADOW_EXECUTOR.execute(() -> {
+            try {
+                String polished = llm.process(text, context);
+                if (polished != null && !normalize(polished).equals(normalize(text))) {
+                    STATS.shadowChanged.incrementAndGet();
+                    ProcessingLog.d(TAG, "Shadow: LLM would have changed \"" + text + "\" → \"" + polished + "\"");
+                }
+            } catch (Exception e) {
+                ProcessingLog.w(TAG, "Shadow LLM call failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Score how likely the LLM is to improve the text (higher = more likely)
+     */
+    public static float score(String text) {
+        if (text == null) {
+            return 0f;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return 0f;
+        }
+
+        float score = 0f;
+        int words = trimmed.split("\\s+").length;
+
+        score += count(DISFLUENCY, trimmed) * 1.0f;
+        score += count(STUTTER, trimmed) * 1.0f;
+        score += count(MISSING_APOSTROPHE, trimmed) * 0.5f;
+        if (LOWERCASE_I.matcher(trimmed).find()) {
+            score += 0.5f;
+        }
+
+        // Long stretches without internal punctuation are likely run-ons
+        if (words > 12 && !INTERNAL_PUNCTUATION.matcher(trimmed).find()) {
+            score += 0.5f;
+        }
+        if (words > 25) {
+            score += 0.5f;
+        }
+
+        if (!Character.isUpperCase(trimmed.charAt(0)) && Character.isLetter(trimmed.charAt(0))) {
+            score += 0.25f;
+        }
+        char last = trimmed.charAt(trimmed.length() - 1);
+        if (last != '.' && last != '!' && last != '?') {
+            score += 0.25f;
+        }
+
+        return score;
+    }
+
+    /**
+     * Extra score from the recognizer's word confidences: 0.5 per
+     * low-confidence word, 0 without confidences
+     */
+    public static float confidenceScore(ProcessingContext context) {
+        if (context == null || !context.hasWordConfidences()) {
+            return 0f;
+        }
+        int low = 0;
+        for (float confidence : context.getWordConfidences()) {
+            if (confidence < LOW_WORD_CONFIDENCE) {
+                low++;
+            }
+        }
+        return low * 0.5f;
+    }
+
+    private static int count(Pattern pattern, String text) {
+        Matcher m = pattern.matcher(text);
+        int n = 0;
+        while (m.find()) {
+            n++;
+        }
+        return n;
+    }
+
+    private static String normalize(String s) {
+        return s.trim().replaceAll("\\s+", " ");
+    }
+
+    @Override
+    public String getName() {
+        return "LLMGate(" + llm.getName() + ")";
+    }
+
+    @Override
+    public boolean shouldSkip(ProcessingContext context) {
+        return llm.shouldSkip(context);
+    }
+
+    public static Stats getStats() {
+        return STATS;
+    }
+
+    /**
+     * Process-wide gate counters
+     */
+    public static final class Stats {
+        final AtomicLong evaluated = new AtomicLong();
+        final AtomicLong invoked = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong shadowSampled = new AtomicLong();
+        final AtomicLong shadowChanged = new AtomicLong();
+
+        public long getEvaluated() {
+            return evaluated.get();
+        }
+
+        public long getInvoked() {
+            return invoked.get();
+        }
+
+        public long getSkipped() {
+            return skipped.get();
+        }
+
+        public long getShadowSampled() {
+            return shadowSampled.get();
+        }
+
+        public long getShadowChanged() {
+            return shadowChanged.get();
+        }
+
+        public float getSkipRate() {
+            long total = evaluated.get();
+            return total == 0 ? 0f : (float) skipped.get() / total;
+        }
+
+        /**
+         * Share of shadow-sampled skips where the LLM would have changed the text
+         */
+        public float getMissRate() {
+            long sampled = shadowSampled.get();
+            return sampled == 0 ? 0f : (float) shadowChanged.get() / sampled;
+        }
+
+        public void reset() {
+            evaluated.set(0);
+            invoked.set(0);
+            skipped.set(0);
+            shadowSampled.set(0);
+            shadowChanged.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return "evaluated=" + getEvaluated() + ", invoked=" + getInvoked() +
+                    ", skipped=" + getSkipped() + " (" + Math.round(getSkipRate() * 100) + "%)" +
+                    ", shadow=" + getShadowChanged() + "/" + getShadowSampled();
+        }
+    }
+}
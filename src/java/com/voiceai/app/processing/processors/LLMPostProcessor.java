@@ -23,6 +23,10 @@ import org.json.JSONObject;
  * - Natural text formatting
  * - Context-aware capitalization
  * 
+ * When ProcessingContext.isLlmEditMode() is set, the model is asked for a
+ * compact edit list (see EditOperations) instead of the full text, falling
+ * back to full-text mode if the edit list does not validate.
+ *
  * Falls back to rule-based processing if API unavailable.
  */
 public class LLMPostProcessor implements TextProcessor {
@@ -39,6 +43,9 @@ public class LLMPostProcessor implements TextProcessor {
     // Timeout for API calls
     private static final int TIMEOUT_MS = 3000;
 
+    // Output token limit for full-text responses
+    private static final int MAX_TOKENS = 500;
+
     public LLMPostProcessor() {
         // Default constructor - API key set via setApiKey()
     }
@@ -67,8 +74,27 @@ public class LLMPostProcessor implements TextProcessor {
             return ruleBasedFallback(text);
         }
 
+        // Edit-list mode: model returns only the changes, applied locally
+        if (context != null && context.isLlmEditMode()) {
+            try {
+                String[] tokens = EditOperations.tokenize(text);
+                String edits = callGroqAPI(EditOperations.SYSTEM_PROMPT,
+                        EditOperations.editRequest(tokens),
+                        EditOperations.maxOutputTokens(tokens.length, MAX_TOKENS));
+                String result = EditOperations.apply(tokens, edits);
+                if (result != null && !result.isEmpty()) {
+                    Log.d(TAG, "LLM edit-list processing successful");
+                    return result;
+                }
+                Log.d(TAG, "Invalid edit list, retrying in full-text mode");
+            } catch (Exception e) {
+                Log.w(TAG, "LLM edit-list error, retrying in full-text mode: " + e.getMessage());
+            }
+        }
+
         try {
-            String result = callGroqAPI(text);
+            // Both modes share the system prompt (and its prompt-cache prefix)
+            String result = callGroqAPI(EditOperations.SYSTEM_PROMPT, EditOperations.textRequest(text), MAX_TOKENS);
             if (result != null && !result.isEmpty()) {
                 Log.d(TAG, "LLM processing successful");
                 return result;
@@ -80,17 +106,7 @@ public class LLMPostProcessor implements TextProcessor {
         return ruleBasedFallback(text);
     }
 
-    private String callGroqAPI(String text) throws Exception {
-        // System prompt for Wispr Flow-style formatting
-        String systemPrompt = "You are a text formatting assistant. Your job is to clean up voice dictation text. " +
-                "Rules:\n" +
-                "1. Remove filler words (um, uh, like, you know, basically, actually)\n" +
-                "2. Fix grammar and punctuation\n" +
-                "3. Convert spoken numbers to digits (twenty five → 25, one hundred → 100)\n" +
-                "4. Keep the original meaning and tone\n" +
-                "5. ONLY output the cleaned text, nothing else\n" +
-                "6. If input is already clean, output it unchanged";
-
+    private String callGroqAPI(String systemPrompt, String text, int maxTokens) throws Exception {
         // Build JSON request
         JSONObject message1 = new JSONObject();
         message1.put("role", "system");
@@ -108,7 +124,7 @@ public class LLMPostProcessor implements TextProcessor {
         requestBody.put("model", GROQ_MODEL);
         requestBody.put("messages", messages);
         requestBody.put("temperature", 0.3); // Low temperature for consistent output
-        requestBody.put("max_tokens", 500);
+        requestBody.put("max_tokens", maxTokens);
 
         // Make API call on background thread with timeout
         AtomicReference<String> result = new AtomicReference<>(null);
@@ -1,35 +1,41 @@
 package com.voiceai.app.processing.processors;
 
 import android.content.Context;
-import android.util.Log;
 import com.voiceai.app.processing.ProcessingContext;
+import com.voiceai.app.processing.ProcessingLog;
 import com.voiceai.app.processing.TextProcessor;
 import java.io.File;
 import java.util.regex.Pattern;
 
 /**
- * LocalLLMProcessor - Enhanced rule-based text formatting
+ * LocalLLMProcessor - On-device LLM text formatting
  * 
- * Provides Wispr Flow-style text polishing using sophisticated rule-based
- * processing.
- * This runs entirely on-device without requiring internet connectivity.
+ * Provides Wispr Flow-style text polishing with a local Qwen3 GGUF model
+ * (llama.cpp via JNI, see src/llm.rs). Runs entirely on-device without
+ * requiring internet connectivity.
  * 
- * Features:
+ * The model is memory-mapped and shared process-wide. The system prompt's
+ * KV cache is kept between utterances (and persisted in the cache dir), so
+ * each call only evaluates the user text. Decoding is greedy with a hard
+ * token budget.
+ * 
+ * When the model is not loaded (not downloaded, native library built
+ * without the local-llm feature, or inference fails) it falls back to
+ * enhanced rule-based processing:
  * - Filler word removal (um, uh, like, you know)
  * - Stutter/repetition cleanup
  * - Grammar corrections (contractions, "i" → "I")
  * - Smart punctuation
  * - Question detection
- * 
- * Note: Native LLM inference (llama.cpp) not available due to Android
- * cross-compilation issues. This enhanced rule-based processing provides
- * similar results for common dictation use cases.
  */
 public class LocalLLMProcessor implements TextProcessor {
 
     private static final String TAG = "VoiceAI.LocalLLM";
     private static final String MODEL_FILENAME = "Qwen3-0.6B-UD-Q4_K_XL.gguf";
 
+    // Output token limit for full-text responses
+    private static final int MAX_OUTPUT_TOKENS = 256;
+
     // Model state
     private boolean enabled = false;
     private Context appContext;
@@ -44,6 +50,15 @@ public class LocalLLMProcessor implements TextProcessor {
     private static final Pattern REPEAT_PATTERN = Pattern.compile(
             "\\b(\\w+)\\s+\\1\\b", Pattern.CASE_INSENSITIVE);
 
+    // Native bridge (src/llm.rs); missing when built without the local-llm feature
+    private static native boolean initNative(String modelPath, String cacheDir);
+
+    private static native boolean isModelLoadedNative();
+
+    private static native String generateNative(String systemPrompt, String userText, int maxTokens);
+
+    private static native void cleanupNative();
+
     public LocalLLMProcessor() {
         // Default constructor
     }
@@ -56,7 +71,10 @@ public class LocalLLMProcessor implements TextProcessor {
     }
 
     /**
-     * Initialize/enable the processor
+     * Initialize/enable the processor and load the model if it is downloaded.
+     * Loading maps a ~400MB file, so call this off the main thread.
+     *
+     * @return true if the processor is enabled (with or without the model)
      */
     public boolean initModel(Context context) {
         if (context == null) {
@@ -67,15 +85,37 @@ public class LocalLLMProcessor implements TextProcessor {
         this.modelFile = new File(context.getFilesDir(), MODEL_FILENAME);
         this.enabled = true;
 
-        Log.d(TAG, "LocalLLMProcessor enabled (using enhanced rule-based processing)");
+        if (!modelFile.exists()) {
+            ProcessingLog.d(TAG, "LocalLLMProcessor enabled (model not downloaded, using rule-based processing)");
+            return true;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            if (initNative(modelFile.getAbsolutePath(), context.getCacheDir().getAbsolutePath())) {
+                ProcessingLog.d(TAG, "Model loaded in " + (System.currentTimeMillis() - start) + "ms");
+            } else {
+                ProcessingLog.w(TAG, "Model failed to load, using rule-based processing");
+            }
+        } catch (UnsatisfiedLinkError e) {
+            ProcessingLog.w(TAG, "Native LLM not available, using rule-based processing");
+        }
         return true;
     }
 
     /**
-     * Check if the processor is enabled
+     * Check if the native model is loaded and ready for inference
      */
     public boolean isModelLoaded() {
-        return enabled;
+        return enabled && isNativeLoaded();
+    }
+
+    private static boolean isNativeLoaded() {
+        try {
+            return isModelLoadedNative();
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
     }
 
     /**
@@ -91,10 +131,57 @@ public class LocalLLMProcessor implements TextProcessor {
             return text;
         }
 
+        if (enabled) {
+            String polished = runModel(text, context);
+            if (polished != null && !polished.isEmpty()) {
+                return polished;
+            }
+        }
+
         // Apply Wispr Flow-style processing
         return enhancedRuleBasedProcessing(text);
     }
 
+    /**
+     * Polish text with the on-device model, preferring the compact edit-list
+     * format when enabled in the context and falling back to full-text output.
+     *
+     * @return Polished text, or null if no model output was usable
+     */
+    private String runModel(String text, ProcessingContext context) {
+        if (context != null && context.isLlmEditMode()) {
+            String[] tokens = EditOperations.tokenize(text);
+            String edits = generate(EditOperations.SYSTEM_PROMPT,
+                    EditOperations.editRequest(tokens),
+                    EditOperations.maxOutputTokens(tokens.length, MAX_OUTPUT_TOKENS));
+            String edited = EditOperations.apply(tokens, edits);
+            if (edited != null) {
+                return edited;
+            }
+            ProcessingLog.d(TAG, "Invalid edit list, retrying in full-text mode");
+        }
+
+        // Same system prompt, so the cached prefix survives the retry
+        String output = generate(EditOperations.SYSTEM_PROMPT, EditOperations.textRequest(text), MAX_OUTPUT_TOKENS);
+        return output != null ? output.trim() : null;
+    }
+
+    /**
+     * Run one completion on the local model.
+     * Returns null when the model is not loaded or inference fails.
+     */
+    protected String generate(String systemPrompt, String userText, int maxTokens) {
+        if (!isNativeLoaded()) {
+            return null;
+        }
+        try {
+            return generateNative(systemPrompt, userText, maxTokens);
+        } catch (UnsatisfiedLinkError e) {
+            ProcessingLog.w(TAG, "Native LLM not available: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Enhanced rule-based processing - Wispr Flow style
      * Provides sophisticated text cleanup without requiring ML model
@@ -206,9 +293,14 @@ public class LocalLLMProcessor implements TextProcessor {
     }
 
     /**
-     * Clean up resources
+     * Clean up resources and unmap the model
      */
     public void cleanup() {
         enabled = false;
+        try {
+            cleanupNative();
+        } catch (UnsatisfiedLinkError e) {
+            // Native LLM was never available
+        }
     }
 }
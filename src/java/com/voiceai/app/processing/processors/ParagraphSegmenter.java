@@ -0,0 +1,352 @@
+package com.voiceai.app.processing.processors;
+
+import com.voiceai.app.processing.ProcessingContext;
+import com.voiceai.app.processing.TextProcessor;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ParagraphSegmenter - Structures long dictations from pause lengths
+ *
+ * Uses the ASR word timings in the context (parallel double[] arrays) to find
+ * sentence and paragraph breaks, then maps them onto the processed text,
+ * which may have lost fillers, merged numbers or gained punctuation.
+ *
+ * Handles:
+ * - Adaptive thresholds from the speaker's own pause distribution
+ *   (median and MAD), so slow and fast speakers both segment sensibly
+ * - Sentence breaks: a period and capital where punctuation is missing
+ *   and the next word starts a new sentence
+ * - Paragraph breaks: blank line, with a minimum paragraph length; dropped
+ *   when the pause falls mid-sentence
+ * - Alignment of raw ASR words to processed tokens
+ * - Line breaks already in the text ("new line") are kept as fixed breaks
+ *
+ * Skipped when no timings are available or the text already has paragraphs.
+ */
+public class ParagraphSegmenter implements TextProcessor {
+
+    // Break types per gap (index i = gap after word i)
+    public static final int BREAK_NONE = 0;
+    public static final int BREAK_SENTENCE = 1;
+    public static final int BREAK_PARAGRAPH = 2;
+
+    // Fixed thresholds (seconds) used when there are too few pauses to adapt
+    static final double DEFAULT_SENTENCE_PAUSE = 0.6;
+    static final double DEFAULT_PARAGRAPH_PAUSE = 1.5;
+
+    // Bounds for adaptive thresholds (seconds)
+    private static final double MIN_SENTENCE_PAUSE = 0.35;
+    private static final double MAX_SENTENCE_PAUSE = 1.0;
+    private static final double MIN_PARAGRAPH_PAUSE = 1.0;
+    private static final double MAX_PARAGRAPH_PAUSE = 3.0;
+
+    private static final int MIN_GAPS_FOR_ADAPTIVE = 8;
+    private static final int MIN_PARAGRAPH_WORDS = 12;
+
+    // How far ahead to search when aligning raw words to processed tokens
+    private static final int ALIGN_WINDOW = 8;
+
+    // Words a sentence rarely ends on; a pause after them is hesitation
+    private static final Set<String> NON_FINAL_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "the", "and", "or", "but", "so", "to", "of", "in", "on", "at",
+            "for", "with", "from", "by", "my", "your", "our", "their", "his", "her",
+            "is", "are", "was", "were", "i", "we", "you", "they", "that", "if", "because"));
+
+    // Words that usually carry on the sentence before them
+    private static final Set<String> CONTINUATION_WORDS = new HashSet<>(Arrays.asList(
+            "and", "or", "nor", "because", "which", "who", "whom", "whose", "that", "than",
+            "to", "of", "for", "with", "from", "by", "as", "if", "while", "whereas",
+            "is", "are", "was", "were"));
+
+    @Override
+    public String process(String text, ProcessingContext context) {
+        if (text == null || text.isEmpty() || context == null || !context.hasWordTimings()) {
+            return text;
+        }
+        if (text.contains("\n\n")) {
+            return text;
+        }
+
+        String[] rawWords = context.getTimedWords();
+        int[] breaks = detectBreaks(context.getWordStartTimes(), context.getWordEndTimes());
+
+        String trimmed = text.trim();
+        String[] tokens = trimmed.split("\\s+");
+        int[] tokenBreaks = alignBreaks(rawWords, breaks, tokens);
+
+        return render(tokens, tokenBreaks, lineBreaks(trimmed, tokens.length));
+    }
+
+    /**
+     * Classify each inter-word gap as none / sentence / paragraph
+     *
+     * @return int[n - 1] of BREAK_* values
+     */
+    public static int[] detectBreaks(double[] starts, double[] ends) {
+        int n = Math.min(starts.length, ends.length);
+        if (n < 2) {
+            return new int[0];
+        }
+
+        double[] gaps = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            gaps[i] = Math.max(0, starts[i + 1] - ends[i]);
+        }
+
+        double[] thresholds = thresholds(gaps);
+        double sentencePause = thresholds[0];
+        double paragraphPause = thresholds[1];
+
+        int[] breaks = new int[n - 1];
+        int wordsInParagraph = 0;
+        for (int i = 0; i < gaps.length; i++) {
+            wordsInParagraph++;
+            if (gaps[i] >= paragraphPause && wordsInParagraph >= MIN_PARAGRAPH_WORDS) {
+                breaks[i] = BREAK_PARAGRAPH;
+                wordsInParagraph = 0;
+            } else if (gaps[i] >= sentencePause) {
+                breaks[i] = BREAK_SENTENCE;
+            }
+        }
+        return breaks;
+    }
+
+    /**
+     * Sentence and paragraph pause thresholds adapted to the gap distribution
+     *
+     * @return {sentencePause, paragraphPause} in seconds
+     */
+    static double[] thresholds(double[] gaps) {
+        if (gaps.length < MIN_GAPS_FOR_ADAPTIVE) {
+            return new double[] { DEFAULT_SENTENCE_PAUSE, DEFAULT_PARAGRAPH_PAUSE };
+        }
+
+        double[] sorted = gaps.clone();
+        Arrays.sort(sorted);
+        double median = median(sorted);
+
+        double[] deviations = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            deviations[i] = Math.abs(sorted[i] - median);
+        }
+        Arrays.sort(deviations);
+        // Floor keeps a very even speaker from getting a near-zero threshold
+        double mad = Math.max(median(deviations), 0.05);
+
+        // Relative term scales with slow speakers, MAD term with irregular ones
+        double sentence = clamp(Math.max(median * 2, median + 4 * mad),
+                MIN_SENTENCE_PAUSE, MAX_SENTENCE_PAUSE);
+        double paragraph = clamp(Math.max(median * 5, median + 12 * mad),
+                MIN_PARAGRAPH_PAUSE, MAX_PARAGRAPH_PAUSE);
+        return new double[] { sentence, Math.max(paragraph, sentence * 2) };
+    }
+
+    /**
+     * Map breaks between raw ASR words onto the processed tokens
+     *
+     * A break after raw word i is placed before the next raw word that
+     * survived processing, so removed or merged words ("twenty five" → "25")
+     * do not shift it.
+     *
+     * @return int[tokens.length] where entry j is the break after token j
+     */
+    static int[] alignBreaks(String[] rawWords, int[] breaks, String[] tokens) {
+        int[] map = alignWords(rawWords, tokens);
+        int[] tokenBreaks = new int[tokens.length];
+
+        int nextMatched = -1;
+        // Walk backwards so the next surviving raw word is known in O(1)
+        for (int i = rawWords.length - 1; i >= 0; i--) {
+            if (i < breaks.length && breaks[i] != BREAK_NONE && nextMatched >= 0) {
+                int after = map[nextMatched] - 1;
+                if (after >= 0 && breaks[i] > tokenBreaks[after]) {
+                    tokenBreaks[after] = breaks[i];
+                }
+            }
+            if (map[i] >= 0) {
+                nextMatched = i;
+            }
+        }
+        return tokenBreaks;
+    }
+
+    /**
+     * Monotonic greedy alignment with a small lookahead window
+     *
+     * @return int[rawWords.length], processed token index or -1 if removed
+     */
+    static int[] alignWords(String[] rawWords, String[] tokens) {
+        String[] raw = new String[rawWords.length];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = normalize(rawWords[i]);
+        }
+        String[] processed = new String[tokens.length];
+        for (int j = 0; j < processed.length; j++) {
+            processed[j] = normalize(tokens[j]);
+        }
+
+        int[] map = new int[raw.length];
+        Arrays.fill(map, -1);
+
+        int i = 0;
+        int j = 0;
+        while (i < raw.length && j < processed.length) {
+            if (!raw[i].isEmpty() && raw[i].equals(processed[j])) {
+                map[i++] = j++;
+                continue;
+            }
+
+            // Nearest match of raw[i] ahead in processed (tokens inserted/merged)
+            int skipTokens = -1;
+            for (int k = 1; k <= ALIGN_WINDOW && j + k < processed.length; k++) {
+                if (!raw[i].isEmpty() && raw[i].equals(processed[j + k])) {
+                    skipTokens = k;
+                    break;
+                }
+            }
+            // Nearest match of processed[j] ahead in raw (raw words removed)
+            int skipRaw = -1;
+            for (int k = 1; k <= ALIGN_WINDOW && i + k < raw.length; k++) {
+                if (!processed[j].isEmpty() && processed[j].equals(raw[i + k])) {
+                    skipRaw = k;
+                    break;
+                }
+            }
+
+            if (skipRaw > 0 && (skipTokens < 0 || skipRaw <= skipTokens)) {
+                i += skipRaw;
+            } else if (skipTokens > 0) {
+                j += skipTokens;
+            } else {
+                // Substitution (e.g. number words → digits): leave raw unmatched
+                i++;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Which token separators in the (trimmed) text contain a newline
+     *
+     * @return boolean[count] where entry j is true if a newline follows token j
+     */
+    static boolean[] lineBreaks(String text, int count) {
+        boolean[] lineBreaks = new boolean[count];
+        int token = -1;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (c == '\n' && token >= 0 && token < count) {
+                    lineBreaks[token] = true;
+                }
+                inWord = false;
+            } else if (!inWord) {
+                token++;
+                inWord = true;
+            }
+        }
+        return lineBreaks;
+    }
+
+    private static String render(String[] tokens, int[] tokenBreaks, boolean[] lineBreaks) {
+        StringBuilder sb = new StringBuilder(tokens.length * 8);
+        boolean capitalizeNext = false;
+
+        for (int j = 0; j < tokens.length; j++) {
+            String token = tokens[j];
+            if (capitalizeNext) {
+                token = capitalize(token);
+                capitalizeNext = false;
+            }
+
+            int type = j < tokens.length - 1 && !lineBreaks[j] ? tokenBreaks[j] : BREAK_NONE;
+            if (type != BREAK_NONE && !endsSentence(token)) {
+                // Only terminate a bare word, and only before a new sentence;
+                // otherwise the pause was mid-sentence and is not a break
+                if (!hasTrailingPunctuation(token) && canEndSentence(token)
+                        && startsSentence(tokens[j + 1])) {
+                    token = token + ".";
+                    capitalizeNext = true;
+                } else {
+                    type = BREAK_NONE;
+                }
+            }
+
+            sb.append(token);
+            if (j < tokens.length - 1) {
+                if (lineBreaks[j]) {
+                    sb.append('\n');
+                } else {
+                    sb.append(type == BREAK_PARAGRAPH ? "\n\n" : " ");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean endsSentence(String token) {
+        char last = token.charAt(token.length() - 1);
+        return last == '.' || last == '!' || last == '?';
+    }
+
+    private static boolean hasTrailingPunctuation(String token) {
+        char last = token.charAt(token.length() - 1);
+        return last == ',' || last == ':' || last == ';' || last == '-' || last == '\u2014';
+    }
+
+    private static boolean canEndSentence(String token) {
+        return !NON_FINAL_WORDS.contains(normalize(token));
+    }
+
+    /**
+     * Whether the next token can open a sentence: capitalized (other than
+     * the pronoun I), or at least not a word that continues the last one
+     */
+    private static boolean startsSentence(String token) {
+        String word = normalize(token);
+        if (Character.isUpperCase(token.charAt(0)) && !word.equals("i") && !word.startsWith("i'")) {
+            return true;
+        }
+        return !CONTINUATION_WORDS.contains(word);
+    }
+
+    private static String capitalize(String token) {
+        if (!token.isEmpty() && Character.isLowerCase(token.charAt(0))) {
+            return Character.toUpperCase(token.charAt(0)) + token.substring(1);
+        }
+        return token;
+    }
+
+    private static String normalize(String word) {
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '\'') {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double median(double[] sorted) {
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @Override
+    public String getName() {
+        return "ParagraphSegmenter";
+    }
+
+    @Override
+    public boolean shouldSkip(ProcessingContext context) {
+        return context == null || !context.hasWordTimings();
+    }
+}
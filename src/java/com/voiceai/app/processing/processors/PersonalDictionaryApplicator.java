@@ -2,55 +2,83 @@ package com.voiceai.app.processing.processors;
 
 import com.voiceai.app.processing.ProcessingContext;
 import com.voiceai.app.processing.TextProcessor;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.voiceai.app.processing.Vocabulary;
 
 /**
  * PersonalDictionaryApplicator - Applies user's custom word replacements
- * 
+ *
  * FUTO-style personal dictionary:
  * - Preserves exact casing for brand names: "groq" → "Groq"
  * - Handles @mentions: "at Groq" → "@Groq"
- * - Multi-word replacements supported
+ * - Multi-word replacements and aliases supported
+ *
+ * Walks the words of the text and looks up each run (longest first) in the
+ * context's Vocabulary, so large imported dictionaries cost no more per
+ * utterance than small ones.
  */
 public class PersonalDictionaryApplicator implements TextProcessor {
 
+    // Longest phrase tried at each word, whatever the dictionary claims
+    static final int MAX_PHRASE_WORDS = 8;
+
     @Override
     public String process(String text, ProcessingContext context) {
         if (text == null || text.isEmpty()) {
             return text;
         }
+        return apply(text, context.getVocabulary());
+    }
 
-        Map<String, String> dictionary = context.getPersonalDictionary();
-        if (dictionary == null || dictionary.isEmpty()) {
+    /**
+     * Replace every dictionary phrase in text, preferring the longest match
+     */
+    static String apply(String text, Vocabulary vocabulary) {
+        if (vocabulary == null || vocabulary.size() == 0) {
+            return text;
+        }
+        int maxWords = Math.min(vocabulary.getMaxPhraseWords(), MAX_PHRASE_WORDS);
+        if (maxWords <= 0) {
             return text;
         }
 
-        String result = text;
-
-        // Sort by key length (longest first) for proper multi-word handling
-        java.util.List<Map.Entry<String, String>> sorted = new java.util.ArrayList<>(dictionary.entrySet());
-        sorted.sort((a, b) -> b.getKey().length() - a.getKey().length());
-
-        for (Map.Entry<String, String> entry : sorted) {
-            String key = entry.getKey().toLowerCase();
-            String value = entry.getValue();
-
-            // Handle @mentions: "at groq" → "@Groq"
-            if (value.startsWith("@") && value.length() > 1) {
-                String withoutAt = value.substring(1);
-                result = result.replaceAll(
-                        "(?i)\\bat\\s+" + Pattern.quote(withoutAt.toLowerCase()) + "\\b",
-                        value);
+        // Word spans: starts[i]..ends[i]
+        int length = text.length();
+        int[] starts = new int[length / 2 + 1];
+        int[] ends = new int[starts.length];
+        int words = 0;
+        for (int i = 0; i < length;) {
+            if (!Vocabulary.isWordChar(text.charAt(i))) {
+                i++;
+                continue;
             }
-
-            // Standard word replacement with case preservation
-            result = result.replaceAll(
-                    "(?i)\\b" + Pattern.quote(key) + "\\b",
-                    Matcher.quoteReplacement(value));
+            starts[words] = i;
+            while (i < length && Vocabulary.isWordChar(text.charAt(i))) {
+                i++;
+            }
+            ends[words++] = i;
         }
 
-        return result;
+        StringBuilder result = null;
+        int copied = 0;
+        for (int w = 0; w < words; w++) {
+            for (int n = Math.min(maxWords, words - w); n >= 1; n--) {
+                int end = ends[w + n - 1];
+                String replacement = vocabulary.lookup(Vocabulary.normalize(text.substring(starts[w], end)));
+                if (replacement == null) {
+                    continue;
+                }
+                if (result == null) {
+                    result = new StringBuilder(length + 16);
+                }
+                result.append(text, copied, starts[w]).append(replacement);
+                copied = end;
+                w += n - 1;
+                break;
+            }
+        }
+        if (result == null) {
+            return text;
+        }
+        return result.append(text, copied, length).toString();
     }
 }
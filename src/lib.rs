@@ -6,6 +6,12 @@ use eframe::egui;
 use std::path::PathBuf;
 use std::sync::{Arc, Mutex};
 use std::thread;
+#[cfg(target_os = "android")]
+use std::sync::atomic::{AtomicBool, AtomicI64, AtomicU64, AtomicUsize, Ordering};
+#[cfg(target_os = "android")]
+use std::sync::Condvar;
+#[cfg(target_os = "android")]
+use std::time::{Duration, Instant};
 use transcribe_rs::engines::parakeet::{ParakeetEngine, ParakeetModelParams};
 use transcribe_rs::TranscriptionEngine;
 
@@ -15,8 +21,10 @@ use jni::JNIEnv;
 #[cfg(target_os = "android")]
 use jni::objects::{JClass, JObject};
 
-// Note: Local LLM module removed - llama-cpp-2 doesn't cross-compile for Android
-// The enhanced rule-based processing in LocalLLMProcessor.java is used instead
+// Local LLM JNI bridge (llama.cpp). Built only with `--features local-llm`;
+// otherwise LocalLLMProcessor.java uses its rule-based processing.
+#[cfg(all(target_os = "android", feature = "local-llm"))]
+mod llm;
 
 #[cfg(target_os = "android")]
 #[no_mangle]
@@ -137,7 +145,7 @@ impl TranscribeApp {
                 let activity = unsafe { JObject::from_raw(ctx.context().cast()) };
                 
                 match extract_assets(&mut env, &activity) {
-                    Ok(path) => path,
+                    Ok(assets) => assets,
                     Err(e) => {
                         sender.send(UiUpdate::Error(format!("Asset extraction failed: {}", e))).ok();
                         return;
@@ -653,129 +661,315 @@ fn request_permission(perm_name: &str) -> anyhow::Result<()> {
     Ok(())
 }
 
+// --- Model assets ---
+//
+// The model ships in the APK under assets/<MODEL_ASSET_DIR>. ONNX files that
+// build.sh stores uncompressed are memory-mapped straight out of the APK and
+// handed to the engine, so they are never copied. Everything else is
+// extracted to files/<MODEL_ASSET_DIR>, with a manifest recording the APK it
+// came from plus each file's size and FNV-1a hash:
+// - same APK: files whose size matches are kept without reading them
+// - after an update: an asset is hashed (read only) and rewritten only if it
+//   changed
+// Copies go through a 1MB Java buffer instead of 8KB reads.
+
+#[cfg(target_os = "android")]
+const MODEL_ASSET_DIR: &str = "parakeet-tdt-0.6b-v3-int8";
+#[cfg(target_os = "android")]
+const ASSET_MANIFEST: &str = ".manifest";
+#[cfg(target_os = "android")]
+const ASSET_COPY_BUFFER: i32 = 1 << 20;
+
+/// Model directory plus the files mapped from the APK instead of extracted
+#[cfg(target_os = "android")]
+struct ModelAssets {
+    dir: PathBuf,
+    preloaded: Vec<transcribe_rs::engines::parakeet::PreloadedModel>,
+}
+
+// APK regions mapped so far (asset path -> address, length); the mappings
+// live for the process, which an APK update always restarts
+#[cfg(target_os = "android")]
+static MAPPED_ASSETS: Mutex<Vec<(String, usize, usize)>> = Mutex::new(Vec::new());
+
+#[cfg(target_os = "android")]
+struct AssetManifest {
+    stamp: String,
+    entries: std::collections::HashMap<String, (u64, u64)>,
+}
+
+#[cfg(target_os = "android")]
+impl AssetManifest {
+    fn read(path: &std::path::Path) -> Option<Self> {
+        let content = std::fs::read_to_string(path).ok()?;
+        let mut lines = content.lines();
+        let stamp = lines.next()?.strip_prefix("stamp ")?.to_string();
+        let mut entries = std::collections::HashMap::new();
+        for line in lines {
+            let mut parts = line.splitn(3, ' ');
+            let size = parts.next().and_then(|v| v.parse::<u64>().ok());
+            let hash = parts.next().and_then(|v| u64::from_str_radix(v, 16).ok());
+            if let (Some(size), Some(hash), Some(asset)) = (size, hash, parts.next()) {
+                entries.insert(asset.to_string(), (size, hash));
+            }
+        }
+        Some(Self { stamp, entries })
+    }
+
+    /// Atomic replace, so an interrupted extraction never leaves a manifest
+    /// describing files that were not written
+    fn write(&self, path: &std::path::Path) -> std::io::Result<()> {
+        let mut content = format!("stamp {}\n", self.stamp);
+        for (asset, (size, hash)) in &self.entries {
+            content.push_str(&format!("{} {:016x} {}\n", size, hash, asset));
+        }
+        let tmp = path.with_extension("tmp");
+        std::fs::write(&tmp, content)?;
+        std::fs::rename(&tmp, path)
+    }
+}
+
+// Onboarding (start_asset_extraction) and load_engine_blocking can both
+// extract; they share the .part files and the manifest, so one at a time.
+// The second caller then finds the manifest current and skips the copies.
+#[cfg(target_os = "android")]
+static EXTRACT_LOCK: Mutex<()> = Mutex::new(());
+
 #[cfg(target_os = "android")]
 fn extract_assets(
-    env: &mut jni::JNIEnv, 
-    context: &jni::objects::JObject, 
-) -> anyhow::Result<PathBuf> {
+    env: &mut jni::JNIEnv,
+    context: &jni::objects::JObject,
+) -> anyhow::Result<ModelAssets> {
+    let _extract_guard = EXTRACT_LOCK.lock().unwrap();
+    let start = Instant::now();
     let files_dir_obj = env.call_method(context, "getFilesDir", "()Ljava/io/File;", &[])?.l()?;
     let path_str_obj = env.call_method(&files_dir_obj, "getAbsolutePath", "()Ljava/lang/String;", &[])?.l()?;
     let path_string: String = env.get_string(&path_str_obj.into())?.into();
-    
+
     let base_path = PathBuf::from(path_string);
-    let model_dir = base_path.join("parakeet-tdt-0.6b-v3-int8");
-    
-    if model_dir.exists() {
-         if std::fs::read_dir(&model_dir)?.count() > 0 {
-             return Ok(model_dir);
-         }
-    }
-    
+    let model_dir = base_path.join(MODEL_ASSET_DIR);
     std::fs::create_dir_all(&model_dir)?;
-    
-    let asset_manager_obj = env.call_method(context, "getAssets", "()Landroid/content/res/AssetManager;", &[])?.l()?;
-    let asset_dir_name = "parakeet-tdt-0.6b-v3-int8";
-    
-    copy_assets_recursively(env, &asset_manager_obj, asset_dir_name, &base_path)?;
-    
-    Ok(model_dir)
+
+    let asset_manager = env.call_method(context, "getAssets", "()Landroid/content/res/AssetManager;", &[])?.l()?;
+    let stamp = apk_stamp(env, context)?;
+    let manifest_path = model_dir.join(ASSET_MANIFEST);
+    let old = AssetManifest::read(&manifest_path);
+    let same_apk = old.as_ref().map_or(false, |m| m.stamp == stamp);
+
+    let mut assets = Vec::new();
+    list_assets(env, &asset_manager, MODEL_ASSET_DIR, &mut assets)?;
+
+    let mut manifest = AssetManifest { stamp, entries: std::collections::HashMap::new() };
+    let mut preloaded = Vec::new();
+    let (mut kept, mut extracted) = (0, 0);
+    for asset in &assets {
+        let target = base_path.join(asset);
+        let file_name = asset.strip_prefix(MODEL_ASSET_DIR).unwrap_or(asset.as_str()).trim_start_matches('/');
+
+        if asset.ends_with(".onnx") {
+            if let Some(bytes) = map_asset(env, &asset_manager, asset) {
+                preloaded.push(transcribe_rs::engines::parakeet::PreloadedModel {
+                    file_name: file_name.to_string(),
+                    bytes,
+                });
+                // A copy from an older install is no longer needed
+                let _ = std::fs::remove_file(&target);
+                continue;
+            }
+        }
+
+        let recorded = old.as_ref().and_then(|m| m.entries.get(asset.as_str()).copied());
+        if let Some((size, hash)) = recorded {
+            if std::fs::metadata(&target).map(|m| m.len()).ok() == Some(size)
+                && (same_apk || stream_asset(env, &asset_manager, asset, None)? == (size, hash))
+            {
+                manifest.entries.insert(asset.clone(), (size, hash));
+                kept += 1;
+                continue;
+            }
+        }
+
+        if let Some(parent) = target.parent() {
+            std::fs::create_dir_all(parent)?;
+        }
+        let part = PathBuf::from(format!("{}.part", target.display()));
+        let mut file = std::fs::File::create(&part)?;
+        let entry = stream_asset(env, &asset_manager, asset, Some(&mut file))?;
+        drop(file);
+        std::fs::rename(&part, &target)?;
+        manifest.entries.insert(asset.clone(), entry);
+        extracted += 1;
+        log::info!("Extracted: {:?} ({} bytes)", target, entry.0);
+    }
+    manifest.write(&manifest_path)?;
+
+    log::info!(
+        "Model assets ready in {}ms: {} mapped, {} kept, {} extracted",
+        start.elapsed().as_millis(), preloaded.len(), kept, extracted
+    );
+    Ok(ModelAssets { dir: model_dir, preloaded })
+}
+
+/// versionCode and lastUpdateTime; changes with every install or update
+#[cfg(target_os = "android")]
+fn apk_stamp(env: &mut jni::JNIEnv, context: &jni::objects::JObject) -> anyhow::Result<String> {
+    let package_manager = env.call_method(context, "getPackageManager", "()Landroid/content/pm/PackageManager;", &[])?.l()?;
+    let package_name = env.call_method(context, "getPackageName", "()Ljava/lang/String;", &[])?.l()?;
+    let info = env.call_method(
+        &package_manager,
+        "getPackageInfo",
+        "(Ljava/lang/String;I)Landroid/content/pm/PackageInfo;",
+        &[(&package_name).into(), 0i32.into()],
+    )?.l()?;
+    let version = env.get_field(&info, "versionCode", "I")?.i()?;
+    let updated = env.get_field(&info, "lastUpdateTime", "J")?.j()?;
+    Ok(format!("{}-{}", version, updated))
 }
 
+/// Files under `path`, as asset paths
 #[cfg(target_os = "android")]
-fn copy_assets_recursively(
-    env: &mut jni::JNIEnv, 
-    asset_manager: &jni::objects::JObject, 
-    path: &str, 
-    target_root: &PathBuf
+fn list_assets(
+    env: &mut jni::JNIEnv,
+    asset_manager: &jni::objects::JObject,
+    path: &str,
+    out: &mut Vec<String>,
 ) -> anyhow::Result<()> {
     use jni::objects::JObjectArray;
 
     let path_jstring = env.new_string(path)?;
-    let list_array_obj = env.call_method(
-        asset_manager, 
-        "list", 
-        "(Ljava/lang/String;)[Ljava/lang/String;", 
+    let list_array: JObjectArray = env.call_method(
+        asset_manager,
+        "list",
+        "(Ljava/lang/String;)[Ljava/lang/String;",
         &[(&path_jstring).into()]
-    )?.l()?;
-    
-    let list_array: JObjectArray = list_array_obj.into();
+    )?.l()?.into();
     let len = env.get_array_length(&list_array)?;
-    
+
     if len == 0 {
-        return copy_asset_file(env, asset_manager, path, target_root);
+        out.push(path.to_string());
+        return Ok(());
     }
-
-    let target_dir = target_root.join(path);
-    std::fs::create_dir_all(&target_dir)?;
-    
     for i in 0..len {
         let file_name_obj = env.get_object_array_element(&list_array, i)?;
         let file_name: String = env.get_string(&file_name_obj.into())?.into();
-        
-        let child_path = if path.is_empty() {
-            file_name
-        } else {
-            format!("{}/{}", path, file_name)
-        };
-        
-        copy_assets_recursively(env, asset_manager, &child_path, target_root)?;
+        list_assets(env, asset_manager, &format!("{}/{}", path, file_name), out)?;
     }
     Ok(())
 }
 
+/// Read an asset through a 1MB buffer, returning its size and FNV-1a hash
+/// and writing it to `sink` if given
 #[cfg(target_os = "android")]
-fn copy_asset_file(
-    env: &mut jni::JNIEnv, 
-    asset_manager: &jni::objects::JObject, 
-    asset_path: &str, 
-    target_root: &PathBuf
-) -> anyhow::Result<()> {
+fn stream_asset(
+    env: &mut jni::JNIEnv,
+    asset_manager: &jni::objects::JObject,
+    asset_path: &str,
+    mut sink: Option<&mut std::fs::File>,
+) -> anyhow::Result<(u64, u64)> {
+    use std::io::Write;
+
     let path_jstring = env.new_string(asset_path)?;
-    let result = env.call_method(
-        asset_manager, 
-        "open", 
-        "(Ljava/lang/String;)Ljava/io/InputStream;", 
+    let stream = env.call_method(
+        asset_manager,
+        "open",
+        "(Ljava/lang/String;)Ljava/io/InputStream;",
         &[(&path_jstring).into()]
-    );
-    
-    match result {
-        Ok(stream_val) => {
-            let stream_obj = stream_val.l()?;
-            let target_file_path = target_root.join(asset_path);
-            
-            let mut file = std::fs::File::create(&target_file_path)?;
-            let mut buffer = [0u8; 8192];
-            let buffer_j = env.new_byte_array(8192)?;
-            
-            loop {
-                let bytes_read = env.call_method(
-                    &stream_obj, 
-                    "read", 
-                    "([B)I", 
-                    &[(&buffer_j).into()]
-                )?.i()?;
-                
-                if bytes_read == -1 {
-                    break;
-                }
-                
-                let bytes_read_usize = bytes_read as usize;
-                let buffer_slice = unsafe { 
-                    std::slice::from_raw_parts_mut(buffer.as_mut_ptr() as *mut i8, bytes_read_usize) 
-                };
-                
-                env.get_byte_array_region(&buffer_j, 0, buffer_slice)?;
-                
-                use std::io::Write;
-                file.write_all(&buffer[0..bytes_read_usize])?;
+    )?.l()?;
+
+    let buffer_j = env.new_byte_array(ASSET_COPY_BUFFER)?;
+    let mut buffer = vec![0i8; ASSET_COPY_BUFFER as usize];
+    let mut size = 0u64;
+    let mut hash = 0xcbf29ce484222325u64;
+    let result = (|| -> anyhow::Result<()> {
+        loop {
+            let read = env.call_method(&stream, "read", "([B)I", &[(&buffer_j).into()])?.i()?;
+            if read < 0 {
+                return Ok(());
+            }
+            let chunk = &mut buffer[..read as usize];
+            env.get_byte_array_region(&buffer_j, 0, chunk)?;
+            let bytes = unsafe { std::slice::from_raw_parts(chunk.as_ptr() as *const u8, chunk.len()) };
+            for &b in bytes {
+                hash = (hash ^ b as u64).wrapping_mul(0x100000001b3);
+            }
+            size += bytes.len() as u64;
+            if let Some(file) = sink.as_mut() {
+                file.write_all(bytes)?;
+            }
+        }
+    })();
+    let _ = env.call_method(&stream, "close", "()V", &[]);
+    result.map(|()| (size, hash))
+}
+
+/// Map an asset stored uncompressed in the APK; None if it is compressed
+/// or cannot be mapped
+#[cfg(target_os = "android")]
+fn map_asset(
+    env: &mut jni::JNIEnv,
+    asset_manager: &jni::objects::JObject,
+    asset_path: &str,
+) -> Option<&'static [u8]> {
+    let mut mapped = MAPPED_ASSETS.lock().unwrap();
+    if let Some(&(_, addr, len)) = mapped.iter().find(|(path, _, _)| path == asset_path) {
+        return Some(unsafe { std::slice::from_raw_parts(addr as *const u8, len) });
+    }
+
+    let path_jstring = env.new_string(asset_path).ok()?;
+    // Throws for compressed entries
+    let afd = match env.call_method(
+        asset_manager,
+        "openFd",
+        "(Ljava/lang/String;)Landroid/content/res/AssetFileDescriptor;",
+        &[(&path_jstring).into()],
+    ).and_then(|v| v.l()) {
+        Ok(afd) => afd,
+        Err(_) => {
+            let _ = env.exception_clear();
+            return None;
+        }
+    };
+
+    let region = (|| -> jni::errors::Result<(i32, i64, i64)> {
+        let pfd = env.call_method(&afd, "getParcelFileDescriptor", "()Landroid/os/ParcelFileDescriptor;", &[])?.l()?;
+        let fd = env.call_method(&pfd, "getFd", "()I", &[])?.i()?;
+        let offset = env.call_method(&afd, "getStartOffset", "()J", &[])?.j()?;
+        let length = env.call_method(&afd, "getLength", "()J", &[])?.j()?;
+        Ok((fd, offset, length))
+    })();
+    if region.is_err() {
+        let _ = env.exception_clear();
+    }
+
+    // The mapping keeps its own reference to the file
+    let bytes = match region {
+        Ok((fd, offset, length)) if length > 0 => unsafe {
+            let page = libc::sysconf(libc::_SC_PAGESIZE) as i64;
+            let aligned = offset - offset % page;
+            let lead = (offset - aligned) as usize;
+            let addr = libc::mmap(
+                std::ptr::null_mut(),
+                lead + length as usize,
+                libc::PROT_READ,
+                libc::MAP_PRIVATE,
+                fd,
+                aligned as libc::off_t,
+            );
+            if addr == libc::MAP_FAILED {
+                log::warn!("mmap of {} failed", asset_path);
+                None
+            } else {
+                let data = (addr as *const u8).add(lead);
+                mapped.push((asset_path.to_string(), data as usize, length as usize));
+                Some(std::slice::from_raw_parts(data, length as usize))
             }
-            
-            env.call_method(&stream_obj, "close", "()V", &[])?;
-            log::info!("Extracted: {:?}", target_file_path);
-            Ok(())
         },
-        Err(_) => Ok(())
+        _ => None,
+    };
+    if env.call_method(&afd, "close", "()V", &[]).is_err() {
+        let _ = env.exception_clear();
     }
+    bytes
 }
 
 // ===========================================================================
@@ -789,6 +983,47 @@ unsafe impl Send for SendStream {}
 #[cfg(target_os = "android")]
 unsafe impl Sync for SendStream {}
 
+/// Samples per voice-activity frame (20ms at 16kHz); must match
+/// VoiceActivityDetector.FRAME_MS on the Java side
+#[cfg(target_os = "android")]
+const VAD_FRAME_SAMPLES: usize = 320;
+
+/// Splits the capture stream into fixed frames and computes the RMS and
+/// zero-crossing rate that VoiceActivityDetector.java consumes
+#[cfg(target_os = "android")]
+struct FrameStats {
+    count: usize,
+    sum_sq: f32,
+    crossings: u32,
+    prev: f32,
+}
+
+#[cfg(target_os = "android")]
+impl FrameStats {
+    fn new() -> Self {
+        Self { count: 0, sum_sq: 0.0, crossings: 0, prev: 0.0 }
+    }
+
+    /// Feed samples, appending (rms, zcr) for each completed frame
+    fn push(&mut self, data: &[f32], out: &mut Vec<(f32, f32)>) {
+        for &x in data {
+            self.sum_sq += x * x;
+            if (x >= 0.0) != (self.prev >= 0.0) {
+                self.crossings += 1;
+            }
+            self.prev = x;
+            self.count += 1;
+            if self.count == VAD_FRAME_SAMPLES {
+                let n = VAD_FRAME_SAMPLES as f32;
+                out.push(((self.sum_sq / n).sqrt(), self.crossings as f32 / n));
+                self.count = 0;
+                self.sum_sq = 0.0;
+                self.crossings = 0;
+            }
+        }
+    }
+}
+
 #[cfg(target_os = "android")]
 struct ImeState {
     stream: Option<SendStream>,
@@ -800,60 +1035,344 @@ struct ImeState {
 #[cfg(target_os = "android")]
 static IME_STATE: Mutex<Option<ImeState>> = Mutex::new(None);
 #[cfg(target_os = "android")]
-static GLOBAL_ENGINE: Mutex<Option<Arc<Mutex<ParakeetEngine>>>> = Mutex::new(None);
+static GLOBAL_ENGINE: Mutex<Option<Arc<EnginePool>>> = Mutex::new(None);
+// Serialises loads so concurrent callers never build two engines
+#[cfg(target_os = "android")]
+static ENGINE_LOAD_LOCK: Mutex<()> = Mutex::new(());
 
+/// Engine load state, published as soon as a load is requested (before the
+/// loader thread gets to it) so recognition waits instead of failing
 #[cfg(target_os = "android")]
-fn ensure_engine_loaded(
-    vm: &Arc<jni::JavaVM>,
-    service_ref: &jni::objects::GlobalRef,
-    callback_method: &str
-) {
-    // Check if already loaded
+#[derive(Clone, Copy, PartialEq, Eq, Debug)]
+enum EngineLoadState {
+    Unloaded,
+    Loading,
+    Loaded,
+    Failed,
+}
+
+#[cfg(target_os = "android")]
+static ENGINE_LOAD_STATE: Mutex<EngineLoadState> = Mutex::new(EngineLoadState::Unloaded);
+#[cfg(target_os = "android")]
+static ENGINE_LOAD_CHANGED: Condvar = Condvar::new();
+
+// Upper bound for wait_for_engine, in case a requested load never runs
+#[cfg(target_os = "android")]
+const ENGINE_LOAD_WAIT: Duration = Duration::from_secs(60);
+
+#[cfg(target_os = "android")]
+fn set_engine_load_state(state: EngineLoadState) {
+    *ENGINE_LOAD_STATE.lock().unwrap() = state;
+    ENGINE_LOAD_CHANGED.notify_all();
+}
+
+/// Extract assets and load the Parakeet engine on the calling thread.
+/// Returns immediately if the engine is already loaded.
+#[cfg(target_os = "android")]
+fn load_engine_blocking(
+    env: &mut jni::JNIEnv,
+    context: &jni::objects::JObject,
+    on_progress: &mut dyn FnMut(&mut jni::JNIEnv, &str),
+) -> anyhow::Result<()> {
+    let _load_guard = ENGINE_LOAD_LOCK.lock().unwrap();
     if GLOBAL_ENGINE.lock().unwrap().is_some() {
-        if let Ok(mut env) = vm.attach_current_thread() {
-            let msg = env.new_string("Ready").unwrap();
-            let _ = env.call_method(service_ref.as_obj(), callback_method, "(Ljava/lang/String;)V", &[(&msg).into()]);
+        set_engine_load_state(EngineLoadState::Loaded);
+        return Ok(());
+    }
+
+    set_engine_load_state(EngineLoadState::Loading);
+    let result = build_engine_pool(env, context, on_progress);
+    set_engine_load_state(if result.is_ok() { EngineLoadState::Loaded } else { EngineLoadState::Failed });
+    result
+}
+
+/// Body of load_engine_blocking, called with ENGINE_LOAD_LOCK held
+#[cfg(target_os = "android")]
+fn build_engine_pool(
+    env: &mut jni::JNIEnv,
+    context: &jni::objects::JObject,
+    on_progress: &mut dyn FnMut(&mut jni::JNIEnv, &str),
+) -> anyhow::Result<()> {
+    on_progress(env, "Initializing model...");
+    let assets = extract_assets(env, context)?;
+    let mut params = ParakeetModelParams::int8();
+    params.preloaded = assets.preloaded;
+
+    on_progress(env, "Loading model...");
+    let start = Instant::now();
+    let size = ASR_POOL_SIZE.load(Ordering::SeqCst).max(1);
+    let mut engines = Vec::with_capacity(size);
+    for _ in 0..size {
+        let mut engine = ParakeetEngine::new();
+        engine
+            .load_model_with_params(&assets.dir, params.clone())
+            .map_err(|e| anyhow::anyhow!("{}", e))?;
+        engines.push(engine);
+    }
+    log::info!("ASR engine pool of {} loaded in {}ms", size, start.elapsed().as_millis());
+
+    *GLOBAL_ENGINE.lock().unwrap() = Some(Arc::new(EnginePool::new(engines)));
+    Ok(())
+}
+
+/// Current engine pool, waiting while a load is requested or in flight
+/// (including one ModelManager has queued but not started yet)
+#[cfg(target_os = "android")]
+fn wait_for_engine() -> Option<Arc<EnginePool>> {
+    let state = ENGINE_LOAD_STATE.lock().unwrap();
+    let (state, timeout) = ENGINE_LOAD_CHANGED
+        .wait_timeout_while(state, ENGINE_LOAD_WAIT, |s| *s == EngineLoadState::Loading)
+        .unwrap();
+    if timeout.timed_out() {
+        log::warn!("Gave up waiting for the ASR engine after {:?}", ENGINE_LOAD_WAIT);
+    } else if *state == EngineLoadState::Failed {
+        log::warn!("ASR engine failed to load");
+    }
+    drop(state);
+    GLOBAL_ENGINE.lock().unwrap().clone()
+}
+
+// --- ASR engine pool and scheduler ---
+//
+// The loaded model is a pool of engines (one by default; AsrScheduler.java
+// sizes it from the device's memory and cores before a load). Callers lease
+// an engine by priority: a free engine goes to the highest lane with
+// waiters, so a final dictation transcript never queues behind live-caption
+// windows. Partial drafts only take an engine that is free and unwanted.
+// Queue wait per lane is recorded for AsrScheduler.getStats().
+
+/// Scheduler lanes, highest first; indices match AsrScheduler.Priority
+#[cfg(target_os = "android")]
+#[derive(Clone, Copy)]
+enum AsrPriority {
+    Interactive = 0,
+    Partial = 1,
+    Background = 2,
+}
+
+#[cfg(target_os = "android")]
+const ASR_PRIORITIES: usize = 3;
+
+// Engines built by the next load
+#[cfg(target_os = "android")]
+static ASR_POOL_SIZE: AtomicUsize = AtomicUsize::new(1);
+
+#[cfg(target_os = "android")]
+struct WaitStats {
+    count: AtomicU64,
+    total_ns: AtomicU64,
+    max_ns: AtomicU64,
+}
+
+#[cfg(target_os = "android")]
+impl WaitStats {
+    const fn new() -> Self {
+        Self { count: AtomicU64::new(0), total_ns: AtomicU64::new(0), max_ns: AtomicU64::new(0) }
+    }
+}
+
+// Kept across pool reloads
+#[cfg(target_os = "android")]
+static ASR_WAIT_STATS: [WaitStats; ASR_PRIORITIES] = [WaitStats::new(), WaitStats::new(), WaitStats::new()];
+
+#[cfg(target_os = "android")]
+struct PoolSlots {
+    free: Vec<usize>,
+    waiting: [usize; ASR_PRIORITIES],
+}
+
+#[cfg(target_os = "android")]
+struct EnginePool {
+    engines: Vec<Mutex<ParakeetEngine>>,
+    slots: Mutex<PoolSlots>,
+    available: Condvar,
+}
+
+#[cfg(target_os = "android")]
+impl EnginePool {
+    fn new(engines: Vec<ParakeetEngine>) -> Self {
+        let free = (0..engines.len()).rev().collect();
+        Self {
+            engines: engines.into_iter().map(Mutex::new).collect(),
+            slots: Mutex::new(PoolSlots { free, waiting: [0; ASR_PRIORITIES] }),
+            available: Condvar::new(),
         }
-        return;
     }
 
-    // Not loaded, spawn loader
-    let vm_clone = vm.clone();
-    let service_ref_clone = service_ref.clone();
-    let cb_name = callback_method.to_string();
-    
-    std::thread::spawn(move || {
-        let mut env = vm_clone.attach_current_thread().unwrap();
-        let service_obj = service_ref_clone.as_obj();
-        
-        // Notify loading
-        let msg = env.new_string("Initializing model...").unwrap();
-        let _ = env.call_method(service_obj, &cb_name, "(Ljava/lang/String;)V", &[(&msg).into()]);
-
-        match extract_assets(&mut env, service_obj) {
-            Ok(path) => {
-                 let msg = env.new_string("Loading model...").unwrap();
-                 let _ = env.call_method(service_obj, &cb_name, "(Ljava/lang/String;)V", &[(&msg).into()]);
-                 
-                 let mut engine = ParakeetEngine::new();
-                 match engine.load_model_with_params(&path, ParakeetModelParams::int8()) {
-                     Ok(_) => {
-                         *GLOBAL_ENGINE.lock().unwrap() = Some(Arc::new(Mutex::new(engine)));
-                         let msg = env.new_string("Ready").unwrap();
-                         let _ = env.call_method(service_obj, &cb_name, "(Ljava/lang/String;)V", &[(&msg).into()]);
-                     },
-                     Err(e) => {
-                         let msg = env.new_string(format!("Error: {}", e)).unwrap();
-                         let _ = env.call_method(service_obj, &cb_name, "(Ljava/lang/String;)V", &[(&msg).into()]);
-                     }
-                 }
-            },
-            Err(e) => {
-                let msg = env.new_string(format!("Error: {}", e)).unwrap();
-                let _ = env.call_method(service_obj, &cb_name, "(Ljava/lang/String;)V", &[(&msg).into()]);
-            }
+    /// Wait for an engine; higher lanes are served first
+    fn acquire(&self, priority: AsrPriority) -> EngineLease<'_> {
+        let lane = priority as usize;
+        let start = Instant::now();
+        let mut slots = self.slots.lock().unwrap();
+        slots.waiting[lane] += 1;
+        while slots.free.is_empty() || slots.waiting[..lane].iter().any(|&n| n > 0) {
+            slots = self.available.wait(slots).unwrap();
         }
-    });
+        slots.waiting[lane] -= 1;
+        let slot = slots.free.pop().unwrap();
+        if !slots.free.is_empty() {
+            // Lower lanes may have been waiting on us
+            self.available.notify_all();
+        }
+        drop(slots);
+        record_wait(lane, start.elapsed());
+        self.lease(slot)
+    }
+
+    /// An engine only if one is free and nobody is waiting for it
+    fn try_acquire(&self, priority: AsrPriority) -> Option<EngineLease<'_>> {
+        let mut slots = self.slots.lock().unwrap();
+        if slots.waiting.iter().any(|&n| n > 0) {
+            return None;
+        }
+        let slot = slots.free.pop()?;
+        drop(slots);
+        record_wait(priority as usize, Duration::ZERO);
+        Some(self.lease(slot))
+    }
+
+    fn lease(&self, slot: usize) -> EngineLease<'_> {
+        EngineLease { pool: self, slot, engine: Some(self.engines[slot].lock().unwrap()) }
+    }
+
+    fn release(&self, slot: usize) {
+        self.slots.lock().unwrap().free.push(slot);
+        self.available.notify_all();
+    }
+}
+
+#[cfg(target_os = "android")]
+fn record_wait(lane: usize, waited: Duration) {
+    let ns = waited.as_nanos() as u64;
+    let stats = &ASR_WAIT_STATS[lane];
+    stats.count.fetch_add(1, Ordering::Relaxed);
+    stats.total_ns.fetch_add(ns, Ordering::Relaxed);
+    stats.max_ns.fetch_max(ns, Ordering::Relaxed);
+}
+
+/// Exclusive use of one pooled engine; returned to the pool on drop
+#[cfg(target_os = "android")]
+struct EngineLease<'a> {
+    pool: &'a EnginePool,
+    slot: usize,
+    engine: Option<std::sync::MutexGuard<'a, ParakeetEngine>>,
+}
+
+#[cfg(target_os = "android")]
+impl std::ops::Deref for EngineLease<'_> {
+    type Target = ParakeetEngine;
+
+    fn deref(&self) -> &ParakeetEngine {
+        self.engine.as_ref().unwrap()
+    }
+}
+
+#[cfg(target_os = "android")]
+impl std::ops::DerefMut for EngineLease<'_> {
+    fn deref_mut(&mut self) -> &mut ParakeetEngine {
+        self.engine.as_mut().unwrap()
+    }
+}
+
+#[cfg(target_os = "android")]
+impl Drop for EngineLease<'_> {
+    fn drop(&mut self) {
+        // Unlock the engine before another caller can be handed its slot
+        self.engine.take();
+        self.pool.release(self.slot);
+    }
+}
+
+// --- AsrScheduler JNI ---
+
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_AsrScheduler_setPoolSizeNative(
+    _env: JNIEnv,
+    _class: JClass,
+    size: jni::sys::jint,
+) {
+    ASR_POOL_SIZE.store(size.max(1) as usize, Ordering::SeqCst);
+}
+
+/// Fill `out` with count, total wait ns, max wait ns and current waiters
+/// per lane, then pool size and engines in use (AsrScheduler.STATS_LENGTH)
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_AsrScheduler_readStatsNative(
+    mut env: JNIEnv,
+    _class: JClass,
+    out: jni::objects::JLongArray,
+) {
+    let pool = GLOBAL_ENGINE.lock().unwrap().clone();
+    let (waiting, size, busy) = match pool.as_ref() {
+        Some(pool) => {
+            let slots = pool.slots.lock().unwrap();
+            (slots.waiting, pool.engines.len(), pool.engines.len() - slots.free.len())
+        }
+        None => ([0; ASR_PRIORITIES], 0, 0),
+    };
+    let mut values = Vec::with_capacity(ASR_PRIORITIES * 4 + 2);
+    for (lane, stats) in ASR_WAIT_STATS.iter().enumerate() {
+        values.push(stats.count.load(Ordering::Relaxed) as i64);
+        values.push(stats.total_ns.load(Ordering::Relaxed) as i64);
+        values.push(stats.max_ns.load(Ordering::Relaxed) as i64);
+        values.push(waiting[lane] as i64);
+    }
+    values.push(size as i64);
+    values.push(busy as i64);
+    if env.set_long_array_region(&out, 0, &values).is_err() {
+        let _ = env.exception_clear();
+    }
+}
+
+// --- ModelManager JNI ---
+
+/// Publish that an ASR load has been queued, so recognition started before
+/// the loader thread runs waits for it (called on the requesting thread)
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_ModelManager_markAsrLoadingNative(
+    _env: JNIEnv,
+    _class: JClass,
+) {
+    let mut state = ENGINE_LOAD_STATE.lock().unwrap();
+    if *state != EngineLoadState::Loaded {
+        *state = EngineLoadState::Loading;
+    }
+}
+
+/// Blocking ASR load, called on ModelManager's loader thread
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_ModelManager_loadAsrNative(
+    mut env: JNIEnv,
+    _class: JClass,
+    context: JObject,
+) -> jni::sys::jboolean {
+    android_logger::init_once(android_logger::Config::default().with_max_level(log::LevelFilter::Info));
+    match load_engine_blocking(&mut env, &context, &mut |_, status| log::info!("ASR: {}", status)) {
+        Ok(()) => jni::sys::JNI_TRUE,
+        Err(e) => {
+            log::error!("ASR load failed: {}", e);
+            jni::sys::JNI_FALSE
+        }
+    }
+}
+
+/// Drop the global engine. An in-progress transcription keeps its own Arc,
+/// so memory is released once it finishes.
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_ModelManager_unloadAsrNative(
+    _env: JNIEnv,
+    _class: JClass,
+) {
+    let _load_guard = ENGINE_LOAD_LOCK.lock().unwrap();
+    if GLOBAL_ENGINE.lock().unwrap().take().is_some() {
+        log::info!("ASR engine unloaded");
+    }
+    set_engine_load_state(EngineLoadState::Unloaded);
 }
 
 // --- IME JNI ---
@@ -878,9 +1397,7 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RustInputMethodService_initNa
         service_ref: service_ref.clone(),
     });
     
-    drop(state_guard);
-    
-    ensure_engine_loaded(&vm_arc, &service_ref, "onStatusUpdate");
+    // Engine loading is driven by ModelManager.java (lazy, unloadable)
 }
 
 #[cfg(target_os = "android")]
@@ -950,6 +1467,11 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RustInputMethodService_startR
              s.play().ok();
              state.stream = Some(SendStream(s));
              
+             let generation = IME_PARTIAL_GENERATION.fetch_add(1, Ordering::SeqCst) + 1;
+             if IME_PARTIALS_ENABLED.load(Ordering::SeqCst) {
+                 spawn_partials(state.jvm.clone(), state.service_ref.clone(), state.audio_buffer.clone(), &IME_PARTIAL_GENERATION, generation);
+             }
+
              let msg = env.new_string("Listening...").unwrap();
              let _ = env.call_method(state.service_ref.as_obj(), "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
          }
@@ -967,27 +1489,33 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RustInputMethodService_stopRe
         let mut state_guard = IME_STATE.lock().unwrap();
         if let Some(state) = state_guard.as_mut() {
             state.stream = None;
+            // Ends the partial worker; the final pass below takes over
+            IME_PARTIAL_GENERATION.fetch_add(1, Ordering::SeqCst);
             (state.audio_buffer.lock().unwrap().clone(), state.jvm.clone(), state.service_ref.clone())
         } else {
             return;
         }
     };
     
-    let engine_arc = {
-        let guard = GLOBAL_ENGINE.lock().unwrap();
-        if guard.is_none() { return; }
-        guard.as_ref().unwrap().clone()
-    };
-
     let msg = env.new_string("Transcribing...").unwrap();
     let _ = env.call_method(service_ref.as_obj(), "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
     
     std::thread::spawn(move || {
         let mut env = jvm.attach_current_thread().unwrap();
         let service_obj = service_ref.as_obj();
+
+        // The engine may still be loading (lazy load) or have been unloaded
+        let engine_arc = match wait_for_engine() {
+            Some(engine) => engine,
+            None => {
+                let msg = env.new_string("Error: model not loaded").unwrap();
+                let _ = env.call_method(service_obj, "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
+                return;
+            }
+        };
         
         let res = {
-             let mut eng = engine_arc.lock().unwrap();
+             let mut eng = engine_arc.acquire(AsrPriority::Interactive);
              eng.transcribe_samples(buffer, None)
         };
         
@@ -1006,16 +1534,235 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RustInputMethodService_stopRe
     });
 }
 
-// --- Live Subtitles JNI ---
+// --- IME streaming partials ---
+//
+// While the IME records, a worker re-decodes the audio about every 0.7s and
+// sends the draft to onPartialTranscript, which shows it as composing text.
+// To keep each pass short, words that ended well before the end of the
+// decoded window are frozen and only the tail after them is decoded again.
+// No pass decodes more than PARTIAL_MAX_WINDOW_SAMPLES: when nothing could
+// be frozen, the previous draft of the older audio is kept as it is. A pass
+// cannot be interrupted, so this cap is also the longest the final decode
+// (stopRecording, whole buffer) can wait behind one on a single engine.
+// VoiceRecognitionService's headless mode uses the same worker.
 
-use transcribe_rs::engines::parakeet::{ParakeetInferenceParams, TimestampGranularity};
+#[cfg(target_os = "android")]
+static IME_PARTIALS_ENABLED: AtomicBool = AtomicBool::new(false);
+// Bumped on every IME start/stop; a worker exits once it no longer matches
+// the generation it was started for
+#[cfg(target_os = "android")]
+static IME_PARTIAL_GENERATION: AtomicU64 = AtomicU64::new(0);
+
+#[cfg(target_os = "android")]
+const PARTIAL_INTERVAL_MS: u64 = 700;
+// New audio needed before another pass (0.5s)
+#[cfg(target_os = "android")]
+const PARTIAL_MIN_NEW_SAMPLES: usize = 8000;
+// Words are frozen once the open window is this long...
+#[cfg(target_os = "android")]
+const PARTIAL_FREEZE_AFTER_S: f32 = 2.5;
+// ...and they ended this long before its end
+#[cfg(target_os = "android")]
+const PARTIAL_STABLE_MARGIN_S: f32 = 1.0;
+// Longest window one pass decodes (4s)
+#[cfg(target_os = "android")]
+const PARTIAL_MAX_WINDOW_SAMPLES: usize = 64000;
+
+#[cfg(target_os = "android")]
+fn push_word(text: &mut String, word: &str) {
+    if word.is_empty() {
+        return;
+    }
+    if !text.is_empty() {
+        text.push(' ');
+    }
+    text.push_str(word);
+}
+
+/// Re-decode `buffer` until `generations` moves past `generation`, sending
+/// drafts to onPartialTranscript(String) on `service_ref`
+#[cfg(target_os = "android")]
+fn spawn_partials(
+    jvm: Arc<jni::JavaVM>,
+    service_ref: jni::objects::GlobalRef,
+    buffer: Arc<Mutex<Vec<f32>>>,
+    generations: &'static AtomicU64,
+    generation: u64,
+) {
+    thread::spawn(move || {
+        let mut env = match jvm.attach_current_thread() {
+            Ok(e) => e,
+            Err(e) => {
+                log::error!("Partial worker failed to attach: {}", e);
+                return;
+            }
+        };
+        let service_obj = service_ref.as_obj();
+        let mut frozen_text = String::new();
+        let mut frozen_samples = 0usize;
+        let mut decoded_len = 0usize;
+        // Draft of the audio from frozen_samples up to tail_end
+        let mut tail_text = String::new();
+        let mut tail_end = 0usize;
+        let mut last_sent = String::new();
+
+        while generations.load(Ordering::SeqCst) == generation {
+            thread::sleep(Duration::from_millis(PARTIAL_INTERVAL_MS));
+
+            let window = {
+                let buf = buffer.lock().unwrap();
+                if buf.len() < decoded_len + PARTIAL_MIN_NEW_SAMPLES {
+                    continue;
+                }
+                decoded_len = buf.len();
+                if decoded_len - frozen_samples.min(decoded_len) > PARTIAL_MAX_WINDOW_SAMPLES {
+                    // Nothing stable to freeze: keep the last draft of the older
+                    // audio rather than decode a longer window
+                    push_word(&mut frozen_text, &tail_text);
+                    tail_text.clear();
+                    frozen_samples = tail_end.max(decoded_len - PARTIAL_MAX_WINDOW_SAMPLES);
+                }
+                buf[frozen_samples.min(buf.len())..].to_vec()
+            };
+            let window_secs = window.len() as f32 / 16000.0;
+
+            // Never wait: while the engine loads or decodes, skip this pass
+            let engine_arc = match GLOBAL_ENGINE.lock().unwrap().clone() {
+                Some(engine) => engine,
+                None => continue,
+            };
+            let res = match engine_arc.try_acquire(AsrPriority::Partial) {
+                Some(mut eng) => eng.transcribe_samples(window, Some(ParakeetInferenceParams {
+                    timestamp_granularity: TimestampGranularity::Word,
+                })),
+                None => continue,
+            };
+            let r = match res {
+                Ok(r) => r,
+                Err(e) => {
+                    log::warn!("Partial transcription failed: {}", e);
+                    continue;
+                }
+            };
+
+            let mut tail = String::new();
+            match r.segments {
+                Some(segments) => {
+                    let freeze = window_secs >= PARTIAL_FREEZE_AFTER_S;
+                    let mut freeze_end = 0.0f32;
+                    for seg in segments {
+                        let word = seg.text.trim();
+                        if freeze && tail.is_empty() && seg.end < window_secs - PARTIAL_STABLE_MARGIN_S {
+                            push_word(&mut frozen_text, word);
+                            freeze_end = seg.end;
+                        } else {
+                            push_word(&mut tail, word);
+                        }
+                    }
+                    frozen_samples += (freeze_end * 16000.0) as usize;
+                }
+                None => tail = r.text.trim().to_string(),
+            }
+            tail_text = tail.clone();
+            tail_end = decoded_len;
+
+            let mut partial = frozen_text.clone();
+            push_word(&mut partial, &tail);
+            if partial.is_empty() || partial == last_sent {
+                continue;
+            }
+            if generations.load(Ordering::SeqCst) != generation {
+                break;
+            }
+            if let Ok(txt) = env.new_string(&partial) {
+                let _ = env.call_method(service_obj, "onPartialTranscript", "(Ljava/lang/String;)V", &[(&txt).into()]);
+            }
+            last_sent = partial;
+        }
+    });
+}
+
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_RustInputMethodService_setStreamingPartials(
+    _env: JNIEnv,
+    _class: JClass,
+    enabled: jni::sys::jboolean,
+) {
+    IME_PARTIALS_ENABLED.store(enabled != 0, Ordering::SeqCst);
+}
+
+// --- Live Subtitles JNI ---
+
+use transcribe_rs::engines::parakeet::{ParakeetInferenceParams, TimestampGranularity};
+#[cfg(target_os = "android")]
+use transcribe_rs::engines::parakeet::{words as parakeet_words, TimestampedResult};
 use jni::sys::jfloat;
 
+// Java's capture loop writes 16kHz mono floats straight from AudioRecord
+// into a direct ByteBuffer ring and publishes the running sample count
+// with commitAudio(); the worker copies each window out of the ring once,
+// for the engine. No per-chunk arrays or buffer clones cross JNI.
+
+// Context decoded again before each new window (3.0s)
+#[cfg(target_os = "android")]
+const LIVE_CONTEXT_SAMPLES: u64 = 48000;
+// Longest window when the worker fell behind and windows were coalesced (10s)
+#[cfg(target_os = "android")]
+const LIVE_MAX_WINDOW_SAMPLES: u64 = 160000;
+// Samples Java may be writing past the committed count (one read, with slack)
+#[cfg(target_os = "android")]
+const LIVE_RING_GUARD_SAMPLES: u64 = 16000;
+
+#[cfg(target_os = "android")]
+struct SampleRing {
+    _buffer: jni::objects::GlobalRef, // Keeps the direct buffer alive
+    data: *const f32,
+    capacity: u64,
+    written: AtomicU64, // Samples committed by Java, ever
+}
+
+// The ring memory is owned by the Java buffer held above; readers validate
+// against `written` after copying
+#[cfg(target_os = "android")]
+unsafe impl Send for SampleRing {}
+#[cfg(target_os = "android")]
+unsafe impl Sync for SampleRing {}
+
+#[cfg(target_os = "android")]
+impl SampleRing {
+    /// Samples [start, end), or None if the writer has lapped part of them
+    fn copy_range(&self, start: u64, end: u64) -> Option<Vec<f32>> {
+        if end > self.written.load(Ordering::Acquire) || !self.holds(start) {
+            return None;
+        }
+        let mut out = Vec::with_capacity((end - start) as usize);
+        let mut pos = start;
+        while pos < end {
+            let offset = pos % self.capacity;
+            let n = (end - pos).min(self.capacity - offset);
+            unsafe {
+                out.extend_from_slice(std::slice::from_raw_parts(self.data.add(offset as usize), n as usize));
+            }
+            pos += n;
+        }
+        // Overwritten while we copied?
+        if self.holds(start) {
+            Some(out)
+        } else {
+            None
+        }
+    }
+
+    fn holds(&self, start: u64) -> bool {
+        self.written.load(Ordering::Acquire) + LIVE_RING_GUARD_SAMPLES <= start + self.capacity
+    }
+}
+
 #[cfg(target_os = "android")]
 struct LiveSubtitleState {
-    buffer: Arc<Mutex<Vec<f32>>>,
-    worker_tx: crossbeam_channel::Sender<(Vec<f32>, f64)>,
-    total_samples: u64,
+    ring: Arc<SampleRing>,
+    worker_tx: crossbeam_channel::Sender<(u64, u64)>,
     last_process_sample: u64,
     update_interval: usize,
 }
@@ -1029,13 +1776,35 @@ pub unsafe extern "system" fn Java_com_voiceai_app_LiveSubtitleService_initNativ
     mut env: JNIEnv,
     _class: JClass,
     service: JObject,
+    ring_buffer: jni::objects::JByteBuffer,
 ) {
     android_logger::init_once(android_logger::Config::default().with_max_level(log::LevelFilter::Info));
     let vm = env.get_java_vm().expect("Failed to get JavaVM");
-    let vm_arc = Arc::new(vm);
     let service_ref = env.new_global_ref(&service).expect("Failed to ref service");
 
-    let (tx, rx) = crossbeam_channel::unbounded();
+    let data = match env.get_direct_buffer_address(&ring_buffer) {
+        Ok(ptr) => ptr as *const f32,
+        Err(e) => {
+            log::error!("Live subtitles need a direct ring buffer: {}", e);
+            return;
+        }
+    };
+    let capacity = match env.get_direct_buffer_capacity(&ring_buffer) {
+        Ok(bytes) => (bytes / 4) as u64,
+        Err(_) => return,
+    };
+    if capacity <= LIVE_MAX_WINDOW_SAMPLES + LIVE_RING_GUARD_SAMPLES {
+        log::error!("Live subtitle ring too small: {} samples", capacity);
+        return;
+    }
+    let ring = Arc::new(SampleRing {
+        _buffer: env.new_global_ref(&ring_buffer).expect("Failed to ref ring"),
+        data,
+        capacity,
+        written: AtomicU64::new(0),
+    });
+
+    let (tx, rx) = crossbeam_channel::unbounded::<(u64, u64)>();
 
     let mut state_guard = LIVE_STATE.lock().unwrap();
     let initial_interval = if let Ok(cfg) = CONFIG.lock() {
@@ -1044,33 +1813,51 @@ pub unsafe extern "system" fn Java_com_voiceai_app_LiveSubtitleService_initNativ
         32000
     };
     *state_guard = Some(LiveSubtitleState {
-        buffer: Arc::new(Mutex::new(Vec::new())),
+        ring: ring.clone(),
         worker_tx: tx,
-        total_samples: 0,
         last_process_sample: 0,
         update_interval: initial_interval,
     });
     drop(state_guard);
 
-    // Ensure engine loaded first
-    ensure_engine_loaded(&vm_arc, &service_ref, "onSubtitleText");
+    // Engine loading is driven by ModelManager.java (LiveSubtitleService holds it)
 
-    // Spawn Worker Thread
-    let vm_worker = vm_arc.clone();
-    let service_ref_worker = service_ref.clone();
-    
+    // Spawn Worker Thread; it exits when cleanupNative drops the sender
     std::thread::spawn(move || {
-        let mut env = match vm_worker.attach_current_thread() {
+        let mut env = match vm.attach_current_thread() {
             Ok(e) => e,
             Err(e) => {
                 log::error!("Worker failed to attach: {}", e);
                 return;
             }
         };
-        let service_obj = service_ref_worker.as_obj();
+        let service_obj = service_ref.as_obj();
         let mut last_committed_end = 0.0f64;
         
-        while let Ok((samples, start_time)) = rx.recv() {
+        while let Ok((mut start, mut end)) = rx.recv() {
+            // Fell behind: decode the pending windows as one, up to a limit
+            while let Ok((s, e)) = rx.try_recv() {
+                start = start.min(s);
+                end = e;
+            }
+            start = start.max(end.saturating_sub(LIVE_MAX_WINDOW_SAMPLES));
+
+            let samples = match ring.copy_range(start, end) {
+                Some(samples) => samples,
+                None => {
+                    log::warn!("Live subtitle window {}..{} overwritten, skipped", start, end);
+                    continue;
+                }
+            };
+            let start_time = start as f64 / 16000.0;
+
+            // RMS check for silence
+            let sum_sq: f32 = samples.iter().map(|&x| x * x).sum();
+            let rms = (sum_sq / samples.len().max(1) as f32).sqrt();
+            if rms <= 0.002 {
+                continue;
+            }
+
             let engine_arc_opt = GLOBAL_ENGINE.lock().unwrap().clone();
             if let Some(engine_arc) = engine_arc_opt {
                 let params = ParakeetInferenceParams {
@@ -1078,7 +1865,7 @@ pub unsafe extern "system" fn Java_com_voiceai_app_LiveSubtitleService_initNativ
                 };
 
                 let res = {
-                    let mut eng = engine_arc.lock().unwrap();
+                    let mut eng = engine_arc.acquire(AsrPriority::Background);
                     eng.transcribe_samples(samples, Some(params))
                 };
                 
@@ -1152,58 +1939,189 @@ pub unsafe extern "system" fn Java_com_voiceai_app_LiveSubtitleService_setUpdate
     }
 }
 
+// Java wrote samples up to `written` (running count) into the ring
 #[cfg(target_os = "android")]
 #[no_mangle]
-pub unsafe extern "system" fn Java_com_voiceai_app_LiveSubtitleService_pushAudio(
-    env: JNIEnv,
+pub unsafe extern "system" fn Java_com_voiceai_app_LiveSubtitleService_commitAudio(
+    _env: JNIEnv,
     _class: JClass,
-    data: jni::objects::JFloatArray,
-    length: jni::sys::jint,
+    written: jni::sys::jlong,
 ) {
     let mut guard = LIVE_STATE.lock().unwrap();
     if let Some(state) = guard.as_mut() {
-        let mut buffer = state.buffer.lock().unwrap();
-        
-        let len_usize = length as usize;
-        let mut input = vec![0.0f32; len_usize];
-        env.get_float_array_region(&data, 0, &mut input).unwrap();
-        buffer.extend_from_slice(&input);
-        
-        state.total_samples += len_usize as u64;
-        
-        // Check if it's time to process
-        if state.total_samples >= state.last_process_sample + state.update_interval as u64 {
-            // We process the *entire* current buffer.
-            // Calculate start time of this buffer in seconds.
-            // start_time = (total_samples - buffer_len) / 16000.0
-            let buffer_len = buffer.len();
-            let start_time = (state.total_samples as f64 - buffer_len as f64) / 16000.0;
-            
-            // RMS check for silence
-            let sum_sq: f32 = buffer.iter().map(|&x| x * x).sum();
-            let rms = (sum_sq / buffer_len as f32).sqrt();
-            
-            if rms > 0.002 {
-                let _ = state.worker_tx.send((buffer.clone(), start_time));
-            }
-            
-            state.last_process_sample = state.total_samples;
-            
-            // Maintain buffer size. 
-            // Keep last 3.0s (48000 samples) for context.
-            if buffer_len > 48000 {
-                let keep_idx = buffer_len - 48000;
-                let new_buf = buffer[keep_idx..].to_vec();
-                *buffer = new_buf;
+        let written = written as u64;
+        state.ring.written.store(written, Ordering::Release);
+
+        // Check if it's time to process: the new samples plus the last
+        // 3.0s before them for context
+        if written >= state.last_process_sample + state.update_interval as u64 {
+            let start = state.last_process_sample.saturating_sub(LIVE_CONTEXT_SAMPLES);
+            let _ = state.worker_tx.send((start, written));
+            state.last_process_sample = written;
+        }
+    }
+}
+
+// --- Structured transcript payload ---
+//
+// Word timings, confidences and token ids for Transcript.java, handed over
+// as one direct ByteBuffer (native byte order, every field 4 bytes):
+//   header  version, word count, token count
+//   words   char start, char end (UTF-16 offsets into the text, -1 if the
+//           word is not found in it), first token, token count,
+//           start s, end s, confidence
+//   tokens  vocab id, start s, probability
+
+#[cfg(target_os = "android")]
+const TRANSCRIPT_VERSION: i32 = 1;
+
+#[cfg(target_os = "android")]
+fn put_i32(out: &mut Vec<u8>, value: i32) {
+    out.extend_from_slice(&value.to_ne_bytes());
+}
+
+#[cfg(target_os = "android")]
+fn put_f32(out: &mut Vec<u8>, value: f32) {
+    out.extend_from_slice(&value.to_ne_bytes());
+}
+
+#[cfg(target_os = "android")]
+fn encode_transcript(result: &TimestampedResult) -> Vec<u8> {
+    let words = parakeet_words(result);
+    let mut out = Vec::with_capacity(12 + words.len() * 28 + result.tokens.len() * 12);
+    put_i32(&mut out, TRANSCRIPT_VERSION);
+    put_i32(&mut out, words.len() as i32);
+    put_i32(&mut out, result.tokens.len() as i32);
+
+    let text = result.text.as_str();
+    let mut byte_pos = 0usize;
+    let mut utf16_pos = 0usize;
+    for word in &words {
+        let (char_start, char_end) = match text[byte_pos..].find(word.text.as_str()) {
+            Some(rel) => {
+                let start = byte_pos + rel;
+                utf16_pos += text[byte_pos..start].encode_utf16().count();
+                let char_start = utf16_pos;
+                utf16_pos += word.text.encode_utf16().count();
+                byte_pos = start + word.text.len();
+                (char_start as i32, utf16_pos as i32)
             }
+            None => (-1, -1),
+        };
+        let first = word.tokens.first().and_then(|t| t.token_id).unwrap_or(0);
+        let last = word.tokens.last().and_then(|t| t.token_id).unwrap_or(first);
+        // A word is as sure as its least sure piece
+        let confidence = word
+            .tokens
+            .iter()
+            .filter_map(|t| t.token_id.and_then(|i| result.token_probs.get(i)))
+            .fold(1.0f32, |min, &p| min.min(p));
+
+        put_i32(&mut out, char_start);
+        put_i32(&mut out, char_end);
+        put_i32(&mut out, first as i32);
+        put_i32(&mut out, (last + 1 - first) as i32);
+        put_f32(&mut out, word.t_start);
+        put_f32(&mut out, word.t_end);
+        put_f32(&mut out, confidence);
+    }
+
+    for i in 0..result.tokens.len() {
+        put_i32(&mut out, result.token_ids.get(i).copied().unwrap_or(-1));
+        put_f32(&mut out, result.timestamps.get(i).copied().unwrap_or(0.0));
+        put_f32(&mut out, result.token_probs.get(i).copied().unwrap_or(0.0));
+    }
+    out
+}
+
+// Calls onTranscriptData(String, ByteBuffer) on the target. The buffer wraps
+// our Vec and is only valid during the call; Java copies what it keeps.
+#[cfg(target_os = "android")]
+fn send_transcript(env: &mut JNIEnv, target: &JObject, result: &TimestampedResult) {
+    let mut payload = encode_transcript(result);
+    let text = match env.new_string(&result.text) {
+        Ok(text) => text,
+        Err(_) => return,
+    };
+    let buffer = match unsafe { env.new_direct_byte_buffer(payload.as_mut_ptr(), payload.len()) } {
+        Ok(buffer) => buffer,
+        Err(e) => {
+            log::warn!("Cannot wrap transcript payload: {}", e);
+            return;
         }
+    };
+    let _ = env.call_method(target, "onTranscriptData", "(Ljava/lang/String;Ljava/nio/ByteBuffer;)V",
+        &[(&text).into(), (&buffer).into()]);
+    if env.exception_check().unwrap_or(false) {
+        let _ = env.exception_clear();
+    }
+    drop(payload);
+}
+
+// --- Dictation tracing ---
+//
+// Native steps of a traced dictation (time to first audio, waiting for the
+// model, the engine queue, decoding) are reported to the Java target's
+// onTraceSpan(long trace, String category, String name, long start,
+// long end, String detail), which records them in DictationTrace.java.
+// Times are CLOCK_MONOTONIC nanoseconds, the clock System.nanoTime() reads
+// on Android. Trace 0 is untraced and sends nothing.
+
+#[cfg(target_os = "android")]
+fn monotonic_nanos() -> i64 {
+    let mut ts = libc::timespec { tv_sec: 0, tv_nsec: 0 };
+    unsafe { libc::clock_gettime(libc::CLOCK_MONOTONIC, &mut ts) };
+    ts.tv_sec as i64 * 1_000_000_000 + ts.tv_nsec as i64
+}
+
+#[cfg(target_os = "android")]
+fn send_trace_span(env: &mut JNIEnv, target: &JObject, trace: i64, category: &str, name: &str,
+    start: i64, end: i64, detail: Option<&str>) {
+    if trace == 0 {
+        return;
+    }
+    let (category, name) = match (env.new_string(category), env.new_string(name)) {
+        (Ok(category), Ok(name)) => (category, name),
+        _ => return,
+    };
+    let detail = match detail.map(|d| env.new_string(d)) {
+        Some(Ok(detail)) => JObject::from(detail),
+        _ => JObject::null(),
+    };
+    let _ = env.call_method(target, "onTraceSpan", "(JLjava/lang/String;Ljava/lang/String;JJLjava/lang/String;)V",
+        &[trace.into(), (&category).into(), (&name).into(), start.into(), end.into(), (&detail).into()]);
+    if env.exception_check().unwrap_or(false) {
+        let _ = env.exception_clear();
     }
 }
 
+/// Wait for the engine, lease it and decode `samples` with word details,
+/// reporting each step as a span of `trace`. None if no engine is loaded.
+#[cfg(target_os = "android")]
+fn decode_traced(env: &mut JNIEnv, target: &JObject, trace: i64, samples: Vec<f32>,
+    detail: &str) -> Option<Result<TimestampedResult, Box<dyn std::error::Error>>> {
+    let waiting = monotonic_nanos();
+    // The engine may still be loading (lazy load) or have been unloaded
+    let engine_arc = wait_for_engine()?;
+    let queued = monotonic_nanos();
+    send_trace_span(env, target, trace, "asr", "wait for model", waiting, queued, None);
+
+    let mut eng = engine_arc.acquire(AsrPriority::Interactive);
+    let decoding = monotonic_nanos();
+    send_trace_span(env, target, trace, "asr", "engine queue", queued, decoding, None);
+    let res = eng.transcribe_samples_detailed(samples);
+    drop(eng);
+    send_trace_span(env, target, trace, "asr", "decode", decoding, monotonic_nanos(), Some(detail));
+    Some(res)
+}
+
 // --- RecognizeActivity JNI ---
 
 #[cfg(target_os = "android")]
 static RECOGNIZE_STATE: Mutex<Option<ImeState>> = Mutex::new(None);
+// DictationTrace id of the current recording
+#[cfg(target_os = "android")]
+static RECOGNIZE_TRACE: AtomicI64 = AtomicI64::new(0);
 
 #[cfg(target_os = "android")]
 #[no_mangle]
@@ -1225,9 +2143,7 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_initNative(
         service_ref: activity_ref.clone(),
     });
     
-    drop(state_guard);
-    
-    ensure_engine_loaded(&vm_arc, &activity_ref, "onStatusUpdate");
+    // Engine loading is driven by ModelManager.java (lazy, unloadable)
 }
 
 #[cfg(target_os = "android")]
@@ -1236,6 +2152,8 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_cleanupNati
     _env: JNIEnv,
     _class: JClass,
 ) {
+    // A long-form worker finishes what is queued, then exits
+    *RECOGNIZE_CHUNKS.lock().unwrap() = None;
     *RECOGNIZE_STATE.lock().unwrap() = None;
 }
 
@@ -1244,7 +2162,10 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_cleanupNati
 pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_startRecording(
     mut env: JNIEnv,
     _class: JClass,
+    long_form: jni::sys::jboolean,
+    trace: jni::sys::jlong,
 ) {
+    RECOGNIZE_TRACE.store(trace, Ordering::SeqCst);
     let mut state_guard = RECOGNIZE_STATE.lock().unwrap();
     if let Some(state) = state_guard.as_mut() {
          let host = cpal::default_host();
@@ -1264,28 +2185,35 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_startRecord
          let jvm_clone = state.jvm.clone();
          let activity_ref_clone = state.service_ref.clone();
          
-         // Audio level callback counter
-         let sample_counter = Arc::new(Mutex::new(0u64));
-         let sample_counter_clone = sample_counter.clone();
+         // Per-frame features for silence detection (owned by the callback)
+         let mut frame_stats = FrameStats::new();
+         let mut frames: Vec<(f32, f32)> = Vec::with_capacity(16);
+         // Reported once, on the first buffer
+         let mut opening = Some(monotonic_nanos());
          
          let stream = device.build_input_stream(
              &config,
              move |data: &[f32], _: &_| {
                  buffer_clone.lock().unwrap().extend_from_slice(data);
-                 
-                 // Calculate RMS for audio level every ~50ms (800 samples at 16kHz)
-                 let mut counter = sample_counter_clone.lock().unwrap();
-                 *counter += data.len() as u64;
-                 if *counter >= 800 {
-                     *counter = 0;
-                     let sum_sq: f32 = data.iter().map(|&x| x * x).sum();
-                     let rms = (sum_sq / data.len() as f32).sqrt();
-                     let level = (rms * 5.0).min(1.0); // Scale for visibility
-                     
-                     // Send audio level to Java
+
+                 if let Some(opened) = opening.take() {
                      if let Ok(mut env) = jvm_clone.attach_current_thread() {
-                         let activity_obj = activity_ref_clone.as_obj();
-                         let _ = env.call_method(activity_obj, "onAudioLevel", "(F)V", &[level.into()]);
+                         send_trace_span(&mut env, activity_ref_clone.as_obj(), trace, "capture", "first audio",
+                             opened, monotonic_nanos(), None);
+                     }
+                 }
+
+                 frames.clear();
+                 frame_stats.push(data, &mut frames);
+                 if frames.is_empty() {
+                     return;
+                 }
+
+                 // Send frames to Java (silence detection and waveform level)
+                 if let Ok(mut env) = jvm_clone.attach_current_thread() {
+                     let activity_obj = activity_ref_clone.as_obj();
+                     for &(rms, zcr) in frames.iter() {
+                         let _ = env.call_method(activity_obj, "onAudioFrame", "(FF)V", &[rms.into(), zcr.into()]);
                      }
                  }
              },
@@ -1296,6 +2224,17 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_startRecord
          if let Ok(s) = stream {
              s.play().ok();
              state.stream = Some(SendStream(s));
+
+             // A new session's worker; the previous one (if any) drains and exits
+             let chunks = if long_form != 0 {
+                 let (jobs, queue) = std::sync::mpsc::channel();
+                 spawn_chunk_worker(state.jvm.clone(), state.service_ref.clone(), state.audio_buffer.clone(), queue,
+                     trace);
+                 Some(jobs)
+             } else {
+                 None
+             };
+             *RECOGNIZE_CHUNKS.lock().unwrap() = chunks;
              
              let msg = env.new_string("Listening...").unwrap();
              let _ = env.call_method(state.service_ref.as_obj(), "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
@@ -1319,28 +2258,29 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_stopRecordi
         }
     };
     
-    let engine_arc = {
-        let guard = GLOBAL_ENGINE.lock().unwrap();
-        if guard.is_none() { return; }
-        guard.as_ref().unwrap().clone()
-    };
-
     let msg = env.new_string("Transcribing...").unwrap();
     let _ = env.call_method(activity_ref.as_obj(), "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
     
+    let trace = RECOGNIZE_TRACE.load(Ordering::SeqCst);
     std::thread::spawn(move || {
         let mut env = jvm.attach_current_thread().unwrap();
         let activity_obj = activity_ref.as_obj();
-        
-        let res = {
-             let mut eng = engine_arc.lock().unwrap();
-             eng.transcribe_samples(buffer, None)
+
+        let detail = format!("{:.1}s audio", buffer.len() as f32 / 16000.0);
+        let res = match decode_traced(&mut env, activity_obj, trace, buffer, &detail) {
+            Some(res) => res,
+            None => {
+                let msg = env.new_string("Error: model not loaded").unwrap();
+                let _ = env.call_method(activity_obj, "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
+                return;
+            }
         };
         
         match res {
             Ok(r) => {
                 let msg = env.new_string("Ready").unwrap();
                 let _ = env.call_method(activity_obj, "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
+                send_transcript(&mut env, activity_obj, &r);
                 let txt = env.new_string(r.text).unwrap();
                 let _ = env.call_method(activity_obj, "onTextTranscribed", "(Ljava/lang/String;)V", &[(&txt).into()]);
             },
@@ -1351,3 +2291,373 @@ pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_stopRecordi
         }
     });
 }
+
+// --- RecognizeActivity long-form dictation ---
+//
+// In long-form mode LongFormSegmenter.java picks cuts at pauses and Java
+// queues each overlapping sample range with queueChunk (from the audio
+// thread). One worker per session transcribes the ranges in order while
+// recording continues and hands each to onChunkTranscribed. Audio before
+// the oldest queued range is dropped, so the buffer holds about one chunk
+// however long the dictation; at stop only the last chunk is left.
+
+#[cfg(target_os = "android")]
+struct ChunkJob {
+    from: u64,
+    // None: final chunk, up to the end of the recording
+    to: Option<u64>,
+}
+
+#[cfg(target_os = "android")]
+static RECOGNIZE_CHUNKS: Mutex<Option<std::sync::mpsc::Sender<ChunkJob>>> = Mutex::new(None);
+
+// Shorter chunks (0.25s) are not worth a decoder pass
+#[cfg(target_os = "android")]
+const LONG_FORM_MIN_CHUNK_SAMPLES: usize = 4000;
+
+/// Transcribe queued ranges of `buffer` until the final one, sending each
+/// to onChunkTranscribed on `activity_ref`. Spans go to the session's
+/// `trace`, fixed at spawn: a draining worker never reports under the id
+/// of the recording that replaced it.
+#[cfg(target_os = "android")]
+fn spawn_chunk_worker(
+    jvm: Arc<jni::JavaVM>,
+    activity_ref: jni::objects::GlobalRef,
+    buffer: Arc<Mutex<Vec<f32>>>,
+    jobs: std::sync::mpsc::Receiver<ChunkJob>,
+    trace: i64,
+) {
+    thread::spawn(move || {
+        let mut env = match jvm.attach_current_thread() {
+            Ok(e) => e,
+            Err(e) => {
+                log::error!("Chunk worker failed to attach: {}", e);
+                return;
+            }
+        };
+        let activity_obj = activity_ref.as_obj();
+        // Samples dropped from the front of the buffer so far
+        let mut base = 0u64;
+
+        for job in jobs {
+            let last = job.to.is_none();
+            let (from, to, samples) = {
+                let mut buf = buffer.lock().unwrap();
+                if job.from > base {
+                    let dropped = ((job.from - base) as usize).min(buf.len());
+                    buf.drain(..dropped);
+                    base += dropped as u64;
+                }
+                let end = match job.to {
+                    Some(to) => (to.saturating_sub(base) as usize).min(buf.len()),
+                    None => buf.len(),
+                };
+                (base, base + end as u64, buf[..end].to_vec())
+            };
+
+            let result = if samples.len() < LONG_FORM_MIN_CHUNK_SAMPLES {
+                None
+            } else {
+                let detail = format!("chunk {:.1}-{:.1}s", from as f32 / 16000.0, to as f32 / 16000.0);
+                match decode_traced(&mut env, activity_obj, trace, samples, &detail) {
+                    Some(Ok(r)) => Some(r),
+                    Some(Err(e)) => {
+                        log::warn!("Chunk {}..{} failed: {}", from, to, e);
+                        None
+                    }
+                    None => {
+                        log::warn!("Chunk {}..{} skipped: model not loaded", from, to);
+                        None
+                    }
+                }
+            };
+            send_chunk(&mut env, activity_obj, from, to, last, result.as_ref());
+            if last {
+                break;
+            }
+        }
+    });
+}
+
+// Calls onChunkTranscribed(long, long, boolean, String, ByteBuffer): the
+// sample range, whether it is the last chunk, and the transcript (empty
+// text and a null buffer if nothing was decoded). Same payload as
+// send_transcript, valid only during the call.
+#[cfg(target_os = "android")]
+fn send_chunk(env: &mut JNIEnv, target: &JObject, from: u64, to: u64, last: bool,
+    result: Option<&TimestampedResult>) {
+    let mut payload = result.map(encode_transcript).unwrap_or_default();
+    let text = match env.new_string(result.map(|r| r.text.as_str()).unwrap_or("")) {
+        Ok(text) => text,
+        Err(_) => return,
+    };
+    let buffer = if payload.is_empty() {
+        JObject::null()
+    } else {
+        match unsafe { env.new_direct_byte_buffer(payload.as_mut_ptr(), payload.len()) } {
+            Ok(buffer) => JObject::from(buffer),
+            Err(e) => {
+                log::warn!("Cannot wrap chunk payload: {}", e);
+                JObject::null()
+            }
+        }
+    };
+    let _ = env.call_method(target, "onChunkTranscribed", "(JJZLjava/lang/String;Ljava/nio/ByteBuffer;)V",
+        &[(from as i64).into(), (to as i64).into(), jni::objects::JValue::Bool(last as jni::sys::jboolean),
+            (&text).into(), (&buffer).into()]);
+    if env.exception_check().unwrap_or(false) {
+        let _ = env.exception_clear();
+    }
+    drop(payload);
+}
+
+/// Queue samples [from, to) of the current long-form recording
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_queueChunk(
+    _env: JNIEnv,
+    _class: JClass,
+    from: jni::sys::jlong,
+    to: jni::sys::jlong,
+) {
+    if let Some(jobs) = RECOGNIZE_CHUNKS.lock().unwrap().as_ref() {
+        let _ = jobs.send(ChunkJob { from: from.max(0) as u64, to: Some(to.max(from).max(0) as u64) });
+    }
+}
+
+/// Close the microphone and queue the final chunk, from `from` to the end.
+/// Long-form counterpart of stopRecording: the worker sends it with
+/// last = true and exits.
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_RecognizeActivity_stopLongForm(
+    mut env: JNIEnv,
+    _class: JClass,
+    from: jni::sys::jlong,
+) {
+    let activity_ref = {
+        let mut state_guard = RECOGNIZE_STATE.lock().unwrap();
+        match state_guard.as_mut() {
+            Some(state) => {
+                state.stream = None;
+                state.service_ref.clone()
+            }
+            None => return,
+        }
+    };
+    match RECOGNIZE_CHUNKS.lock().unwrap().take() {
+        Some(jobs) => {
+            let _ = jobs.send(ChunkJob { from: from.max(0) as u64, to: None });
+        }
+        None => return,
+    }
+
+    let msg = env.new_string("Transcribing...").unwrap();
+    let _ = env.call_method(activity_ref.as_obj(), "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
+}
+
+// --- VoiceRecognitionService JNI (headless recognition) ---
+//
+// Keyboards that bind the RecognitionService get audio captured and
+// transcribed inside the service itself: audio frames for rmsChanged and
+// end-of-speech detection, optional drafts for partialResults, and the
+// final transcript, with no Activity or window in between.
+
+#[cfg(target_os = "android")]
+static RECOGNITION_STATE: Mutex<Option<ImeState>> = Mutex::new(None);
+// Bumped on every start/stop/cancel; ends the partial worker and drops
+// results of a cancelled session
+#[cfg(target_os = "android")]
+static RECOGNITION_GENERATION: AtomicU64 = AtomicU64::new(0);
+// DictationTrace id of the current recording
+#[cfg(target_os = "android")]
+static RECOGNITION_TRACE: AtomicI64 = AtomicI64::new(0);
+
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_VoiceRecognitionService_initNative(
+    mut env: JNIEnv,
+    _class: JClass,
+    service: JObject,
+) {
+    android_logger::init_once(android_logger::Config::default().with_max_level(log::LevelFilter::Info));
+    let vm = env.get_java_vm().expect("Failed to get JavaVM");
+    let service_ref = env.new_global_ref(&service).expect("Failed to ref service");
+
+    *RECOGNITION_STATE.lock().unwrap() = Some(ImeState {
+        stream: None,
+        audio_buffer: Arc::new(Mutex::new(Vec::new())),
+        jvm: Arc::new(vm),
+        service_ref,
+    });
+
+    // Engine loading is driven by ModelManager.java (lazy, unloadable)
+}
+
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_VoiceRecognitionService_cleanupNative(
+    _env: JNIEnv,
+    _class: JClass,
+) {
+    RECOGNITION_GENERATION.fetch_add(1, Ordering::SeqCst);
+    *RECOGNITION_STATE.lock().unwrap() = None;
+}
+
+/// Open the microphone; false if no input stream could be started
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_VoiceRecognitionService_startRecording(
+    _env: JNIEnv,
+    _class: JClass,
+    partials: jni::sys::jboolean,
+    trace: jni::sys::jlong,
+) -> jni::sys::jboolean {
+    RECOGNITION_TRACE.store(trace, Ordering::SeqCst);
+    let mut state_guard = RECOGNITION_STATE.lock().unwrap();
+    let state = match state_guard.as_mut() {
+        Some(state) => state,
+        None => return jni::sys::JNI_FALSE,
+    };
+    let device = match cpal::default_host().default_input_device() {
+        Some(d) => d,
+        None => return jni::sys::JNI_FALSE,
+    };
+    let config = cpal::StreamConfig {
+        channels: 1,
+        sample_rate: cpal::SampleRate(16000),
+        buffer_size: cpal::BufferSize::Default,
+    };
+
+    state.audio_buffer.lock().unwrap().clear();
+    let buffer_clone = state.audio_buffer.clone();
+    let jvm_clone = state.jvm.clone();
+    let service_ref_clone = state.service_ref.clone();
+
+    // Per-frame features for rmsChanged and end of speech (owned by the callback)
+    let mut frame_stats = FrameStats::new();
+    let mut frames: Vec<(f32, f32)> = Vec::with_capacity(16);
+    // Reported once, on the first buffer
+    let mut opening = Some(monotonic_nanos());
+
+    let stream = device.build_input_stream(
+        &config,
+        move |data: &[f32], _: &_| {
+            buffer_clone.lock().unwrap().extend_from_slice(data);
+
+            if let Some(opened) = opening.take() {
+                if let Ok(mut env) = jvm_clone.attach_current_thread() {
+                    send_trace_span(&mut env, service_ref_clone.as_obj(), trace, "capture", "first audio",
+                        opened, monotonic_nanos(), None);
+                }
+            }
+
+            frames.clear();
+            frame_stats.push(data, &mut frames);
+            if frames.is_empty() {
+                return;
+            }
+            if let Ok(mut env) = jvm_clone.attach_current_thread() {
+                let service_obj = service_ref_clone.as_obj();
+                for &(rms, zcr) in frames.iter() {
+                    let _ = env.call_method(service_obj, "onAudioFrame", "(FF)V", &[rms.into(), zcr.into()]);
+                }
+            }
+        },
+        |e| log::error!("Stream err: {}", e),
+        None,
+    );
+
+    match stream {
+        Ok(s) => {
+            if let Err(e) = s.play() {
+                log::error!("Recognition stream failed to start: {}", e);
+                return jni::sys::JNI_FALSE;
+            }
+            state.stream = Some(SendStream(s));
+            let generation = RECOGNITION_GENERATION.fetch_add(1, Ordering::SeqCst) + 1;
+            if partials != 0 {
+                spawn_partials(state.jvm.clone(), state.service_ref.clone(), state.audio_buffer.clone(),
+                    &RECOGNITION_GENERATION, generation);
+            }
+            jni::sys::JNI_TRUE
+        }
+        Err(e) => {
+            log::error!("Recognition stream failed: {}", e);
+            jni::sys::JNI_FALSE
+        }
+    }
+}
+
+/// Close the microphone and transcribe on a worker: onTranscriptData and
+/// onTextTranscribed, or onStatusUpdate("Error: ...")
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_VoiceRecognitionService_stopRecording(
+    _env: JNIEnv,
+    _class: JClass,
+) {
+    let (buffer, jvm, service_ref, generation) = {
+        let mut state_guard = RECOGNITION_STATE.lock().unwrap();
+        if let Some(state) = state_guard.as_mut() {
+            if state.stream.take().is_none() {
+                return;
+            }
+            let generation = RECOGNITION_GENERATION.fetch_add(1, Ordering::SeqCst) + 1;
+            let buffer = std::mem::take(&mut *state.audio_buffer.lock().unwrap());
+            (buffer, state.jvm.clone(), state.service_ref.clone(), generation)
+        } else {
+            return;
+        }
+    };
+
+    let trace = RECOGNITION_TRACE.load(Ordering::SeqCst);
+    std::thread::spawn(move || {
+        let mut env = jvm.attach_current_thread().unwrap();
+        let service_obj = service_ref.as_obj();
+
+        let detail = format!("{:.1}s audio", buffer.len() as f32 / 16000.0);
+        let res = match decode_traced(&mut env, service_obj, trace, buffer, &detail) {
+            Some(res) => res,
+            None => {
+                notify_recognition_error(&mut env, service_obj, "model not loaded");
+                return;
+            }
+        };
+
+        // Cancelled (or restarted) while decoding
+        if RECOGNITION_GENERATION.load(Ordering::SeqCst) != generation {
+            return;
+        }
+        match res {
+            Ok(r) => {
+                send_transcript(&mut env, service_obj, &r);
+                if let Ok(txt) = env.new_string(&r.text) {
+                    let _ = env.call_method(service_obj, "onTextTranscribed", "(Ljava/lang/String;)V", &[(&txt).into()]);
+                }
+            }
+            Err(e) => notify_recognition_error(&mut env, service_obj, &e.to_string()),
+        }
+    });
+}
+
+/// Drop the audio without transcribing
+#[cfg(target_os = "android")]
+#[no_mangle]
+pub unsafe extern "system" fn Java_com_voiceai_app_VoiceRecognitionService_cancelRecording(
+    _env: JNIEnv,
+    _class: JClass,
+) {
+    RECOGNITION_GENERATION.fetch_add(1, Ordering::SeqCst);
+    if let Some(state) = RECOGNITION_STATE.lock().unwrap().as_mut() {
+        state.stream = None;
+        state.audio_buffer.lock().unwrap().clear();
+    }
+}
+
+#[cfg(target_os = "android")]
+fn notify_recognition_error(env: &mut JNIEnv, target: &JObject, message: &str) {
+    if let Ok(msg) = env.new_string(format!("Error: {}", message)) {
+        let _ = env.call_method(target, "onStatusUpdate", "(Ljava/lang/String;)V", &[(&msg).into()]);
+    }
+}
@@ -0,0 +1,59 @@
+package com.voiceai.app;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.voiceai.app.AsrScheduler.Priority;
+
+/**
+ * Unit tests for AsrScheduler pool sizing and stats decoding
+ * Stats arrays are laid out the way lib.rs fills them
+ */
+public class AsrSchedulerTest {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Test
+    public void testPoolSize() {
+        assertEquals(1, AsrScheduler.poolSizeFor(4 * GB, 8));
+        assertEquals(1, AsrScheduler.poolSizeFor(12 * GB, 4));
+        assertEquals(2, AsrScheduler.poolSizeFor(8 * GB, 8));
+        assertEquals(2, AsrScheduler.poolSizeFor(16 * GB, 12));
+    }
+
+    @Test
+    public void testStats() {
+        long[] values = new long[AsrScheduler.STATS_LENGTH];
+        // Interactive: 4 leases, 10ms total, 6ms max, none waiting
+        values[0] = 4;
+        values[1] = 10_000_000L;
+        values[2] = 6_000_000L;
+        // Background: 2 leases, 1 waiting
+        values[8] = 2;
+        values[9] = 3_000_000_000L;
+        values[10] = 2_500_000_000L;
+        values[11] = 1;
+        values[AsrScheduler.STATS_LENGTH - 2] = 2;
+        values[AsrScheduler.STATS_LENGTH - 1] = 1;
+
+        AsrScheduler.Stats stats = new AsrScheduler.Stats(values);
+        assertEquals(4, stats.getCount(Priority.INTERACTIVE));
+        assertEquals(2.5, stats.getAverageWaitMillis(Priority.INTERACTIVE), 1e-9);
+        assertEquals(6.0, stats.getMaxWaitMillis(Priority.INTERACTIVE), 1e-9);
+        assertEquals(0.0, stats.getAverageWaitMillis(Priority.PARTIAL), 0);
+        assertEquals(1500.0, stats.getAverageWaitMillis(Priority.BACKGROUND), 1e-9);
+        assertEquals(1, stats.getWaiting(Priority.BACKGROUND));
+        assertEquals(2, stats.getPoolSize());
+        assertEquals(1, stats.getBusy());
+        assertTrue(stats.toString().contains("pool=1/2"));
+
+        // Snapshot is independent of the array it was read into
+        values[0] = 99;
+        assertEquals(4, stats.getCount(Priority.INTERACTIVE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongLength() {
+        new AsrScheduler.Stats(new long[3]);
+    }
+}
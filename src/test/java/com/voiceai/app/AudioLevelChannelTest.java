@@ -0,0 +1,59 @@
+package com.voiceai.app;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AudioLevelChannel
+ */
+public class AudioLevelChannelTest {
+
+    @Test
+    public void testEmptyChannel() {
+        AudioLevelChannel channel = new AudioLevelChannel();
+        assertEquals(0, channel.getSequence());
+        assertEquals(0f, channel.getLevel(), 0f);
+        assertEquals(0f, channel.peak(0, 0), 0f);
+    }
+
+    @Test
+    public void testLatestLevelAndPeakSinceLastRead() {
+        AudioLevelChannel channel = new AudioLevelChannel();
+        channel.publish(0.2f);
+        long read = channel.getSequence();
+
+        channel.publish(0.9f);
+        channel.publish(0.1f);
+        long now = channel.getSequence();
+
+        assertEquals(0.1f, channel.getLevel(), 0f);
+        // Short burst between two frames is not lost
+        assertEquals(0.9f, channel.peak(read, now), 0f);
+        // Nothing new: latest level
+        assertEquals(0.1f, channel.peak(now, now), 0f);
+    }
+
+    @Test
+    public void testSlowReaderSeesOnlyRecentHalf() {
+        AudioLevelChannel channel = new AudioLevelChannel();
+        channel.publish(1.0f);
+        for (int i = 0; i < AudioLevelChannel.RING_SIZE * 3; i++) {
+            channel.publish(0.3f);
+        }
+        assertEquals(0.3f, channel.peak(0, channel.getSequence()), 0f);
+    }
+
+    @Test
+    public void testReaderThreadSeesPublishedLevels() throws Exception {
+        AudioLevelChannel channel = new AudioLevelChannel();
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 10000; i++) {
+                channel.publish(i / 10000f);
+            }
+        });
+        writer.start();
+        writer.join();
+        assertEquals(10000, channel.getSequence());
+        assertEquals(1.0f, channel.getLevel(), 0f);
+    }
+}
@@ -0,0 +1,271 @@
+package com.voiceai.app;
+
+import com.voiceai.app.processing.ProcessingContext;
+import com.voiceai.app.processing.processors.PersonalDictionaryApplicator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for DictionaryStore and DictionaryIndex
+ * Most tests run the background work inline so files are written on return
+ */
+public class DictionaryStoreTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("dictionary").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private DictionaryStore open() {
+        return new DictionaryStore(dir, Runnable::run);
+    }
+
+    @Test
+    public void testPutLookupAndAliases() {
+        DictionaryStore store = open();
+        store.put(new DictionaryStore.Entry("ChatGPT", 1f, Arrays.asList("Chat GPT")));
+        store.put(DictionaryStore.Entry.of("@Groq"));
+
+        DictionaryStore.Snapshot words = store.snapshot();
+        assertEquals(2, words.size());
+        assertEquals("ChatGPT", words.lookup("chatgpt"));
+        assertEquals("ChatGPT", words.lookup("chat gpt"));
+        assertEquals("@Groq", words.lookup("at groq"));
+        assertEquals("ChatGPT", words.get("CHATGPT"));
+        assertNull(words.lookup("chat"));
+        assertEquals(2, words.getMaxPhraseWords());
+    }
+
+    @Test
+    public void testSnapshotIsStableUntilChange() {
+        DictionaryStore store = open();
+        store.put(DictionaryStore.Entry.of("Groq"));
+        DictionaryStore.Snapshot first = store.snapshot();
+        assertSame(first, store.snapshot());
+
+        store.remove("GROQ");
+        DictionaryStore.Snapshot second = store.snapshot();
+        assertNotSame(first, second);
+        assertEquals("Groq", first.lookup("groq"));
+        assertNull(second.lookup("groq"));
+        assertEquals(0, second.size());
+    }
+
+    @Test
+    public void testChangesSurviveReopen() {
+        DictionaryStore store = open();
+        store.put(DictionaryStore.Entry.of("Groq"));
+        store.put(new DictionaryStore.Entry("Kubernetes", 2f, Arrays.asList("k8s", "cube earnest")));
+        store.put(DictionaryStore.Entry.of("Gemini"));
+        store.remove("gemini");
+
+        DictionaryStore.Snapshot words = open().snapshot();
+        assertEquals(2, words.size());
+        assertEquals("Groq", words.lookup("groq"));
+        assertEquals("Kubernetes", words.lookup("cube earnest"));
+        assertEquals(2f, words.getEntry("kubernetes").weight, 0f);
+        assertNull(words.lookup("gemini"));
+    }
+
+    @Test
+    public void testTornLogTailIsDropped() throws Exception {
+        DictionaryStore store = open();
+        store.put(DictionaryStore.Entry.of("Groq"));
+        store.put(DictionaryStore.Entry.of("Claude"));
+        File log = new File(dir, DictionaryStore.LOG_FILE);
+        long goodLength = log.length();
+
+        // Half-written record from a crash
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+        }
+
+        DictionaryStore.Snapshot words = open().snapshot();
+        assertEquals(2, words.size());
+        assertEquals("Claude", words.lookup("claude"));
+        assertEquals(goodLength, log.length());
+    }
+
+    @Test
+    public void testLogIsCompactedIntoIndex() {
+        DictionaryStore store = open();
+        for (int i = 0; i < DictionaryStore.COMPACT_LOG_RECORDS; i++) {
+            store.put(DictionaryStore.Entry.of("Word" + i));
+        }
+
+        assertTrue(new File(dir, DictionaryStore.INDEX_FILE).exists());
+        assertEquals(0, new File(dir, DictionaryStore.LOG_FILE).length());
+
+        store.remove("word7");
+        DictionaryStore.Snapshot words = open().snapshot();
+        assertEquals(DictionaryStore.COMPACT_LOG_RECORDS - 1, words.size());
+        assertEquals("Word300", words.lookup("word300"));
+        assertNull(words.lookup("word7"));
+    }
+
+    @Test
+    public void testAliasConflicts() {
+        DictionaryStore store = open();
+        List<DictionaryStore.Entry> entries = Arrays.asList(
+                new DictionaryStore.Entry("Jim Smith", 1f, Arrays.asList("jim")),
+                new DictionaryStore.Entry("Jim Jones", 5f, Arrays.asList("jim")),
+                new DictionaryStore.Entry("Ada", 1f, null),
+                new DictionaryStore.Entry("Ada Lovelace", 9f, Arrays.asList("ada")));
+        store.importEntries(entries, null);
+
+        DictionaryStore.Snapshot words = open().snapshot();
+        // Heavier entry wins a shared alias, a word beats any alias
+        assertEquals("Jim Jones", words.lookup("jim"));
+        assertEquals("Ada", words.lookup("ada"));
+        assertEquals(4, words.size());
+    }
+
+    @Test
+    public void testPendingAliasConflictsUseWeights() {
+        // Same conflicts as above, still in the log overlay rather than the index
+        for (int round = 0; round < 2; round++) {
+            tearDown();
+            assertTrue(dir.mkdirs());
+            DictionaryStore store = open();
+            List<DictionaryStore.Entry> entries = new ArrayList<>(Arrays.asList(
+                    new DictionaryStore.Entry("Jim Smith", 1f, Arrays.asList("jim")),
+                    new DictionaryStore.Entry("Jim Jones", 5f, Arrays.asList("jim")),
+                    new DictionaryStore.Entry("James", 5f, Arrays.asList("jim", "jimmy")),
+                    new DictionaryStore.Entry("Ada", 1f, null),
+                    new DictionaryStore.Entry("Ada Lovelace", 9f, Arrays.asList("ada"))));
+            if (round == 1) {
+                Collections.reverse(entries);
+            }
+            for (DictionaryStore.Entry entry : entries) {
+                store.put(entry);
+            }
+
+            DictionaryStore.Snapshot words = store.snapshot();
+            // Equal weights go to the smaller key, whatever the insertion order
+            assertEquals("James", words.lookup("jim"));
+            assertEquals("James", words.lookup("jimmy"));
+            assertEquals("Ada", words.lookup("ada"));
+        }
+    }
+
+    @Test
+    public void testPendingAliasDoesNotShadowIndexedWord() {
+        DictionaryStore store = open();
+        store.importEntries(Arrays.asList(
+                DictionaryStore.Entry.of("Groq"),
+                new DictionaryStore.Entry("Jim Jones", 5f, Arrays.asList("jim"))), null);
+        store = open();
+        store.put(new DictionaryStore.Entry("Grok", 9f, Arrays.asList("groq")));
+        store.put(new DictionaryStore.Entry("Jim Smith", 1f, Arrays.asList("jim")));
+        store.put(new DictionaryStore.Entry("Jimmy", 2f, Arrays.asList("jimbo")));
+
+        DictionaryStore.Snapshot words = store.snapshot();
+        assertEquals("Groq", words.lookup("groq"));
+        assertEquals("Jim Jones", words.lookup("jim"));
+        assertEquals("Jimmy", words.lookup("jimbo"));
+    }
+
+    @Test
+    public void testReplaceWordsKeepsAliasesOfKeptWords() {
+        DictionaryStore store = open();
+        store.put(new DictionaryStore.Entry("ChatGPT", 3f, Arrays.asList("chat gpt")));
+        store.put(DictionaryStore.Entry.of("Groq"));
+
+        store.replaceWords(Arrays.asList(" chatgpt ", "OpenAI", ""));
+
+        DictionaryStore.Snapshot words = store.snapshot();
+        assertEquals(2, words.size());
+        assertNull(words.lookup("groq"));
+        assertEquals("OpenAI", words.lookup("openai"));
+        // Respelled, weight and alias kept
+        DictionaryStore.Entry entry = words.getEntry("ChatGPT");
+        assertEquals("chatgpt", entry.word);
+        assertEquals(3f, entry.weight, 0f);
+        assertEquals(Collections.singletonList("chat gpt"), entry.aliases);
+    }
+
+    @Test
+    public void testImportText() throws Exception {
+        DictionaryStore store = open();
+        int count = store.importText(new StringReader(
+                "# vocabulary\n"
+                        + "Groq, Claude\n"
+                        + "\n"
+                        + "PostgreSQL\t2\tpostgres|post gress\n"
+                        + "@Anthropic\t\t\n"
+                        + "Bad\tnot-a-number\n"),
+                null);
+
+        assertEquals(4, count);
+        DictionaryStore.Snapshot words = store.snapshot();
+        assertEquals("PostgreSQL", words.lookup("post gress"));
+        assertEquals("@Anthropic", words.lookup("at anthropic"));
+        assertNull(words.lookup("bad"));
+    }
+
+    @Test
+    public void testLargeVocabulary() throws Exception {
+        List<DictionaryStore.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            entries.add(new DictionaryStore.Entry("Term" + i, 1f, Arrays.asList("spoken " + i)));
+        }
+        open().importEntries(entries, null);
+
+        long start = System.nanoTime();
+        DictionaryStore reopened = open();
+        DictionaryStore.Snapshot words = reopened.snapshot();
+        long openMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(100_000, words.size());
+        assertEquals("Term99999", words.lookup("term99999"));
+        assertEquals("Term4242", words.lookup("spoken 4242"));
+        assertTrue("opening took " + openMs + "ms", openMs < 1000);
+
+        ProcessingContext context = ProcessingContext.builder().personalDictionary(words).build();
+        assertSame(words, context.getPersonalDictionary());
+        assertEquals("see Term12 and Term77",
+                new PersonalDictionaryApplicator().process("see term12 and spoken 77", context));
+    }
+
+    @Test
+    public void testBackgroundWritesAreFlushed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DictionaryStore store = new DictionaryStore(dir, executor);
+            for (int i = 0; i < 50; i++) {
+                store.put(DictionaryStore.Entry.of("Word" + i));
+            }
+            // Visible at once, on disk after flush
+            assertEquals(50, store.snapshot().size());
+            store.flush();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(50, open().snapshot().size());
+    }
+}
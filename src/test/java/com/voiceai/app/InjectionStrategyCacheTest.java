@@ -0,0 +1,149 @@
+package com.voiceai.app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.voiceai.app.InjectionStrategyCache.Strategy;
+
+/**
+ * Unit tests for InjectionStrategyCache
+ * Writes run inline so the file is current after each record
+ */
+public class InjectionStrategyCacheTest {
+
+    private static final String APP = "com.example.notes";
+    private static final long MS = 1_000_000L;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("strategies", ".txt");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private InjectionStrategyCache open() {
+        return new InjectionStrategyCache(file, Runnable::run);
+    }
+
+    @Test
+    public void testCostOrderWithoutHistory() {
+        InjectionStrategyCache cache = open();
+        assertEquals(Arrays.asList(Strategy.IME, Strategy.SET_TEXT, Strategy.PASTE),
+                cache.order(APP, EnumSet.of(Strategy.SET_TEXT, Strategy.PASTE, Strategy.IME), false));
+        assertEquals(Arrays.asList(Strategy.SET_TEXT, Strategy.REPLACE_TEXT, Strategy.PASTE),
+                cache.order(null, EnumSet.of(Strategy.PASTE, Strategy.REPLACE_TEXT, Strategy.SET_TEXT), false));
+    }
+
+    @Test
+    public void testKnownGoodFirstKnownBadLast() {
+        InjectionStrategyCache cache = open();
+        cache.record(APP, Strategy.IME, false, MS);
+        cache.record(APP, Strategy.IME, false, MS);
+        cache.record(APP, Strategy.SET_TEXT, true, 5 * MS);
+
+        assertEquals(Arrays.asList(Strategy.SET_TEXT, Strategy.REPLACE_TEXT, Strategy.IME),
+                cache.order(APP, EnumSet.of(Strategy.IME, Strategy.REPLACE_TEXT, Strategy.SET_TEXT), false));
+
+        // Other apps are unaffected
+        assertEquals(Arrays.asList(Strategy.IME, Strategy.SET_TEXT, Strategy.REPLACE_TEXT),
+                cache.order("com.example.other", EnumSet.of(Strategy.IME, Strategy.REPLACE_TEXT, Strategy.SET_TEXT), false));
+    }
+
+    @Test
+    public void testFasterGoodStrategyFirst() {
+        InjectionStrategyCache cache = open();
+        cache.record(APP, Strategy.IME, true, 40 * MS);
+        cache.record(APP, Strategy.SET_TEXT, true, 4 * MS);
+
+        assertEquals(Arrays.asList(Strategy.SET_TEXT, Strategy.IME),
+                cache.order(APP, EnumSet.of(Strategy.IME, Strategy.SET_TEXT), false));
+        assertEquals(4.0, cache.getStats(APP, Strategy.SET_TEXT).getAvgMillis(), 1e-9);
+    }
+
+    @Test
+    public void testLongFieldAvoidsRewrites() {
+        InjectionStrategyCache cache = open();
+        EnumSet<Strategy> available = EnumSet.of(Strategy.IME, Strategy.SET_TEXT);
+        cache.record(APP, Strategy.SET_TEXT, true, 4 * MS);
+
+        assertEquals(Strategy.SET_TEXT, cache.order(APP, available, false).get(0));
+        // Known-good SET_TEXT ties with an untried IME; cost order decides
+        assertEquals(Arrays.asList(Strategy.IME, Strategy.SET_TEXT), cache.order(APP, available, true));
+        assertEquals(Arrays.asList(Strategy.IME, Strategy.SET_TEXT), cache.order(null, available, true));
+    }
+
+    @Test
+    public void testBadStrategyRecovers() {
+        InjectionStrategyCache cache = open();
+        EnumSet<Strategy> available = EnumSet.of(Strategy.IME, Strategy.SET_TEXT);
+        cache.record(APP, Strategy.IME, false, MS);
+        cache.record(APP, Strategy.IME, false, MS);
+        assertEquals(Strategy.SET_TEXT, cache.order(APP, available, false).get(0));
+
+        cache.record(APP, Strategy.IME, true, MS);
+        assertEquals(Strategy.IME, cache.order(APP, available, false).get(0));
+        InjectionStrategyCache.Stats stats = cache.getStats(APP, Strategy.IME);
+        assertEquals(1, stats.getSuccesses());
+        assertEquals(2, stats.getFailures());
+    }
+
+    @Test
+    public void testPasteIsLastResort() {
+        InjectionStrategyCache cache = open();
+        EnumSet<Strategy> available = EnumSet.of(Strategy.IME, Strategy.PASTE, Strategy.SET_TEXT);
+        cache.record(APP, Strategy.PASTE, true, MS);
+        cache.record(APP, Strategy.IME, false, MS);
+        cache.record(APP, Strategy.IME, false, MS);
+        cache.record(APP, Strategy.SET_TEXT, false, MS);
+        cache.record(APP, Strategy.SET_TEXT, false, MS);
+
+        // Known-good, but still behind known-bad strategies, even in long fields
+        assertEquals(Arrays.asList(Strategy.IME, Strategy.SET_TEXT, Strategy.PASTE),
+                cache.order(APP, available, false));
+        assertEquals(Arrays.asList(Strategy.IME, Strategy.SET_TEXT, Strategy.PASTE),
+                cache.order(APP, available, true));
+        assertEquals(Strategy.PASTE, cache.order(null, available, true).get(2));
+    }
+
+    @Test
+    public void testPersistence() {
+        InjectionStrategyCache cache = open();
+        cache.record(APP, Strategy.IME, false, MS);
+        cache.record(APP, Strategy.IME, false, MS);
+        cache.record(APP, Strategy.SET_TEXT, true, 7 * MS);
+        assertTrue(file.exists());
+
+        InjectionStrategyCache reopened = open();
+        assertEquals(Arrays.asList(Strategy.SET_TEXT, Strategy.IME),
+                reopened.order(APP, EnumSet.of(Strategy.IME, Strategy.SET_TEXT), false));
+        assertEquals(7.0, reopened.getStats(APP, Strategy.SET_TEXT).getAvgMillis(), 1e-3);
+        assertEquals(2, reopened.getStats(APP, Strategy.IME).getFailures());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPackagesEvicted() {
+        InjectionStrategyCache cache = open();
+        for (int i = 0; i < InjectionStrategyCache.MAX_PACKAGES; i++) {
+            cache.record("app" + i, Strategy.PASTE, true, MS);
+        }
+        // Touch the oldest so the second oldest goes instead
+        cache.order("app0", EnumSet.of(Strategy.PASTE), false);
+        cache.record("app.new", Strategy.PASTE, true, MS);
+
+        assertNotNull(cache.getStats("app0", Strategy.PASTE));
+        assertNull(cache.getStats("app1", Strategy.PASTE));
+        assertNotNull(cache.getStats("app.new", Strategy.PASTE));
+    }
+}
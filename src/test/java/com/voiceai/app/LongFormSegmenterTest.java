@@ -0,0 +1,96 @@
+package com.voiceai.app;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for LongFormSegmenter
+ * Each fed frame is VoiceActivityDetector.FRAME_MS (FRAME_SAMPLES samples)
+ */
+public class LongFormSegmenterTest {
+
+    private static final float SPEECH_RMS = 0.05f;
+    private static final float SPEECH_ZCR = 0.08f;
+    private static final float SILENCE_RMS = 0.0005f;
+    private static final float SILENCE_ZCR = 0.3f;
+
+    private static final int FRAMES_PER_SECOND = 1000 / VoiceActivityDetector.FRAME_MS;
+
+    private List<Long> cuts;
+    private LongFormSegmenter segmenter;
+
+    @Before
+    public void setUp() {
+        cuts = new ArrayList<>();
+        segmenter = new LongFormSegmenter(cuts::add);
+    }
+
+    private void feed(int frames, float rms, float zcr) {
+        for (int i = 0; i < frames; i++) {
+            segmenter.onAudioFrame(rms, zcr);
+        }
+    }
+
+    // Words with short gaps, so the noise floor stays at the room level
+    private void speak(double seconds) {
+        int frames = (int) Math.round(seconds * FRAMES_PER_SECOND);
+        for (int i = 0; i < frames; i++) {
+            if (i % 25 < 20) {
+                segmenter.onAudioFrame(SPEECH_RMS, SPEECH_ZCR);
+            } else {
+                segmenter.onAudioFrame(SILENCE_RMS, SILENCE_ZCR);
+            }
+        }
+    }
+
+    private void pause(double seconds) {
+        feed((int) Math.round(seconds * FRAMES_PER_SECOND), SILENCE_RMS, SILENCE_ZCR);
+    }
+
+    @Test
+    public void testShortPausesBeforeMinimumDoNotCut() {
+        pause(0.5);
+        speak(2);
+        pause(1);
+        speak(2);
+        pause(1);
+        assertTrue(cuts.isEmpty());
+    }
+
+    @Test
+    public void testPauseAfterMinimumCutsInsideSilence() {
+        pause(0.5);
+        speak(7);
+        pause(1);
+        assertEquals(1, cuts.size());
+        // Speech ends at 7.5s; the cut lands within the pause
+        long cut = cuts.get(0);
+        assertTrue(cut > 7.5 * 16000);
+        assertTrue(cut < 8.5 * 16000);
+        assertEquals(0, cut % LongFormSegmenter.FRAME_SAMPLES);
+    }
+
+    @Test
+    public void testContinuousSpeechIsCutAtMaximum() {
+        feed(975, SPEECH_RMS, SPEECH_ZCR);
+        // Quietest spot, inside the last second before MAX_CHUNK_MS
+        feed(5, SILENCE_RMS * 4, SILENCE_ZCR);
+        feed(30, SPEECH_RMS, SPEECH_ZCR);
+        assertEquals(1, cuts.size());
+        assertEquals(980L * LongFormSegmenter.FRAME_SAMPLES, (long) cuts.get(0));
+    }
+
+    @Test
+    public void testResetStartsNewRecording() {
+        speak(15);
+        segmenter.reset();
+        assertEquals(0, segmenter.getSamples());
+        speak(2);
+        pause(1);
+        assertTrue(cuts.isEmpty());
+    }
+}
@@ -0,0 +1,276 @@
+package com.voiceai.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ModelDownloader against a local HTTP server
+ * The server serves one file, with or without range support, and can cut
+ * responses short to simulate a dropped connection
+ */
+public class ModelDownloaderTest {
+
+    private static final int SIZE = 1024 * 1024;
+
+    private final byte[] data = new byte[SIZE];
+    private HttpServer server;
+    private File dir;
+    private File target;
+
+    // Server behavior
+    private volatile boolean ranges = true;
+    private volatile String etag = "\"v1\"";
+    private volatile long cutAfterBytes = -1; // Per response, while failuresLeft > 0
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(42).nextBytes(data);
+        dir = Files.createTempDirectory("download").toFile();
+        target = new File(dir, "model.gguf");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/model.gguf", this::serve);
+        server.createContext("/resolve", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/model.gguf");
+            exchange.getResponseHeaders().add("X-Linked-Etag", "\"" + ModelDownloader.hash(writeExpected()) + "\"");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int from = 0;
+        int to = SIZE - 1;
+        int code = 200;
+        if (ranges && range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring(6).split("-");
+            from = Integer.parseInt(bounds[0]);
+            to = bounds.length > 1 ? Math.min(Integer.parseInt(bounds[1]), SIZE - 1) : SIZE - 1;
+            code = 206;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + SIZE);
+            if (to > from) {
+                rangeRequests.incrementAndGet();
+            }
+        }
+        exchange.getResponseHeaders().add("ETag", etag);
+        int length = to - from + 1;
+        int send = length;
+        if (cutAfterBytes >= 0 && length > 1 && failuresLeft.getAndDecrement() > 0) {
+            send = (int) Math.min(length, cutAfterBytes);
+        }
+        // A cut response is chunked, so it ends early instead of stalling the client
+        exchange.sendResponseHeaders(code, send == length ? length : 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data, from, send);
+            bytesServed.addAndGet(send);
+        }
+    }
+
+    private File writeExpected() throws IOException {
+        File expected = new File(dir, "expected.bin");
+        Files.write(expected.toPath(), data);
+        return expected;
+    }
+
+    private URL url(String path) throws Exception {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private ModelDownloader.Builder builder(String path) throws Exception {
+        return ModelDownloader.builder(url(path), target).segments(4).minSegmentBytes(64 * 1024);
+    }
+
+    private void assertDownloaded() throws IOException {
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        assertFalse(new File(target.getPath() + ModelDownloader.PART_SUFFIX).exists());
+        assertFalse(ModelDownloader.hasPartial(target));
+    }
+
+    @Test
+    public void testParallelDownload() throws Exception {
+        String sha = ModelDownloader.hash(writeExpected());
+        List<long[]> progress = new ArrayList<>();
+        builder("/model.gguf").sha256(sha).build().download((done, total) -> progress.add(new long[] { done, total }));
+
+        assertDownloaded();
+        assertEquals(4, rangeRequests.get());
+        long[] last = progress.get(progress.size() - 1);
+        assertEquals(SIZE, last[0]);
+        assertEquals(SIZE, last[1]);
+    }
+
+    @Test
+    public void testProgressIsThrottled() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        builder("/model.gguf").progressInterval(60_000).build().download((done, total) -> calls.incrementAndGet());
+        assertDownloaded();
+        assertEquals(1, calls.get()); // Only the final report
+    }
+
+    @Test
+    public void testSegmentRetries() throws Exception {
+        cutAfterBytes = 1000;
+        failuresLeft.set(2); // Two segments, once each
+        builder("/model.gguf").maxAttempts(3).build().download((done, total) -> {
+        });
+        assertDownloaded();
+    }
+
+    @Test
+    public void testResumeAfterFailure() throws Exception {
+        cutAfterBytes = 100 * 1024;
+        failuresLeft.set(Integer.MAX_VALUE);
+        try {
+            builder("/model.gguf").maxAttempts(1).build().download((done, total) -> {
+            });
+            fail("Every response is cut short");
+        } catch (IOException expected) {
+        }
+        assertTrue(ModelDownloader.hasPartial(target));
+        assertFalse(target.exists());
+
+        cutAfterBytes = -1;
+        bytesServed.set(0);
+        builder("/model.gguf").maxAttempts(1).build().download((done, total) -> {
+        });
+        assertDownloaded();
+        // The first failure stops the other segments, so at least its own 100KB is kept
+        assertTrue("Resumed, not restarted: " + bytesServed.get(), bytesServed.get() <= SIZE - 100 * 1024 + 1);
+    }
+
+    @Test
+    public void testCancelBeforeStartIsKept() throws Exception {
+        ModelDownloader downloader = builder("/model.gguf").build();
+        downloader.cancel();
+        try {
+            downloader.download((done, total) -> {
+            });
+            fail("Cancelled before it started");
+        } catch (InterruptedIOException expected) {
+        }
+        assertEquals(0, bytesServed.get());
+        assertFalse(target.exists());
+    }
+
+    @Test
+    public void testChangedFileRestarts() throws Exception {
+        cutAfterBytes = 100 * 1024;
+        failuresLeft.set(Integer.MAX_VALUE);
+        try {
+            builder("/model.gguf").maxAttempts(1).build().download((done, total) -> {
+            });
+            fail("Every response is cut short");
+        } catch (IOException expected) {
+        }
+
+        // Same URL, but a different file: stale progress must not be reused
+        cutAfterBytes = -1;
+        data[0] ^= 1;
+        data[SIZE - 1] ^= 1;
+        etag = "\"v2\"";
+        bytesServed.set(0);
+        builder("/model.gguf").build().download((done, total) -> {
+        });
+        assertDownloaded();
+        assertTrue(bytesServed.get() >= SIZE);
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        try {
+            builder("/model.gguf").sha256(repeat('0', 64)).build().download((done, total) -> {
+            });
+            fail("Checksum must not match");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Checksum mismatch"));
+        }
+        assertFalse(target.exists());
+        assertFalse(new File(target.getPath() + ModelDownloader.PART_SUFFIX).exists());
+        assertFalse(ModelDownloader.hasPartial(target));
+    }
+
+    @Test
+    public void testLinkedChecksumFromRedirect() throws Exception {
+        builder("/resolve").build().download((done, total) -> {
+        });
+        assertDownloaded();
+
+        // The published hash no longer matches what the server sends
+        target.delete();
+        data[10] ^= 1;
+        server.removeContext("/resolve");
+        server.createContext("/resolve", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/model.gguf");
+            exchange.getResponseHeaders().add("X-Linked-Etag", "\"" + repeat('a', 64) + "\"");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        try {
+            builder("/resolve").build().download((done, total) -> {
+            });
+            fail("Linked checksum must be enforced");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testServerWithoutRanges() throws Exception {
+        ranges = false;
+        builder("/model.gguf").sha256(ModelDownloader.hash(writeExpected())).build().download((done, total) -> {
+        });
+        assertDownloaded();
+        assertEquals(0, rangeRequests.get());
+    }
+
+    @Test
+    public void testHeaderParsing() {
+        assertEquals(1234, ModelDownloader.parseContentRangeLength("bytes 0-0/1234"));
+        assertEquals(-1, ModelDownloader.parseContentRangeLength("bytes 0-0/*"));
+        assertEquals(-1, ModelDownloader.parseContentRangeLength(null));
+        String sha = repeat('A', 64);
+        assertEquals(sha.toLowerCase(), ModelDownloader.parseSha256("W/\"" + sha + "\""));
+        assertNull(ModelDownloader.parseSha256("\"v1\""));
+        assertNull(ModelDownloader.parseSha256(null));
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,192 @@
+package com.voiceai.app;
+
+import android.content.ComponentCallbacks2;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ModelManager
+ * Loads run synchronously and time is driven by the test clock
+ */
+public class ModelManagerTest {
+
+    private FakeLoader asrLoader;
+    private FakeLoader llmLoader;
+    private long now;
+
+    private static class FakeLoader implements ModelManager.Loader {
+        boolean result = true;
+        boolean loaded;
+        int queued;
+        int loads;
+        int unloads;
+
+        @Override
+        public void queued() {
+            queued++;
+        }
+
+        @Override
+        public boolean load() {
+            loads++;
+            loaded = result;
+            return result;
+        }
+
+        @Override
+        public void unload() {
+            unloads++;
+            loaded = false;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        asrLoader = new FakeLoader();
+        llmLoader = new FakeLoader();
+        now = 1000;
+    }
+
+    private ModelManager create(boolean lowRam) {
+        return new ModelManager(asrLoader, llmLoader, null, Runnable::run, null, () -> now, lowRam);
+    }
+
+    // ========================================================================
+    // LOADING TESTS
+    // ========================================================================
+
+    @Test
+    public void testLazyLoadOnFirstUse() {
+        ModelManager manager = create(false);
+        assertEquals(ModelManager.State.UNLOADED, manager.getState(ModelManager.Model.ASR));
+        assertEquals(0, asrLoader.loads);
+
+        manager.beginUse(ModelManager.Model.ASR);
+        assertTrue(manager.isLoaded(ModelManager.Model.ASR));
+        assertEquals(1, asrLoader.loads);
+        assertEquals(0, llmLoader.loads);
+
+        // Already loaded: no second load
+        manager.ensureLoaded(ModelManager.Model.ASR);
+        assertEquals(1, asrLoader.loads);
+        assertEquals(1, manager.getLoadCount(ModelManager.Model.ASR));
+        assertTrue(manager.getLastLoadTimeMs(ModelManager.Model.ASR) >= 0);
+    }
+
+    @Test
+    public void testFailedLoadReported() {
+        llmLoader.result = false;
+        ModelManager manager = create(false);
+        manager.ensureLoaded(ModelManager.Model.LLM);
+
+        assertEquals(ModelManager.State.FAILED, manager.getState(ModelManager.Model.LLM));
+        assertEquals(-1, manager.getLastLoadTimeMs(ModelManager.Model.LLM));
+    }
+
+    @Test
+    public void testListenerSeesLoadingThenLoaded() {
+        ModelManager manager = create(false);
+        StringBuilder events = new StringBuilder();
+        manager.addListener((model, state) -> events.append(model).append(':').append(state).append(' '));
+
+        manager.ensureLoaded(ModelManager.Model.ASR);
+        assertEquals("ASR:LOADING ASR:LOADED ", events.toString());
+    }
+
+    @Test
+    public void testQueuedBeforeLoadRuns() {
+        List<Runnable> tasks = new ArrayList<>();
+        ModelManager manager = new ModelManager(asrLoader, llmLoader, null, tasks::add, null, () -> now, false);
+
+        // Published on the requesting thread, before the loader thread runs
+        manager.ensureLoaded(ModelManager.Model.ASR);
+        assertEquals(1, asrLoader.queued);
+        assertEquals(0, asrLoader.loads);
+
+        // A second request while loading is not queued again
+        manager.ensureLoaded(ModelManager.Model.ASR);
+        assertEquals(1, asrLoader.queued);
+        assertEquals(1, tasks.size());
+    }
+
+    // ========================================================================
+    // UNLOAD TESTS
+    // ========================================================================
+
+    @Test
+    public void testTrimUnloadsLlmBeforeAsr() {
+        ModelManager manager = create(false);
+        manager.ensureLoaded(ModelManager.Model.ASR);
+        manager.ensureLoaded(ModelManager.Model.LLM);
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertFalse(manager.isLoaded(ModelManager.Model.LLM));
+        assertTrue(manager.isLoaded(ModelManager.Model.ASR));
+        assertEquals(1, llmLoader.unloads);
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertFalse(manager.isLoaded(ModelManager.Model.ASR));
+        assertEquals(1, manager.getUnloadCount(ModelManager.Model.ASR));
+    }
+
+    @Test
+    public void testUiHiddenOnlyUnloadsOnLowRamDevices() {
+        ModelManager normal = create(false);
+        normal.ensureLoaded(ModelManager.Model.LLM);
+        normal.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertTrue(normal.isLoaded(ModelManager.Model.LLM));
+
+        ModelManager lowRam = create(true);
+        lowRam.ensureLoaded(ModelManager.Model.LLM);
+        lowRam.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertFalse(lowRam.isLoaded(ModelManager.Model.LLM));
+    }
+
+    @Test
+    public void testInUseModelIsNotUnloaded() {
+        ModelManager manager = create(false);
+        manager.beginUse(ModelManager.Model.ASR);
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertTrue(manager.isLoaded(ModelManager.Model.ASR));
+        assertEquals(0, asrLoader.unloads);
+
+        manager.endUse(ModelManager.Model.ASR);
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertFalse(manager.isLoaded(ModelManager.Model.ASR));
+    }
+
+    @Test
+    public void testIdleTimeoutUnloads() {
+        ModelManager manager = create(false);
+        manager.beginUse(ModelManager.Model.ASR);
+        manager.beginUse(ModelManager.Model.LLM);
+        manager.endUse(ModelManager.Model.ASR);
+        manager.endUse(ModelManager.Model.LLM);
+
+        manager.checkIdle(now + ModelManager.LLM_IDLE_TIMEOUT_MS - 1);
+        assertTrue(manager.isLoaded(ModelManager.Model.LLM));
+
+        manager.checkIdle(now + ModelManager.LLM_IDLE_TIMEOUT_MS);
+        assertFalse(manager.isLoaded(ModelManager.Model.LLM));
+        assertTrue(manager.isLoaded(ModelManager.Model.ASR));
+
+        manager.checkIdle(now + ModelManager.ASR_IDLE_TIMEOUT_MS);
+        assertFalse(manager.isLoaded(ModelManager.Model.ASR));
+    }
+
+    @Test
+    public void testReloadAfterUnload() {
+        ModelManager manager = create(false);
+        manager.ensureLoaded(ModelManager.Model.LLM);
+        manager.unload(ModelManager.Model.LLM);
+        manager.beginUse(ModelManager.Model.LLM);
+
+        assertTrue(manager.isLoaded(ModelManager.Model.LLM));
+        assertEquals(2, llmLoader.loads);
+        assertEquals(2, manager.getLoadCount(ModelManager.Model.LLM));
+    }
+}
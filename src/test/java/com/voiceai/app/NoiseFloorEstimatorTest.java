@@ -0,0 +1,76 @@
+package com.voiceai.app;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for NoiseFloorEstimator
+ */
+public class NoiseFloorEstimatorTest {
+
+    private static float db(float rms) {
+        return NoiseFloorEstimator.toDb(rms);
+    }
+
+    @Test
+    public void testStartsAtPrior() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        assertEquals(db(NoiseFloorEstimator.DEFAULT_FLOOR_RMS), estimator.getFloorDb(), 1.0f);
+        assertFalse(estimator.isWarmedUp());
+
+        estimator.reset(0.01f);
+        assertEquals(-40f, estimator.getFloorDb(), 1.0f);
+        assertEquals(0, estimator.getFrameCount());
+    }
+
+    @Test
+    public void testTracksAmbientDespiteSpeech() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        // 1s of -40 dB room noise, then speech bursts with short pauses
+        for (int i = 0; i < 50; i++) {
+            estimator.update(0.01f);
+        }
+        for (int i = 0; i < 200; i++) {
+            estimator.update(i % 8 < 6 ? 0.1f : 0.01f);
+        }
+
+        assertTrue(estimator.isWarmedUp());
+        assertEquals(-40f, estimator.getFloorDb(), 1.0f);
+    }
+
+    @Test
+    public void testPriorHoldsWhileSpeakingImmediately() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        estimator.reset(0.001f);
+        // Talking from the first frame must not be mistaken for ambient
+        for (int i = 0; i < 20; i++) {
+            estimator.update(0.1f);
+        }
+        assertEquals(-60f, estimator.getFloorDb(), 1.0f);
+    }
+
+    @Test
+    public void testAdaptsWhenRoomGetsNoisier() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        for (int i = 0; i < 100; i++) {
+            estimator.update(0.0005f);
+        }
+        assertTrue(estimator.getFloorDb() < -60f);
+
+        for (int i = 0; i < 1000; i++) {
+            estimator.update(0.02f);
+        }
+        assertEquals(-34f, estimator.getFloorDb(), 1.0f);
+    }
+
+    @Test
+    public void testClampsExtremes() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        estimator.reset(0f);
+        assertEquals(NoiseFloorEstimator.MIN_DB + 1, estimator.getFloorDb(), 0.01f);
+        for (int i = 0; i < 2000; i++) {
+            estimator.update(2f);
+        }
+        assertEquals(NoiseFloorEstimator.MAX_DB, estimator.getFloorDb(), 0.01f);
+    }
+}
@@ -0,0 +1,286 @@
+package com.voiceai.app;
+
+import android.content.SharedPreferences;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for SettingsSnapshot
+ * Uses an in-memory SharedPreferences that notifies listeners on apply()
+ */
+public class SettingsSnapshotTest {
+
+    private static class MemoryPreferences implements SharedPreferences {
+        final Map<String, Object> values = new HashMap<>();
+        final List<OnSharedPreferenceChangeListener> listeners = new ArrayList<>();
+        int reads;
+
+        @Override
+        public String getString(String k, String d) {
+            reads++;
+            return values.containsKey(k) ? (String) values.get(k) : d;
+        }
+
+        @Override
+        public boolean getBoolean(String k, boolean d) {
+            reads++;
+            return values.containsKey(k) ? (Boolean) values.get(k) : d;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String k, Set<String> d) {
+            reads++;
+            return values.containsKey(k) ? (Set<String>) values.get(k) : d;
+        }
+
+        @Override
+        public int getInt(String k, int d) {
+            return values.containsKey(k) ? (Integer) values.get(k) : d;
+        }
+
+        @Override
+        public long getLong(String k, long d) {
+            return values.containsKey(k) ? (Long) values.get(k) : d;
+        }
+
+        @Override
+        public float getFloat(String k, float d) {
+            return values.containsKey(k) ? (Float) values.get(k) : d;
+        }
+
+        @Override
+        public boolean contains(String k) {
+            return values.containsKey(k);
+        }
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener l) {
+            listeners.add(l);
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener l) {
+            listeners.remove(l);
+        }
+
+        @Override
+        public Editor edit() {
+            return new Editor() {
+                final Map<String, Object> pending = new HashMap<>();
+                boolean clear;
+
+                @Override
+                public Editor putString(String k, String v) {
+                    pending.put(k, v);
+                    return this;
+                }
+
+                @Override
+                public Editor putStringSet(String k, Set<String> v) {
+                    pending.put(k, v == null ? null : new HashSet<>(v));
+                    return this;
+                }
+
+                @Override
+                public Editor putBoolean(String k, boolean v) {
+                    pending.put(k, v);
+                    return this;
+                }
+
+                @Override
+                public Editor putInt(String k, int v) {
+                    pending.put(k, v);
+                    return this;
+                }
+
+                @Override
+                public Editor putLong(String k, long v) {
+                    pending.put(k, v);
+                    return this;
+                }
+
+                @Override
+                public Editor putFloat(String k, float v) {
+                    pending.put(k, v);
+                    return this;
+                }
+
+                @Override
+                public Editor remove(String k) {
+                    pending.put(k, null);
+                    return this;
+                }
+
+                @Override
+                public Editor clear() {
+                    clear = true;
+                    return this;
+                }
+
+                @Override
+                public void apply() {
+                    commit();
+                }
+
+                @Override
+                public boolean commit() {
+                    // Like the platform, clear() runs before this editor's puts
+                    Set<String> changed = new HashSet<>(pending.keySet());
+                    if (clear) {
+                        changed.addAll(values.keySet());
+                        values.clear();
+                        clear = false;
+                    }
+                    for (Map.Entry<String, Object> e : pending.entrySet()) {
+                        if (e.getValue() == null) {
+                            values.remove(e.getKey());
+                        } else {
+                            values.put(e.getKey(), e.getValue());
+                        }
+                    }
+                    pending.clear();
+                    for (OnSharedPreferenceChangeListener l : listeners) {
+                        for (String key : changed) {
+                            l.onSharedPreferenceChanged(MemoryPreferences.this, key);
+                        }
+                    }
+                    return true;
+                }
+            };
+        }
+    }
+
+    private static DictionaryStore emptyStore() throws Exception {
+        File dir = Files.createTempDirectory("dictionary").toFile();
+        dir.deleteOnExit();
+        return new DictionaryStore(dir, Runnable::run);
+    }
+
+    private static File missingModelFile() throws Exception {
+        File file = File.createTempFile("model", ".gguf");
+        assertTrue(file.delete());
+        return file;
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+        SettingsSnapshot.Source source = new SettingsSnapshot.Source(new MemoryPreferences(), missingModelFile(), emptyStore());
+        SettingsSnapshot settings = source.get();
+
+        assertTrue(settings.isTimeLimitEnabled());
+        assertTrue(settings.isAutoStopOnSilence());
+        assertFalse(settings.hasGroqApiKey());
+        assertFalse(settings.isOfflineModelReady());
+        assertTrue(settings.getDictionaryWords().isEmpty());
+        assertNotNull(settings.getProcessingContext());
+    }
+
+    @Test
+    public void testLegacyDictionaryMigratedOnce() throws Exception {
+        MemoryPreferences prefs = new MemoryPreferences();
+        prefs.values.put(SettingsActivity.PREF_PERSONAL_DICT, " Groq, ,@Anthropic ,ChatGPT,");
+        DictionaryStore store = emptyStore();
+        SettingsSnapshot.Source source = new SettingsSnapshot.Source(prefs, missingModelFile(), store);
+
+        store.migrateLegacy(prefs);
+        assertFalse("legacy key removed once stored", prefs.contains(SettingsActivity.PREF_PERSONAL_DICT));
+
+        SettingsSnapshot settings = source.get();
+        assertEquals(Arrays.asList("@Anthropic", "ChatGPT", "Groq"), new ArrayList<>(settings.getDictionaryWords()));
+        assertEquals("ChatGPT", settings.getPersonalDictionary().get("chatgpt"));
+        assertEquals("@Anthropic", settings.getProcessingContext().getVocabulary().lookup("at anthropic"));
+
+        // Further utterances reuse the snapshot without touching preferences
+        int reads = prefs.reads;
+        for (int i = 0; i < 100; i++) {
+            assertSame(settings, source.get());
+        }
+        assertEquals(reads, prefs.reads);
+
+        // Dictionary edits rebuild the snapshot too, with a new version
+        store.put(DictionaryStore.Entry.of("Qwen"));
+        SettingsSnapshot edited = source.get();
+        assertEquals("Qwen", edited.getProcessingContext().getVocabulary().lookup("qwen"));
+        assertNotEquals(settings.getVersion(), edited.getVersion());
+    }
+
+    @Test
+    public void testDictionaryLoadedLater() throws Exception {
+        SettingsSnapshot.Source source = new SettingsSnapshot.Source(new MemoryPreferences(), missingModelFile(), null);
+        SettingsSnapshot before = source.get();
+        assertTrue(before.getDictionaryWords().isEmpty());
+        assertSame(before, source.get());
+
+        DictionaryStore store = emptyStore();
+        store.put(DictionaryStore.Entry.of("ChatGPT"));
+        source.setDictionary(store);
+
+        SettingsSnapshot after = source.get();
+        assertNotEquals(before.getVersion(), after.getVersion());
+        assertEquals("ChatGPT", after.getPersonalDictionary().get("chatgpt"));
+        assertSame(after, source.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsImmutable() throws Exception {
+        SettingsSnapshot.Source source = new SettingsSnapshot.Source(new MemoryPreferences(), missingModelFile(), emptyStore());
+        source.get().getProcessingContext().getPersonalDictionary().put("x", "X");
+    }
+
+    @Test
+    public void testPreferenceChangeRebuilds() throws Exception {
+        MemoryPreferences prefs = new MemoryPreferences();
+        SettingsSnapshot.Source source = new SettingsSnapshot.Source(prefs, missingModelFile(), emptyStore());
+        SettingsSnapshot before = source.get();
+
+        prefs.edit()
+                .putBoolean(SettingsActivity.PREF_AUTO_SILENCE, false)
+                .putString(SettingsActivity.PREF_GROQ_API_KEY, " gsk_test ")
+                .apply();
+
+        SettingsSnapshot after = source.get();
+        assertNotSame(before, after);
+        assertTrue(after.getVersion() > before.getVersion());
+        assertFalse(after.isAutoStopOnSilence());
+        assertEquals("gsk_test", after.getGroqApiKey());
+        // The old snapshot is unchanged
+        assertTrue(before.isAutoStopOnSilence());
+        assertSame(after, source.get());
+    }
+
+    @Test
+    public void testModelFileNeedsInvalidate() throws Exception {
+        MemoryPreferences prefs = new MemoryPreferences();
+        prefs.values.put(SettingsActivity.PREF_OFFLINE_LLM, true);
+        File model = missingModelFile();
+        SettingsSnapshot.Source source = new SettingsSnapshot.Source(prefs, model, emptyStore());
+
+        assertTrue(source.get().isOfflineLlmEnabled());
+        assertFalse(source.get().isOfflineModelReady());
+
+        assertTrue(model.createNewFile());
+        try {
+            // No file check on the hot path until invalidated
+            assertFalse(source.get().isOfflineModelReady());
+            source.invalidate();
+            assertTrue(source.get().isOfflineModelReady());
+        } finally {
+            model.delete();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.voiceai.app;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for VoiceActivityDetector
+ * Time advances by FRAME_MS per fed frame
+ */
+public class VoiceActivityDetectorTest {
+
+    private static final float SPEECH_RMS = 0.05f;
+    private static final float SPEECH_ZCR = 0.08f;
+    private static final float SILENCE_RMS = 0.0005f;
+    private static final float SILENCE_ZCR = 0.3f;
+
+    private StringBuilder events;
+    private VoiceActivityDetector vad;
+
+    @Before
+    public void setUp() {
+        events = new StringBuilder();
+        vad = new VoiceActivityDetector(new VoiceActivityDetector.Listener() {
+            @Override
+            public void onSpeechStart(long timeMs) {
+                events.append("start@").append(timeMs).append(' ');
+            }
+
+            @Override
+            public void onSpeechEnd(long timeMs) {
+                events.append("end@").append(timeMs).append(' ');
+            }
+
+            @Override
+            public void onNoSpeech(long timeMs) {
+                events.append("none@").append(timeMs).append(' ');
+            }
+        }, 500, 2000);
+    }
+
+    private void feed(int frames, float rms, float zcr) {
+        for (int i = 0; i < frames; i++) {
+            vad.processFrame(rms, zcr);
+        }
+    }
+
+    @Test
+    public void testSpeechStartAndEndAfterHangover() {
+        feed(5, SILENCE_RMS, SILENCE_ZCR);
+        feed(10, SPEECH_RMS, SPEECH_ZCR);
+        assertTrue(vad.isInSpeech());
+        // Onset is dated to the first speech frame (frame 6 → 120ms)
+        assertEquals("start@120 ", events.toString());
+
+        feed(24, SILENCE_RMS, SILENCE_ZCR);
+        assertTrue("still within 500ms hangover", vad.isInSpeech());
+        feed(1, SILENCE_RMS, SILENCE_ZCR);
+        assertFalse(vad.isInSpeech());
+        assertEquals("start@120 end@800 ", events.toString());
+    }
+
+    @Test
+    public void testClickDoesNotStartSpeech() {
+        feed(VoiceActivityDetector.ATTACK_FRAMES - 1, SPEECH_RMS, SPEECH_ZCR);
+        feed(5, SILENCE_RMS, SILENCE_ZCR);
+        assertFalse(vad.hasHeardSpeech());
+        assertEquals("", events.toString());
+    }
+
+    @Test
+    public void testLowFrequencyHumIsNotSpeech() {
+        feed(50, SPEECH_RMS, 0.005f);
+        assertFalse(vad.hasHeardSpeech());
+    }
+
+    @Test
+    public void testHysteresisKeepsSpeechThroughDips() {
+        feed(5, SPEECH_RMS, SPEECH_ZCR);
+        // Below the entry threshold but above the keep threshold
+        float dip = VoiceActivityDetector.DEFAULT_SPEECH_RMS * 0.8f;
+        feed(40, dip, SPEECH_ZCR);
+        assertTrue(vad.isInSpeech());
+        assertEquals(0, vad.getSilenceMs());
+
+        // The same level cannot start speech from silence
+        vad.reset(500, 2000);
+        feed(40, dip, SPEECH_ZCR);
+        assertFalse(vad.hasHeardSpeech());
+    }
+
+    @Test
+    public void testFricativesKeepSpeechAlive() {
+        feed(5, SPEECH_RMS, SPEECH_ZCR);
+        float quiet = VoiceActivityDetector.DEFAULT_SPEECH_RMS * 0.4f;
+        feed(40, quiet, 0.4f);
+        assertTrue(vad.isInSpeech());
+    }
+
+    @Test
+    public void testNoSpeechReportedOnceAfterLeadingSilence() {
+        feed(99, SILENCE_RMS, SILENCE_ZCR);
+        assertEquals("", events.toString());
+        feed(50, SILENCE_RMS, SILENCE_ZCR);
+        assertEquals("none@2000 ", events.toString());
+    }
+
+    @Test
+    public void testNoisyRoomEndsWithAdaptiveThreshold() {
+        // -40 dB broadband noise is above the fixed threshold: never "silent"
+        float noise = 0.01f;
+        feed(20, SPEECH_RMS, SPEECH_ZCR);
+        feed(100, noise, 0.5f);
+        assertTrue(vad.isInSpeech());
+
+        vad.setNoiseFloorEstimator(new NoiseFloorEstimator());
+        vad.reset(500, 5000);
+        events.setLength(0);
+        // Noise may look like an onset while the floor adapts, but is then dropped
+        feed(60, noise, 0.5f);
+        assertTrue(vad.getSpeechRms() > noise);
+        assertFalse(vad.isInSpeech());
+        assertFalse(vad.hasHeardSpeech());
+        assertFalse(events.toString().contains("end@"));
+
+        feed(20, 0.08f, SPEECH_ZCR);
+        assertTrue(vad.isInSpeech());
+        feed(25, noise, 0.5f);
+        assertFalse(vad.isInSpeech());
+        assertTrue(events.toString().endsWith("start@1220 end@2100 "));
+    }
+
+    @Test
+    public void testRejectedNoiseStillReportsNoSpeech() {
+        vad.setNoiseFloorEstimator(new NoiseFloorEstimator());
+        feed(150, 0.01f, 0.5f);
+        assertTrue(events.toString().endsWith("none@2000 "));
+    }
+
+    @Test
+    public void testQuietRoomDetectsSoftSpeech() {
+        // Below the fixed threshold, but well above a quiet room's floor
+        float soft = VoiceActivityDetector.DEFAULT_SPEECH_RMS * 0.6f;
+        vad.setNoiseFloorEstimator(new NoiseFloorEstimator());
+        feed(30, 0.0002f, SILENCE_ZCR);
+        feed(5, soft, SPEECH_ZCR);
+        assertTrue(vad.hasHeardSpeech());
+        assertEquals(VoiceActivityDetector.MIN_SPEECH_RMS, vad.getSpeechRms(), 1e-6f);
+    }
+
+    @Test
+    public void testResetStartsNewSession() {
+        feed(5, SPEECH_RMS, SPEECH_ZCR);
+        vad.reset(500, 2000);
+        assertFalse(vad.isInSpeech());
+        assertFalse(vad.hasHeardSpeech());
+
+        feed(3, SPEECH_RMS, SPEECH_ZCR);
+        assertTrue(events.toString().endsWith("start@20 "));
+    }
+}
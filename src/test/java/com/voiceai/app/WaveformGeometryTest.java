@@ -0,0 +1,123 @@
+package com.voiceai.app;
+
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for WaveformGeometry (the plain-Java half of WaveformRenderer)
+ * Allocation is measured with the HotSpot per-thread allocation counter
+ */
+public class WaveformGeometryTest {
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Steps like SoundWaveView and computes every point a redraw would use
+    private static float frames(WaveformGeometry geometry, int count) {
+        float sum = 0;
+        for (int i = 0; i < count; i++) {
+            geometry.setLevel((i % 10) / 10f);
+            if (geometry.step()) {
+                for (int p = 0; p < WaveformGeometry.POINTS; p++) {
+                    sum += geometry.x(p) + geometry.y(p, 1f) + geometry.y(p, -1f);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void testSteadyStateFramesDoNotAllocate() {
+        WaveformGeometry geometry = new WaveformGeometry();
+        geometry.setSize(780, 240);
+
+        // Warm up (class init, JIT)
+        frames(geometry, 20000);
+
+        long overhead = allocatedBytes();
+        overhead = allocatedBytes() - overhead;
+
+        long before = allocatedBytes();
+        frames(geometry, 1000);
+        long allocated = allocatedBytes() - before - overhead;
+
+        assertTrue("frames allocated " + allocated + " bytes", allocated <= 0);
+    }
+
+    @Test
+    public void testPointPositions() {
+        WaveformGeometry geometry = new WaveformGeometry();
+        assertTrue(geometry.setSize(310, 200));
+        assertFalse("same size is not a change", geometry.setSize(310, 200));
+        geometry.setLevel(1.0f);
+        geometry.step();
+
+        // Points span the full width
+        assertEquals(0f, geometry.x(0), 0f);
+        assertEquals(10f, geometry.segmentWidth(), 1e-4f);
+        assertEquals(310f, geometry.x(WaveformGeometry.POINTS - 1), 1e-3f);
+
+        float maxOffset = 200 * WaveformGeometry.MAX_AMPLITUDE * 1.1f;
+        for (int i = 0; i < WaveformGeometry.POINTS; i++) {
+            float up = geometry.y(i, 1f);
+            float down = geometry.y(i, -1f);
+            // Mirror is symmetric about the center line
+            assertEquals(100f, (up + down) / 2, 1e-3f);
+            assertTrue("point " + i + " within the peak", Math.abs(up - 100f) <= maxOffset);
+        }
+    }
+
+    @Test
+    public void testRingKeepsNewestFirst() {
+        WaveformGeometry geometry = new WaveformGeometry();
+        geometry.setLevel(0.5f);
+        geometry.step();
+        geometry.setLevel(1.0f);
+        geometry.step();
+
+        // Newest point carries the latest level (± animation variation)
+        assertEquals(1.0f, geometry.amplitudeAt(0), 0.11f);
+        assertEquals(0.5f, geometry.amplitudeAt(1), 0.11f);
+        // Older points are still the initial amplitude
+        assertEquals(0.1f, geometry.amplitudeAt(5), 0.001f);
+    }
+
+    @Test
+    public void testSteadyLevelThrottlesRedraws() {
+        WaveformGeometry geometry = new WaveformGeometry();
+        geometry.setLevel(0.3f);
+
+        int redraws = 0;
+        for (int i = 0; i < WaveformGeometry.POINTS; i++) {
+            if (geometry.step()) {
+                redraws++;
+            }
+        }
+        assertEquals("every step while the change scrolls across", WaveformGeometry.POINTS, redraws);
+
+        redraws = 0;
+        for (int i = 0; i < 100; i++) {
+            if (geometry.step()) {
+                redraws++;
+            }
+        }
+        assertEquals(100 / WaveformGeometry.IDLE_REDRAW_DIVISOR, redraws);
+
+        geometry.setLevel(0.8f);
+        assertTrue("level change redraws immediately", geometry.step());
+    }
+
+    @Test
+    public void testNothingDrawnBeforeLayout() {
+        WaveformGeometry geometry = new WaveformGeometry();
+        geometry.step();
+        assertFalse(geometry.hasSize());
+        geometry.setSize(100, 0);
+        assertFalse(geometry.hasSize());
+        geometry.setSize(100, 40);
+        assertTrue(geometry.hasSize());
+    }
+}
@@ -0,0 +1,155 @@
+package com.voiceai.app.processing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Unit tests for BatchProcessor
+ * Small windows and batches force lines across mapping and batch boundaries
+ */
+public class BatchProcessorTest {
+
+    private Path input;
+
+    @Before
+    public void setUp() throws IOException {
+        input = Files.createTempFile("batch", ".txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    private String[] run(BatchProcessor processor, String content) throws Exception {
+        Files.write(input, content.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        processor.run(input, out);
+        String result = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        return result.isEmpty() ? new String[0] : result.split("\n", -1);
+    }
+
+    // ========================================================================
+    // LINE READER TESTS
+    // ========================================================================
+
+    @Test
+    public void testLinesSpanningWindows() throws Exception {
+        Files.write(input, "first line\r\nsecond ünïcode line\n\nlast without newline"
+                .getBytes(StandardCharsets.UTF_8));
+
+        try (BatchProcessor.LineReader reader = new BatchProcessor.LineReader(input, 5, 1024)) {
+            assertEquals("first line", reader.readLine());
+            assertEquals("second ünïcode line", reader.readLine());
+            assertEquals("", reader.readLine());
+            assertEquals("last without newline", reader.readLine());
+            assertNull(reader.readLine());
+            assertEquals(Files.size(input), reader.getBytesRead());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOverlongLineRejected() throws Exception {
+        Files.write(input, "0123456789abcdef\n".getBytes(StandardCharsets.UTF_8));
+        try (BatchProcessor.LineReader reader = new BatchProcessor.LineReader(input, 4, 8)) {
+            reader.readLine();
+        }
+    }
+
+    // ========================================================================
+    // PROCESSING TESTS
+    // ========================================================================
+
+    @Test
+    public void testOutputOrderPreservedAcrossThreads() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("um item ").append(i).append('\n');
+        }
+        BatchProcessor processor = BatchProcessor.builder(VoiceAIPipeline.createMinimal())
+                .threads(4)
+                .batchSize(7)
+                .windowBytes(64)
+                .build();
+
+        String[] lines = run(processor, content.toString());
+        // Trailing newline leaves one empty element
+        assertEquals(501, lines.length);
+        for (int i = 0; i < 500; i++) {
+            assertTrue("line " + i + ": " + lines[i], lines[i].endsWith(" " + i));
+            assertFalse(lines[i].toLowerCase().contains("um "));
+        }
+    }
+
+    @Test
+    public void testNdjsonAddsProcessedField() throws Exception {
+        BatchProcessor processor = BatchProcessor.builder(VoiceAIPipeline.createMinimal())
+                .format(BatchProcessor.Format.NDJSON)
+                .threads(2)
+                .build();
+
+        String[] lines = run(processor,
+                "{\"id\":1,\"meta\":{\"text\":\"nested\"},\"text\":\"um hello \\\"there\\\"\"}\n"
+                        + "not json\n"
+                        + "{\"id\":3}\n");
+
+        assertEquals("{\"id\":1,\"meta\":{\"text\":\"nested\"},\"text\":\"um hello \\\"there\\\"\","
+                + "\"processed\":\"Hello \\\"there\\\"\"}", lines[0]);
+        assertEquals("not json", lines[1]);
+        assertEquals("{\"id\":3}", lines[2]);
+    }
+
+    @Test
+    public void testStatsRecordStages() throws Exception {
+        BatchProcessor processor = BatchProcessor.builder(VoiceAIPipeline.createMinimal())
+                .threads(2)
+                .build();
+        Files.write(input, "uh one\ntwo two\n".getBytes(StandardCharsets.UTF_8));
+
+        BatchProcessor.Stats stats = processor.run(input, new ByteArrayOutputStream());
+        assertEquals(2, stats.getRecords());
+        assertEquals(Files.size(input), stats.getBytesRead());
+        assertTrue(stats.getStageNanos("FillerRemover") > 0);
+        assertTrue(stats.summary().contains("FillerRemover"));
+    }
+
+    // ========================================================================
+    // JSON TESTS
+    // ========================================================================
+
+    @Test
+    public void testJsonEscapesRoundTrip() {
+        String value = "tab\there \"quoted\" back\\slash é\nnew";
+        StringBuilder sb = new StringBuilder("{\"text\":");
+        BatchProcessor.Json.quote(sb, value);
+        sb.append('}');
+
+        assertEquals(value, BatchProcessor.Json.getString(sb.toString(), "text"));
+        assertEquals("A", BatchProcessor.Json.getString("{ \"text\" : \"\\u0041\" }", "text"));
+        assertNull(BatchProcessor.Json.getString("{\"text\":42}", "text"));
+        assertEquals("{\"processed\":\"x\"}", BatchProcessor.Json.putString("{}", "processed", "x"));
+    }
+
+    @Test
+    public void testJsonPutReplacesExistingField() {
+        // Re-processing an output file must not emit a second "processed" key
+        assertEquals("{\"text\":\"a\", \"processed\" : \"new\",\"id\":1}",
+                BatchProcessor.Json.putString("{\"text\":\"a\", \"processed\" : \"old \\\"x\\\"\",\"id\":1}",
+                        "processed", "new"));
+        assertEquals("{\"processed\":\"new\"}", BatchProcessor.Json.putString("{\"processed\":null}", "processed", "new"));
+        assertEquals("{\"meta\":{\"processed\":1},\"processed\":\"x\"}",
+                BatchProcessor.Json.putString("{\"meta\":{\"processed\":1}}", "processed", "x"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJsonRejectsTruncatedObject() {
+        BatchProcessor.Json.getString("{\"id\":1,\"text\":\"unterminated", "text");
+    }
+}
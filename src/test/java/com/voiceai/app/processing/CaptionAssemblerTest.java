@@ -0,0 +1,59 @@
+package com.voiceai.app.processing;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for CaptionAssembler
+ */
+public class CaptionAssemblerTest {
+
+    private final ProcessingContext context = ProcessingContext.builder().build();
+
+    @Test
+    public void testFragmentsJoinIntoSentence() {
+        CaptionAssembler assembler = new CaptionAssembler();
+        assertTrue(assembler.append("so the meeting", context));
+        assertTrue(assembler.append("starts at noon.", context));
+        assertTrue(assembler.append("bring the slides", context));
+        assertEquals("So the meeting starts at noon. Bring the slides", assembler.getCaption());
+    }
+
+    @Test
+    public void testFragmentsAreProcessed() {
+        CaptionAssembler assembler = new CaptionAssembler();
+        assembler.append("We need um", context);
+        assembler.append("twenty five chairs", context);
+        assertEquals("We need 25 chairs", assembler.getCaption());
+    }
+
+    @Test
+    public void testEmptyFragmentsIgnored() {
+        CaptionAssembler assembler = new CaptionAssembler();
+        assertFalse(assembler.append(null, context));
+        assertFalse(assembler.append("  ", context));
+        assertFalse(assembler.append("um", context));
+        assertTrue(assembler.isEmpty());
+    }
+
+    @Test
+    public void testPunctuationAttaches() {
+        CaptionAssembler assembler = new CaptionAssembler();
+        assembler.append("Hello there", context);
+        assembler.append(", friend", context);
+        assertEquals("Hello there, friend", assembler.getCaption());
+    }
+
+    @Test
+    public void testTrimmedAtWordBoundary() {
+        CaptionAssembler assembler = new CaptionAssembler(VoiceAIPipeline.createLive(), 20);
+        assembler.append("alpha bravo charlie", context);
+        assembler.append("delta echo", context);
+        String caption = assembler.getCaption();
+        assertTrue(caption.length() <= 20);
+        assertEquals("charlie delta echo", caption);
+
+        assembler.clear();
+        assertEquals("", assembler.getCaption());
+    }
+}
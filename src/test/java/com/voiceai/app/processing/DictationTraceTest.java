@@ -0,0 +1,105 @@
+package com.voiceai.app.processing;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.List;
+
+/**
+ * Unit tests for DictationTrace
+ * The ring is process-wide, so each test reads only its own trace
+ */
+public class DictationTraceTest {
+
+    @Before
+    public void setUp() {
+        DictationTrace.clear();
+    }
+
+    @Test
+    public void testBeginRecordsStartAndNewIds() {
+        long a = DictationTrace.begin("startRecording");
+        long b = DictationTrace.begin("startRecording");
+        assertNotEquals(0, a);
+        assertNotEquals(a, b);
+        List<DictationTrace.Event> events = DictationTrace.snapshot(a);
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).isInstant());
+        assertEquals("startRecording", events.get(0).name);
+    }
+
+    @Test
+    public void testUntracedRecordsNothing() {
+        long before = DictationTrace.getRecordedCount();
+        DictationTrace.span(0, DictationTrace.CAT_ASR, "decode", 0, 10, null);
+        DictationTrace.instant(0, DictationTrace.CAT_INJECT, "clipboard fallback");
+        assertEquals(before, DictationTrace.getRecordedCount());
+    }
+
+    @Test
+    public void testSpansOrderedByStart() {
+        long trace = DictationTrace.begin("startRecording");
+        long now = DictationTrace.now();
+        DictationTrace.span(trace, DictationTrace.CAT_ASR, "decode", now + 2000, now + 5000, "1.0s audio");
+        DictationTrace.span(trace, DictationTrace.CAT_ASR, "engine queue", now + 1000, now + 2000, null);
+        List<DictationTrace.Event> events = DictationTrace.snapshot(trace);
+        assertEquals(3, events.size());
+        assertEquals("engine queue", events.get(1).name);
+        assertEquals("decode", events.get(2).name);
+        assertEquals(3000, events.get(2).durationNanos);
+        assertEquals("1.0s audio", events.get(2).detail);
+    }
+
+    @Test
+    public void testRingKeepsNewestEvents() {
+        long trace = DictationTrace.begin("startRecording");
+        for (int i = 0; i < DictationTrace.CAPACITY + 10; i++) {
+            DictationTrace.span(trace, DictationTrace.CAT_PIPELINE, "stage" + i, i, i + 1, null);
+        }
+        List<DictationTrace.Event> events = DictationTrace.snapshot(trace);
+        assertEquals(DictationTrace.CAPACITY, events.size());
+        assertEquals("stage" + (DictationTrace.CAPACITY + 9), events.get(events.size() - 1).name);
+    }
+
+    @Test
+    public void testPipelineStagesTraced() {
+        long trace = DictationTrace.begin("startRecording");
+        ProcessingContext context = ProcessingContext.builder().traceId(trace).build();
+        VoiceAIPipeline.create().process("um so we need twenty five chairs", context);
+
+        List<DictationTrace.Event> events = DictationTrace.snapshot(trace);
+        int stages = 0;
+        boolean total = false;
+        for (DictationTrace.Event e : events) {
+            if (DictationTrace.CAT_PIPELINE.equals(e.category)) {
+                stages++;
+                total |= e.name.endsWith("Pipeline");
+            }
+        }
+        assertTrue(total);
+        assertTrue(stages > 2);
+        // Carried over when utterance data is attached
+        assertEquals(trace, context.toBuilder().build().getTraceId());
+    }
+
+    @Test
+    public void testChromeJson() throws Exception {
+        long trace = DictationTrace.begin("startRecording");
+        DictationTrace.span(trace, DictationTrace.CAT_INJECT, "PASTE", 1234567, 2234567, "say \"hi\"");
+        StringWriter out = new StringWriter();
+        DictationTrace.writeChromeJson(DictationTrace.snapshot(trace), out);
+        String json = out.toString();
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.endsWith("]}"));
+        assertTrue(json.contains("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":" + trace
+                + ",\"args\":{\"name\":\"dictation " + trace + "\"}}"));
+        assertTrue(json.contains("\"thread_name\""));
+        assertTrue(json.contains("{\"name\":\"PASTE\",\"cat\":\"inject\",\"ph\":\"X\",\"dur\":1000.000,"
+                + "\"ts\":1234.567,\"pid\":" + trace));
+        assertTrue(json.contains("\"args\":{\"detail\":\"say \\\"hi\\\"\"}"));
+        assertTrue(json.contains("{\"name\":\"startRecording\",\"cat\":\"capture\",\"ph\":\"i\",\"s\":\"t\""));
+    }
+}
@@ -243,6 +243,22 @@ public class ProcessingPipelineTest {
         assertTrue("Should preserve 'OpenAI'", result.contains("OpenAI"));
     }
 
+    @Test
+    public void testStageTimerIsPerContext() {
+        Map<String, Long> first = new HashMap<>();
+        Map<String, Long> second = new HashMap<>();
+        ProcessingContext a = defaultContext.toBuilder().stageTimer(first::put).build();
+        ProcessingContext b = defaultContext.toBuilder().stageTimer(second::put).build();
+
+        // Same shared pipeline, separate utterances: no timings leak across
+        pipeline.process("um hello world", a);
+        assertFalse(first.isEmpty());
+        assertTrue(second.isEmpty());
+        pipeline.process("um hello world", b);
+        assertEquals(first.keySet(), second.keySet());
+        assertNull(defaultContext.getStageTimer());
+    }
+
     // ========================================================================
     // EDGE CASES
     // ========================================================================
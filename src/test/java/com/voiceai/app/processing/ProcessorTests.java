@@ -82,6 +82,316 @@ public class ProcessorTests {
         assertFalse("Model should not be loaded by default", processor.isModelLoaded());
     }
 
+    // ========================================================================
+    // EDIT OPERATIONS TESTS
+    // ========================================================================
+
+    @Test
+    public void testEditOperationsFormatInput() {
+        String[] tokens = EditOperations.tokenize("  um hello  world ");
+        assertEquals(3, tokens.length);
+        assertEquals("0:um 1:hello 2:world", EditOperations.formatInput(tokens));
+    }
+
+    @Test
+    public void testEditAndTextRequestsShareSystemPrompt() {
+        // The mode goes in the user message, after the shared (cached) prefix
+        String[] tokens = EditOperations.tokenize("um hello world");
+        assertEquals("EDITS\n0:um 1:hello 2:world", EditOperations.editRequest(tokens));
+        assertEquals("TEXT\num hello world", EditOperations.textRequest("um hello world"));
+        assertTrue(EditOperations.SYSTEM_PROMPT.contains("EDITS:"));
+        assertTrue(EditOperations.SYSTEM_PROMPT.contains("TEXT:"));
+    }
+
+    @Test
+    public void testEditOperationsApply() {
+        String[] tokens = EditOperations.tokenize("um i think its fine");
+        String result = EditOperations.apply(tokens, "D 0\nR 1 I\nR 3 it's\nI 5 .");
+        assertEquals("I think it's fine.", result);
+    }
+
+    @Test
+    public void testEditOperationsNoChange() {
+        String[] tokens = EditOperations.tokenize("Hello world.");
+        assertEquals("Hello world.", EditOperations.apply(tokens, "="));
+    }
+
+    @Test
+    public void testEditOperationsRejectsOutOfRange() {
+        String[] tokens = EditOperations.tokenize("hello world");
+        assertNull(EditOperations.apply(tokens, "D 2"));
+        assertNull(EditOperations.apply(tokens, "R -1 hi"));
+    }
+
+    @Test
+    public void testEditOperationsRejectsConflicts() {
+        String[] tokens = EditOperations.tokenize("hello world");
+        assertNull("Delete and replace of the same token",
+                EditOperations.apply(tokens, "D 0\nR 0 Hi"));
+        assertNull("No-change marker mixed with edits",
+                EditOperations.apply(tokens, "=\nD 1"));
+    }
+
+    @Test
+    public void testEditOperationsRejectsFullText() {
+        String[] tokens = EditOperations.tokenize("um hello world");
+        assertNull("Full-text answer is not an edit list",
+                EditOperations.apply(tokens, "Hello world."));
+        assertNull(EditOperations.apply(tokens, ""));
+    }
+
+    @Test
+    public void testEditOperationsOutputBudget() {
+        assertEquals(56, EditOperations.maxOutputTokens(10, 500));
+        assertEquals(500, EditOperations.maxOutputTokens(1000, 500));
+    }
+
+    // ========================================================================
+    // LLM GATE TESTS
+    // ========================================================================
+
+    /** Stand-in LLM that records calls and returns a fixed answer */
+    private static class FakeLLM implements TextProcessor {
+        final java.util.concurrent.atomic.AtomicInteger calls = new java.util.concurrent.atomic.AtomicInteger();
+        final java.util.concurrent.CountDownLatch called = new java.util.concurrent.CountDownLatch(1);
+
+        @Override
+        public String process(String text, ProcessingContext context) {
+            calls.incrementAndGet();
+            called.countDown();
+            return "polished";
+        }
+    }
+
+    @Test
+    public void testLLMGateSkipsCleanShortText() {
+        LLMGate.getStats().reset();
+        FakeLLM llm = new FakeLLM();
+        LLMGate gate = new LLMGate(llm);
+
+        assertEquals("Ok, thanks.", gate.process("Ok, thanks.", defaultContext));
+        assertEquals("LLM should not be called", 0, llm.calls.get());
+        assertEquals(1, LLMGate.getStats().getSkipped());
+        assertEquals(1.0f, LLMGate.getStats().getSkipRate(), 0.001f);
+    }
+
+    @Test
+    public void testLLMGateInvokesOnDisfluencies() {
+        LLMGate.getStats().reset();
+        FakeLLM llm = new FakeLLM();
+        LLMGate gate = new LLMGate(llm);
+
+        assertEquals("polished", gate.process("So um I think, you know, we should go.", defaultContext));
+        assertEquals(1, llm.calls.get());
+        assertEquals(1, LLMGate.getStats().getInvoked());
+    }
+
+    @Test
+    public void testLLMGateScoreHeuristics() {
+        assertEquals(0f, LLMGate.score("Sounds good."), 0.001f);
+        assertTrue("Missing apostrophes and lowercase i",
+                LLMGate.score("i dont think so.") >= LLMGate.DEFAULT_THRESHOLD);
+        assertTrue("Stutter", LLMGate.score("The the meeting is at noon.") >= LLMGate.DEFAULT_THRESHOLD);
+    }
+
+    @Test
+    public void testLLMGateShadowSampling() throws Exception {
+        LLMGate.getStats().reset();
+        FakeLLM llm = new FakeLLM();
+        LLMGate gate = new LLMGate(llm).setShadowSampleRate(1.0f);
+
+        assertEquals("Skipped text is returned unchanged",
+                "Ok, thanks.", gate.process("Ok, thanks.", defaultContext));
+        assertTrue("Shadow call should run in background",
+                llm.called.await(2, java.util.concurrent.TimeUnit.SECONDS));
+        assertEquals(1, LLMGate.getStats().getShadowSampled());
+    }
+
+    /** Context whose words carry the given ASR confidences */
+    private static ProcessingContext confidenceContext(String text, float... confidences) {
+        String[] words = text.split(" ");
+        java.nio.ByteBuffer payload = java.nio.ByteBuffer
+                .allocateDirect(Transcript.HEADER_BYTES + words.length * Transcript.WORD_BYTES)
+                .order(java.nio.ByteOrder.nativeOrder());
+        payload.putInt(Transcript.VERSION).putInt(words.length).putInt(0);
+        int pos = 0;
+        for (int i = 0; i < words.length; i++) {
+            payload.putInt(pos).putInt(pos + words[i].length()).putInt(0).putInt(0);
+            payload.putFloat(0.5f * i).putFloat(0.5f * i + 0.4f).putFloat(confidences[i]);
+            pos += words[i].length() + 1;
+        }
+        payload.flip();
+        Transcript transcript = new Transcript();
+        transcript.decode(text, payload);
+        return ProcessingContext.builder().transcript(transcript).build();
+    }
+
+    @Test
+    public void testLLMGateUsesWordConfidence() {
+        LLMGate.getStats().reset();
+        FakeLLM llm = new FakeLLM();
+        LLMGate gate = new LLMGate(llm);
+
+        assertEquals(0f, LLMGate.confidenceScore(defaultContext), 0.001f);
+        assertEquals("Ok, thanks.", gate.process("Ok, thanks.", confidenceContext("ok thanks", 0.9f, 0.95f)));
+        assertEquals(0, llm.calls.get());
+
+        // Clean text, but the recognizer was unsure of both words
+        assertEquals("polished", gate.process("Ok, thanks.", confidenceContext("ok thanks", 0.3f, 0.2f)));
+        assertEquals(1, llm.calls.get());
+    }
+
+    // ========================================================================
+    // PARAGRAPH SEGMENTER TESTS
+    // ========================================================================
+
+    /** Context with 0.3s words separated by the given pauses (gaps[i] follows word i) */
+    private static ProcessingContext timedContext(String rawText, double[] gaps) {
+        String[] words = rawText.split(" ");
+        double[] starts = new double[words.length];
+        double[] ends = new double[words.length];
+        double t = 0;
+        for (int i = 0; i < words.length; i++) {
+            starts[i] = t;
+            ends[i] = t + 0.3;
+            t = ends[i] + (i < gaps.length ? gaps[i] : 0.1);
+        }
+        return ProcessingContext.builder().wordTimings(words, starts, ends).build();
+    }
+
+    private static double[] evenGaps(int count, double gap) {
+        double[] gaps = new double[count];
+        java.util.Arrays.fill(gaps, gap);
+        return gaps;
+    }
+
+    @Test
+    public void testParagraphSegmenterWithoutTimingsIsNoOp() {
+        ParagraphSegmenter segmenter = new ParagraphSegmenter();
+        assertTrue(segmenter.shouldSkip(defaultContext));
+        assertEquals("Hello world.", segmenter.process("Hello world.", defaultContext));
+    }
+
+    @Test
+    public void testParagraphSegmenterBreaksOnLongPause() {
+        String raw = "um so we shipped the release yesterday and everything went fine for the whole team "
+                + "next week we start planning the roadmap";
+        double[] gaps = evenGaps(22, 0.12);
+        gaps[14] = 2.5; // after "team"
+        String processed = "So we shipped the release yesterday and everything went fine for the whole team "
+                + "next week we start planning the roadmap.";
+
+        String result = new ParagraphSegmenter().process(processed, timedContext(raw, gaps));
+        assertEquals("So we shipped the release yesterday and everything went fine for the whole team.\n\n"
+                + "Next week we start planning the roadmap.", result);
+    }
+
+    @Test
+    public void testParagraphSegmenterAlignsAcrossMergedNumbers() {
+        String raw = "i paid twenty five dollars then we left";
+        double[] gaps = evenGaps(7, 0.1);
+        gaps[4] = 0.9; // after "dollars"
+        String processed = "I paid $25 then we left.";
+
+        String result = new ParagraphSegmenter().process(processed, timedContext(raw, gaps));
+        assertEquals("I paid $25. Then we left.", result);
+    }
+
+    @Test
+    public void testParagraphSegmenterIgnoresHesitationAfterFunctionWord() {
+        String raw = "i want to go home now";
+        double[] gaps = evenGaps(5, 0.1);
+        gaps[2] = 0.9; // "to ... go"
+        String processed = "I want to go home now.";
+
+        assertEquals(processed, new ParagraphSegmenter().process(processed, timedContext(raw, gaps)));
+    }
+
+    @Test
+    public void testParagraphSegmenterKeepsMidSentencePause() {
+        String raw = "we reviewed every open ticket from the last sprint with the whole team "
+                + "and then we closed the ones that were done";
+        double[] gaps = evenGaps(22, 0.12);
+        gaps[13] = 2.5; // "team ... and"
+        String processed = "We reviewed every open ticket from the last sprint with the whole team "
+                + "and then we closed the ones that were done.";
+
+        // The next word continues the sentence: no period, no paragraph
+        assertEquals(processed, new ParagraphSegmenter().process(processed, timedContext(raw, gaps)));
+    }
+
+    @Test
+    public void testParagraphSegmenterKeepsExistingPunctuation() {
+        String raw = "we need three things for the launch on friday the press kit the demo video and the blog post";
+        double[] gaps = evenGaps(19, 0.12);
+        gaps[8] = 0.9; // after "friday"
+        gaps[11] = 2.5; // after "kit"
+        String processed = "We need three things for the launch on Friday: the press kit, the demo video and the blog post.";
+
+        // Pauses after "Friday:" and "kit," are already punctuated
+        assertEquals(processed, new ParagraphSegmenter().process(processed, timedContext(raw, gaps)));
+    }
+
+    @Test
+    public void testParagraphSegmenterKeepsSpokenNewLine() {
+        String raw = "hello there new line second row";
+        double[] gaps = evenGaps(5, 0.1);
+        ProcessingContext context = timedContext(raw, gaps);
+        String processed = new CommandInterpreter().process(raw, context);
+        assertTrue(processed.contains("\n"));
+
+        String result = new ParagraphSegmenter().process(processed, context);
+        assertEquals(processed, result);
+        assertEquals("Hello there\nsecond row.",
+                new ParagraphSegmenter().process("Hello there\nsecond row.", context));
+    }
+
+    @Test
+    public void testParagraphSegmenterNewLineOverridesPauseBreak() {
+        String raw = "first item new line then the second item";
+        double[] gaps = evenGaps(7, 0.1);
+        gaps[3] = 0.9; // "line ... then"
+        String processed = "First item\nthen the second item.";
+
+        assertEquals(processed, new ParagraphSegmenter().process(processed, timedContext(raw, gaps)));
+    }
+
+    @Test
+    public void testParagraphSegmenterAdaptsToSpeakingRate() {
+        String raw = "a b c d e f g h i j k l m n o p q r s t u";
+        double[] fast = evenGaps(20, 0.05);
+        double[] slow = evenGaps(20, 0.4);
+        fast[10] = 0.7;
+        slow[10] = 0.7;
+
+        ProcessingContext fastCtx = timedContext(raw, fast);
+        ProcessingContext slowCtx = timedContext(raw, slow);
+        int[] fastBreaks = ParagraphSegmenter.detectBreaks(fastCtx.getWordStartTimes(), fastCtx.getWordEndTimes());
+        int[] slowBreaks = ParagraphSegmenter.detectBreaks(slowCtx.getWordStartTimes(), slowCtx.getWordEndTimes());
+
+        // A 0.7s pause is a sentence break for a fast speaker but not a slow one
+        assertEquals(ParagraphSegmenter.BREAK_SENTENCE, fastBreaks[10]);
+        assertEquals(ParagraphSegmenter.BREAK_NONE, slowBreaks[10]);
+    }
+
+    @Test
+    public void testWordTimingsFromTimestampList() {
+        java.util.List<ProcessingContext.WordTimestamp> list = new java.util.ArrayList<>();
+        list.add(new ProcessingContext.WordTimestamp("hello", 0.0, 0.4));
+        list.add(new ProcessingContext.WordTimestamp("world", 0.5, 0.9));
+        ProcessingContext ctx = ProcessingContext.builder().timestamps(list).build();
+
+        assertTrue(ctx.hasWordTimings());
+        assertArrayEquals(new String[] { "hello", "world" }, ctx.getTimedWords());
+        assertEquals(0.5, ctx.getWordStartTimes()[1], 0.0001);
+        assertEquals(0.9, ctx.getWordEndTimes()[1], 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWordTimingsLengthMismatch() {
+        ProcessingContext.builder().wordTimings(new String[] { "a", "b" }, new double[] { 0 }, new double[] { 0.1 });
+    }
+
     // ========================================================================
     // COURSE CORRECTOR TESTS
     // ========================================================================
@@ -317,6 +627,52 @@ public class ProcessorTests {
         // Should clean up stuttering
     }
 
+    // ========================================================================
+    // PERSONAL DICTIONARY APPLICATOR TESTS
+    // ========================================================================
+
+    private static ProcessingContext dictionaryContext(String... words) {
+        java.util.Map<String, String> dict = new java.util.HashMap<>();
+        for (String word : words) {
+            dict.put(word.toLowerCase(), word);
+        }
+        return ProcessingContext.builder().personalDictionary(dict).build();
+    }
+
+    @Test
+    public void testPersonalDictionaryWholeWordsOnly() {
+        PersonalDictionaryApplicator processor = new PersonalDictionaryApplicator();
+        ProcessingContext ctx = dictionaryContext("Groq");
+
+        assertEquals("I like Groq's API, not groqish ones",
+                processor.process("I like groq's API, not groqish ones", ctx));
+    }
+
+    @Test
+    public void testPersonalDictionaryLongestPhraseWins() {
+        PersonalDictionaryApplicator processor = new PersonalDictionaryApplicator();
+        ProcessingContext ctx = dictionaryContext("New York", "New York Times", "Node.js");
+
+        assertEquals("read the New York Times in New York about Node.js",
+                processor.process("read the new  york times in new york about node.js", ctx));
+    }
+
+    @Test
+    public void testPersonalDictionaryAtMention() {
+        PersonalDictionaryApplicator processor = new PersonalDictionaryApplicator();
+        ProcessingContext ctx = dictionaryContext("@Groq");
+
+        assertEquals("ping @Groq today", processor.process("ping at groq today", ctx));
+    }
+
+    @Test
+    public void testVocabularyIsUsedWithoutCopy() {
+        Vocabulary vocabulary = Vocabulary.of(java.util.Collections.singletonMap("chat gpt", "ChatGPT"));
+        assertEquals("ChatGPT", vocabulary.lookup(Vocabulary.normalize(" Chat\tGPT ")));
+        assertEquals(2, vocabulary.getMaxPhraseWords());
+        assertNull(vocabulary.lookup("chat"));
+    }
+
     // ========================================================================
     // CASING APPLICATOR TESTS
     // ========================================================================
@@ -0,0 +1,203 @@
+package com.voiceai.app.processing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for TranscriptJournal
+ * Tiny segment sizes force rolling and retention
+ */
+public class TranscriptJournalTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static TranscriptJournal.Record record(long timestamp, String raw, String processed) {
+        return TranscriptJournal.Record.builder()
+                .timestamp(timestamp)
+                .variant("default")
+                .rawText(raw)
+                .processedText(processed)
+                .build();
+    }
+
+    private List<TranscriptJournal.Record> readAll(long sinceMs) throws IOException {
+        List<TranscriptJournal.Record> records = new ArrayList<>();
+        try (TranscriptJournal.Reader reader = TranscriptJournal.read(dir, sinceMs)) {
+            TranscriptJournal.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        TranscriptJournal.Record.Builder builder = TranscriptJournal.Record.builder()
+                .timestamp(1000)
+                .variant("offline")
+                .rawText("uh send it to ünïcode café")
+                .processedText("Send it to ünïcode café.")
+                .totalNanos(42_000)
+                .wordTimings(new String[] { "send", "it" }, new double[] { 0.1, 0.5 }, new double[] { 0.4, 0.7 });
+        builder.record("FillerRemover", 1200);
+        builder.record("CasingApplicator", 800);
+
+        try (TranscriptJournal journal = TranscriptJournal.open(dir)) {
+            assertTrue(journal.append(builder.build()));
+        }
+
+        List<TranscriptJournal.Record> records = readAll(Long.MIN_VALUE);
+        assertEquals(1, records.size());
+        TranscriptJournal.Record record = records.get(0);
+        assertEquals(1000, record.timestampMs);
+        assertEquals("offline", record.variant);
+        assertEquals("uh send it to ünïcode café", record.rawText);
+        assertEquals("Send it to ünïcode café.", record.processedText);
+        assertEquals(42_000, record.totalNanos);
+        assertArrayEquals(new String[] { "send", "it" }, record.words);
+        assertEquals(0.5, record.wordStartTimes[1], 0.0);
+        assertEquals(0.7, record.wordEndTimes[1], 0.0);
+        assertArrayEquals(new String[] { "FillerRemover", "CasingApplicator" }, record.stageNames);
+        assertEquals(800, record.getStageNanos("CasingApplicator"));
+    }
+
+    @Test
+    public void testGroupCommitAndSegments() throws Exception {
+        try (TranscriptJournal journal = TranscriptJournal.open(dir, 256, Long.MAX_VALUE)) {
+            for (int i = 0; i < 200; i++) {
+                assertTrue(journal.append(record(i, "utterance " + i, "Utterance " + i + ".")));
+            }
+            journal.flush();
+            assertTrue("one fsync per batch, not per record: " + journal, journal.getCommits() < 200);
+        }
+
+        assertTrue(TranscriptJournal.listSegments(dir).length > 1);
+        List<TranscriptJournal.Record> records = readAll(Long.MIN_VALUE);
+        assertEquals(200, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("utterance " + i, records.get(i).rawText);
+        }
+
+        // Reopening starts a new segment after the existing ones
+        long lastSegment = TranscriptJournal.listSegments(dir)[TranscriptJournal.listSegments(dir).length - 1];
+        try (TranscriptJournal journal = TranscriptJournal.open(dir)) {
+            journal.append(record(500, "later", "Later."));
+        }
+        long[] segments = TranscriptJournal.listSegments(dir);
+        assertEquals(lastSegment + 1, segments[segments.length - 1]);
+        assertEquals(201, readAll(Long.MIN_VALUE).size());
+    }
+
+    @Test
+    public void testReadSinceUsesIndex() throws Exception {
+        try (TranscriptJournal journal = TranscriptJournal.open(dir, 512, Long.MAX_VALUE)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(record(i * 10L, "utterance " + i, ""));
+            }
+        }
+
+        List<TranscriptJournal.Record> records = readAll(705);
+        assertEquals(29, records.size());
+        assertEquals(710, records.get(0).timestampMs);
+
+        // Index missing: same result by scanning
+        for (long seq : TranscriptJournal.listSegments(dir)) {
+            TranscriptJournal.indexFile(dir, seq).delete();
+        }
+        assertEquals(29, readAll(705).size());
+    }
+
+    @Test
+    public void testRetentionDropsOldestSegments() throws Exception {
+        try (TranscriptJournal journal = TranscriptJournal.open(dir, 256, 2048)) {
+            for (int i = 0; i < 200; i++) {
+                journal.append(record(i, "utterance number " + i, ""));
+                if (i % 10 == 9) {
+                    journal.flush();
+                }
+            }
+        }
+
+        long total = 0;
+        for (long seq : TranscriptJournal.listSegments(dir)) {
+            total += TranscriptJournal.segmentFile(dir, seq).length();
+        }
+        assertTrue("journal size " + total, total <= 2048 + 512);
+        List<TranscriptJournal.Record> records = readAll(Long.MIN_VALUE);
+        assertFalse(records.isEmpty());
+        assertEquals("utterance number 199", records.get(records.size() - 1).rawText);
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception {
+        try (TranscriptJournal journal = TranscriptJournal.open(dir)) {
+            journal.append(record(1, "one", "One."));
+            journal.append(record(2, "two", "Two."));
+        }
+        File segment = TranscriptJournal.segmentFile(dir, TranscriptJournal.listSegments(dir)[0]);
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (TranscriptJournal.Reader reader = TranscriptJournal.read(dir)) {
+            assertEquals("one", reader.next().rawText);
+            assertNull(reader.next());
+            assertEquals(1, reader.getCorrupt());
+        }
+    }
+
+    @Test
+    public void testClosedJournalDropsRecords() throws Exception {
+        TranscriptJournal journal = TranscriptJournal.open(dir);
+        journal.close();
+        assertFalse(journal.append(record(1, "late", "Late.")));
+        assertEquals(1, journal.getDropped());
+        journal.flush(); // Returns at once
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        ProcessingPipeline pipeline = VoiceAIPipeline.create();
+        ProcessingContext context = ProcessingContext.builder().build();
+        String same = pipeline.process("um hello world", context);
+
+        try (TranscriptJournal journal = TranscriptJournal.open(dir)) {
+            journal.append(record(1, "um hello world", same));
+            journal.append(record(2, "hello again", "recorded by an older pipeline"));
+        }
+
+        StringWriter out = new StringWriter();
+        BatchProcessor.Stats stats = TranscriptJournal.replay(dir, pipeline, context, out);
+        assertEquals(2, stats.getRecords());
+        assertEquals(1, stats.getChanged());
+        assertTrue(stats.getStageNanos("FillerRemover") > 0);
+        assertTrue(stats.summary().contains("1 of 2 outputs differ"));
+        assertEquals(same + "\n" + pipeline.process("hello again", context) + "\n", out.toString());
+    }
+}
@@ -0,0 +1,124 @@
+package com.voiceai.app.processing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TranscriptStitcher and LongFormAssembler
+ * Chunks overlap by one second
+ */
+public class TranscriptStitcherTest {
+
+    private static String[] words(String text) {
+        return text.split(" ");
+    }
+
+    // Word i starts at 0.5s * i into the chunk and lasts 0.4s
+    private static double[] starts(int n, double offset) {
+        double[] t = new double[n];
+        for (int i = 0; i < n; i++) {
+            t[i] = offset + 0.5 * i;
+        }
+        return t;
+    }
+
+    private static double[] ends(int n, double offset) {
+        double[] t = starts(n, offset);
+        for (int i = 0; i < n; i++) {
+            t[i] += 0.4;
+        }
+        return t;
+    }
+
+    // Chunk transcript as lib.rs delivers it: words timed like starts/ends
+    private static Transcript chunk(String text) {
+        String[] w = words(text);
+        ByteBuffer payload = ByteBuffer.allocateDirect(Transcript.HEADER_BYTES + w.length * Transcript.WORD_BYTES)
+                .order(ByteOrder.nativeOrder());
+        payload.putInt(Transcript.VERSION).putInt(w.length).putInt(0);
+        int pos = 0;
+        for (int i = 0; i < w.length; i++) {
+            payload.putInt(pos).putInt(pos + w[i].length()).putInt(0).putInt(0);
+            payload.putFloat(0.5f * i).putFloat(0.5f * i + 0.4f).putFloat(0.9f);
+            pos += w[i].length() + 1;
+        }
+        payload.flip();
+        Transcript transcript = new Transcript();
+        transcript.decode(text, payload);
+        return transcript;
+    }
+
+    @Test
+    public void testOverlapAnchoredOnSharedWords() {
+        TranscriptStitcher stitcher = new TranscriptStitcher(1.0);
+        // 0-4s: eight words, the last two inside the 3-4s overlap
+        stitcher.addChunk(0, 4, words("one two three four five six seven eight"), starts(8, 0), ends(8, 0));
+        // 3-6s: hears "seven eight" again, slightly differently spelled
+        stitcher.addChunk(3, 6, words("Seven eight, nine ten"), starts(4, 0), ends(4, 0));
+        stitcher.finish();
+        assertEquals("one two three four five six Seven eight, nine ten", stitcher.getText());
+        assertEquals(10, stitcher.getWordCount());
+        assertEquals(6.0, stitcher.getEndTime(), 1e-9);
+    }
+
+    @Test
+    public void testOverlapWithoutAnchorSplitsAtMiddle() {
+        TranscriptStitcher stitcher = new TranscriptStitcher(1.0);
+        stitcher.addChunk(0, 4, words("alpha bravo charlie delta"), starts(4, 2.0), ends(4, 2.0));
+        // Overlap 3-4s: the first chunk heard "delta" at 3.5s, this one "Dell" at 3.4s
+        stitcher.addChunk(3, 6, words("Dell echo foxtrot"), starts(3, 0.4), ends(3, 0.4));
+        stitcher.finish();
+        // Words from the middle (3.5s) on come from the new chunk
+        assertEquals("alpha bravo charlie echo foxtrot", stitcher.getText());
+    }
+
+    @Test
+    public void testStableWordsEndBeforeNextChunk() {
+        TranscriptStitcher stitcher = new TranscriptStitcher(1.0);
+        stitcher.addChunk(0, 4, words("one two three four five six seven eight"), starts(8, 0), ends(8, 0));
+        // Next chunk starts at 3s; words ending by then cannot change
+        assertEquals(6, stitcher.getStableCount());
+        assertEquals("one two three four five six", stitcher.getText(0, stitcher.getStableCount()));
+        stitcher.finish();
+        assertEquals(8, stitcher.getStableCount());
+    }
+
+    @Test
+    public void testStableWordsAreKept() {
+        TranscriptStitcher stitcher = new TranscriptStitcher(1.0);
+        stitcher.addChunk(0, 4, words("one two three four"), starts(4, 0), ends(4, 0));
+        // A misaligned chunk never rewrites stable words
+        stitcher.addChunk(0.5, 5, words("x y z"), starts(3, 0), ends(3, 0));
+        assertTrue(stitcher.getText().startsWith("one two three four"));
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("hello", TranscriptStitcher.normalize("Hello,"));
+        assertEquals("dont", TranscriptStitcher.normalize("don't"));
+        assertEquals("", TranscriptStitcher.normalize("..."));
+        assertEquals("", TranscriptStitcher.normalize(null));
+    }
+
+    @Test
+    public void testAssemblerProcessesStableSpans() {
+        ProcessingContext context = ProcessingContext.builder().build();
+        LongFormAssembler assembler = new LongFormAssembler(VoiceAIPipeline.createLive(), 1.0);
+
+        assertFalse(assembler.addChunk(0, 0.3, new Transcript(), context));
+        assertEquals("", assembler.getText());
+
+        // 0-4s: words ending by the next chunk's start (3s) are processed now
+        assertTrue(assembler.addChunk(0, 4, chunk("so we need um twenty five chairs and"), context));
+        assertEquals("So we need 25", assembler.getText());
+
+        // 3-6s: "chairs and" heard again in the overlap; the span continues
+        // the sentence, so it keeps its lowercase start
+        assertTrue(assembler.addChunk(3, 6, chunk("chairs and two tables"), context));
+        assertEquals("So we need 25 chairs and 2 tables", assembler.getText());
+        assertEquals("So we need 25 chairs and 2 tables", assembler.finish(context));
+        assertEquals("so we need um twenty five chairs and two tables", assembler.getRawText());
+    }
+}
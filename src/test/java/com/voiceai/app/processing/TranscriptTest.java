@@ -0,0 +1,142 @@
+package com.voiceai.app.processing;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Unit tests for Transcript and its use in ProcessingContext
+ * Payloads are built the way lib.rs encodes them
+ */
+public class TranscriptTest {
+
+    private static final String TEXT = "send it to café now";
+
+    // {charStart, charEnd, firstToken, tokenCount}, {start, end, confidence}
+    private static ByteBuffer payload(int[][] words, float[][] times, int tokens) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(Transcript.HEADER_BYTES
+                + words.length * Transcript.WORD_BYTES + tokens * Transcript.TOKEN_BYTES)
+                .order(ByteOrder.nativeOrder());
+        buf.putInt(Transcript.VERSION).putInt(words.length).putInt(tokens);
+        for (int i = 0; i < words.length; i++) {
+            buf.putInt(words[i][0]).putInt(words[i][1]).putInt(words[i][2]).putInt(words[i][3]);
+            buf.putFloat(times[i][0]).putFloat(times[i][1]).putFloat(times[i][2]);
+        }
+        for (int i = 0; i < tokens; i++) {
+            buf.putInt(100 + i).putFloat(i * 0.1f).putFloat(0.5f + i * 0.05f);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static ByteBuffer sample() {
+        return payload(
+                new int[][] { { 0, 4, 0, 1 }, { 5, 7, 1, 1 }, { 8, 10, 2, 1 }, { 11, 15, 3, 2 }, { 16, 19, 5, 1 } },
+                new float[][] { { 0.0f, 0.3f, 0.9f }, { 0.3f, 0.5f, 0.8f }, { 0.5f, 0.7f, 0.95f },
+                        { 0.7f, 1.1f, 0.4f }, { 2.5f, 2.8f, 0.99f } },
+                6);
+    }
+
+    @Test
+    public void testDecode() {
+        Transcript transcript = new Transcript();
+        transcript.decode(TEXT, sample());
+
+        assertEquals(5, transcript.getWordCount());
+        assertEquals(6, transcript.getTokenCount());
+        assertEquals("café", transcript.getWord(3));
+        assertEquals(11, transcript.getWordStart(3));
+        assertEquals(0.7f, transcript.getWordStartTime(3), 0f);
+        assertEquals(0.4f, transcript.getWordConfidence(3), 0f);
+        assertEquals(2, transcript.getWordTokenCount(3));
+        assertEquals(105, transcript.getTokenId(5));
+        assertEquals(0.75f, transcript.getTokenProbability(5), 1e-6f);
+    }
+
+    @Test
+    public void testDecodeDoesNotMoveBuffer() {
+        ByteBuffer buf = sample();
+        new Transcript().decode(TEXT, buf);
+        assertEquals(0, buf.position());
+    }
+
+    @Test
+    public void testReuseAndUnlocatedWords() {
+        Transcript transcript = new Transcript();
+        transcript.decode(TEXT, sample());
+
+        // Smaller second utterance; an offset outside the text is "not located"
+        transcript.decode("ok", payload(new int[][] { { 0, 2, 0, 1 }, { -1, -1, 1, 1 }, { 3, 9, 2, 1 } },
+                new float[][] { { 0f, 0.2f, 0.9f }, { 0.2f, 0.3f, 0.5f }, { 0.3f, 0.4f, 0.5f } }, 3));
+        assertEquals(3, transcript.getWordCount());
+        assertEquals("ok", transcript.getWord(0));
+        assertEquals("", transcript.getWord(1));
+        assertEquals(-1, transcript.getWordStart(2));
+        try {
+            transcript.getWord(3);
+            fail("Index past the word count");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void testMalformedPayloadLeavesEmptyTranscript() {
+        Transcript transcript = new Transcript();
+        transcript.decode(TEXT, sample());
+
+        ByteBuffer truncated = sample();
+        truncated.limit(truncated.limit() - 4);
+        try {
+            transcript.decode(TEXT, truncated);
+            fail("Size mismatch must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertTrue(transcript.isEmpty());
+
+        ByteBuffer wrongVersion = sample();
+        wrongVersion.putInt(0, Transcript.VERSION + 1);
+        try {
+            transcript.decode(TEXT, wrongVersion);
+            fail("Unknown version must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testContextFromTranscript() {
+        Transcript transcript = new Transcript();
+        transcript.decode(TEXT, sample());
+        ProcessingContext shared = ProcessingContext.builder().fillerRemoval(false).build();
+        ProcessingContext context = shared.toBuilder().transcript(transcript).build();
+
+        // Reusing the transcript does not affect the context
+        transcript.clear();
+
+        assertFalse(context.isFillerRemoval());
+        assertTrue(context.hasWordTimings());
+        assertTrue(context.hasWordConfidences());
+        assertEquals(0.4f, context.getWordConfidences()[3], 0f);
+        assertEquals(2.5, context.getWordStartTimes()[4], 1e-6);
+        assertArrayEquals(new String[] { "send", "it", "to", "café", "now" }, context.getTimedWords());
+        assertSame(context.getTimedWords(), context.getTimedWords());
+
+        // Carried over by toBuilder, dropped by explicit word timings
+        assertTrue(context.toBuilder().build().hasWordConfidences());
+        ProcessingContext replaced = context.toBuilder()
+                .wordTimings(new String[] { "a" }, new double[] { 0 }, new double[] { 1 })
+                .build();
+        assertFalse(replaced.hasWordConfidences());
+        assertArrayEquals(new String[] { "a" }, replaced.getTimedWords());
+    }
+
+    @Test
+    public void testEmptyTranscriptClearsTimings() {
+        ProcessingContext timed = ProcessingContext.builder()
+                .wordTimings(new String[] { "a" }, new double[] { 0 }, new double[] { 1 })
+                .build();
+        ProcessingContext context = timed.toBuilder().transcript(new Transcript()).build();
+        assertFalse(context.hasWordTimings());
+        assertNull(context.getTimedWords());
+    }
+}
@@ -78,7 +78,10 @@
 //! ```
 
 use crate::{
-    engines::parakeet::{model::ParakeetModel, timestamps::convert_timestamps},
+    engines::parakeet::{
+        model::{ParakeetModel, PreloadedModel, TimestampedResult},
+        timestamps::convert_timestamps,
+    },
     TranscriptionEngine, TranscriptionResult,
 };
 use std::path::{Path, PathBuf};
@@ -118,6 +121,8 @@ pub enum QuantizationType {
 pub struct ParakeetModelParams {
     /// The quantization type to use for the model
     pub quantization: QuantizationType,
+    /// Model files to take from memory instead of the model directory
+    pub preloaded: Vec<PreloadedModel>,
 }
 
 impl ParakeetModelParams {
@@ -135,6 +140,7 @@ impl ParakeetModelParams {
     pub fn fp32() -> Self {
         Self {
             quantization: QuantizationType::FP32,
+            preloaded: Vec::new(),
         }
     }
 
@@ -152,6 +158,7 @@ impl ParakeetModelParams {
     pub fn int8() -> Self {
         Self {
             quantization: QuantizationType::Int8,
+            preloaded: Vec::new(),
         }
     }
 
@@ -169,7 +176,21 @@ impl ParakeetModelParams {
     /// let params = ParakeetModelParams::quantized(QuantizationType::Int8);
     /// ```
     pub fn quantized(quantization: QuantizationType) -> Self {
-        Self { quantization }
+        Self {
+            quantization,
+            preloaded: Vec::new(),
+        }
+    }
+
+    /// Load `file_name` (e.g. `encoder-model.int8.onnx`) from `bytes`
+    /// instead of the model directory, e.g. a file memory-mapped in place.
+    /// The directory is still used for everything else (vocab.txt).
+    pub fn with_preloaded(mut self, file_name: impl Into<String>, bytes: &'static [u8]) -> Self {
+        self.preloaded.push(PreloadedModel {
+            file_name: file_name.into(),
+            bytes,
+        });
+        self
     }
 }
 
@@ -241,6 +262,20 @@ impl ParakeetEngine {
             model: None,
         }
     }
+
+    /// Transcribe with the model's full per-token output (ids, timestamps,
+    /// probabilities), e.g. to build word timings and confidences with
+    /// [`words`](crate::engines::parakeet::words).
+    pub fn transcribe_samples_detailed(
+        &mut self,
+        samples: Vec<f32>,
+    ) -> Result<TimestampedResult, Box<dyn std::error::Error>> {
+        let model: &mut ParakeetModel = self
+            .model
+            .as_mut()
+            .ok_or("Model not loaded. Call load_model() first.")?;
+        Ok(model.transcribe_samples(samples)?)
+    }
 }
 
 impl Drop for ParakeetEngine {
@@ -262,7 +297,7 @@ impl TranscriptionEngine for ParakeetEngine {
             QuantizationType::FP32 => false,
             QuantizationType::Int8 => true,
         };
-        let model = ParakeetModel::new(model_path, quantized)?;
+        let model = ParakeetModel::new_with_preloaded(model_path, quantized, &params.preloaded)?;
 
         self.model = Some(model);
         self.loaded_model_path = Some(model_path.to_path_buf());
@@ -80,5 +80,5 @@ pub use engine::{
     ParakeetEngine, ParakeetInferenceParams, ParakeetModelParams, QuantizationType,
     TimestampGranularity,
 };
-pub use model::{ParakeetError, ParakeetModel, TimestampedResult};
-pub use timestamps::{convert_timestamps, WordBoundary};
+pub use model::{ParakeetError, ParakeetModel, PreloadedModel, TimestampedResult};
+pub use timestamps::{convert_timestamps, words, Word, WordBoundary};
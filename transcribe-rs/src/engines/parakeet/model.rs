@@ -16,6 +16,16 @@ const SUBSAMPLING_FACTOR: usize = 8;
 const WINDOW_SIZE: f32 = 0.01;
 const MAX_TOKENS_PER_STEP: usize = 10;
 
+// Probability of the argmax entry: 1 / sum(exp(l - max))
+fn softmax_max(logits: &[f32], max_logit: f32) -> f32 {
+    let sum: f32 = logits.iter().map(|&l| (l - max_logit).exp()).sum();
+    if sum > 0.0 {
+        1.0 / sum
+    } else {
+        0.0
+    }
+}
+
 static DECODE_SPACE_RE: Lazy<Result<Regex, regex::Error>> =
     Lazy::new(|| Regex::new(r"\A\s|\s\B|(\s)\b"));
 
@@ -24,6 +34,10 @@ pub struct TimestampedResult {
     pub text: String,
     pub timestamps: Vec<f32>,
     pub tokens: Vec<String>,
+    /// Vocabulary ids, parallel to `tokens`
+    pub token_ids: Vec<i32>,
+    /// Softmax probability of each emitted token, parallel to `tokens`
+    pub token_probs: Vec<f32>,
 }
 
 #[derive(thiserror::Error, Debug)]
@@ -42,6 +56,20 @@ pub enum ParakeetError {
     TensorShape(String),
 }
 
+/// A model file that is already in memory (e.g. memory-mapped out of an
+/// APK), loaded instead of `file_name` in the model directory.
+#[derive(Clone)]
+pub struct PreloadedModel {
+    pub file_name: String,
+    pub bytes: &'static [u8],
+}
+
+impl std::fmt::Debug for PreloadedModel {
+    fn fmt(&self, f: &mut std::fmt::Formatter<'_>) -> std::fmt::Result {
+        write!(f, "PreloadedModel({}, {} bytes)", self.file_name, self.bytes.len())
+    }
+}
+
 pub struct ParakeetModel {
     encoder: Session,
     decoder_joint: Session,
@@ -59,9 +87,20 @@ impl Drop for ParakeetModel {
 
 impl ParakeetModel {
     pub fn new<P: AsRef<Path>>(model_dir: P, quantized: bool) -> Result<Self, ParakeetError> {
-        let encoder = Self::init_session(&model_dir, "encoder-model", None, quantized)?;
-        let decoder_joint = Self::init_session(&model_dir, "decoder_joint-model", None, quantized)?;
-        let preprocessor = Self::init_session(&model_dir, "nemo128", None, false)?;
+        Self::new_with_preloaded(model_dir, quantized, &[])
+    }
+
+    /// Like [`new`](Self::new), taking any model file listed in `preloaded`
+    /// from memory instead of the directory
+    pub fn new_with_preloaded<P: AsRef<Path>>(
+        model_dir: P,
+        quantized: bool,
+        preloaded: &[PreloadedModel],
+    ) -> Result<Self, ParakeetError> {
+        let encoder = Self::init_session(&model_dir, "encoder-model", None, quantized, preloaded)?;
+        let decoder_joint =
+            Self::init_session(&model_dir, "decoder_joint-model", None, quantized, preloaded)?;
+        let preprocessor = Self::init_session(&model_dir, "nemo128", None, false, preloaded)?;
 
         let (vocab, blank_idx) = Self::load_vocab(&model_dir)?;
         let vocab_size = vocab.len();
@@ -87,14 +126,16 @@ impl ParakeetModel {
         model_name: &str,
         intra_threads: Option<usize>,
         try_quantized: bool,
+        preloaded: &[PreloadedModel],
     ) -> Result<Session, ParakeetError> {
+        let find_preloaded = |name: &str| preloaded.iter().find(|m| m.file_name == name);
         let providers = vec![CPUExecutionProvider::default().build()];
 
         // Try quantized version first if requested, fallback to regular version
         let model_filename = if try_quantized {
             let quantized_name = format!("{}.int8.onnx", model_name);
             let quantized_path = model_dir.as_ref().join(&quantized_name);
-            if quantized_path.exists() {
+            if quantized_path.exists() || find_preloaded(&quantized_name).is_some() {
                 log::info!("Loading quantized model from {}...", quantized_name);
                 quantized_name
             } else {
@@ -122,7 +163,14 @@ impl ParakeetModel {
                 .with_inter_threads(threads)?;
         }
 
-        let session = builder.commit_from_file(model_dir.as_ref().join(&model_filename))?;
+        let model_path = model_dir.as_ref().join(&model_filename);
+        let session = match find_preloaded(&model_filename) {
+            Some(model) => {
+                log::info!("Using in-memory {} ({} bytes)", model_filename, model.bytes.len());
+                builder.commit_from_memory(model.bytes)?
+            }
+            None => builder.commit_from_file(model_path)?,
+        };
 
         for input in &session.inputs {
             log::info!(
@@ -331,9 +379,9 @@ impl ParakeetModel {
         // Decode for each batch item
         let mut results = Vec::new();
         for (encodings, &encodings_len) in encoder_out.outer_iter().zip(encoder_out_lens.iter()) {
-            let (tokens, timestamps) =
+            let (tokens, timestamps, probs) =
                 self.decode_sequence(&encodings.view(), encodings_len as usize)?;
-            let result = self.decode_tokens(tokens, timestamps);
+            let result = self.decode_tokens(tokens, timestamps, probs);
             results.push(result);
         }
 
@@ -344,10 +392,11 @@ impl ParakeetModel {
         &mut self,
         encodings: &ArrayViewD<f32>, // [time_steps, 1024]
         encodings_len: usize,
-    ) -> Result<(Vec<i32>, Vec<usize>), ParakeetError> {
+    ) -> Result<(Vec<i32>, Vec<usize>, Vec<f32>), ParakeetError> {
         let mut prev_state = self.create_decoder_state()?;
         let mut tokens = Vec::new();
         let mut timestamps = Vec::new();
+        let mut probs_out = Vec::new();
 
         let mut t = 0;
         let mut emitted_tokens = 0;
@@ -382,17 +431,18 @@ impl ParakeetModel {
             };
 
             // Get argmax token from vocabulary logits only
-            let token = vocab_logits
+            let (token, max_logit) = vocab_logits
                 .iter()
                 .enumerate()
                 .max_by(|(_, a), (_, b)| a.partial_cmp(b).unwrap_or(std::cmp::Ordering::Equal))
-                .map(|(idx, _)| idx as i32)
-                .unwrap_or(self.blank_idx);
+                .map(|(idx, &logit)| (idx as i32, logit))
+                .unwrap_or((self.blank_idx, 0.0));
 
             if token != self.blank_idx {
                 prev_state = new_state;
                 tokens.push(token);
                 timestamps.push(t);
+                probs_out.push(softmax_max(vocab_logits, max_logit));
                 emitted_tokens += 1;
             }
 
@@ -403,29 +453,32 @@ impl ParakeetModel {
             }
         }
 
-        Ok((tokens, timestamps))
+        Ok((tokens, timestamps, probs_out))
     }
 
-    fn decode_tokens(&self, ids: Vec<i32>, timestamps: Vec<usize>) -> TimestampedResult {
-        let tokens: Vec<String> = ids
-            .iter()
-            .filter_map(|&id| {
-                let idx = id as usize;
-                if idx < self.vocab.len() {
-                    let token = &self.vocab[idx];
-                    // Filter: only keep tokens that are ASCII (English characters)
-                    // This blocks Cyrillic, Chinese, Arabic, etc. from multilingual models
-                    if token.chars().all(|c| c.is_ascii() || c == '\u{2581}') {
-                        Some(token.clone())
-                    } else {
-                        log::trace!("Skipping non-ASCII token: {:?}", token);
-                        None // Skip non-ASCII tokens
-                    }
+    fn decode_tokens(&self, ids: Vec<i32>, timestamps: Vec<usize>, probs: Vec<f32>) -> TimestampedResult {
+        // Filtered in lockstep so timestamps, ids and probabilities stay
+        // parallel to the kept tokens
+        let mut tokens = Vec::with_capacity(ids.len());
+        let mut kept_ids = Vec::with_capacity(ids.len());
+        let mut kept_steps = Vec::with_capacity(ids.len());
+        let mut kept_probs = Vec::with_capacity(ids.len());
+        for ((&id, &step), &prob) in ids.iter().zip(timestamps.iter()).zip(probs.iter()) {
+            let idx = id as usize;
+            if idx < self.vocab.len() {
+                let token = &self.vocab[idx];
+                // Filter: only keep tokens that are ASCII (English characters)
+                // This blocks Cyrillic, Chinese, Arabic, etc. from multilingual models
+                if token.chars().all(|c| c.is_ascii() || c == '\u{2581}') {
+                    tokens.push(token.clone());
+                    kept_ids.push(id);
+                    kept_steps.push(step);
+                    kept_probs.push(prob);
                 } else {
-                    None
+                    log::trace!("Skipping non-ASCII token: {:?}", token);
                 }
-            })
-            .collect();
+            }
+        }
 
         let text = match &*DECODE_SPACE_RE {
             Ok(regex) => regex
@@ -440,7 +493,7 @@ impl ParakeetModel {
             Err(_) => tokens.join(""), // Fallback if regex failed to compile
         };
 
-        let float_timestamps: Vec<f32> = timestamps
+        let float_timestamps: Vec<f32> = kept_steps
             .iter()
             .map(|&t| WINDOW_SIZE * SUBSAMPLING_FACTOR as f32 * t as f32)
             .collect();
@@ -449,6 +502,8 @@ impl ParakeetModel {
             text,
             timestamps: float_timestamps,
             tokens,
+            token_ids: kept_ids,
+            token_probs: kept_probs,
         }
     }
 
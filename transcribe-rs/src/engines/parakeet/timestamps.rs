@@ -322,6 +322,19 @@ fn create_segment_from_words(words: &[Word]) -> Segment {
     }
 }
 
+/// Words with their tokens, in order. `Token::token_id` is the token's
+/// index into the result's `tokens` (and the parallel `token_ids`,
+/// `token_probs` and `timestamps`).
+pub fn words(timestamped_result: &TimestampedResult) -> Vec<Word> {
+    let utterance = build_utterance_from_tokens(timestamped_result, &['.', '?', '!'], ' ');
+    utterance
+        .segments
+        .into_iter()
+        .flat_map(|segment| segment.words)
+        .filter(|word| !word.text.trim().is_empty())
+        .collect()
+}
+
 fn extract_word_segments(utterance: &Utterance) -> Vec<TranscriptionSegment> {
     let mut segments = Vec::new();
 